@@ -18,6 +18,7 @@
 package VASSAL.build;
 
 import VASSAL.Info;
+import VASSAL.build.module.AutoSaver;
 import VASSAL.build.module.BasicCommandEncoder;
 import VASSAL.build.module.BasicLogger;
 import VASSAL.build.module.ChartWindow;
@@ -55,6 +56,7 @@ import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.build.module.folder.ModuleSubFolder;
 import VASSAL.build.module.gamepieceimage.GamePieceImageDefinitions;
 import VASSAL.build.module.index.IndexManager;
+import VASSAL.build.module.index.PieceBoundsIndex;
 import VASSAL.build.module.map.CounterDetailViewer;
 import VASSAL.build.module.metadata.AbstractMetaData;
 import VASSAL.build.module.metadata.MetaDataFactory;
@@ -64,6 +66,7 @@ import VASSAL.build.module.properties.GlobalProperties;
 import VASSAL.build.module.properties.GlobalTranslatableMessages;
 import VASSAL.build.module.properties.MutablePropertiesContainer;
 import VASSAL.build.module.properties.MutableProperty;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.build.module.properties.TranslatableString;
 import VASSAL.build.module.properties.TranslatableStringContainer;
@@ -79,7 +82,11 @@ import VASSAL.chat.node.PrivateNodeClientFactory;
 import VASSAL.chat.peer2peer.P2PClientFactory;
 import VASSAL.chat.ui.ChatServerControls;
 import VASSAL.command.Command;
+import VASSAL.command.CommandDecoderTable;
 import VASSAL.command.CommandEncoder;
+import VASSAL.command.CommandEnvelope;
+import VASSAL.command.CommandTreeReader;
+import VASSAL.command.CommandTreeWriter;
 import VASSAL.command.Logger;
 import VASSAL.command.NullCommand;
 import VASSAL.configure.AutoConfigurer;
@@ -100,9 +107,11 @@ import VASSAL.i18n.I18nResourcePathFinder;
 import VASSAL.i18n.Language;
 import VASSAL.i18n.Localization;
 import VASSAL.i18n.Resources;
+import VASSAL.launch.ModuleManager;
 import VASSAL.launch.PlayerWindow;
 import VASSAL.preferences.PositionOption;
 import VASSAL.preferences.Prefs;
+import VASSAL.script.ExpressionInterpreter;
 import VASSAL.script.expression.Expression;
 import VASSAL.tools.ArchiveWriter;
 import VASSAL.tools.CRCUtils;
@@ -122,6 +131,7 @@ import VASSAL.tools.WriteErrorDialog;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.image.ImageTileSource;
 import VASSAL.tools.image.tilecache.ImageTileDiskCache;
+import VASSAL.tools.image.tilecache.TileUtils;
 import VASSAL.tools.menu.MenuItemProxy;
 import VASSAL.tools.menu.MenuManager;
 import VASSAL.tools.swing.SwingUtils;
@@ -156,6 +166,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
 import java.security.SecureRandom;
@@ -167,6 +179,7 @@ import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import java.util.Random;
+import java.util.function.Consumer;
 
 import static VASSAL.preferences.Prefs.MAIN_WINDOW_HEIGHT;
 import static VASSAL.preferences.Prefs.MAIN_WINDOW_REMEMBER;
@@ -421,6 +434,11 @@ public class GameModule extends AbstractConfigurable
    */
   private Logger logger;
 
+  /**
+   * Saves the game in progress in the background, for recovery after a crash
+   */
+  private AutoSaver autoSaver;
+
   /**
    * The Chat Log window
    */
@@ -475,6 +493,7 @@ public class GameModule extends AbstractConfigurable
   private final List<KeyStrokeListener> keyStrokeListeners = new ArrayList<>();
 
   private CommandEncoder[] commandEncoders = new CommandEncoder[0];
+  private final CommandDecoderTable commandDecoders = new CommandDecoderTable();
   private final List<String> deferredChat = new ArrayList<>();
 
   private boolean loggingPaused = false;
@@ -780,6 +799,7 @@ public class GameModule extends AbstractConfigurable
     initRecentGamesMenu();
     initGameState();
     initLogger();
+    initAutoSaver();
     initServer();
     initDebug();
     new PluginsLoader().addTo(this);
@@ -809,7 +829,12 @@ public class GameModule extends AbstractConfigurable
   private void initIdentityPreferences() {
     idChangeSupport = new PropertyChangeSupport(this);
     final StringConfigurer fullName = new StringConfigurer(REAL_NAME, Resources.getString("Prefs.name_label"), Resources.getString("Prefs.newbie"));   //$NON-NLS-1$ //$NON-NLS-2$
-    fullName.addPropertyChangeListener(evt -> idChangeSupport.firePropertyChange(evt));
+    fullName.addPropertyChangeListener(evt -> {
+      // Values computed from the player's name or id are stale
+      PropertyDependencies.propertyChanged(GlobalOptions.PLAYER_NAME);
+      PieceBoundsIndex.propertyChanged(GlobalOptions.PLAYER_NAME);
+      idChangeSupport.firePropertyChange(evt);
+    });
     final TextConfigurer profile = new TextConfigurer(PERSONAL_INFO, Resources.getString("Prefs.personal_info"), "");   //$NON-NLS-1$ //$NON-NLS-2$
     profile.addPropertyChangeListener(evt -> idChangeSupport.firePropertyChange(evt));
     passwordConfigurer = new ToggleablePasswordConfigurer(SECRET_NAME, Resources.getString("Prefs.password_label"), ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
@@ -903,6 +928,14 @@ public class GameModule extends AbstractConfigurable
     ((BasicLogger) logger).addTo(this);
   }
 
+  /**
+   * Initialize and register our autosaver, which saves the game in progress in the background
+   */
+  private void initAutoSaver() {
+    autoSaver = new AutoSaver();
+    autoSaver.addTo(this);
+  }
+
   /**
    * Initialize and register a record of our GameState, which provides methods for saving/loading our entire enumerated game state,
    * along with controls for "starting" and "ending" gameplay.
@@ -1369,6 +1402,7 @@ public class GameModule extends AbstractConfigurable
    */
   public void addCommandEncoder(CommandEncoder ce) {
     commandEncoders = ArrayUtils.add(commandEncoders, ce);
+    commandDecoders.add(ce);
   }
 
   /**
@@ -1381,6 +1415,14 @@ public class GameModule extends AbstractConfigurable
    */
   public void removeCommandEncoder(CommandEncoder ce) {
     commandEncoders = ArrayUtils.removeElement(commandEncoders, ce);
+    commandDecoders.remove(ce);
+  }
+
+  /**
+   * @return the table routing each incoming command to the {@link CommandEncoder}s which could decode it
+   */
+  public CommandDecoderTable getCommandDecoderTable() {
+    return commandDecoders;
   }
 
   /**
@@ -1452,6 +1494,13 @@ public class GameModule extends AbstractConfigurable
     return logger;
   }
 
+  /**
+   * @return the object which saves the game in progress in the background
+   */
+  public AutoSaver getAutoSaver() {
+    return autoSaver;
+  }
+
   /**
    * @return BasicLogger, if we have one
    */
@@ -1536,18 +1585,52 @@ public class GameModule extends AbstractConfigurable
     return c;
   }
 
+  /**
+   * Decodes a {@link Command} tree as {@link #decode(String)} does, but reads it from a Reader and decodes each
+   * Command as soon as it has been read, instead of first reading the whole encoding into a String. Used to read
+   * save games and logfiles.
+   * @param in Reader to read the encoded Commands from
+   * @param decoded If not null, is passed each Command as soon as it has been decoded, such as to report progress
+   * @return the same Command tree {@link #decode(String)} would return
+   * @throws IOException if the Reader fails
+   */
+  public Command decode(Reader in, Consumer<Command> decoded) throws IOException {
+    return new CommandTreeReader(COMMAND_SEPARATOR, this::decodeSubCommand, this::decode).read(in, decoded);
+  }
+
+  /**
+   * Decodes a {@link Command} tree from a {@link CommandEnvelope}, rebuilding the same tree {@link #decode(String)}
+   * would from the old format. The caller must already know that it holds an envelope, since the old format cannot
+   * be told from one by looking at it.
+   * @param envelope The envelope
+   * @return the decoded Command
+   * @throws IllegalArgumentException if the envelope is malformed
+   */
+  public Command decodeEnvelope(String envelope) {
+    return envelope == null ? null : commandEnvelope().decode(envelope);
+  }
+
+  /**
+   * Reads a {@link Command} tree from a {@link CommandEnvelope}, as {@link #decode(Reader, Consumer)} does from the
+   * old format
+   * @param in Reader to read the envelope from
+   * @param decoded If not null, is passed each Command as soon as it has been decoded, such as to report progress
+   * @return the decoded Command
+   * @throws IOException if the Reader fails or the envelope is malformed
+   */
+  public Command decodeEnvelope(Reader in, Consumer<Command> decoded) throws IOException {
+    return commandEnvelope().readTree(in, decoded);
+  }
+
   /**
    * Deserializes a single anonymous subcommand String into a {@link Command}, by invoking #decode from each of our registered
-   * command encoders in turn until one of them is able to successfully recognize and deserialize the command.
+   * command encoders in turn until one of them is able to successfully recognize and deserialize the command. Encoders
+   * which declare {@link CommandEncoder#getDecodePrefixes} are skipped for commands not starting with their prefixes.
    * @param subCommand A single command, to be deserialized
    * @return a {@link Command} object for this command, ready to be executed.
    */
   private Command decodeSubCommand(String subCommand) {
-    Command c = null;
-    for (int i = 0; i < commandEncoders.length && c == null; ++i) {
-      c = commandEncoders[i].decode(subCommand);
-    }
-    return c;
+    return commandDecoders.decode(subCommand);
   }
 
   /**
@@ -1579,6 +1662,46 @@ public class GameModule extends AbstractConfigurable
     return s;
   }
 
+  /**
+   * Encodes a {@link Command} tree, writing the result to a Writer as it goes instead of building it as a single
+   * String, so that the memory needed does not grow with the size of the tree. Used to write save games and logfiles.
+   * The result is in the format {@link #encode(Command)} produces, which every version of VASSAL can read.
+   * @param c Command tree to encode
+   * @param out Writer to write the encoded Command to
+   * @return false if the Command has no encoding, in which case nothing is written
+   * @throws IOException if the Writer fails
+   */
+  public boolean encode(Command c, Writer out) throws IOException {
+    return new CommandTreeWriter(COMMAND_SEPARATOR, this::encodeSubCommand, this::encode).write(c, out);
+  }
+
+  /**
+   * Encodes a {@link Command} tree in a {@link CommandEnvelope}, writing the result to a Writer as it goes. Unlike
+   * {@link #encode(Command)}, the size of the result does not grow with the depth of the tree. Versions of VASSAL
+   * before 3.8.0 cannot read it.
+   * @param c Command tree to encode
+   * @param out Writer to write the encoded Command to
+   * @return false if the Command has no encoding, in which case nothing is written
+   * @throws IOException if the Writer fails
+   */
+  public boolean encodeEnvelope(Command c, Writer out) throws IOException {
+    return commandEnvelope().write(c, out);
+  }
+
+  /**
+   * Encodes a {@link Command} tree in a {@link CommandEnvelope}, as a String to send to other players' clients
+   * which have said they can read one
+   * @param c Command tree to encode
+   * @return the envelope, or null if the Command has no encoding
+   */
+  public String encodeEnvelope(Command c) {
+    return commandEnvelope().encode(c);
+  }
+
+  private CommandEnvelope commandEnvelope() {
+    return new CommandEnvelope(this::encodeSubCommand, this::decodeSubCommand);
+  }
+
   /**
    * Serializes a single anonymous {@link Command} object into an ascii-compatible string, by invoking #encode on
    * from each of our registered {@link CommandEncoder}s in turn until one of them is successfully able to recognize
@@ -1829,6 +1952,8 @@ public class GameModule extends AbstractConfigurable
         ReadErrorDialog.error(e, archive.getName());
       }
 
+      ExpressionInterpreter.clearCompiled();
+
       log.info("Exiting"); //NON-NLS
     }
 
@@ -2120,8 +2245,13 @@ public class GameModule extends AbstractConfigurable
       final String hstr =
         DigestUtils.sha1Hex(getGameName() + "_" + getGameVersion()); //NON-NLS
 
-      final File tc = new File(Info.getCacheDir(), "tiles/" + hstr); //NON-NLS
-      tcache = new ImageTileDiskCache(tc.getAbsolutePath());
+      final File tc = new File(Info.getCacheDir(), TileUtils.CACHE_DIR + "/" + hstr);
+      // the tiler preferences belong to the Module Manager, so are not
+      // registered here, but their stored values can still be read
+      tcache = new ImageTileDiskCache(
+        tc.getAbsolutePath(),
+        Boolean.parseBoolean(Prefs.getGlobalPrefs().getStoredValue(ModuleManager.TILER_PACK_TILES))
+      );
     }
 
     return tcache;
@@ -2251,9 +2381,12 @@ public class GameModule extends AbstractConfigurable
       return mySide == null ? "" : mySide;  //$NON-NLS-1$
     }
     else if (GlobalOptions.PLAYER_NAME.equals(key) || GlobalOptions.PLAYER_NAME_ALT.equals(key)) {
+      PropertyDependencies.propertyRead(GlobalOptions.PLAYER_NAME);
       return getPrefs().getValue(REAL_NAME);
     }
     else if (GlobalOptions.PLAYER_ID.equals(key) || GlobalOptions.PLAYER_ID_ALT.equals(key)) {
+      // The id is formatted from the name and side, and a change of side is reported as a change of state
+      PropertyDependencies.propertyRead(GlobalOptions.PLAYER_NAME);
       return GlobalOptions.getInstance().getPlayerId();
     }
     else if (MODULE_NAME_PROPERTY.equals(key)) {
@@ -2278,29 +2411,38 @@ public class GameModule extends AbstractConfigurable
       return moduleOther2;
     }
     else if (MODULE_CURRENT_LOCALE.equals(key)) {
+      PropertyDependencies.propertyRead(MODULE_CURRENT_LOCALE);
       return Resources.getLocale().getLanguage();
     }
     else if (MODULE_CURRENT_LOCALE_NAME.equals(key)) {
+      PropertyDependencies.propertyRead(MODULE_CURRENT_LOCALE);
       return Resources.getLocale().getDisplayName();
     }
     else if (GAME_FILENAME_PROPERTY.equals(key)) {
+      PropertyDependencies.uncacheable();
       return gameFile;
     }
+    // These depend on what is being drawn, so a value computed from them may not be reused
     else if (DRAWING_MOUSEOVER_PROPERTY.equals(key)) {
+      PropertyDependencies.uncacheable();
       return CounterDetailViewer.isDrawingMouseOver();
     }
     else if (DRAWING_MOUSEOVER_INDEX_PROPERTY.equals(key)) {
+      PropertyDependencies.uncacheable();
       return CounterDetailViewer.isDrawingMouseOver() ? "2" : "1";
     }
     else if (UI_PIECE_COUNT.equals(key)) {
+      PropertyDependencies.uncacheable();
       return String.valueOf(getUiPieceCount());
     }
     else if (UI_PIECE_INDEX.equals(key)) {
+      PropertyDependencies.uncacheable();
       return String.valueOf(getUiPieceIndex());
     }
 
     //BR// MapName_isVisible property for each map window
     if (((String)key).endsWith(IS_VISIBLE)) {
+      PropertyDependencies.uncacheable();
       for (final Map map : Map.getMapList()) {
         if ((map.getConfigureName() + IS_VISIBLE).equals(key) || (map.getConfigureName().replace(' ', '_') + IS_VISIBLE).equals(key)) {
           final Container tla = (map.getComponent() != null) ? ((JPanel) map.getComponent()).getTopLevelAncestor() : null;
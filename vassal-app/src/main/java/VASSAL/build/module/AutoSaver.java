@@ -0,0 +1,550 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module;
+
+import VASSAL.Info;
+import VASSAL.build.GameModule;
+import VASSAL.build.module.metadata.SaveMetaData;
+import VASSAL.command.Command;
+import VASSAL.command.NullCommand;
+import VASSAL.configure.IntConfigurer;
+import VASSAL.i18n.Resources;
+import VASSAL.preferences.Prefs;
+import VASSAL.tools.ReadErrorDialog;
+import VASSAL.tools.io.ZipWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.DateFormat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Saves the game in progress in the background, so that it can be recovered if VASSAL stops without the game
+ * being closed.
+ *
+ * Every few minutes, if anything has happened, the state of the game is captured on the event dispatch thread as
+ * a restore Command, and a background thread encodes it and writes it as a full snapshot, in the same format as a
+ * save file. Between snapshots, every Command logged is encoded on the event dispatch thread, while the game is as
+ * the Command left it, and the encoding is handed to the background thread, which appends it to a delta file. Both files are written only by the background thread, in the order the work was handed
+ * to it, so the delta file always continues the snapshot written before it. The delta file starts with the generation
+ * of its snapshot, so a delta left over from an earlier snapshot is never applied to a later one.
+ *
+ * The files are named for the module and the id and start time of the process writing them, so two copies of VASSAL
+ * playing the same module each keep their own, even if one has been given the id of an earlier one which stopped. They are deleted when the game is closed. If the module is next opened after a
+ * process stopped without deleting them, the player is offered the game they hold: the snapshot, loaded as a saved
+ * game, with the Commands in the delta file executed after it.
+ *
+ * @since 3.8.0
+ */
+public class AutoSaver implements GameComponent {
+  private static final Logger log = LoggerFactory.getLogger(AutoSaver.class);
+
+  public static final String AUTOSAVE_INTERVAL = "autosaveInterval"; //NON-NLS
+
+  /** Zip entry holding the generation of a snapshot */
+  static final String GENERATION_ZIP_ENTRY = "autosave"; //NON-NLS
+
+  private static final String AUTOSAVE_DIR = "autosave"; //NON-NLS
+  private static final String SNAPSHOT_EXTENSION = ".autosave"; //NON-NLS
+  private static final String DELTA_EXTENSION = ".autosave-delta"; //NON-NLS
+
+  /** The id of this process, which with its start time names its autosave files */
+  private static final long PID = ProcessHandle.current().pid();
+  private static final long START = startTime(ProcessHandle.current())
+    .orElse(ManagementFactory.getRuntimeMXBean().getStartTime());
+
+  private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+    final Thread t = new Thread(r, "autosave"); //NON-NLS
+    t.setDaemon(true);
+    return t;
+  });
+
+  private final Timer timer = new Timer(0, e -> snapshot());
+
+  // Used only on the event dispatch thread
+  private int interval;
+  private boolean running;
+  private boolean dirty;
+  private String generation;
+
+  // Used only by the writer
+  private DataOutputStream delta;
+
+  public AutoSaver() {
+    timer.setRepeats(true);
+  }
+
+  public void addTo(GameModule mod) {
+    final IntConfigurer intervalConfig = new IntConfigurer(AUTOSAVE_INTERVAL, Resources.getString("AutoSaver.interval"), 5);  //$NON-NLS-1$
+    intervalConfig.addPropertyChangeListener(evt -> setInterval(intervalConfig.getIntValue(0)));
+    mod.getPrefs().addOption(Resources.getString("Prefs.general_tab"), intervalConfig); //$NON-NLS-1$
+    setInterval(intervalConfig.getIntValue(0));
+
+    mod.getGameState().addGameComponent(this);
+
+    // Let the writer finish, so that a game closed just before VASSAL exits does not look like one to recover
+    Runtime.getRuntime().addShutdownHook(new Thread(this::finishWriting, "autosave-shutdown")); //NON-NLS
+  }
+
+  /**
+   * @param minutes Minutes between snapshots, or 0 not to autosave at all
+   */
+  public void setInterval(int minutes) {
+    interval = Math.max(0, minutes);
+    timer.stop();
+    if (interval > 0) {
+      timer.setDelay(interval * 60_000);
+      timer.setInitialDelay(interval * 60_000);
+      if (running) {
+        timer.start();
+      }
+    }
+    else {
+      generation = null;
+    }
+  }
+
+  @Override
+  public void setup(boolean gameStarting) {
+    running = gameStarting;
+    dirty = true;
+    generation = null;
+
+    if (gameStarting) {
+      if (interval > 0) {
+        // Take the first snapshot once every component has been set up
+        SwingUtilities.invokeLater(this::snapshot);
+        timer.restart();
+      }
+    }
+    else {
+      timer.stop();
+
+      // The game was closed properly, so there is nothing to recover
+      final File snapshotFile = getSnapshotFile();
+      final File deltaFile = getDeltaFile();
+      submit(() -> discard(snapshotFile, deltaFile));
+    }
+  }
+
+  @Override
+  public Command getRestoreCommand() {
+    return null;
+  }
+
+  /**
+   * Called by the {@link BasicLogger} with every Command it logs, or executes as an undo
+   *
+   * @param c The Command
+   */
+  public void logged(Command c) {
+    if (!running || c == null) {
+      return;
+    }
+
+    dirty = true;
+    if (generation == null) {
+      return;
+    }
+
+    // Encode the Command here, since the pieces it refers to may change as soon as the event dispatch thread moves on
+    final String s;
+    try {
+      s = GameModule.getGameModule().encode(c);
+    }
+    catch (RuntimeException e) {
+      // A delta missing a Command would not recover the game; stop appending until the next snapshot
+      log.warn("Failed to encode command for autosave", e); //NON-NLS
+      submit(this::closeDelta);
+      return;
+    }
+
+    if (s != null) {
+      submit(() -> appendDelta(s));
+    }
+  }
+
+  /**
+   * Capture the state of the game, if it has changed since the last snapshot, and hand it to the writer
+   */
+  public void snapshot() {
+    if (!running || interval == 0 || !dirty) {
+      return;
+    }
+
+    final GameState gs = GameModule.getGameModule().getGameState();
+    if (!gs.isGameStarted()) {
+      return;
+    }
+
+    // The restore Command holds the state of each piece as it is now, so only encoding it is left to the writer
+    final Command restore = gs.getRestoreCommand();
+    if (restore == null) {
+      return;
+    }
+
+    final SaveMetaData metaData = makeMetaData();
+    final String gen = UUID.randomUUID().toString();
+    final File snapshotFile = getSnapshotFile();
+    final File deltaFile = getDeltaFile();
+    generation = gen;
+    dirty = false;
+    submit(() -> writeSnapshot(restore, metaData, gen, snapshotFile, deltaFile));
+  }
+
+  /**
+   * @return metadata for a snapshot, made without prompting for comments as {@link GameState#saveGameRefresh} does
+   */
+  private static SaveMetaData makeMetaData() {
+    final Prefs prefs = GameModule.getGameModule().getPrefs();
+    final Object oldPrompt = prefs.getValue(SaveMetaData.PROMPT_LOG_COMMENT);
+    prefs.setValue(SaveMetaData.PROMPT_LOG_COMMENT, false);
+    try {
+      return new SaveMetaData();
+    }
+    finally {
+      prefs.setValue(SaveMetaData.PROMPT_LOG_COMMENT, oldPrompt);
+    }
+  }
+
+  private static File getAutosaveDir() {
+    return new File(Info.getConfDir(), AUTOSAVE_DIR);
+  }
+
+  private static String getBaseName() {
+    return GameModule.getGameModule().getGameName().replaceAll("[^A-Za-z0-9._-]", "_"); //NON-NLS
+  }
+
+  public File getSnapshotFile() {
+    return new File(getAutosaveDir(), getBaseName() + "." + PID + "-" + START + SNAPSHOT_EXTENSION);
+  }
+
+  /**
+   * @return the start time of a process in milliseconds since the epoch, if the platform can tell
+   */
+  private static Optional<Long> startTime(ProcessHandle p) {
+    return p.info().startInstant().map(Instant::toEpochMilli);
+  }
+
+  /**
+   * @return true if the process which started at the given time with the given id is still running
+   */
+  private static boolean isRunning(long pid, long start) {
+    if (pid == PID) {
+      return start == START;
+    }
+    return ProcessHandle.of(pid)
+      .filter(ProcessHandle::isAlive)
+      // If the platform cannot tell when the process started, assume it is the one which wrote the snapshot
+      .map(p -> startTime(p).map(t -> t == start).orElse(true))
+      .orElse(false);
+  }
+
+  public File getDeltaFile() {
+    return getDeltaFile(getSnapshotFile());
+  }
+
+  private static File getDeltaFile(File snapshotFile) {
+    final String name = snapshotFile.getName();
+    return new File(snapshotFile.getParentFile(), name.substring(0, name.length() - SNAPSHOT_EXTENSION.length()) + DELTA_EXTENSION);
+  }
+
+  /**
+   * Hand work to the writer, unless VASSAL is exiting and it has stopped
+   */
+  private void submit(Runnable task) {
+    try {
+      writer.execute(task);
+    }
+    catch (RejectedExecutionException e) {
+      log.debug("Autosave stopped", e); //NON-NLS
+    }
+  }
+
+  private void finishWriting() {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+        log.warn("Autosave did not finish before exit"); //NON-NLS
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeSnapshot(Command restore, SaveMetaData metaData, String gen, File snapshotFile, File deltaFile) {
+    closeDelta();
+
+    final File tmp = new File(snapshotFile.getPath() + ".tmp"); //NON-NLS
+    try {
+      Files.createDirectories(snapshotFile.getParentFile().toPath());
+
+      try (ZipWriter zw = new ZipWriter(tmp)) {
+        GameState.encodeSave(restore, zw);
+        metaData.save(zw);
+        zw.write(gen.getBytes(StandardCharsets.UTF_8), GENERATION_ZIP_ENTRY);
+      }
+
+      try {
+        Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      delta = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(deltaFile.toPath())));
+      delta.writeUTF(gen);
+      delta.flush();
+    }
+    catch (IOException e) {
+      log.warn("Failed to autosave game", e); //NON-NLS
+      closeDelta();
+    }
+  }
+
+  private void appendDelta(String s) {
+    if (delta == null) {
+      return;
+    }
+
+    try {
+      writeRecord(delta, s);
+      delta.flush();
+    }
+    catch (IOException e) {
+      log.warn("Failed to autosave command", e); //NON-NLS
+      closeDelta();
+    }
+  }
+
+  private void closeDelta() {
+    if (delta != null) {
+      try {
+        delta.close();
+      }
+      catch (IOException e) {
+        log.warn("Failed to close autosave", e); //NON-NLS
+      }
+      delta = null;
+    }
+  }
+
+  private void discard(File snapshotFile, File deltaFile) {
+    closeDelta();
+    try {
+      Files.deleteIfExists(snapshotFile.toPath());
+      Files.deleteIfExists(deltaFile.toPath());
+    }
+    catch (IOException e) {
+      log.warn("Failed to delete autosave", e); //NON-NLS
+    }
+  }
+
+  /**
+   * If a game played with this module was not closed before VASSAL stopped, offer to recover it from its autosave
+   *
+   * @return true if a game was recovered
+   */
+  public boolean offerRecovery() {
+    final File snapshotFile = findOrphan(getAutosaveDir(), getBaseName(), AutoSaver::isRunning);
+    if (snapshotFile == null) {
+      return false;
+    }
+    final File deltaFile = getDeltaFile(snapshotFile);
+
+    final GameModule g = GameModule.getGameModule();
+    final String when = DateFormat.getDateTimeInstance().format(new Date(snapshotFile.lastModified()));
+    if (JOptionPane.showConfirmDialog(
+        g.getPlayerWindow(),
+        Resources.getString("AutoSaver.recover", when), //$NON-NLS-1$
+        Resources.getString("AutoSaver.recover_title"), //$NON-NLS-1$
+        JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+      submit(() -> discard(snapshotFile, deltaFile));
+      return false;
+    }
+
+    final List<String> commands;
+    try {
+      commands = readDelta(deltaFile, readGeneration(snapshotFile));
+    }
+    catch (IOException e) {
+      ReadErrorDialog.error(e, snapshotFile);
+      return false;
+    }
+
+    // Load the snapshot as any saved game is loaded, in the foreground so that the delta follows it
+    final GameState gs = g.getGameState();
+    if (!gs.loadGame(snapshotFile, false, true) || !gs.isGameStarted()) {
+      return false;
+    }
+
+    Command c = new NullCommand();
+    for (final String s : commands) {
+      c = c.append(g.decode(s));
+    }
+    c.execute();
+
+    // Saving asks for a file, rather than writing over the autosave
+    g.setGameFileMode(GameModule.GameFileMode.NEW_GAME);
+    g.warn(Resources.getString("AutoSaver.recovered", commands.size())); //$NON-NLS-1$
+
+    // This process autosaves the recovered game under its own name from now on
+    submit(() -> discard(snapshotFile, deltaFile));
+    return true;
+  }
+
+  /**
+   * Find the most recent snapshot left by a process which is no longer running
+   *
+   * @param dir      Autosave directory
+   * @param baseName Name of the module's autosaves, before the process id and start time
+   * @param running  Tells whether the process with an id and start time is running, so its snapshot is still
+   *                 being written
+   * @return the snapshot, or null if there is none
+   */
+  static File findOrphan(File dir, String baseName, BiPredicate<Long, Long> running) {
+    final File[] files = dir.listFiles();
+    if (files == null) {
+      return null;
+    }
+
+    final Pattern pattern = Pattern.compile(Pattern.quote(baseName) + "\\.(\\d+)-(\\d+)" + Pattern.quote(SNAPSHOT_EXTENSION)); //NON-NLS
+    File orphan = null;
+    for (final File f : files) {
+      final Matcher m = pattern.matcher(f.getName());
+      if (!m.matches() || !f.isFile()) {
+        continue;
+      }
+
+      final long pid;
+      final long start;
+      try {
+        pid = Long.parseLong(m.group(1));
+        start = Long.parseLong(m.group(2));
+      }
+      catch (NumberFormatException e) {
+        continue;
+      }
+
+      if (!running.test(pid, start) && (orphan == null || f.lastModified() > orphan.lastModified())) {
+        orphan = f;
+      }
+    }
+    return orphan;
+  }
+
+  /**
+   * @param snapshotFile A snapshot
+   * @return the generation of the snapshot, or null if it has none
+   * @throws IOException if the snapshot cannot be read
+   */
+  static String readGeneration(File snapshotFile) throws IOException {
+    try (ZipFile zip = new ZipFile(snapshotFile)) {
+      final ZipEntry entry = zip.getEntry(GENERATION_ZIP_ENTRY);
+      if (entry == null) {
+        return null;
+      }
+      try (InputStream in = zip.getInputStream(entry)) {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  /**
+   * Append one encoded Command to a delta file
+   *
+   * @param out Delta file
+   * @param s   Encoded Command
+   * @throws IOException if writing fails
+   */
+  static void writeRecord(DataOutputStream out, String s) throws IOException {
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read the encoded Commands in a delta file. A record cut short, as the last one may be if VASSAL stopped while
+   * it was being written, ends the file.
+   *
+   * @param deltaFile  Delta file
+   * @param generation The generation of the snapshot the delta file must continue
+   * @return the encoded Commands, or none if the file does not exist or continues a different snapshot
+   * @throws IOException if the file cannot be read
+   */
+  static List<String> readDelta(File deltaFile, String generation) throws IOException {
+    final List<String> commands = new ArrayList<>();
+    if (generation == null || !deltaFile.isFile()) {
+      return commands;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(deltaFile.toPath())))) {
+      if (!generation.equals(in.readUTF())) {
+        return commands;
+      }
+
+      while (true) {
+        final int length = in.readInt();
+        if (length < 0) {
+          break;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        commands.add(new String(bytes, StandardCharsets.UTF_8));
+      }
+    }
+    catch (EOFException e) {
+      // The end of the file, or of what was written of it
+    }
+
+    return commands;
+  }
+}
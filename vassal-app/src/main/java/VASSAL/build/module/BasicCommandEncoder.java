@@ -393,6 +393,12 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
     }
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    // The empty prefix stands for the empty command, decoded as a NullCommand
+    return new String[] { "", ADD, REMOVE, CHANGE, MOVE, PlayAudioClipCommand.COMMAND_PREFIX };
+  }
+
   /**
    * Safely wraps a string-which-might-be-null
    * @param s String value, or null
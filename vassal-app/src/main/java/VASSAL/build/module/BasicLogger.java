@@ -27,18 +27,23 @@ import VASSAL.build.module.metadata.SaveMetaData;
 import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
 import VASSAL.command.Logger;
+import VASSAL.command.NullCommand;
+import VASSAL.command.PieceSnapshot;
+import VASSAL.command.PieceSnapshotHistory;
+import VASSAL.command.RestorePieces;
 import VASSAL.configure.BooleanConfigurer;
 import VASSAL.configure.IconConfigurer;
+import VASSAL.configure.IntConfigurer;
 import VASSAL.configure.NamedHotKeyConfigurer;
 import VASSAL.i18n.Resources;
 import VASSAL.launch.ModuleManagerUpdateHelper;
 import VASSAL.tools.KeyStrokeListener;
 import VASSAL.tools.NamedKeyStroke;
 import VASSAL.tools.NamedKeyStrokeListener;
+import VASSAL.tools.SequenceEncoder;
 import VASSAL.tools.WriteErrorDialog;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.filechooser.LogFileFilter;
-import VASSAL.tools.io.ObfuscatingOutputStream;
 import VASSAL.tools.io.ZipWriter;
 import VASSAL.tools.menu.MenuManager;
 import VASSAL.tools.swing.Dialogs;
@@ -54,12 +59,9 @@ import javax.swing.JOptionPane;
 import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -70,6 +72,8 @@ import java.util.List;
  * <br>(3) Steps through VLOG files ("step forward") button
  * <br>(4) Executes the "UNDO" action when user clicks that Undo button
  * <br>(5) Provides configurers to {@link GlobalOptions} for the Undo and Step Forward buttons
+ * <br>(6) Optionally keeps a {@link PieceSnapshotHistory}, so that Undo restores the pieces a move touched in one
+ * Command instead of executing the inverse of every Command in the move
  * <br><br>
  * For the errorLog file see {@link org.slf4j.Logger}, e.g.:
  * <br>org.slf4j.Logger log = LoggerFactory.getLogger(Console.class);
@@ -82,10 +86,12 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
   public static final String END = "end_log";  //$NON-NLS-1$
   public static final String LOG = "LOG\t";  //$NON-NLS-1$
   public static final String UNDO = "UNDO\t";  //$NON-NLS-1$
+  public static final String RESTORE = "RESTORE\t";  //$NON-NLS-1$
   public static final String PROMPT_NEW_LOG = "PromptNewLog";  //$NON-NLS-1$
   public static final String PROMPT_NEW_LOG_START = "PromptNewLogAtStart"; //$NON-NLS-1$
   public static final String PROMPT_NEW_LOG_END = "PromptNewLogEnd"; //$NON-NLS-1$
   public static final String PROMPT_LOG_COMMENT = "promptLogComment";  //$NON-NLS-1$
+  public static final String SNAPSHOT_UNDO_STEPS = "snapshotUndoSteps";  //$NON-NLS-1$
   protected static final String STEP_ICON = "/images/StepForward16.gif";  //$NON-NLS-1$
   protected static final String UNDO_ICON = "/images/Undo16.gif";  //$NON-NLS-1$
   protected List<Command> logInput;
@@ -106,6 +112,12 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
 
   private boolean undoInProgress = false;
 
+  protected final PieceSnapshotHistory snapshots = new PieceSnapshotHistory(
+    100,
+    () -> GameModule.getGameModule().getGameState().getAllPieces(),
+    id -> GameModule.getGameModule().getGameState().getPieceForId(id)
+  );
+
   public BasicLogger() {
     super();
     stepAction.setEnabled(false);
@@ -242,6 +254,21 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
 
     final BooleanConfigurer logOptionComment = new BooleanConfigurer(PROMPT_LOG_COMMENT, Resources.getString("BasicLogger.enable_comments"), Boolean.TRUE);  //$NON-NLS-1$
     mod.getPrefs().addOption(Resources.getString("Prefs.general_tab"), logOptionComment); //$NON-NLS-1$
+
+    final IntConfigurer snapshotStepsConfig = new IntConfigurer(SNAPSHOT_UNDO_STEPS, Resources.getString("BasicLogger.snapshot_undo_steps"), 100);  //$NON-NLS-1$
+    snapshotStepsConfig.addPropertyChangeListener(evt -> snapshots.setCapacity(snapshotStepsConfig.getIntValue(100)));
+    mod.getPrefs().addOption(Resources.getString("Prefs.general_tab"), snapshotStepsConfig); //$NON-NLS-1$
+    snapshots.setCapacity(snapshotStepsConfig.getIntValue(100));
+  }
+
+  /**
+   * Snapshot undo is a module setting rather than a preference, as every player must be able to read the
+   * {@link RestorePieces} it sends
+   *
+   * @return true if the module undoes moves by restoring snapshots of the pieces they touched
+   */
+  public boolean isSnapshotUndo() {
+    return GlobalOptions.getInstance() != null && GlobalOptions.getInstance().isSnapshotUndo();
   }
 
   @Override
@@ -279,6 +306,7 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
       nextUndo = -1;
       dontUndoPast = 0;
       beginningState = null; // Will create one when we actually start a log
+      snapshots.stop(); // Not every piece need have been set up yet, so start with the first move
     }
     else {
       // When ending/closing a game
@@ -300,6 +328,7 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
 
       logInput.clear();
       beginningState = null;
+      snapshots.stop();
       undoAction.setEnabled(false);
       endLogAction.setEnabled(false);
       stepAction.setEnabled(false);
@@ -441,13 +470,8 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
         log.append(new LogCommand(c, logInput, stepAction));
       }
 
-// FIXME: Extremely inefficient! Make encode write to an OutputStream
-      final String logString = GameModule.getGameModule().encode(log);
-
       try (ZipWriter zw = new ZipWriter(outputFile)) {
-        try (OutputStream out = new ObfuscatingOutputStream(new BufferedOutputStream(zw.write(GameState.SAVEFILE_ZIP_ENTRY)))) {
-          out.write(logString.getBytes(StandardCharsets.UTF_8));
-        }
+        GameState.encodeSave(log, zw);
         metadata.save(zw);
       }
 
@@ -522,6 +546,7 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     final GameModule gm = GameModule.getGameModule();
 
     logOutput.clear();
+    snapshots.clearSteps();
     beginningState = gm.getGameState().getRestoreCommand();
     if (beginningState == null) {
       return;
@@ -551,33 +576,59 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
    * This handles the UNDO button, executing the actual "Undo".
    */
   protected void undo() {
+    undo(1);
+  }
+
+  /**
+   * Undo several moves at once, in a single Command. With snapshot undo on, if every move is still in the
+   * {@link PieceSnapshotHistory}, the Command just restores the pieces the moves touched, so costs no more than
+   * undoing one of them.
+   *
+   * @param count Number of moves to undo
+   */
+  public void undo(int count) {
     if (nextUndo < dontUndoPast) {
       return; //BR// Throw away extra keys-held-down when nothing left to do
     }
 
-    final Command lastOutput = logOutput.get(nextUndo);
-    final Command lastInput = (nextInput > logInput.size() || nextInput < 1) ?
-      null : logInput.get(nextInput - 1);
-    if (lastInput == lastOutput) {
-      while (nextInput-- > dontUndoPast) {
-        stepAction.setEnabled(true);
-        if (logInput.get(nextInput).getUndoCommand() != null) {
+    final List<Integer> undone = new ArrayList<>();
+    while (undone.size() < count && nextUndo >= dontUndoPast) {
+      final Command lastOutput = logOutput.get(nextUndo);
+      final Command lastInput = (nextInput > logInput.size() || nextInput < 1) ?
+        null : logInput.get(nextInput - 1);
+      if (lastInput == lastOutput) {
+        while (nextInput-- > dontUndoPast) {
+          stepAction.setEnabled(true);
+          if (logInput.get(nextInput).getUndoCommand() != null) {
+            break;
+          }
+        }
+      }
+
+      undone.add(nextUndo);
+      while (nextUndo-- > dontUndoPast) {
+        if (logOutput.get(nextUndo).getUndoCommand() != null) {
           break;
         }
       }
     }
 
-    while (nextUndo-- > dontUndoPast) {
-      if (logOutput.get(nextUndo).getUndoCommand() != null) {
-        break;
+    undoAction.setEnabled(nextUndo >= dontUndoPast);
+
+    Command inverse = snapshots.getUndoCommand(undone);
+    if (inverse == null) {
+      inverse = new NullCommand();
+      for (final int i : undone) {
+        inverse = inverse.append(logOutput.get(i).getUndoCommand());
       }
     }
 
-    undoAction.setEnabled(nextUndo >= dontUndoPast);
-    final Command undo = new UndoCommand(true).append(lastOutput.getUndoCommand()).append(new UndoCommand(false));
+    final Command undo = new UndoCommand(true).append(inverse).append(new UndoCommand(false));
     undo.execute();
+    snapshots.record(-1, undo);
     GameModule.getGameModule().getServer().sendToOthers(undo);
     logOutput.add(undo);
+    autoSave(undo);
     GameModule.getGameModule().refreshVisibleMaps();
   }
 
@@ -601,9 +652,29 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
         nextUndo = logOutput.size() - 1;
       }
     }
+
+    autoSave(c);
+
+    if (!isSnapshotUndo()) {
+      snapshots.stop();
+    }
+    else if (snapshots.isStarted()) {
+      snapshots.record(c != null && c.isLoggable() ? logOutput.size() - 1 : -1, c);
+    }
+    else if (GameModule.getGameModule().getGameState().isGameStarted()) {
+      // Every piece has been set up by the first move, which can only be undone the old way
+      snapshots.start();
+    }
     undoAction.setEnabled(nextUndo >= dontUndoPast);
   }
 
+  private void autoSave(Command c) {
+    final AutoSaver autoSaver = GameModule.getGameModule().getAutoSaver();
+    if (autoSaver != null) {
+      autoSaver.logged(c);
+    }
+  }
+
   /**
    * @return true if there are Input Steps yet to be replayed
    */
@@ -623,6 +694,13 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     else if (c instanceof UndoCommand) {
       return UNDO + ((UndoCommand) c).isInProgress();
     }
+    else if (c instanceof RestorePieces) {
+      final SequenceEncoder se = new SequenceEncoder('\t');
+      for (final PieceSnapshot s : ((RestorePieces) c).getSnapshots()) {
+        se.append(s.getId()).append(s.isPresent()).append(s.getType()).append(s.getState()).append(s.getParentId());
+      }
+      return RESTORE + (se.getValue() == null ? "" : se.getValue());
+    }
 
     return null;
   }
@@ -641,10 +719,32 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
       final String inProgress = command.substring(UNDO.length());
       return new UndoCommand("true".equals(inProgress));
     }
+    else if (command.startsWith(RESTORE)) {
+      final List<PieceSnapshot> restored = new ArrayList<>();
+      final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(command.substring(RESTORE.length()), '\t');
+      while (st.hasMoreTokens()) {
+        final String id = st.nextToken();
+        final boolean present = st.nextBoolean(false);
+        final String type = st.nextToken("");
+        final String state = st.nextToken("");
+        final String parentId = st.nextToken("");
+        if (!id.isEmpty()) {
+          restored.add(present ?
+            new PieceSnapshot(id, type.isEmpty() ? null : type, state, parentId.isEmpty() ? null : parentId) :
+            PieceSnapshot.absent(id));
+        }
+      }
+      return new RestorePieces(restored);
+    }
 
     return null;
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { LOG, UNDO, RESTORE };
+  }
+
   protected Action undoAction = new UndoAction();
 
   protected Action endLogAction = new AbstractAction(Resources.getString("BasicLogger.end_logfile")) {  //$NON-NLS-1$
@@ -691,6 +691,11 @@ public class Chatter extends JPanel implements CommandEncoder, Buildable, DropTa
     return new DisplayText(this, s.substring(DisplayText.PREFIX.length()));
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { DisplayText.PREFIX };
+  }
+
   @Override
   public String encode(Command c) {
     if (!(c instanceof DisplayText)) {
@@ -20,6 +20,7 @@ package VASSAL.build.module;
 import VASSAL.Info;
 import VASSAL.build.GameModule;
 import VASSAL.build.module.properties.MutableProperty;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.Logger;
 import VASSAL.counters.Attachment;
 import VASSAL.counters.BasicPiece;
@@ -27,6 +28,8 @@ import VASSAL.counters.Decorator;
 import VASSAL.counters.GamePiece;
 import VASSAL.counters.KeyBuffer;
 import VASSAL.tools.BugUtils;
+import VASSAL.tools.imageop.AbstractOpImpl;
+import VASSAL.tools.opcache.OpCache;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.LoggerFactory;
@@ -377,6 +380,81 @@ public class Console {
   }
 
 
+  private boolean doCache() {
+    final String option = nextString("");
+
+    if (matches("?", option) || matches("help", option)) { //NON-NLS
+      show("Usage:"); //NON-NLS
+      show("  /cache       - Show image cache size and hit/miss/eviction counts"); //NON-NLS
+      show("  /cache clear - Empty the image cache"); //NON-NLS
+    }
+    else if (matches("clear", option)) { //NON-NLS
+      AbstractOpImpl.clearCache();
+      show("Cleared image cache"); //NON-NLS
+    }
+    else if ("".equals(option)) {
+      final OpCache cache = AbstractOpImpl.getCache();
+      show("Image cache: " + (cache.getRetainedBytes() >> 20) + " MB of " + (cache.getMaxBytes() >> 20) + " MB"); //NON-NLS
+      cache.getStats().forEach((op, s) -> show("  " + op + ": " + s)); //NON-NLS
+    }
+    else {
+      show("Unknown command."); //NON-NLS
+      show("Use '/cache help' for usage info."); //NON-NLS
+    }
+
+    return true;
+  }
+
+  private boolean doDecoders() {
+    final String option = nextString("");
+
+    if (matches("?", option) || matches("help", option)) { //NON-NLS
+      show("Usage:"); //NON-NLS
+      show("  /decoders       - Show time spent decoding commands, by command encoder"); //NON-NLS
+      show("  /decoders reset - Reset the decoding times"); //NON-NLS
+    }
+    else if (matches("reset", option)) { //NON-NLS
+      GameModule.getGameModule().getCommandDecoderTable().resetStats();
+      show("Reset decoding times"); //NON-NLS
+    }
+    else if ("".equals(option)) {
+      show("Command decoding:"); //NON-NLS
+      GameModule.getGameModule().getCommandDecoderTable().getStats().forEach((ce, s) -> show("  " + ce + ": " + s)); //NON-NLS
+    }
+    else {
+      show("Unknown command."); //NON-NLS
+      show("Use '/decoders help' for usage info."); //NON-NLS
+    }
+
+    return true;
+  }
+
+  private boolean doCalculated() {
+    final String option = nextString("");
+
+    if (matches("?", option) || matches("help", option)) { //NON-NLS
+      show("Usage:"); //NON-NLS
+      show("  /calculated       - Show how often Calculated Property values were reused"); //NON-NLS
+      show("  /calculated reset - Reset the counts"); //NON-NLS
+    }
+    else if (matches("reset", option)) { //NON-NLS
+      PropertyDependencies.resetStatistics();
+      show("Reset Calculated Property counts"); //NON-NLS
+    }
+    else if ("".equals(option)) {
+      final long hits = PropertyDependencies.getHits();
+      final long misses = PropertyDependencies.getMisses();
+      show("Calculated Properties: " + (PropertyDependencies.isEnabled() ? "" : "(reuse disabled) ") + hits + " reused, " + misses + " evaluated" + //NON-NLS
+        (hits + misses > 0 ? " (" + (100 * hits / (hits + misses)) + "% reused)" : "")); //NON-NLS
+    }
+    else {
+      show("Unknown command."); //NON-NLS
+      show("Use '/calculated help' for usage info."); //NON-NLS
+    }
+
+    return true;
+  }
+
   private boolean doHelp() {
     final String topic = nextString("");
 
@@ -386,6 +464,9 @@ public class Console {
       show("  /help        - shows list of commands"); //NON-NLS
       show("  /property    - commands for reading/writing global properties"); //NON-NLS
       show("  /attachments - commands to display current attachments");
+      show("  /cache       - show image cache statistics"); //NON-NLS
+      show("  /decoders    - show command decoding statistics"); //NON-NLS
+      show("  /calculated  - show Calculated Property reuse statistics"); //NON-NLS
     }
     else {
       tok = Pattern.compile(" +").splitAsStream("help").iterator(); //NON-NLS // Fake up a help subcommand
@@ -398,6 +479,15 @@ public class Console {
       else if (matches("attachments", topic)) {
         return doAttachments();
       }
+      else if (matches("cache", topic)) { //NON-NLS
+        return doCache();
+      }
+      else if (matches("decoders", topic)) { //NON-NLS
+        return doDecoders();
+      }
+      else if (matches("calculated", topic)) { //NON-NLS
+        return doCalculated();
+      }
 
       show("Unknown help topic"); //NON-NLS
     }
@@ -470,6 +560,18 @@ public class Console {
       return doErrorLog();
     }
 
+    if (matches("cache", command)) { //NON-NLS
+      return doCache();
+    }
+
+    if (matches("decoders", command)) { //NON-NLS
+      return doDecoders();
+    }
+
+    if (matches("calculated", command)) { //NON-NLS
+      return doCalculated();
+    }
+
     // If this has EVER been a multiplayer game (has ever been connected to Server, or has ever had two player slots filled simultaneously), then
     // it will not accept console commands.
     final Logger log = GameModule.getGameModule().getLogger();
@@ -73,6 +73,11 @@ public class EventLog extends AbstractBuildable
     return new StoreEvents(this, s.substring(EVENT_LIST.length()));
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { EVENT_LIST };
+  }
+
   @Override
   public String encode(Command c) {
     if (!(c instanceof StoreEvents)) {
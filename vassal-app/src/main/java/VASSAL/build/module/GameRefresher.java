@@ -714,6 +714,7 @@ public final class GameRefresher implements CommandEncoder, GameComponent {
             // Apply the new attachment contents
             final ChangeTracker ct = new ChangeTracker(attachment);
             attachment.setContents(newContents);
+            Decorator.pieceChanged(attachment);
             command = command.append(ct.getChangeCommand());
           }
         }
@@ -54,8 +54,11 @@ import VASSAL.tools.io.ZipArchive;
 import VASSAL.tools.io.ZipWriter;
 import VASSAL.tools.menu.MenuManager;
 import VASSAL.tools.swing.Dialogs;
+import VASSAL.tools.swing.ProgressDialog;
 import VASSAL.tools.version.VersionUtils;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +69,7 @@ import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import java.awt.Cursor;
+import java.awt.Dialog;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
@@ -75,16 +79,25 @@ import java.awt.dnd.InvalidDnDOperationException;
 import java.awt.event.ActionEvent;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -96,6 +109,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -114,11 +129,14 @@ public class GameState implements CommandEncoder {
   private static final org.slf4j.Logger log =
     LoggerFactory.getLogger(GameState.class);
 
+  /** Saves at least this many bytes long show a progress dialog while loading in the background */
+  public static final long LOAD_PROGRESS_THRESHOLD = 1024 * 1024;
+
   protected Map<String, GamePiece> pieces = new HashMap<>();
   protected List<GameComponent> gameComponents = new ArrayList<>();
   protected List<GameSetupStep> setupSteps = new ArrayList<>();
   protected Action loadGame, loadGameOld, saveGame, saveGameAs, newGame, closeGame, loadContinuation, loadAndFastForward, loadAndAppend;
-  protected String lastSave;
+  protected String lastSave; // Digest of the encoded game as it was last saved, see encodeSave()
   protected File lastSaveFile = null;
   protected DirectoryConfigurer savedGameDirectoryPreference;
   protected DirectoryConfigurer editorImageDirectoryPreference;
@@ -313,7 +331,7 @@ public class GameState implements CommandEncoder {
    * @return true if the game state is different from when it was last saved
    */
   public boolean isModified() {
-    final String s = saveString();
+    final String s = saveDigest();
     return s != null && !s.equals(lastSave);
   }
 
@@ -567,7 +585,7 @@ public class GameState implements CommandEncoder {
     }
 
     gameStarted |= this.gameStarting;
-    lastSave = gameStarting ? saveString() : null;
+    lastSave = gameStarting ? saveDigest() : null;
     lastSaveFile = null;
 
     if (gameStarted) {
@@ -1030,6 +1048,87 @@ public class GameState implements CommandEncoder {
     return GameModule.getGameModule().encode(getRestoreCommand());
   }
 
+  /**
+   * @return a digest of the current encoded game state, as would be returned by {@link #encodeSave}, or null if
+   * the game cannot currently be saved. Used to tell whether the game has changed since it was last saved without
+   * having to keep a copy of the whole save.
+   */
+  protected String saveDigest() {
+    final Command restore = getRestoreCommand();
+    if (restore == null) {
+      return null;
+    }
+
+    try {
+      return encodeSave(restore, OutputStream.nullOutputStream(), isWriteCommandEnvelope());
+    }
+    catch (IOException e) {
+      // Can't happen, the null stream does not throw
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Encodes a Command and writes it to a stream as UTF-8. The Command is encoded as it is written, so the encoding
+   * of the whole game is never held in memory at once. The stream is closed afterwards.
+   * @param c Command to encode, usually the restore command for the whole game or a log
+   * @param out Stream to write the encoded Command to
+   * @return a hex digest of the encoded Command
+   * @throws IOException if writing fails
+   */
+  public static String encodeSave(Command c, OutputStream out) throws IOException {
+    return encodeSave(c, out, false);
+  }
+
+  /**
+   * Encodes a Command as {@link #encodeSave(Command, OutputStream)} does, either in the format every version of
+   * VASSAL reads or in a {@link VASSAL.command.CommandEnvelope}.
+   * @param c Command to encode
+   * @param out Stream to write the encoded Command to
+   * @param envelope true to write a CommandEnvelope, which must then be stored where readers expect one
+   * @return a hex digest of the encoded Command
+   * @throws IOException if writing fails
+   * @since 3.8.0
+   */
+  public static String encodeSave(Command c, OutputStream out, boolean envelope) throws IOException {
+    final MessageDigest md = DigestUtils.getSha1Digest();
+    try (Writer w = new BufferedWriter(new OutputStreamWriter(new DigestOutputStream(out, md), StandardCharsets.UTF_8))) {
+      if (envelope) {
+        GameModule.getGameModule().encodeEnvelope(c, w);
+      }
+      else {
+        GameModule.getGameModule().encode(c, w);
+      }
+    }
+    return Hex.encodeHexString(md.digest());
+  }
+
+  /**
+   * Encodes a saved game or logfile into a new zip file, obfuscated, in the format the module has chosen and under
+   * the entry which tells readers what that format is.
+   * @param c Command to encode
+   * @param zw Zip file to write to
+   * @return a hex digest of the encoded Command
+   * @throws IOException if writing fails
+   * @since 3.8.0
+   */
+  public static String encodeSave(Command c, ZipWriter zw) throws IOException {
+    final boolean envelope = isWriteCommandEnvelope();
+    return encodeSave(c, new ObfuscatingOutputStream(new BufferedOutputStream(zw.write(getSaveFileZipEntry(envelope)))), envelope);
+  }
+
+  /**
+   * @return true if the module writes saves and logs in a {@link VASSAL.command.CommandEnvelope}
+   */
+  private static boolean isWriteCommandEnvelope() {
+    final GlobalOptions options = GlobalOptions.getInstance();
+    return options != null && options.isWriteCommandEnvelope();
+  }
+
+  private static String getSaveFileZipEntry(boolean envelope) {
+    return envelope ? SAVEFILE_ENVELOPE_ZIP_ENTRY : SAVEFILE_ZIP_ENTRY;
+  }
+
   protected boolean checkForOldSaveFile(File f) {
     if (f.exists()) {
       // warn user if overwriting a save from an old version
@@ -1118,7 +1217,7 @@ public class GameState implements CommandEncoder {
       lastSave = null;
     }
     else {
-      lastSave = saveString();
+      lastSave = saveDigest();
     }
   }
 
@@ -1272,6 +1371,16 @@ public class GameState implements CommandEncoder {
 
   public static final String SAVEFILE_ZIP_ENTRY = "savedGame";  //$NON-NLS-1$
 
+  /**
+   * The zip entry holding a saved game or logfile written in a {@link VASSAL.command.CommandEnvelope}, by a module
+   * which has opted in to {@link GlobalOptions#isWriteCommandEnvelope}, instead of {@link #SAVEFILE_ZIP_ENTRY}.
+   * An envelope cannot be told from the old format by its contents, so the name of the entry is what tells readers
+   * which one they have. Versions of VASSAL before 3.8.0 do not look for it, and so report that the file is not a
+   * saved game instead of misreading it.
+   * @since 3.8.0
+   */
+  public static final String SAVEFILE_ENVELOPE_ZIP_ENTRY = "savedGameEnvelope";  //$NON-NLS-1$
+
   /**
    * @return a {@link Command} that, when executed, will restore the
    * game to its current state -- this command can then be written to
@@ -1334,13 +1443,16 @@ public class GameState implements CommandEncoder {
     return null;
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { BEGIN_SAVE, END_SAVE };
+  }
+
   public static final String BEGIN_SAVE = "begin_save";  //$NON-NLS-1$
   public static final String END_SAVE = "end_save";  //$NON-NLS-1$
 
   public void saveGameRefresh(ZipArchive archive) throws IOException {
     final SaveMetaData metaData;
-    // FIXME: It is extremely inefficient to produce the save string. It would
-    // be faster to write directly to the output stream instead.
 
     // store the prompt pref
     final GameModule mod = GameModule.getGameModule();
@@ -1351,11 +1463,14 @@ public class GameState implements CommandEncoder {
     myPrefs.setValue(SaveMetaData.PROMPT_LOG_COMMENT, false);
     metaData = new SaveMetaData(); // this also potentially prompts for save file comments, so do *before* possibly long save file write
 
-    final String save = saveString();
-    try (OutputStream zout = archive.getOutputStream(SAVEFILE_ZIP_ENTRY);
+    final Command restore = getRestoreCommand();
+    final boolean envelope = isWriteCommandEnvelope();
+    // Drop the save in the other format, if any, so that only the one written here is read back
+    archive.remove(getSaveFileZipEntry(!envelope));
+    try (OutputStream zout = archive.getOutputStream(getSaveFileZipEntry(envelope));
          BufferedOutputStream bout = new BufferedOutputStream(zout);
          OutputStream out = new ObfuscatingOutputStream(bout)) {
-      out.write(save.getBytes(StandardCharsets.UTF_8));
+      encodeSave(restore, out, envelope);
     }
     archive.close();
 
@@ -1367,21 +1482,19 @@ public class GameState implements CommandEncoder {
   public void saveGame(File f) throws IOException {
     final SaveMetaData metaData;
     GameModule.getGameModule().warn(Resources.getString("GameState.saving_game") + ": " + f.getName());  //$NON-NLS-1$
-    // FIXME: It is extremely inefficient to produce the save string. It would
-    // be faster to write directly to the output stream instead.
     metaData = new SaveMetaData(); // this also potentially prompts for save file comments, so do *before* possibly long save file write
 
-    final String save = saveString();
+    final Command restore = getRestoreCommand();
 
     // Can be null if we get in here during odd asynchronous crud (save game is disabled, so getRestoreCommand will return null)
-    if (save == null) {
+    if (restore == null) {
       GameModule.getGameModule().warn("~" + Resources.getString("GameState.save_disabled"));
+      return;
     }
 
+    final String save;
     try (ZipWriter zw = new ZipWriter(f)) {
-      try (OutputStream out = new ObfuscatingOutputStream(new BufferedOutputStream(zw.write(SAVEFILE_ZIP_ENTRY)))) {
-        out.write(save.getBytes(StandardCharsets.UTF_8));
-      }
+      save = encodeSave(restore, zw);
       metaData.save(zw);
     }
 
@@ -1454,7 +1567,9 @@ public class GameState implements CommandEncoder {
     try {
       loadGameInBackground(
         f.getName(),
-        new BufferedInputStream(Files.newInputStream(f.toPath()))
+        new BufferedInputStream(Files.newInputStream(f.toPath())),
+        false,
+        f.length()
       );
     }
     catch (IOException e) {
@@ -1469,6 +1584,22 @@ public class GameState implements CommandEncoder {
   public void loadGameInBackground(final String shortName,
                                    final InputStream in,
                                    final boolean fromPredefinedSetup)  {
+    loadGameInBackground(shortName, in, fromPredefinedSetup, -1);
+  }
+
+  /**
+   * Load a saved game or log, reading and decoding it on a background thread and then executing it on the EDT.
+   *
+   * @param shortName Name of the save, for messages
+   * @param in Stream to read the save from; closed once read
+   * @param fromPredefinedSetup true if the save is a Predefined Setup
+   * @param length Length of the save in bytes, or -1 if not known. Saves larger than {@link #LOAD_PROGRESS_THRESHOLD}
+   *               show a progress dialog while they are read.
+   */
+  public void loadGameInBackground(final String shortName,
+                                   final InputStream in,
+                                   final boolean fromPredefinedSetup,
+                                   final long length)  {
     GameModule.getGameModule().warn(
       Resources.getString("GameState.loading", shortName));  //$NON-NLS-1$
 
@@ -1477,16 +1608,38 @@ public class GameState implements CommandEncoder {
 
     setLoadingInBackground(true);
 
-    new SwingWorker<Command, Void>() {
+    final ProgressDialog progressDialog;
+    if (length >= LOAD_PROGRESS_THRESHOLD) {
+      progressDialog = new ProgressDialog(
+        frame,
+        Resources.getString("GameState.loading_progress_title"),
+        Resources.getString("GameState.loading_progress", shortName),
+        false
+      );
+      // Don't block the EDT, which must remain free to execute the game once it has been read
+      progressDialog.setModalityType(Dialog.ModalityType.MODELESS);
+      progressDialog.setLocationRelativeTo(frame);
+    }
+    else {
+      progressDialog = null;
+    }
+
+    final SwingWorker<Command, Void> worker = new SwingWorker<>() {
       @Override
       public Command doInBackground() throws Exception {
         try (in) {
-          return decodeSavedGame(in);
+          return decodeSavedGame(in, progressDialog == null ? null :
+            read -> setProgress((int) Math.min(100, 100 * read / length)));
         }
       }
 
       @Override
       protected void done() {
+        if (progressDialog != null) {
+          progressDialog.setVisible(false);
+          progressDialog.dispose();
+        }
+
         try {
           Command loadCommand = null;
           String msg = null;
@@ -1554,7 +1707,18 @@ public class GameState implements CommandEncoder {
           setLoadingInBackground(false);
         }
       }
-    }.execute();
+    };
+
+    if (progressDialog != null) {
+      worker.addPropertyChangeListener(e -> {
+        if ("progress".equals(e.getPropertyName())) { //NON-NLS
+          progressDialog.setProgress((Integer) e.getNewValue());
+        }
+      });
+      progressDialog.setVisible(true);
+    }
+
+    worker.execute();
   }
 
   /**
@@ -1624,15 +1788,36 @@ public class GameState implements CommandEncoder {
   }
 
   public Command decodeSavedGame(InputStream in) throws IOException {
-    try (ZipInputStream zipInput = new ZipInputStream(in)) {
+    return decodeSavedGame(in, null);
+  }
+
+  /**
+   * Read a saved game and translate it into a Command.  Executing the
+   * command will load the saved game. The commands in the save are decoded
+   * one at a time as they are read, so the text of the whole save is never
+   * held in memory at once.
+   *
+   * @param in Stream to read the save from
+   * @param progress If not null, is passed the number of bytes read from the
+   *                 stream so far each time a command has been decoded
+   * @return Command
+   * @throws IOException I/O Exception
+   */
+  public Command decodeSavedGame(InputStream in, LongConsumer progress) throws IOException {
+    final BoundedInputStream counter =
+      BoundedInputStream.builder().setInputStream(in).get();
+
+    try (ZipInputStream zipInput = new ZipInputStream(counter)) {
       for (ZipEntry entry = zipInput.getNextEntry(); entry != null;
            entry = zipInput.getNextEntry()) {
-        if (SAVEFILE_ZIP_ENTRY.equals(entry.getName())) {
-          try (InputStream din = new DeobfuscatingInputStream(zipInput)) {
-            // FIXME: toString() is very inefficient, make decode() use the stream directly
-            return GameModule.getGameModule().decode(
-              IOUtils.toString(din, StandardCharsets.UTF_8)
-            );
+        final boolean envelope = SAVEFILE_ENVELOPE_ZIP_ENTRY.equals(entry.getName());
+        if (envelope || SAVEFILE_ZIP_ENTRY.equals(entry.getName())) {
+          try (Reader r = new BufferedReader(new InputStreamReader(
+                 new DeobfuscatingInputStream(zipInput), StandardCharsets.UTF_8))) {
+            final Consumer<Command> decoded = progress == null ? null :
+              c -> progress.accept(counter.getCount());
+            return envelope ? GameModule.getGameModule().decodeEnvelope(r, decoded) :
+              GameModule.getGameModule().decode(r, decoded);
           }
         }
       }
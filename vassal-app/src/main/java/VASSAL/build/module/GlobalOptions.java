@@ -25,6 +25,7 @@ import VASSAL.build.GameModule;
 import VASSAL.build.IllegalBuildException;
 import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.build.module.map.PieceMover;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.configure.BooleanConfigurer;
 import VASSAL.configure.ComponentDescription;
 import VASSAL.configure.Configurer;
@@ -32,6 +33,7 @@ import VASSAL.configure.ConfigurerFactory;
 import VASSAL.configure.FormattedStringConfigurer;
 import VASSAL.configure.IconConfigurer;
 import VASSAL.configure.IntConfigurer;
+import VASSAL.configure.StringArrayConfigurer;
 import VASSAL.configure.StringEnum;
 import VASSAL.i18n.Resources;
 import VASSAL.launch.AbstractLaunchAction;
@@ -47,6 +49,7 @@ import VASSAL.search.SearchTarget;
 import VASSAL.tools.ErrorDialog;
 import VASSAL.tools.FormattedString;
 import VASSAL.tools.NamedKeyStroke;
+import VASSAL.tools.imageop.AbstractOpImpl;
 import VASSAL.tools.swing.SwingUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.w3c.dom.Attr;
@@ -98,6 +101,11 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
   public static final String STORE_LEADING_ZERO_INTEGERS_AS_STRINGS = "storeLeadingZeroIntegersAsStrings"; //NON-NLS
   public static final String PURGE_BLANK_PROPERTY_PROMPTS = "purgeBlankPropertyPrompts"; //NON-NLS
   public static final String DISABLE_PIECE_INDEXING = "disablePieceIndexing";
+  public static final String INDEXED_PROPERTIES = "indexedProperties"; //NON-NLS
+  public static final String DISABLE_CALCULATED_PROPERTY_CACHE = "disableCalculatedPropertyCache"; //NON-NLS
+  public static final String MAINTAIN_AGGREGATES = "maintainAggregates"; //NON-NLS
+  public static final String WRITE_COMMAND_ENVELOPE = "writeCommandEnvelope"; //NON-NLS
+  public static final String SNAPSHOT_UNDO = "snapshotUndo"; //NON-NLS
 
   // Hybrid preference settings
   public static final String ALWAYS = "Always"; //$NON-NLS-1$
@@ -110,6 +118,8 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
   public static final String SINGLE_WINDOW = "singleWindow"; //$NON-NLS-1$
   public static final String MAXIMUM_HEAP = "maximumHeap"; //$NON-NLS-1$
   public static final String DRAG_THRESHOLD = "dragThreshold"; //$NON-NLS-1$
+  public static final String IMAGE_CACHE_SIZE = "imageCacheSize"; //$NON-NLS-1$
+  public static final String ZOOM_PREFETCH_MARGIN = "zoomPrefetchMargin"; //$NON-NLS-1$
   public static final String STACK_VIEWER_ORDER = "stackViewerOrder"; //NON-NLS
   public static final String SHOW_MARK_MOVED = "showMarkMoved"; //NON-NLS
 
@@ -153,6 +163,11 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
   private boolean storeLeadingZeroIntegersAsStrings = false; // Store integers with leading zeroes as String internally
   private boolean purgeBlankPropertyPrompts = true; // Purge blank property prompts
   private boolean disableUsePieceIndexes = false; // Should FastMatch use piece Indexes?
+  private String[] indexedProperties = new String[0]; // Further piece properties for FastMatch to index
+  private boolean disableCalculatedPropertyCache = false; // Should Calculated Properties be evaluated on every read?
+  private boolean maintainAggregates = false; // Should Sum and Count functions keep running totals of indexed properties?
+  private boolean writeCommandEnvelope = false; // Should saves and logs be written in the format older versions cannot read?
+  private boolean snapshotUndo = false; // Should Undo restore snapshots of the pieces a move touched?
 
   // Configurable prompt string for unmask-my-pieces
   private String promptString = Resources.getString("GlobalOptions.opponents_can_unmask_my_pieces");
@@ -208,6 +223,7 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
   @Override
   public void addTo(Buildable parent) {
     setInstance(this);
+    PropertyDependencies.setEnabled(!disableCalculatedPropertyCache);
 
     final GameModule gm = GameModule.getGameModule();
     final Prefs prefs = gm.getPrefs();
@@ -246,6 +262,28 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
     System.setProperty("awt.dnd.drag.threshold", Integer.toString(dragThreshold)); //BR// Also, actually set it to start with
     prefs.addOption(dragThresholdConf);
 
+    // the size of the image cache, in MB; images beyond this are kept only
+    // until memory is short. By default an eighth of the heap, at most 256 MB
+    final IntConfigurer imageCacheConf = new IntConfigurer(
+      IMAGE_CACHE_SIZE,
+      Resources.getString("GlobalOptions.image_cache_size"),  //$NON-NLS-1$
+      (int) Math.min(256, Math.max(64, (Runtime.getRuntime().maxMemory() >> 20) / 8))
+    );
+    imageCacheConf.addPropertyChangeListener(e ->
+      AbstractOpImpl.getCache().setMaxBytes((long) imageCacheConf.getIntValue(0) << 20)
+    );
+    AbstractOpImpl.getCache().setMaxBytes((long) imageCacheConf.getIntValue(0) << 20);
+    prefs.addOption(imageCacheConf);
+
+    // how far beyond the view, as a percentage of its size, to render pieces
+    // ahead of painting when the zoom changes
+    final IntConfigurer prefetchConf = new IntConfigurer(
+      ZOOM_PREFETCH_MARGIN,
+      Resources.getString("GlobalOptions.zoom_prefetch_margin"),  //$NON-NLS-1$
+      50
+    );
+    prefs.addOption(prefetchConf);
+
     // Preference to center on opponent's moves (used to be module-designer-set attribute, now always a player preference)
     final BooleanConfigurer config = new BooleanConfigurer(CENTER_ON_MOVE, Resources.getString("GlobalOptions.center_on_move"), Boolean.TRUE); //$NON-NLS-1$
     prefs.addOption(config);
@@ -477,7 +515,12 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
       Resources.getString("Editor.GlobalOption.send_to_location_movement_trails"),
       Resources.getString("Editor.GlobalOption.leading_zero_integer_strings"),
       Resources.getString("Editor.GlobalOption.purge_blank_property_prompts"),
-      Resources.getString("Editor.GlobalOption.disable_use_location_indexes")
+      Resources.getString("Editor.GlobalOption.disable_use_location_indexes"),
+      Resources.getString("Editor.GlobalOption.indexed_properties"),
+      Resources.getString("Editor.GlobalOption.disable_calculated_property_cache"),
+      Resources.getString("Editor.GlobalOption.maintain_aggregates"),
+      Resources.getString("Editor.GlobalOption.write_command_envelope"),
+      Resources.getString("Editor.GlobalOption.snapshot_undo")
     };
   }
 
@@ -499,7 +542,12 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
         SEND_TO_LOCATION_MOVE_TRAILS,
         STORE_LEADING_ZERO_INTEGERS_AS_STRINGS,
         PURGE_BLANK_PROPERTY_PROMPTS,
-        DISABLE_PIECE_INDEXING
+        DISABLE_PIECE_INDEXING,
+        INDEXED_PROPERTIES,
+        DISABLE_CALCULATED_PROPERTY_CACHE,
+        MAINTAIN_AGGREGATES,
+        WRITE_COMMAND_ENVELOPE,
+        SNAPSHOT_UNDO
       )
     );
 
@@ -525,6 +573,11 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
       PromptOnOff.class,
       Boolean.class,
       Boolean.class,
+      Boolean.class,
+      String[].class,
+      Boolean.class,
+      Boolean.class,
+      Boolean.class,
       Boolean.class
     };
   }
@@ -662,6 +715,21 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
     else if (DISABLE_PIECE_INDEXING.equals(key)) {
       return String.valueOf(disableUsePieceIndexes);
     }
+    else if (INDEXED_PROPERTIES.equals(key)) {
+      return StringArrayConfigurer.arrayToString(indexedProperties);
+    }
+    else if (DISABLE_CALCULATED_PROPERTY_CACHE.equals(key)) {
+      return String.valueOf(disableCalculatedPropertyCache);
+    }
+    else if (MAINTAIN_AGGREGATES.equals(key)) {
+      return String.valueOf(maintainAggregates);
+    }
+    else if (WRITE_COMMAND_ENVELOPE.equals(key)) {
+      return String.valueOf(writeCommandEnvelope);
+    }
+    else if (SNAPSHOT_UNDO.equals(key)) {
+      return String.valueOf(snapshotUndo);
+    }
     else if (INVENTORY_VISIBLE_TO_ALL.equals(key)) {
       return inventoryVisibleToAll;
     }
@@ -764,6 +832,53 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
         disableUsePieceIndexes = "true".equals(value); //NON-NLS
       }
     }
+    else if (INDEXED_PROPERTIES.equals(key)) {
+      if (value instanceof String) {
+        value = StringArrayConfigurer.stringToArray((String) value);
+      }
+      indexedProperties = value == null ? new String[0] : (String[]) value;
+      if (GameModule.getGameModule() != null) {
+        GameModule.getGameModule().getIndexManager().setIndexedProperties(Arrays.asList(indexedProperties));
+      }
+    }
+    else if (DISABLE_CALCULATED_PROPERTY_CACHE.equals(key)) {
+      if (value instanceof Boolean) {
+        disableCalculatedPropertyCache = (Boolean) value;
+      }
+      else if (value instanceof String) {
+        disableCalculatedPropertyCache = "true".equals(value); //NON-NLS
+      }
+      if (instance == this) {
+        PropertyDependencies.setEnabled(!disableCalculatedPropertyCache);
+      }
+    }
+    else if (MAINTAIN_AGGREGATES.equals(key)) {
+      if (value instanceof Boolean) {
+        maintainAggregates = (Boolean) value;
+      }
+      else if (value instanceof String) {
+        maintainAggregates = "true".equals(value); //NON-NLS
+      }
+      if (GameModule.getGameModule() != null) {
+        GameModule.getGameModule().getIndexManager().setAggregatesEnabled(maintainAggregates);
+      }
+    }
+    else if (WRITE_COMMAND_ENVELOPE.equals(key)) {
+      if (value instanceof Boolean) {
+        writeCommandEnvelope = (Boolean) value;
+      }
+      else if (value instanceof String) {
+        writeCommandEnvelope = "true".equals(value); //NON-NLS
+      }
+    }
+    else if (SNAPSHOT_UNDO.equals(key)) {
+      if (value instanceof Boolean) {
+        snapshotUndo = (Boolean) value;
+      }
+      else if (value instanceof String) {
+        snapshotUndo = "true".equals(value); //NON-NLS
+      }
+    }
     else if (INVENTORY_VISIBLE_TO_ALL.equals(key)) {
       inventoryVisibleToAll = (String) value;
     }
@@ -876,6 +991,35 @@ public class GlobalOptions extends AbstractConfigurable implements ComponentDesc
     return disableUsePieceIndexes;
   }
 
+  public boolean isDisableCalculatedPropertyCache() {
+    return disableCalculatedPropertyCache;
+  }
+
+  public boolean isMaintainAggregates() {
+    return maintainAggregates;
+  }
+
+  /**
+   * @return true if saves and logs are to be written in a {@link VASSAL.command.CommandEnvelope}, which versions of
+   * VASSAL before 3.8.0 cannot read
+   */
+  public boolean isWriteCommandEnvelope() {
+    return writeCommandEnvelope;
+  }
+
+  /**
+   * @return true if Undo restores snapshots of the pieces a move touched, in a Command which versions of VASSAL
+   * before 3.8.0 cannot read
+   */
+  public boolean isSnapshotUndo() {
+    return snapshotUndo;
+  }
+
+  /** @return the piece properties, beyond location, that Global Key Commands may look up pieces by */
+  public String[] getIndexedProperties() {
+    return indexedProperties.clone();
+  }
+
   /** @return whether specific hybrid preference is enabled (could be designer-forced setting, could be player preference) */
   private boolean isEnabled(String attValue, String prefsPrompt) {
     if (ALWAYS.equals(attValue)) {
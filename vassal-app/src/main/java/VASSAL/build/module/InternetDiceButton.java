@@ -125,6 +125,11 @@ public class InternetDiceButton extends DiceButton implements GameComponent, Com
     return new SetSecondaryEmail(command.substring(COMMAND_PREFIX.length()));
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { COMMAND_PREFIX };
+  }
+
   @Override
   public String encode(Command c) {
     if (!(c instanceof SetSecondaryEmail)) {
@@ -27,6 +27,7 @@ import VASSAL.build.GameModule;
 import VASSAL.build.IllegalBuildException;
 import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.build.module.folder.MapSubFolder;
+import VASSAL.build.module.index.PieceBoundsIndex;
 import VASSAL.build.module.map.BoardPicker;
 import VASSAL.build.module.map.CounterDetailViewer;
 import VASSAL.build.module.map.DefaultPieceCollection;
@@ -70,6 +71,7 @@ import VASSAL.build.module.properties.ChangePropertyCommandEncoder;
 import VASSAL.build.module.properties.GlobalProperties;
 import VASSAL.build.module.properties.MutablePropertiesContainer;
 import VASSAL.build.module.properties.MutableProperty;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.build.widget.MapWidget;
 import VASSAL.command.AddPiece;
@@ -188,9 +190,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 import static VASSAL.preferences.Prefs.MAIN_WINDOW_HEIGHT;
 import static VASSAL.preferences.Prefs.MAIN_WINDOW_REMEMBER;
@@ -259,6 +266,10 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
   protected int[][] boardWidths; // Cache of board widths by row/column
   protected int[][] boardHeights; // Cache of board heights by row/column
   protected PieceCollection pieces = new DefaultPieceCollection(); // All the pieces on the map, but sorted into visual layers. Will be replaced by a LayeredPieceCollection if Map has a "Game Piece Layers" Component.
+  protected final PieceBoundsIndex pieceBounds = new PieceBoundsIndex(this::paintBoundsOf); // Spatial index of the painted bounds of the pieces in the PieceCollection
+  private java.util.Map<GamePiece, Integer> drawIndex; // Cache of the position of each piece in the draw order, including hidden layers
+  private Set<GamePiece> visiblePieces; // Cache of the pieces not in hidden layers
+  private int drawIndexModCount; // Modification count of the PieceCollection when drawIndex was made
   protected Highlighter highlighter = new ColoredBorder();
   protected ArrayList<Highlighter> highlighters = new ArrayList<>(); //NOPMD
   protected boolean clearFirst = false; // Whether to clear the display before
@@ -2398,7 +2409,14 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
     final Composite oldComposite = g2d.getComposite();
     g2d.setComposite(
       AlphaComposite.getInstance(AlphaComposite.SRC_OVER, pieceOpacity));
-    final GamePiece[] stack = pieces.getPieces(); // Gets map pieces, sorted by visual layer
+
+    // Only pieces whose bounds intersect the region being painted need to be drawn
+    final Rectangle region = drawingToMap(visibleRect, os_scale);
+    region.grow(1, 1);
+    final List<GamePiece> stack = isDrawOrderCached() ?
+      getVisiblePiecesInDrawOrder(() -> pieceBounds.getPieces(region)) :
+      pieceBounds.getPieces(region, indexAll(pieces.getPieces()));
+
     for (final GamePiece gamePiece : stack) {
       final Point pt = mapToDrawing(gamePiece.getPosition(), os_scale);
       if (gamePiece.getClass() == Stack.class) {
@@ -2593,6 +2611,15 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
     return pieces.getPieces();
   }
 
+  /**
+   * @param region a region of the map, in map coordinates
+   * @return the top-level pieces (stacks and loose pieces) whose painted
+   * bounds intersect the region, in no particular order
+   */
+  public Set<GamePiece> getPiecesInRegion(Rectangle region) {
+    return pieceBounds.getPieces(region);
+  }
+
   /**
    * @return an array of all GamePieces on the map, regardless of visibility, and sorted
    * in order of visual layer. This is a read-only copy. Altering the array does not alter
@@ -2607,6 +2634,11 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
    */
   public void setPieceCollection(PieceCollection pieces) {
     this.pieces = pieces;
+    drawIndex = null;
+    pieceBounds.clear();
+    for (final GamePiece p : pieces.getAllPieces()) {
+      pieceBounds.addOrUpdatePiece(p);
+    }
   }
 
   /**
@@ -3020,6 +3052,8 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
     }
     else {
       pieces.clear();
+      pieceBounds.clear();
+      drawIndex = null;
       boards.clear();
 
       if (!g.isLoadOverSemaphore()) {
@@ -3128,14 +3162,18 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
    * @return a visible piece at the given location, or null if none.
    */
   public GamePiece findPiece(Point pt, PieceFinder finder) {
-    final GamePiece[] stack = pieces.getPieces();
-    for (int i = stack.length - 1; i >= 0; --i) {
-      final GamePiece p = finder.select(this, stack[i], pt);
-      if (p != null) {
-        return p;
+    // A finder which selects by shape need only be offered the pieces whose bounds contain the point
+    if (finder.isBounded() && isDrawOrderCached()) {
+      final List<GamePiece> stack = getVisiblePiecesInDrawOrder(() -> pieceBounds.getPieces(pt));
+      for (int i = stack.size() - 1; i >= 0; --i) {
+        final GamePiece p = finder.select(this, stack.get(i), pt);
+        if (p != null) {
+          return p;
+        }
       }
+      return null;
     }
-    return null;
+    return findPiece(pt, finder, pieces.getPieces());
   }
 
   /**
@@ -3146,7 +3184,22 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
    * @return a piece at the given location, regardless of visibility, or null if none.
    */
   public GamePiece findAnyPiece(Point pt, PieceFinder finder) {
-    final GamePiece[] stack = pieces.getAllPieces();
+    return findPiece(pt, finder, pieces.getAllPieces());
+  }
+
+  private GamePiece findPiece(Point pt, PieceFinder finder, GamePiece[] stack) {
+    // A finder which selects by shape need only be offered the pieces whose bounds contain the point, which
+    // the spatial index returns front-to-back
+    if (finder.isBounded()) {
+      for (final GamePiece piece : pieceBounds.getPiecesTopDown(pt, stack)) {
+        final GamePiece p = finder.select(this, piece, pt);
+        if (p != null) {
+          return p;
+        }
+      }
+      return null;
+    }
+
     // Our piece collection is provided to us in "draw order", in other words "back-to-front", which means
     // that we need to iterate backwards to prioritize checking pieces that are visually "in front of" others.
     for (int i = stack.length - 1; i >= 0; --i) {
@@ -3182,6 +3235,7 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
     }
     // Update the position based indexes for this piece
     GameModule.getGameModule().getIndexManager().pieceMoved(piece, this);
+    pieceChanged(piece);
     return c;
   }
 
@@ -3251,6 +3305,7 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
       }
       p.setMap(this);
       pieces.add(p);
+      pieceBounds.addOrUpdatePiece(p);
       theMap.repaint();
       GameModule.getGameModule().getIndexManager().pieceMoved(p, this);
     }
@@ -3273,11 +3328,122 @@ public class Map extends AbstractToolbarItem implements GameComponent, MouseList
   public void removePiece(GamePiece p) {
     GameModule.getGameModule().getIndexManager().pieceRemoved(p, this);
     pieces.remove(p);
+    pieceBounds.removePiece(p);
     theMap.repaint();
     GameModule.getGameModule().getIndexManager().pieceRemoved(p, this);
   }
 
 
+  /**
+   * Notifies the map that a piece on it has moved, or has changed in a way that may affect its size, so that
+   * the spatial index used to decide which pieces need painting, and any property indexes used by Global Key
+   * Commands, can be kept up to date.
+   * @param p GamePiece that has changed. If it is in a Stack, the Stack is updated.
+   */
+  public void pieceChanged(GamePiece p) {
+    PropertyDependencies.stateChanged(p);
+    final GamePiece outer = p.getParent() == null ? p : p.getParent();
+    pieceBounds.updatePiece(outer);
+    GameModule.getGameModule().getIndexManager().pieceChanged(p, this);
+  }
+
+  /**
+   * @return true if the PieceCollection counts its changes, so that the draw order may be cached. A collection which
+   * does not is asked for its pieces every time, and the pieces it returns are looked up in the spatial index.
+   */
+  private boolean isDrawOrderCached() {
+    return pieces.getModCount() >= 0;
+  }
+
+  /**
+   * Pieces may have been added to the PieceCollection directly, so add any the spatial index does not know about
+   * @param all Pieces in the PieceCollection
+   * @return the same pieces
+   */
+  private GamePiece[] indexAll(GamePiece[] all) {
+    for (final GamePiece p : all) {
+      if (!pieceBounds.contains(p)) {
+        pieceBounds.addOrUpdatePiece(p);
+      }
+    }
+    return all;
+  }
+
+  /**
+   * @param found Supplies the pieces found by a query of the spatial index
+   * @return those pieces which are visible, together with any visible pieces the index has no bounds for, sorted
+   * by draw order, bottom first
+   */
+  private List<GamePiece> getVisiblePiecesInDrawOrder(Supplier<Set<GamePiece>> found) {
+    // Fetch the draw order first, as it tells the index of any pieces it has not seen
+    final java.util.Map<GamePiece, Integer> order = getDrawIndex();
+    final List<GamePiece> result = new ArrayList<>();
+    for (final GamePiece p : found.get()) {
+      if (visiblePieces.contains(p)) {
+        result.add(p);
+      }
+    }
+    for (final GamePiece p : pieceBounds.getUnbounded()) {
+      if (visiblePieces.contains(p)) {
+        result.add(p);
+      }
+    }
+    result.sort(Comparator.comparing(order::get));
+    return result;
+  }
+
+  /**
+   * @return the position of each piece in the draw order, bottom first, including pieces in hidden layers. This,
+   * and the set of visible pieces, are only fetched again from the PieceCollection when it has changed, so that
+   * painting a small region need not visit every piece.
+   */
+  private java.util.Map<GamePiece, Integer> getDrawIndex() {
+    final int modCount = pieces.getModCount();
+    if (drawIndex == null || modCount != drawIndexModCount) {
+      final GamePiece[] all = indexAll(pieces.getAllPieces());
+      drawIndex = new HashMap<>();
+      for (int i = 0; i < all.length; ++i) {
+        drawIndex.put(all[i], i);
+      }
+      visiblePieces = new HashSet<>(Arrays.asList(pieces.getPieces()));
+      drawIndexModCount = modCount;
+    }
+    return drawIndex;
+  }
+
+  /**
+   * @param p A top-level piece, Stack or Deck on this map
+   * @return the position of the piece in the order pieces are drawn, bottom first, counting pieces in hidden
+   * layers, or -1 if it is not on this map
+   */
+  public int getDrawOrderIndex(GamePiece p) {
+    if (!isDrawOrderCached()) {
+      return Arrays.asList(pieces.getAllPieces()).indexOf(p);
+    }
+    final Integer index = getDrawIndex().get(p);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @param p GamePiece on this map
+   * @return the bounds that drawing the piece may paint, in map coordinates, including any selection highlighting,
+   * or null if it has no position, or has traits from module code, which may not report changes of size
+   */
+  protected Rectangle paintBoundsOf(GamePiece p) {
+    final Point pos = p.getPosition();
+    // A piece which may change size without telling us is always painted
+    if (pos == null || !PieceBoundsIndex.reportsChanges(p)) {
+      return null;
+    }
+    final Rectangle r = p.boundingBox();
+    r.add(highlighter.boundingBox(p));
+    for (final Highlighter h : highlighters) {
+      r.add(h.boundingBox(p));
+    }
+    r.translate(pos.x, pos.y);
+    return r;
+  }
+
   /**
    * Accepts the current actual center of the map as the new "preferred center" (e.g. if we scroll)
    * Just not if suppressed after a zoom level change (we don't want zoom level changes to cause us to
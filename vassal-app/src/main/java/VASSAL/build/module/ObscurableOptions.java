@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import VASSAL.build.GameModule;
+import VASSAL.build.module.index.PieceBoundsIndex;
 import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
 import VASSAL.configure.BooleanConfigurer;
@@ -114,11 +115,14 @@ public class ObscurableOptions implements CommandEncoder, GameComponent {
   public void allow(String id) {
     if (!allowed.contains(id)) {
       allowed.add(id);
+      PieceBoundsIndex.invalidateAll();
     }
   }
 
   public void disallow(String id) {
-    allowed.remove(id);
+    if (allowed.remove(id)) {
+      PieceBoundsIndex.invalidateAll();
+    }
   }
 
   @Override
@@ -136,6 +140,11 @@ public class ObscurableOptions implements CommandEncoder, GameComponent {
     return new SetAllowed(l);
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { COMMAND_ID };
+  }
+
   @Override
   public String encode(Command c) {
     if (!(c instanceof SetAllowed)) {
@@ -232,6 +241,7 @@ public class ObscurableOptions implements CommandEncoder, GameComponent {
     protected void executeCommand() {
       getInstance().override = null;
       getInstance().allowed = this.allowed;
+      PieceBoundsIndex.invalidateAll();
     }
 
     @Override
@@ -23,6 +23,8 @@ import VASSAL.build.Builder;
 import VASSAL.build.Configurable;
 import VASSAL.build.GameModule;
 import VASSAL.build.module.documentation.HelpFile;
+import VASSAL.build.module.index.PieceBoundsIndex;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
 import VASSAL.command.Logger;
@@ -310,6 +312,9 @@ public class PlayerRoster extends AbstractToolbarItem implements CommandEncoder,
   }
 
   protected void fireSideChange(String oldSide, String newSide) {
+    PropertyDependencies.stateChanged();
+    // Pieces masked or hidden from one side and not the other change size
+    PieceBoundsIndex.invalidateAll();
     for (final SideChangeListener l : sideChangeListeners) {
       l.sideChanged(oldSide, newSide);
     }
@@ -427,6 +432,11 @@ public class PlayerRoster extends AbstractToolbarItem implements CommandEncoder,
     return null;
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { COMMAND_PREFIX, REMOVE_PREFIX };
+  }
+
   @Override
   public String encode(Command c) {
     if (c instanceof Add) {
@@ -19,13 +19,19 @@ package VASSAL.build.module.index;
 
 import VASSAL.build.GameModule;
 import VASSAL.build.module.Map;
+import VASSAL.counters.BasicPiece;
 import VASSAL.counters.GamePiece;
+import VASSAL.counters.PieceFilter;
 import VASSAL.counters.Stack;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * The IndexManager maintains a set of indexes on GamePieces that will primarily be used by
@@ -34,6 +40,11 @@ import java.util.List;
  * It maintains the following indexes:
  *  o A per-map quadtree of piece locations
  *  o A per-map cross-reference of values of the Currentzone and LocationName properties
+ *  o A per-map cross-reference of values of any other properties declared as indexed in the
+ *    module's Global Options. These are kept up to date as pieces change state, so should only
+ *    be declared for properties whose value depends on the state of the piece alone.
+ *  o If the module turns them on, running totals of indexed properties for the Sum and Count
+ *    expression functions, see {@link PieceAggregates}
  *
  *  The indexes for each Map are stored in a VassalMapPieceIndex object
  *
@@ -46,6 +57,18 @@ public class IndexManager {
    */
   private final java.util.Map<Map, VassalMapPieceIndex> indexes = new HashMap<>();
 
+  /**
+   * Additional properties declared as indexed by the module
+   */
+  private final Set<String> indexedProperties = new LinkedHashSet<>();
+
+  /**
+   * Running totals for the Sum and Count expression functions
+   */
+  private final PieceAggregates aggregates = new PieceAggregates(this);
+
+  private boolean aggregatesEnabled;
+
   /**
    * Return the combined index object for the specified Map, create one if needed
    *
@@ -53,7 +76,56 @@ public class IndexManager {
    * @return Index
    */
   private VassalMapPieceIndex getIndex(Map map) {
-    return indexes.computeIfAbsent(map, m -> new VassalMapPieceIndex(m));
+    return indexes.computeIfAbsent(map, m -> new VassalMapPieceIndex(m, indexedProperties));
+  }
+
+  /**
+   * Set the additional properties to maintain indexes for. Rebuilds any existing indexes if they have changed.
+   *
+   * @param propertyNames Names of properties to index
+   */
+  public void setIndexedProperties(Collection<String> propertyNames) {
+    final Set<String> names = new LinkedHashSet<>();
+    for (final String name : propertyNames) {
+      if (name != null && !name.isEmpty()) {
+        names.add(name);
+      }
+    }
+
+    if (names.equals(indexedProperties)) {
+      return;
+    }
+
+    indexedProperties.clear();
+    indexedProperties.addAll(names);
+
+    if (!indexes.isEmpty()) {
+      rebuild();
+    }
+  }
+
+  /**
+   * @param enabled true to keep running totals for the Sum and Count expression functions
+   */
+  public void setAggregatesEnabled(boolean enabled) {
+    aggregatesEnabled = enabled;
+    if (!enabled) {
+      aggregates.clear();
+    }
+  }
+
+  public boolean isAggregatesEnabled() {
+    return aggregatesEnabled;
+  }
+
+  /**
+   * @param propertyName Property name
+   * @return true if {@link #getPieces(Map, String, String)} can look up pieces by this property
+   */
+  public boolean isIndexed(String propertyName) {
+    return BasicPiece.CURRENT_ZONE.equals(propertyName)
+      || BasicPiece.LOCATION_NAME.equals(propertyName)
+      || indexedProperties.contains(propertyName);
   }
 
   /**
@@ -75,6 +147,7 @@ public class IndexManager {
    */
   public void clearAll() {
     indexes.clear();
+    aggregates.clear();
   }
 
   /**
@@ -89,12 +162,43 @@ public class IndexManager {
       if (piece instanceof Stack) {
         for (final GamePiece p : ((Stack) piece).asList()) {
           getIndex(map).addOrUpdatePiece(p);
+          aggregates.pieceUpdated(p, map);
         }
       }
       else {
         getIndex(map).addOrUpdatePiece(piece);
+        aggregates.pieceUpdated(piece, map);
+      }
+    }
+  }
+
+  /**
+   * The state of a piece on a Map has changed, update any property based indexes.
+   * Location based indexes are updated separately by {@link #pieceMoved}.
+   *
+   * @param piece Piece that changed
+   * @param map   Map the piece is on
+   */
+  public void pieceChanged(GamePiece piece, Map map) {
+    if (map == null) {
+      return;
+    }
+
+    // Stacks have no properties of their own, but pieces may have been added to them, as cards are to a Deck,
+    // which the running totals must count
+    if (piece instanceof Stack) {
+      if (!aggregates.isEmpty()) {
+        for (final GamePiece p : ((Stack) piece).asList()) {
+          aggregates.pieceUpdated(p, map);
+        }
       }
+      return;
+    }
+
+    if (!indexedProperties.isEmpty()) {
+      getIndex(map).updateProperties(piece);
     }
+    aggregates.pieceUpdated(piece, map);
   }
 
   /**
@@ -108,10 +212,12 @@ public class IndexManager {
       if (piece instanceof Stack) {
         for (final GamePiece p : ((Stack) piece).asList()) {
           getIndex(map).removePiece(p);
+          aggregates.pieceRemoved(p, map);
         }
       }
       else {
         getIndex(map).removePiece(piece);
+        aggregates.pieceRemoved(piece, map);
       }
     }
   }
@@ -176,4 +282,34 @@ public class IndexManager {
     // Convert the Set result or null to an ArrayList for call consistency
     return new ArrayList<>(index.getPieces(propertyName, propertyValue));
   }
+
+  /**
+   * Return a list of pieces on a Map whose value of the specified property passes a test, such as a
+   * Fast Match comparison. The test is made once for each distinct value of the property.
+   *
+   * @param map Map
+   * @param propertyName Propertyname to lookup
+   * @param valueTest Test of the property value, which may be null
+   * @return List of pieces with passing values
+   */
+  public List<GamePiece> getPieces(Map map, String propertyName, Predicate<String> valueTest) {
+    final VassalMapPieceIndex index = getIndex(map);
+    return new ArrayList<>(index.getPieces(propertyName, valueTest));
+  }
+
+  /**
+   * Return the running total behind a Sum or Count expression function, registering it if this is the first
+   * time it has been asked for. See {@link PieceAggregates#getTotal}.
+   *
+   * @param map           Map
+   * @param scopeProperty CurrentZone or LocationName, or null for the whole Map
+   * @param scopeValue    Zone or location name
+   * @param propertyName  Property to sum or count, or empty to count pieces
+   * @param filter        Filter the pieces must pass, or null
+   * @param doSum         true to sum, false to count
+   * @return the total, or null if running totals are turned off or this one cannot be kept up to date
+   */
+  public Integer getTotal(Map map, String scopeProperty, String scopeValue, String propertyName, PieceFilter filter, boolean doSum) {
+    return aggregatesEnabled ? aggregates.getTotal(map, scopeProperty, scopeValue, propertyName, filter, doSum) : null;
+  }
 }
@@ -0,0 +1,306 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.index;
+
+import VASSAL.build.module.Map;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.PieceFilter;
+import VASSAL.counters.Stack;
+import VASSAL.script.expression.BeanShellExpression;
+import bsh.BeanShellExpressionValidator;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Running totals behind the SumMap, CountMap, SumZone, CountZone, SumLocation and CountLocation expression
+ * functions, so that a function asked the same question again and again, such as by a Text Label showing the
+ * strength of an army, does not visit every piece each time.
+ *
+ * Each distinct question (map, zone or location, property, filter) is registered the first time it is asked, by
+ * totalling the pieces once. After that, the total is kept up to date piece by piece as the {@link IndexManager}
+ * is told of pieces being added, moved, changed and removed.
+ *
+ * Only questions whose answer depends on indexed properties alone can be kept up to date this way, as those are the
+ * properties the module has declared depend on the state of the piece alone. The property summed or counted, and
+ * every property read by the filter, must be indexed, and the filter must be a BeanShell expression that calls no
+ * functions. Other questions are left to the caller to answer by visiting the pieces.
+ */
+public class PieceAggregates {
+
+  /** The most questions to keep totals for; those asked least recently are dropped first */
+  private static final int MAX_AGGREGATES = 100;
+
+  /** What is being totalled */
+  private static final class Key {
+    private final Map map;
+    private final String scopeProperty;
+    private final String scopeValue;
+    private final String propertyName;
+    private final String filterText;
+    private final boolean doSum;
+
+    private Key(Map map, String scopeProperty, String scopeValue, String propertyName, String filterText, boolean doSum) {
+      this.map = map;
+      this.scopeProperty = scopeProperty;
+      this.scopeValue = scopeValue;
+      this.propertyName = propertyName;
+      this.filterText = filterText;
+      this.doSum = doSum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key k = (Key) o;
+      return map == k.map && doSum == k.doSum
+        && Objects.equals(scopeProperty, k.scopeProperty)
+        && Objects.equals(scopeValue, k.scopeValue)
+        && propertyName.equals(k.propertyName)
+        && filterText.equals(k.filterText);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(map), scopeProperty, scopeValue, propertyName, filterText, doSum);
+    }
+  }
+
+  /** The running total for one question, made up of what each piece contributes to it */
+  private static final class Aggregate {
+    private final Key key;
+    private final PieceFilter filter;
+    private final boolean maintained;
+
+    /** The non-zero contribution of each piece, by piece id */
+    private final java.util.Map<String, Integer> contributions = new HashMap<>();
+    private int total;
+
+    private Aggregate(Key key, PieceFilter filter, boolean maintained) {
+      this.key = key;
+      this.filter = filter;
+      this.maintained = maintained;
+    }
+
+    /**
+     * Count or sum a piece as ExpressionInterpreter.updateTotal() does
+     */
+    private int contributionOf(GamePiece piece) {
+      if (key.scopeProperty != null) {
+        final Object scope = piece.getProperty(key.scopeProperty);
+        if (!Objects.equals(key.scopeValue, scope == null ? null : scope.toString())) {
+          return 0;
+        }
+      }
+
+      if (filter != null && !filter.accept(piece)) {
+        return 0;
+      }
+
+      String value = "";
+      if (!key.propertyName.isEmpty()) {
+        final Object prop = piece.getProperty(key.propertyName);
+        value = prop == null ? "" : prop.toString();
+      }
+
+      if (key.doSum) {
+        return NumberUtils.toInt(value, 0);
+      }
+      return key.propertyName.isEmpty() || !value.isEmpty() ? 1 : 0;
+    }
+
+    private void update(GamePiece piece) {
+      final int contribution = contributionOf(piece);
+      final Integer old = contribution == 0 ? contributions.remove(piece.getId()) : contributions.put(piece.getId(), contribution);
+      total += contribution - (old == null ? 0 : old);
+    }
+
+    private void remove(GamePiece piece) {
+      final Integer old = contributions.remove(piece.getId());
+      if (old != null) {
+        total -= old;
+      }
+    }
+  }
+
+  private final IndexManager indexManager;
+
+  private final java.util.Map<Key, Aggregate> aggregates = new LinkedHashMap<>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(java.util.Map.Entry<Key, Aggregate> eldest) {
+      return size() > MAX_AGGREGATES;
+    }
+  };
+
+  /** The totals being kept up to date, without those which cannot be */
+  private final List<Aggregate> maintained = new ArrayList<>();
+
+  /**
+   * @param indexManager The IndexManager which tells us of changes to pieces, and knows which properties are indexed
+   */
+  public PieceAggregates(IndexManager indexManager) {
+    this.indexManager = indexManager;
+  }
+
+  /**
+   * Return the total for a question, registering it if this is the first time it has been asked
+   *
+   * @param map           Map to total the pieces on
+   * @param scopeProperty Property the pieces must have a given value of, such as CurrentZone, or null for all pieces
+   * @param scopeValue    Value of the scope property
+   * @param propertyName  Property to sum, or to count the pieces with a non-blank value of, or empty to count pieces
+   * @param filter        Filter the pieces must pass, or null
+   * @param doSum         true to sum the property, false to count
+   * @return the total, or null if it cannot be kept up to date and must be worked out by visiting the pieces
+   */
+  public Integer getTotal(Map map, String scopeProperty, String scopeValue, String propertyName, PieceFilter filter, boolean doSum) {
+    if (map == null) {
+      return null;
+    }
+
+    final String property = propertyName == null ? "" : propertyName;
+    final String filterText;
+    if (filter == null) {
+      filterText = "";
+    }
+    else if (filter instanceof BeanShellExpression.BshFilter) {
+      filterText = ((BeanShellExpression.BshFilter) filter).toBeanShellString();
+    }
+    else {
+      return null;
+    }
+
+    final Key key = new Key(map, scopeProperty, scopeValue, property, filterText, doSum);
+    Aggregate aggregate = aggregates.get(key);
+    if (aggregate == null) {
+      aggregate = register(key, filter);
+    }
+    return aggregate.maintained ? aggregate.total : null;
+  }
+
+  /**
+   * Check whether a question can be kept up to date, and if so, total it for the first time
+   */
+  private Aggregate register(Key key, PieceFilter filter) {
+    final boolean canMaintain = (key.propertyName.isEmpty() || indexManager.isIndexed(key.propertyName))
+      && (key.filterText.isEmpty() || readsIndexedPropertiesOnly(key.filterText));
+
+    final Aggregate aggregate = new Aggregate(key, filter, canMaintain);
+    aggregates.put(key, aggregate);
+
+    if (canMaintain) {
+      if (key.scopeProperty == null) {
+        for (final GamePiece piece : key.map.getAllPieces()) {
+          if (piece instanceof Stack) {
+            for (final GamePiece p : ((Stack) piece).asList()) {
+              aggregate.update(p);
+            }
+          }
+          else {
+            aggregate.update(piece);
+          }
+        }
+      }
+      else {
+        for (final GamePiece piece : indexManager.getPieces(key.map, key.scopeProperty, key.scopeValue)) {
+          aggregate.update(piece);
+        }
+      }
+
+      // Drop any totals pushed out of the cache by this one
+      maintained.retainAll(aggregates.values());
+      maintained.add(aggregate);
+    }
+    return aggregate;
+  }
+
+  /**
+   * @param filterText A BeanShell expression, without its braces
+   * @return true if the expression reads only indexed properties, and calls no functions which might read others
+   */
+  private boolean readsIndexedPropertiesOnly(String filterText) {
+    final BeanShellExpressionValidator validator = new BeanShellExpressionValidator(filterText);
+    if (!validator.isValid() || !validator.getMethods().isEmpty()) {
+      return false;
+    }
+    for (final String name : validator.getAllVariables()) {
+      if (!indexManager.isIndexed(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A piece has been added to, moved on, or changed on a Map. A piece can only be on one Map, so it is also
+   * removed from the totals for any other.
+   *
+   * @param piece Piece, not a Stack
+   * @param map   Map the piece is on
+   */
+  public void pieceUpdated(GamePiece piece, Map map) {
+    for (final Aggregate aggregate : maintained) {
+      if (aggregate.key.map == map) {
+        aggregate.update(piece);
+      }
+      else {
+        aggregate.remove(piece);
+      }
+    }
+  }
+
+  /**
+   * A piece has been removed from a Map
+   *
+   * @param piece Piece, not a Stack
+   * @param map   Map the piece was on
+   */
+  public void pieceRemoved(GamePiece piece, Map map) {
+    for (final Aggregate aggregate : maintained) {
+      if (aggregate.key.map == map) {
+        aggregate.remove(piece);
+      }
+    }
+  }
+
+  /**
+   * @return true if no totals are being kept up to date, so there is nothing to tell of changes to pieces
+   */
+  public boolean isEmpty() {
+    return maintained.isEmpty();
+  }
+
+  /**
+   * Forget all totals. They will be registered again when next asked for.
+   */
+  public void clear() {
+    aggregates.clear();
+    maintained.clear();
+  }
+}
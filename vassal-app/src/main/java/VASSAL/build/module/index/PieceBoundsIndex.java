@@ -0,0 +1,485 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.index;
+
+import VASSAL.build.module.properties.PropertyDependencies;
+import VASSAL.counters.Decorator;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A grid-bucket index of the painted bounds of the top-level pieces (Stacks, Decks and unstacked pieces)
+ * held in a Map's {@link VASSAL.build.module.map.PieceCollection}. Used to find the pieces that
+ * intersect a region of the map, so that painting only needs to visit the pieces that can be seen, and those
+ * at a point, so that finding the piece clicked on only needs to test the shapes of the pieces there.
+ *
+ * Unlike {@link VassalMapQuadTree}, which indexes the position of each individual piece for range
+ * lookups, this index records the full bounding box of each top-level piece, including any stack
+ * expansion and selection highlighting.
+ *
+ * Bounds are not calculated when a piece is added or changed, the piece is just marked as dirty and the
+ * bounds are calculated the next time the index is queried. This coalesces the many changes made to a
+ * piece while a Command executes or a game loads into a single bounds calculation.
+ *
+ * Some pieces change size without changing state, such as a Text Label showing a Global Property, or a piece
+ * masked from some players when the player changes side. The Global, Map and Zone properties read while the bounds
+ * of a piece are calculated are recorded, and {@link #propertyChanged} marks only the pieces which read a property
+ * as dirty. Other changes like these are signalled by {@link #invalidateAll()}, which marks every piece on every
+ * Map as dirty.
+ *
+ * Pieces only report their own changes of size from traits which are part of VASSAL. A piece with a trait from
+ * module code, see {@link #reportsChanges}, should be given no bounds, so that it is always painted.
+ */
+public class PieceBoundsIndex {
+
+  /** Size in map pixels of each square grid cell */
+  private static final int CELL_SIZE = 256;
+
+  /** Pieces covering more cells than this are not bucketed, but checked on every query */
+  private static final int MAX_CELLS_PER_PIECE = 256;
+
+  /** Calculates the bounds of a piece in map co-ordinates */
+  private final Function<GamePiece, Rectangle> boundsFunction;
+
+  /** The pieces whose bounds overlap each grid cell, keyed by cell */
+  private final Map<Long, Set<GamePiece>> cells = new HashMap<>();
+
+  /** The bounds each indexed piece was recorded with */
+  private final Map<GamePiece, Rectangle> bounds = new HashMap<>();
+
+  /** Pieces too large to be usefully bucketed */
+  private final Set<GamePiece> oversized = new HashSet<>();
+
+  /** Pieces that have no bounds, such as those without a position */
+  private final Set<GamePiece> unbounded = new HashSet<>();
+
+  /** Pieces that have been added or changed since the last query */
+  private final Set<GamePiece> dirty = new HashSet<>();
+
+  /** The pieces whose bounds were calculated from each Global, Map or Zone property, by property name */
+  private final Map<String, Set<GamePiece>> readers = new HashMap<>();
+
+  /** The names of the properties the bounds of each piece were calculated from */
+  private final Map<GamePiece, Set<String>> propertiesRead = new HashMap<>();
+
+  /** Pieces whose bounds were calculated from something which cannot be recorded, so may change with any property */
+  private final Set<GamePiece> anyProperty = new HashSet<>();
+
+  /** Counts the calls to {@link #invalidateAll()} */
+  private static final AtomicInteger GENERATION = new AtomicInteger();
+
+  /** The value of {@link #GENERATION} when the bounds were last calculated */
+  private int generation = GENERATION.get();
+
+  /** Counts the calls to {@link #propertyChanged} */
+  private static final AtomicLong PROPERTY_VERSION = new AtomicLong();
+
+  /** The {@link #PROPERTY_VERSION} at the last change to each property, by name */
+  private static final Map<String, Long> PROPERTY_VERSIONS = new ConcurrentHashMap<>();
+
+  /** The value of {@link #PROPERTY_VERSION} when the bounds were last calculated */
+  private long propertyVersion = PROPERTY_VERSION.get();
+
+  /** Whether each class of piece or trait is part of VASSAL, rather than module code */
+  private static final ClassValue<Boolean> VASSAL_CLASS = new ClassValue<>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      return type.getClassLoader() == PieceBoundsIndex.class.getClassLoader();
+    }
+  };
+
+  /**
+   * @param boundsFunction Function returning the bounds of a piece in map co-ordinates
+   */
+  public PieceBoundsIndex(Function<GamePiece, Rectangle> boundsFunction) {
+    this.boundsFunction = boundsFunction;
+  }
+
+  /**
+   * A piece has been added to the map, or has moved or changed size
+   *
+   * @param piece Piece added/changed
+   */
+  public void addOrUpdatePiece(GamePiece piece) {
+    dirty.add(piece);
+  }
+
+  /**
+   * A piece belonging to the map has moved or changed size. Pieces not already in the index are ignored.
+   *
+   * @param piece Piece changed
+   */
+  public void updatePiece(GamePiece piece) {
+    if (bounds.containsKey(piece) || unbounded.contains(piece)) {
+      dirty.add(piece);
+    }
+  }
+
+  /**
+   * A piece has been removed from the map
+   *
+   * @param piece Removed piece
+   */
+  public void removePiece(GamePiece piece) {
+    dirty.remove(piece);
+    unindex(piece);
+  }
+
+  /**
+   * Remove all pieces from the index
+   */
+  public void clear() {
+    cells.clear();
+    bounds.clear();
+    oversized.clear();
+    unbounded.clear();
+    dirty.clear();
+    readers.clear();
+    propertiesRead.clear();
+    anyProperty.clear();
+  }
+
+  /**
+   * Something has changed that may change the bounds of any piece on any Map without a change of state, such as
+   * the value of a Global Property or the side of the player. The bounds of all pieces in every index are
+   * calculated again on the next query.
+   */
+  public static void invalidateAll() {
+    GENERATION.incrementAndGet();
+  }
+
+  /**
+   * The value of a Global, Map or Zone property has changed. The bounds of the pieces in every index which were
+   * calculated from it are calculated again on the next query.
+   *
+   * @param name Name of the property
+   */
+  public static void propertyChanged(String name) {
+    if (name != null) {
+      PROPERTY_VERSIONS.put(name, PROPERTY_VERSION.incrementAndGet());
+    }
+  }
+
+  /**
+   * Traits which are part of VASSAL report their changes of size to the Map, through {@link Decorator#keyEvent} or
+   * {@link Decorator#pieceChanged}, but those from module code cannot be relied on to.
+   *
+   * @param piece A top-level piece, Stack or Deck
+   * @return true if every trait of the piece, or of every piece in the Stack, is part of VASSAL
+   */
+  public static boolean reportsChanges(GamePiece piece) {
+    if (piece instanceof Stack) {
+      final Stack s = (Stack) piece;
+      if (!VASSAL_CLASS.get(s.getClass())) {
+        return false;
+      }
+      for (int i = 0; i < s.getPieceCount(); ++i) {
+        if (!reportsChanges(s.getPieceAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    GamePiece p = piece;
+    while (VASSAL_CLASS.get(p.getClass())) {
+      if (!(p instanceof Decorator)) {
+        return true;
+      }
+      p = ((Decorator) p).getInner();
+    }
+    return false;
+  }
+
+  /**
+   * @param piece Piece to check
+   * @return true if the piece is in the index
+   */
+  public boolean contains(GamePiece piece) {
+    return bounds.containsKey(piece) || unbounded.contains(piece) || dirty.contains(piece);
+  }
+
+  /**
+   * @return The pieces in the index which have no bounds, and so cannot be found by region or point
+   */
+  public Set<GamePiece> getUnbounded() {
+    flush();
+    return unbounded;
+  }
+
+  /**
+   * @return The number of pieces in the index
+   */
+  public int getCount() {
+    flush();
+    return bounds.size();
+  }
+
+  /**
+   * Return the set of pieces whose bounds intersect a region of the map
+   *
+   * @param region Region in map co-ordinates
+   * @return Set of pieces, in no particular order
+   */
+  public Set<GamePiece> getPieces(Rectangle region) {
+    flush();
+
+    final Set<GamePiece> results = new HashSet<>();
+    final int minX = cell(region.x);
+    final int maxX = cell(region.x + region.width);
+    final int minY = cell(region.y);
+    final int maxY = cell(region.y + region.height);
+    for (int cx = minX; cx <= maxX; cx++) {
+      for (int cy = minY; cy <= maxY; cy++) {
+        final Set<GamePiece> cellPieces = cells.get(key(cx, cy));
+        if (cellPieces != null) {
+          for (final GamePiece piece : cellPieces) {
+            if (bounds.get(piece).intersects(region)) {
+              results.add(piece);
+            }
+          }
+        }
+      }
+    }
+
+    for (final GamePiece piece : oversized) {
+      if (bounds.get(piece).intersects(region)) {
+        results.add(piece);
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Return the set of pieces whose bounds contain a point on the map
+   *
+   * @param point Point in map co-ordinates
+   * @return Set of pieces, in no particular order
+   */
+  public Set<GamePiece> getPieces(Point point) {
+    flush();
+
+    final Set<GamePiece> results = new HashSet<>();
+    final Set<GamePiece> cellPieces = cells.get(key(cell(point.x), cell(point.y)));
+    if (cellPieces != null) {
+      for (final GamePiece piece : cellPieces) {
+        if (bounds.get(piece).contains(point)) {
+          results.add(piece);
+        }
+      }
+    }
+
+    for (final GamePiece piece : oversized) {
+      if (bounds.get(piece).contains(point)) {
+        results.add(piece);
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Return the pieces that may be visible in a region of the map, in the order they are drawn, so that only they need
+   * be painted. These are the pieces whose bounds intersect the region, together with any pieces whose bounds are not
+   * known, such as those without a position.
+   *
+   * @param region    Region in map co-ordinates
+   * @param drawOrder Pieces to choose from, in the order they are drawn, bottom first
+   * @return List of pieces, bottom first
+   */
+  public List<GamePiece> getPieces(Rectangle region, GamePiece[] drawOrder) {
+    final Set<GamePiece> inRegion = getPieces(region);
+
+    final List<GamePiece> results = new ArrayList<>(inRegion.size());
+    for (final GamePiece piece : drawOrder) {
+      if (inRegion.contains(piece) || !bounds.containsKey(piece)) {
+        results.add(piece);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Return the pieces that may be found at a point on the map, from the top of the draw order to the bottom, so that
+   * a hit test need only be made on them. These are the pieces whose bounds contain the point, together with any
+   * pieces whose bounds are not known, such as those without a position.
+   *
+   * @param point     Point in map co-ordinates
+   * @param drawOrder Pieces to choose from, in the order they are drawn, bottom first
+   * @return List of pieces, top first
+   */
+  public List<GamePiece> getPiecesTopDown(Point point, GamePiece[] drawOrder) {
+    final Set<GamePiece> atPoint = getPieces(point);
+
+    final List<GamePiece> results = new ArrayList<>(atPoint.size());
+    for (int i = drawOrder.length - 1; i >= 0; --i) {
+      final GamePiece piece = drawOrder[i];
+      if (atPoint.contains(piece) || !bounds.containsKey(piece)) {
+        results.add(piece);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Calculate the bounds of any dirty pieces and re-bucket them
+   */
+  private void flush() {
+    final int current = GENERATION.get();
+    if (current != generation) {
+      generation = current;
+      dirty.addAll(bounds.keySet());
+      dirty.addAll(unbounded);
+    }
+
+    // Read the version before the properties, so that a change made meanwhile is seen again next time
+    final long currentProperties = PROPERTY_VERSION.get();
+    if (currentProperties != propertyVersion) {
+      for (final Map.Entry<String, Set<GamePiece>> e : readers.entrySet()) {
+        final Long v = PROPERTY_VERSIONS.get(e.getKey());
+        if (v != null && v > propertyVersion) {
+          dirty.addAll(e.getValue());
+        }
+      }
+      dirty.addAll(anyProperty);
+      propertyVersion = currentProperties;
+    }
+
+    if (dirty.isEmpty()) {
+      return;
+    }
+
+    // Copy the dirty list, calculating bounds may cause further change notifications
+    final List<GamePiece> changed = new ArrayList<>(dirty);
+    dirty.clear();
+    for (final GamePiece piece : changed) {
+      unindex(piece);
+      index(piece);
+    }
+  }
+
+  private void index(GamePiece piece) {
+    final Rectangle r;
+    final PropertyDependencies.Recording recording = PropertyDependencies.startRecording();
+    try {
+      r = boundsFunction.apply(piece);
+    }
+    finally {
+      PropertyDependencies.stopRecording(recording);
+      if (recording.isCacheable()) {
+        final Set<String> names = recording.getPropertiesRead();
+        if (!names.isEmpty()) {
+          propertiesRead.put(piece, names);
+          for (final String name : names) {
+            readers.computeIfAbsent(name, k -> new HashSet<>()).add(piece);
+          }
+        }
+      }
+      else {
+        anyProperty.add(piece);
+      }
+    }
+
+    if (r == null) {
+      unbounded.add(piece);
+      return;
+    }
+
+    bounds.put(piece, r);
+
+    final int minX = cell(r.x);
+    final int maxX = cell(r.x + r.width);
+    final int minY = cell(r.y);
+    final int maxY = cell(r.y + r.height);
+    if ((long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_PIECE) {
+      oversized.add(piece);
+      return;
+    }
+
+    for (int cx = minX; cx <= maxX; cx++) {
+      for (int cy = minY; cy <= maxY; cy++) {
+        cells.computeIfAbsent(key(cx, cy), k -> new HashSet<>()).add(piece);
+      }
+    }
+  }
+
+  private void unindex(GamePiece piece) {
+    anyProperty.remove(piece);
+    final Set<String> names = propertiesRead.remove(piece);
+    if (names != null) {
+      for (final String name : names) {
+        final Set<GamePiece> pieces = readers.get(name);
+        if (pieces != null) {
+          pieces.remove(piece);
+          if (pieces.isEmpty()) {
+            readers.remove(name);
+          }
+        }
+      }
+    }
+
+    final Rectangle r = bounds.remove(piece);
+    if (r == null) {
+      unbounded.remove(piece);
+      return;
+    }
+
+    if (oversized.remove(piece)) {
+      return;
+    }
+
+    final int minX = cell(r.x);
+    final int maxX = cell(r.x + r.width);
+    final int minY = cell(r.y);
+    final int maxY = cell(r.y + r.height);
+    for (int cx = minX; cx <= maxX; cx++) {
+      for (int cy = minY; cy <= maxY; cy++) {
+        final Long key = key(cx, cy);
+        final Set<GamePiece> cellPieces = cells.get(key);
+        if (cellPieces != null) {
+          cellPieces.remove(piece);
+          if (cellPieces.isEmpty()) {
+            cells.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  private static int cell(int c) {
+    return Math.floorDiv(c, CELL_SIZE);
+  }
+
+  private static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xffffffffL);
+  }
+}
@@ -24,6 +24,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Maintain a reverse cross-reference of property values to GamePieces that have that value for
@@ -53,7 +54,9 @@ public class PiecePropertyIndex {
    */
   public void addOrUpdatePiece(GamePiece piece) {
 
-    final String newValue = (String) piece.getProperty(propertyName);
+    // Module-declared indexes may be on properties whose values are not Strings
+    final Object prop = piece.getProperty(propertyName);
+    final String newValue = prop == null ? null : prop.toString();
 
     // Do we know about this piece?
     if (values.containsKey(piece.getId())) {
@@ -117,4 +120,21 @@ public class PiecePropertyIndex {
     return results == null ? new HashSet<>() : results;
   }
 
+  /**
+   * Return the set of pieces whose value of the property we are indexing passes a test. The test is made once
+   * for each distinct value, rather than once for each piece.
+   *
+   * @param valueTest Test of the value, which may be null
+   * @return          Set of pieces with passing values
+   */
+  public Set<GamePiece> getPieces(Predicate<String> valueTest) {
+    final Set<GamePiece> results = new HashSet<>();
+    for (final Map.Entry<String, Set<GamePiece>> e : pieces.entrySet()) {
+      if (valueTest.test(e.getKey())) {
+        results.addAll(e.getValue());
+      }
+    }
+    return results;
+  }
+
 }
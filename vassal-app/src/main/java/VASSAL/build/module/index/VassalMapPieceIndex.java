@@ -25,15 +25,21 @@ import VASSAL.counters.GamePiece;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Maintain a set of Indexes about location related information of pieces on a Vassal Map.
  * 1. Maintain a Quadtree of x,y locations to enable fast direct lookup and ranged selections
  * 2. Maintain cross-references of all values for CurrentZone and LocationName to be able to
  *    quickly find all pieces in a specified Zone, Region or module defined location like a Hex.
+ * 3. Maintain cross-references of all values for any further properties the module has declared
+ *    as indexed, to be able to quickly find all pieces with a given value of one of them.
  */
 public class VassalMapPieceIndex {
 
@@ -46,14 +52,30 @@ public class VassalMapPieceIndex {
   /** A property cross-reference of LocationName for fast lookup of pieces in a given region or board position such as hex */
   private final PiecePropertyIndex locationIndex;
 
+  /** Property cross-references for the properties declared as indexed by the module */
+  private final java.util.Map<String, PiecePropertyIndex> propertyIndexes = new HashMap<>();
+
   /** The Vassal Map these indexes apply to */
   private final Map map;
 
   public VassalMapPieceIndex(Map map) {
+    this(map, Collections.emptySet());
+  }
+
+  /**
+   * @param map                Map to index
+   * @param indexedProperties  Names of additional properties to maintain cross-references for
+   */
+  public VassalMapPieceIndex(Map map, Collection<String> indexedProperties) {
     this.map = map;
     qtree = new VassalMapQuadTree(map);
     zoneIndex = new PiecePropertyIndex(BasicPiece.CURRENT_ZONE);
     locationIndex = new PiecePropertyIndex(BasicPiece.LOCATION_NAME);
+    for (final String propertyName : indexedProperties) {
+      if (!BasicPiece.CURRENT_ZONE.equals(propertyName) && !BasicPiece.LOCATION_NAME.equals(propertyName)) {
+        propertyIndexes.put(propertyName, new PiecePropertyIndex(propertyName));
+      }
+    }
   }
 
   /**
@@ -78,6 +100,17 @@ public class VassalMapPieceIndex {
     }
     zoneIndex.addOrUpdatePiece(piece);
     locationIndex.addOrUpdatePiece(piece);
+    updateProperties(piece);
+  }
+
+  /**
+   * The state of a piece on our map has changed without it moving, update the declared property indexes.
+   * @param piece Piece changed
+   */
+  public void updateProperties(GamePiece piece) {
+    for (final PiecePropertyIndex index : propertyIndexes.values()) {
+      index.addOrUpdatePiece(piece);
+    }
   }
 
   /**
@@ -88,6 +121,9 @@ public class VassalMapPieceIndex {
     qtree.removePiece(piece);
     zoneIndex.removePiece(piece);
     locationIndex.removePiece(piece);
+    for (final PiecePropertyIndex index : propertyIndexes.values()) {
+      index.removePiece(piece);
+    }
   }
 
   /**
@@ -172,8 +208,32 @@ public class VassalMapPieceIndex {
       return locationIndex.getPieces(propertyValue);
     }
     else {
-      return new HashSet<>();
+      final PiecePropertyIndex index = propertyIndexes.get(propertyName);
+      return index == null ? new HashSet<>() : index.getPieces(propertyValue);
     }
   }
+
+  public Set<GamePiece> getPieces(String propertyName, Predicate<String> valueTest) {
+    if (BasicPiece.CURRENT_ZONE.equals(propertyName)) {
+      return zoneIndex.getPieces(valueTest);
+    }
+    else if (BasicPiece.LOCATION_NAME.equals(propertyName)) {
+      return locationIndex.getPieces(valueTest);
+    }
+    else {
+      final PiecePropertyIndex index = propertyIndexes.get(propertyName);
+      return index == null ? new HashSet<>() : index.getPieces(valueTest);
+    }
+  }
+
+  /**
+   * @param propertyName Property name
+   * @return true if pieces can be looked up by their value of this property
+   */
+  public boolean isIndexed(String propertyName) {
+    return BasicPiece.CURRENT_ZONE.equals(propertyName)
+      || BasicPiece.LOCATION_NAME.equals(propertyName)
+      || propertyIndexes.containsKey(propertyName);
+  }
 }
 
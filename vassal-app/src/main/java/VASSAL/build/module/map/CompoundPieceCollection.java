@@ -41,12 +41,20 @@ public abstract class CompoundPieceCollection implements PieceCollection {
   protected SimplePieceCollection[] layers; // List of pieces in each layer
   protected int bottomLayer = 0;            // Current bottom layer (provides option to rotate layer depth)
   protected boolean[] enabled;              // Flags indicating which layers are presently enabled/visible
+  private int modCount;                     // Changes to the layers, not counting changes within them
 
   protected CompoundPieceCollection(int layerCount) {
     initLayers(layerCount);
   }
 
   protected void initLayers(int layerCount) {
+    // Keep the count rising when the old layers are thrown away
+    if (layers != null) {
+      for (final SimplePieceCollection layer : layers) {
+        modCount += layer.getModCount();
+      }
+    }
+    modCount++;
     layers = new SimplePieceCollection[layerCount];
     enabled = new boolean[layerCount];
     for (int i = 0; i < layers.length; ++i) {
@@ -280,6 +288,7 @@ public abstract class CompoundPieceCollection implements PieceCollection {
    * Set a new bottom layer. Take care of wrapping around ends of layer list.
    */
   public void setBottomLayer(int layer) {
+    modCount++;
     bottomLayer = layer;
     if (bottomLayer < 0) bottomLayer = getLayerCount() - 1;
     if (bottomLayer >= getLayerCount()) bottomLayer = 0;
@@ -341,6 +350,7 @@ public abstract class CompoundPieceCollection implements PieceCollection {
   public void setLayerEnabled(int layer, boolean b) {
     if (layer >= 0 && layer < layers.length) {
       enabled[layer] = b;
+      modCount++;
     }
   }
 
@@ -351,6 +361,7 @@ public abstract class CompoundPieceCollection implements PieceCollection {
   public void toggleLayerEnabled(int layer) {
     if (layer >= 0 && layer < layers.length) {
       enabled[layer] = !enabled[layer];
+      modCount++;
     }
   }
 
@@ -379,5 +390,18 @@ public abstract class CompoundPieceCollection implements PieceCollection {
     for (int i = 0; i < layers.length; i++) {
       enabled[i] = true;
     }
+    modCount++;
+  }
+
+  /**
+   * @return the sum of the changes to the layers and the changes within each layer, which only ever increases
+   */
+  @Override
+  public int getModCount() {
+    int count = modCount;
+    for (final SimplePieceCollection layer : layers) {
+      count += layer.getModCount();
+    }
+    return count;
   }
 }
@@ -559,6 +559,11 @@ public class Flare extends AbstractConfigurable
     return null;
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { COMMAND_PREFIX };
+  }
+
   @Override
   public Class<?>[] getAllowableConfigureComponents() {
     return new Class[0];
@@ -52,6 +52,11 @@ public class MapCenterer extends AbstractBuildable implements MouseListener {
    */
   protected PieceFinder createPieceFinder() {
     return new PieceFinder.PieceInStack() {
+      @Override
+      public boolean isBounded() {
+        return true;
+      }
+
       @Override
       public Object visitDeck(Deck d) {
         final Point pos = d.getPosition();
@@ -75,6 +75,11 @@ public class MenuDisplayer extends MouseAdapter implements Buildable {
    */
   protected PieceFinder createTargetSelector() {
     return new PieceFinder.PieceInStack() {
+      @Override
+      public boolean isBounded() {
+        return true;
+      }
+
       @Override
       public Object visitDeck(Deck d) {
         final Point pos = d.getPosition();
@@ -26,6 +26,7 @@ import VASSAL.command.ChangeTracker;
 import VASSAL.command.Command;
 import VASSAL.command.MovePiece;
 import VASSAL.command.NullCommand;
+import VASSAL.counters.Decorator;
 import VASSAL.counters.GamePiece;
 import VASSAL.counters.MovementMarkable;
 import VASSAL.counters.PieceAccess;
@@ -127,6 +128,7 @@ public class MovementReporter {
       if (p.getId() != null) {
         final ChangeTracker comm = new ChangeTracker(p);
         p.setProperty(Properties.MOVED, Boolean.TRUE);
+        Decorator.pieceChanged(p);
         c = comm.getChangeCommand();
       }
     }
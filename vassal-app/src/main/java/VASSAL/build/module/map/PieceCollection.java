@@ -54,4 +54,12 @@ public interface PieceCollection {
   void add(GamePiece p);
   /** Remove all pieces */
   void clear();
+  /**
+   * Return a count which changes whenever pieces are added, removed or reordered, or layers are shown, hidden or
+   * rotated, so that the draw order need only be fetched again after a change. Collections which do not keep such a
+   * count return -1, and must be assumed to have changed every time.
+   */
+  default int getModCount() {
+    return -1;
+  }
 }
@@ -605,6 +605,11 @@ public class PieceMover extends AbstractBuildable
         final Point p = new Point(pt.x - pos.x, pt.y - pos.y);
         return d.boundingBox().contains(p) && d.getPieceCount() > 0 ? d : null;
       }
+
+      @Override
+      public boolean isBounded() {
+        return true;
+      }
     };
   }
 
@@ -824,6 +829,7 @@ public class PieceMover extends AbstractBuildable
           final ChangeTracker comm = new ChangeTracker(p);
           p.setProperty((!hasMoved || locDefinitelyChanged) ? Properties.MOVED : Properties.MAYBE_MOVED,
                         hasMoved ? Boolean.TRUE : Boolean.FALSE);
+          Decorator.pieceChanged(p);
           c = c.append(comm.getChangeCommand());
         }
       }
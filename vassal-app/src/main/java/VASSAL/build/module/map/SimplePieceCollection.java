@@ -30,6 +30,7 @@ import VASSAL.counters.GamePiece;
  */
 public class SimplePieceCollection implements PieceCollection {
   private final List<GamePiece> pieces = new ArrayList<>();
+  private int modCount;
 
   /**
    * Returns the index of a piece.  When painting the map, pieces
@@ -50,11 +51,13 @@ public class SimplePieceCollection implements PieceCollection {
   @Override
   public void add(GamePiece p) {
     pieces.add(p);
+    modCount++;
   }
 
   @Override
   public void clear() {
     pieces.clear();
+    modCount++;
   }
 
   @Override
@@ -75,6 +78,7 @@ public class SimplePieceCollection implements PieceCollection {
   private void removePieceAt(int gone) {
     if (gone >= 0) {
       pieces.remove(gone);
+      modCount++;
     }
   }
 
@@ -83,6 +87,7 @@ public class SimplePieceCollection implements PieceCollection {
     if (i >= 0) {
       pieces.remove(i);
       pieces.add(pos, p);
+      modCount++;
     }
   }
 
@@ -97,6 +102,12 @@ public class SimplePieceCollection implements PieceCollection {
     if (i >= 0) {
       pieces.remove(p);
       pieces.add(p);
+      modCount++;
     }
   }
+
+  @Override
+  public int getModCount() {
+    return modCount;
+  }
 }
@@ -0,0 +1,217 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.JComponent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.GlobalOptions;
+import VASSAL.build.module.Map;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.Decorator;
+import VASSAL.counters.Embellishment;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Properties;
+import VASSAL.counters.Stack;
+import VASSAL.tools.concurrent.DaemonThreadFactory;
+import VASSAL.tools.imageop.ImageOp;
+
+/**
+ * Loads the scaled images of the pieces around the viewport of a
+ * {@link Map} in the background after its zoom changes, so that they are
+ * already in the image cache by the time they are painted.
+ *
+ * Pieces are only ever drawn on the EDT, as drawing evaluates expressions
+ * and properties which are not safe to touch elsewhere. So the
+ * {@link ImageOp}s that drawing each piece at the new zoom would use are
+ * collected on the EDT, and only their images are fetched in the
+ * background. These are the images of each {@link BasicPiece} and of the
+ * current level of each {@link Embellishment}; pieces hidden or masked
+ * from this player are skipped.
+ *
+ * Pieces nearest the center of the view are fetched first. Starting
+ * another prefetch, as when the zoom changes again before the last one is
+ * done, abandons the images not yet fetched.
+ *
+ * @since 3.8.0
+ */
+public class ZoomPrefetcher {
+  private static final Logger logger =
+    LoggerFactory.getLogger(ZoomPrefetcher.class);
+
+  /** Leave half the cores for painting and everything else */
+  private static final Executor EXECUTOR;
+
+  static {
+    final int n = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    final ThreadPoolExecutor ex = new ThreadPoolExecutor(
+      n, n, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new DaemonThreadFactory(ZoomPrefetcher.class.getSimpleName())
+    );
+    ex.allowCoreThreadTimeOut(true);
+    EXECUTOR = ex;
+  }
+
+  private final Map map;
+  private final Executor executor;
+
+  /** Incremented to abandon the pieces queued by earlier prefetches */
+  private final AtomicInteger generation = new AtomicInteger();
+
+  public ZoomPrefetcher(Map map) {
+    this(map, EXECUTOR);
+  }
+
+  ZoomPrefetcher(Map map, Executor executor) {
+    this.map = map;
+    this.executor = executor;
+  }
+
+  /**
+   * @return the margin around the view in which to prefetch pieces, as a
+   * percentage of the size of the view
+   */
+  public static int getMargin() {
+    final Object val = GameModule.getGameModule().getPrefs()
+                                 .getValue(GlobalOptions.ZOOM_PREFETCH_MARGIN);
+    return val instanceof Integer ? Math.max(0, (Integer) val) : 0;
+  }
+
+  /**
+   * Prefetches the pieces in and around the current view of the map, at
+   * the current zoom. Must be called on the EDT.
+   */
+  public void prefetch() {
+    cancel();
+
+    final JComponent view = map.getView();
+    if (!view.isShowing()) {
+      return;
+    }
+
+    final GraphicsConfiguration gc = view.getGraphicsConfiguration();
+    final double os_scale =
+      gc == null ? 1.0 : gc.getDefaultTransform().getScaleX();
+
+    final Rectangle region = map.componentToMap(view.getVisibleRect());
+    final Point center = new Point(
+      (int) region.getCenterX(), (int) region.getCenterY()
+    );
+
+    final int margin = getMargin();
+    region.grow(region.width * margin / 100, region.height * margin / 100);
+
+    final List<GamePiece> pieces = new ArrayList<>();
+    for (final GamePiece p : map.getPiecesInRegion(region)) {
+      // stacks are drawn piece by piece
+      if (p instanceof Stack) {
+        pieces.addAll(((Stack) p).asList());
+      }
+      else {
+        pieces.add(p);
+      }
+    }
+
+    pieces.sort(Comparator.comparingDouble(p -> {
+      final Point pos = p.getPosition();
+      return pos == null ? Double.MAX_VALUE : pos.distanceSq(center);
+    }));
+
+    final double zoom = map.getZoom() * os_scale;
+    final List<ImageOp> ops = new ArrayList<>();
+    for (final GamePiece p : pieces) {
+      collectImageOps(p, zoom, ops);
+    }
+    schedule(ops);
+  }
+
+  /**
+   * Adds the operations giving the images drawing a piece at a zoom would
+   * use. Must be called on the EDT.
+   *
+   * @param piece the piece
+   * @param zoom the scaling factor
+   * @param ops the list to add to
+   */
+  static void collectImageOps(GamePiece piece, double zoom, List<ImageOp> ops) {
+    if (Boolean.TRUE.equals(piece.getProperty(Properties.INVISIBLE_TO_ME)) ||
+        Boolean.TRUE.equals(piece.getProperty(Properties.OBSCURED_TO_ME))) {
+      return;
+    }
+
+    GamePiece p = piece;
+    while (p instanceof Decorator) {
+      if (p instanceof Embellishment) {
+        addOp(((Embellishment) p).getCurrentImageOp(zoom), ops);
+      }
+      p = ((Decorator) p).getInner();
+    }
+
+    if (p instanceof BasicPiece) {
+      addOp(((BasicPiece) p).getImageOp(zoom), ops);
+    }
+  }
+
+  private static void addOp(ImageOp op, List<ImageOp> ops) {
+    if (op != null) {
+      ops.add(op);
+    }
+  }
+
+  /**
+   * Abandons any images not yet fetched by the last prefetch.
+   */
+  public void cancel() {
+    generation.incrementAndGet();
+  }
+
+  void schedule(List<ImageOp> ops) {
+    final int gen = generation.get();
+
+    for (final ImageOp op : ops) {
+      executor.execute(() -> {
+        if (generation.get() != gen) {
+          return;
+        }
+
+        try {
+          op.getImage();
+        }
+        catch (RuntimeException e) {
+          // the image will be loaded, and any error reported, when painted
+          logger.debug("Failed to prefetch {}", op, e); //NON-NLS
+        }
+      });
+    }
+  }
+}
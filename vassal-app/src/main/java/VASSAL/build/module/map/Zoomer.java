@@ -99,6 +99,8 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
 
   protected MouseWheelListener listener;
 
+  private ZoomPrefetcher prefetcher;
+
   protected State state;
 
   protected static final double[] defaultZoomLevels = {
@@ -687,6 +689,7 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
     map = (Map) b;
 
     map.setZoomer(this);
+    prefetcher = new ZoomPrefetcher(map);
     map.getToolBar().add(zoomInButton);
     map.getToolBar().add(zoomPickButton);
     map.getToolBar().add(zoomOutButton);
@@ -866,6 +869,11 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
       map.getComponent().removeMouseWheelListener(listener);
       listener = null;
     }
+
+    if (prefetcher != null) {
+      prefetcher.cancel();
+      prefetcher = null;
+    }
   }
 
   public double getZoomFactor() {
@@ -892,6 +900,11 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
 
     map.centerAt(center);
     map.repaint(true);
+
+    // render the pieces at the new zoom while the boards are painting
+    if (prefetcher != null) {
+      prefetcher.prefetch();
+    }
   }
 
   public void setZoomLevel(int l) {
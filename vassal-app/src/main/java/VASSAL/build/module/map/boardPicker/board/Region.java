@@ -78,10 +78,12 @@ public class Region extends AbstractConfigurable {
 
   public void setOrigin(Point p) {
     origin = p;
+    if (myGrid != null) myGrid.invalidateIndex();
   }
 
   public void moveOrigin(int dx, int dy) {
     origin.translate(dx, dy);
+    if (myGrid != null) myGrid.invalidateIndex();
   }
 
   public static final String NAME = "name"; //$NON-NLS-1$
@@ -167,12 +169,14 @@ public class Region extends AbstractConfigurable {
         val = Integer.valueOf((String) val);
       }
       origin.x = (Integer) val;
+      if (myGrid != null) myGrid.invalidateIndex();
     }
     else if (Y.equals(key)) {
       if (val instanceof String) {
         val = Integer.valueOf((String) val);
       }
       origin.y = (Integer) val;
+      if (myGrid != null) myGrid.invalidateIndex();
     }
   }
 
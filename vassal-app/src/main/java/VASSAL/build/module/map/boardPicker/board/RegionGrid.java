@@ -94,6 +94,7 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -114,12 +115,27 @@ public class RegionGrid extends AbstractConfigurable implements MapGrid, Configu
 
   protected GridNumbering gridNumbering;
 
+  /** Index of the region origins for snapping, and the origins in the order it lists them */
+  private static final class SnapIndex {
+    private final RegionIndex index;
+    private final Point[] points;
+
+    SnapIndex(Point[] points) {
+      this.points = points;
+      index = new RegionIndex(Arrays.asList(points));
+    }
+  }
+
+  // Published as a whole, so that a snap never sees an index with the points of another; null until needed
+  private volatile SnapIndex snapIndex;
+
   public Map<Point, Region> getRegionList() {
     return regionList;
   }
 
   public void addRegion(Region a) {
     regionList.put(a.getOrigin(), a);
+    invalidateIndex();
     if (inConfig && regionConfigurer != null) {
       regionConfigurer.view.repaint();
     }
@@ -127,11 +143,21 @@ public class RegionGrid extends AbstractConfigurable implements MapGrid, Configu
 
   public void removeRegion(Region a) {
     regionList.remove(a.getOrigin());
+    invalidateIndex();
   }
 
   public void removeAllRegions() {
     regionList.clear();
     buildComponents.clear();
+    invalidateIndex();
+  }
+
+  /**
+   * Discard the index used for snapping, so that it is rebuilt from the current regions when next needed.
+   * Called whenever a region is added, removed or moved.
+   */
+  void invalidateIndex() {
+    snapIndex = null;
   }
 
   /**
@@ -367,21 +393,17 @@ public class RegionGrid extends AbstractConfigurable implements MapGrid, Configu
   // Internal routine to find closest point for region name reporting
   //
   protected Point doSnap(Point p) {
-    double distSq, minDistSq = Double.MAX_VALUE;
-    Point snapPoint = p;
-
-    // Iterate over each grid point and determine the closest.
-    for (final Point checkPoint : regionList.keySet()) {
-      distSq =
-          (p.x - checkPoint.x) * (p.x - checkPoint.x)
-          + (p.y - checkPoint.y) * (p.y - checkPoint.y);
-      if (distSq < minDistSq) {
-        minDistSq = distSq;
-        snapPoint = checkPoint;
-      }
+    SnapIndex idx = snapIndex;
+
+    // Rebuild the index if the regions have changed, including directly through getRegionList()
+    if (idx == null || idx.points.length != regionList.size()) {
+      idx = new SnapIndex(regionList.keySet().toArray(new Point[0]));
+      snapIndex = idx;
     }
 
-    return new Point(snapPoint);
+    // Of equally close points, the index returns the first, as a scan in the same order would
+    final int i = idx.index.nearest(p);
+    return new Point(i < 0 ? p : idx.points[i]);
   }
 
   @Override
@@ -0,0 +1,192 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map.boardPicker.board;
+
+import java.awt.Point;
+import java.util.Collection;
+
+/**
+ * A bucket grid over the origins of the {@link Region}s of a {@link RegionGrid}, for finding the origin nearest a
+ * point without checking every one.
+ *
+ * The bounding box of the origins is divided into square cells holding about two origins each. A query searches
+ * the cell containing the point, then rings of cells around it, until no unsearched cell can hold an origin as near
+ * as the nearest found. Where several origins are equally near, the one listed first when the index was built is
+ * returned, so the result is the same as scanning them in that order.
+ *
+ * The index holds copies of the origins, so it must be rebuilt when any of them change.
+ *
+ * @since 3.8.0
+ */
+class RegionIndex {
+
+  private final int minX;
+  private final int minY;
+  private final int cell;
+  private final int cols;
+  private final int rows;
+
+  /** The origins, in the order they were listed */
+  private final int[] xs;
+  private final int[] ys;
+
+  /** The indexes into xs and ys of the origins in each cell, cell by cell */
+  private final int[] cellStart;
+  private final int[] members;
+
+  /**
+   * @param origins The points to index, in the order ties should be broken
+   */
+  RegionIndex(Collection<Point> origins) {
+    final int n = origins.size();
+    xs = new int[n];
+    ys = new int[n];
+
+    int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+    int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+    int i = 0;
+    for (final Point p : origins) {
+      xs[i] = p.x;
+      ys[i] = p.y;
+      x0 = Math.min(x0, p.x);
+      y0 = Math.min(y0, p.y);
+      x1 = Math.max(x1, p.x);
+      y1 = Math.max(y1, p.y);
+      ++i;
+    }
+
+    if (n == 0) {
+      x0 = y0 = x1 = y1 = 0;
+    }
+
+    minX = x0;
+    minY = y0;
+
+    // Aim for about two origins per cell
+    final double w = (double) x1 - x0 + 1;
+    final double h = (double) y1 - y0 + 1;
+    cell = (int) Math.max(1, Math.ceil(Math.sqrt(w * h * 2 / Math.max(n, 1))));
+    cols = (int) Math.min(Math.ceil(w / cell), Integer.MAX_VALUE / 2);
+    rows = (int) Math.min(Math.ceil(h / cell), Integer.MAX_VALUE / 2 / cols);
+
+    // Counting sort of the origins into their cells
+    cellStart = new int[cols * rows + 1];
+    for (i = 0; i < n; ++i) {
+      ++cellStart[cellOf(xs[i], ys[i]) + 1];
+    }
+    for (i = 0; i < cols * rows; ++i) {
+      cellStart[i + 1] += cellStart[i];
+    }
+
+    members = new int[n];
+    final int[] next = new int[cols * rows];
+    for (i = 0; i < n; ++i) {
+      final int c = cellOf(xs[i], ys[i]);
+      members[cellStart[c] + next[c]++] = i;
+    }
+  }
+
+  private int cellOf(int x, int y) {
+    final int cx = Math.min((x - minX) / cell, cols - 1);
+    final int cy = Math.min((y - minY) / cell, rows - 1);
+    return cy * cols + cx;
+  }
+
+  // The nearest origin found by the current query
+  private int best;
+  private long bestDistSq;
+
+  /**
+   * @param p Point to search from
+   * @return the index, in the order they were listed, of the origin nearest p, or -1 if there are none
+   */
+  synchronized int nearest(Point p) {
+    if (xs.length == 0) {
+      return -1;
+    }
+
+    // The cell nearest p, which p may lie outside
+    final int cx = (int) Math.max(0, Math.min(((long) p.x - minX) / cell, cols - 1));
+    final int cy = (int) Math.max(0, Math.min(((long) p.y - minY) / cell, rows - 1));
+
+    best = -1;
+    bestDistSq = Long.MAX_VALUE;
+
+    for (int r = 0; ; ++r) {
+      final int left = cx - r, right = cx + r, top = cy - r, bottom = cy + r;
+
+      // Only the edge of each ring of cells is new
+      for (int y = Math.max(top, 0); y <= Math.min(bottom, rows - 1); ++y) {
+        if (y == top || y == bottom) {
+          for (int x = Math.max(left, 0); x <= Math.min(right, cols - 1); ++x) {
+            search(p, y * cols + x);
+          }
+        }
+        else {
+          if (left >= 0) {
+            search(p, y * cols + left);
+          }
+          if (right < cols) {
+            search(p, y * cols + right);
+          }
+        }
+      }
+
+      if (left <= 0 && top <= 0 && right >= cols - 1 && bottom >= rows - 1) {
+        break;
+      }
+
+      if (best >= 0) {
+        // Every origin not yet searched lies beyond one of the sides of the square searched so far which is
+        // still inside the grid
+        long gap = Long.MAX_VALUE;
+        if (left > 0) {
+          gap = Math.min(gap, (long) p.x - ((long) minX + (long) left * cell));
+        }
+        if (right < cols - 1) {
+          gap = Math.min(gap, (long) minX + (long) (right + 1) * cell - p.x);
+        }
+        if (top > 0) {
+          gap = Math.min(gap, (long) p.y - ((long) minY + (long) top * cell));
+        }
+        if (bottom < rows - 1) {
+          gap = Math.min(gap, (long) minY + (long) (bottom + 1) * cell - p.y);
+        }
+        if (gap > 0 && gap * gap > bestDistSq) {
+          break;
+        }
+      }
+    }
+
+    return best;
+  }
+
+  private void search(Point p, int c) {
+    for (int m = cellStart[c]; m < cellStart[c + 1]; ++m) {
+      final int i = members[m];
+      final long dx = (long) p.x - xs[i];
+      final long dy = (long) p.y - ys[i];
+      final long distSq = dx * dx + dy * dy;
+      if (distSq < bestDistSq || (distSq == bestDistSq && i < best)) {
+        bestDistSq = distSq;
+        best = i;
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map.boardPicker.board;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
+
+/**
+ * A grid of buckets over the bounding boxes of the {@link Zone}s of a {@link ZonedGrid}, so that finding the zone
+ * containing a point need only test the polygons of the zones whose bounding boxes could contain it.
+ *
+ * Each cell lists, in the order of the zones in the grid, the zones whose bounding boxes overlap it. A zone of a
+ * class which overrides {@link Zone#contains} could contain points outside its polygon, so it is listed in every
+ * cell and also tested for points outside all the cells. The first zone containing a point is therefore the same
+ * as the first found by testing every zone in order.
+ *
+ * The index holds the bounds of the zones as they were when it was built, so it must be rebuilt when any zone is
+ * added, removed or reshaped.
+ *
+ * @since 3.8.0
+ */
+class ZoneIndex {
+
+  /** Don't spend more than this many cells on an index */
+  private static final int MAX_CELLS = 1 << 14;
+
+  private final Zone[] zones;
+
+  /** The zones to test for a point outside all the cells */
+  private final int[] outside;
+
+  private final int minX;
+  private final int minY;
+  private final int cellW;
+  private final int cellH;
+  private final int cols;
+  private final int rows;
+  private final int[][] cells;
+
+  /**
+   * @param list The zones, in the order they should be tested
+   */
+  ZoneIndex(List<Zone> list) {
+    zones = list.toArray(new Zone[0]);
+
+    final Rectangle[] bounds = new Rectangle[zones.length];
+    final List<Integer> unbounded = new ArrayList<>();
+    Rectangle all = null;
+    for (int i = 0; i < zones.length; ++i) {
+      if (overridesContains(zones[i])) {
+        unbounded.add(i);
+        continue;
+      }
+
+      // Polygon.contains() is false outside its bounding box, and everywhere if it is empty
+      final Rectangle b = zones[i].getPolygon().getBounds();
+      if (b.width > 0 && b.height > 0) {
+        bounds[i] = b;
+        all = all == null ? new Rectangle(b) : all.union(b);
+      }
+    }
+
+    outside = unbounded.stream().mapToInt(Integer::intValue).toArray();
+
+    if (all == null) {
+      minX = minY = 0;
+      cellW = cellH = 1;
+      cols = rows = 0;
+      cells = new int[0][];
+      return;
+    }
+
+    // Aim for a few cells per zone
+    final int side = (int) Math.ceil(Math.sqrt(Math.min(MAX_CELLS, 4 * Math.max(zones.length, 1))));
+    minX = all.x;
+    minY = all.y;
+    cellW = Math.max(1, (int) Math.ceil((double) all.width / side));
+    cellH = Math.max(1, (int) Math.ceil((double) all.height / side));
+    cols = (int) Math.ceil((double) all.width / cellW);
+    rows = (int) Math.ceil((double) all.height / cellH);
+
+    final List<List<Integer>> lists = new ArrayList<>(cols * rows);
+    for (int c = 0; c < cols * rows; ++c) {
+      lists.add(new ArrayList<>());
+    }
+
+    // Zones are added in order, so each cell lists its zones in order
+    for (int i = 0; i < zones.length; ++i) {
+      if (bounds[i] == null) {
+        if (unbounded.contains(i)) {
+          for (final List<Integer> l : lists) {
+            l.add(i);
+          }
+        }
+        continue;
+      }
+
+      final Rectangle b = bounds[i];
+      final int x0 = (b.x - minX) / cellW;
+      final int x1 = (b.x + b.width - 1 - minX) / cellW;
+      final int y0 = (b.y - minY) / cellH;
+      final int y1 = (b.y + b.height - 1 - minY) / cellH;
+      for (int y = y0; y <= y1; ++y) {
+        for (int x = x0; x <= x1; ++x) {
+          lists.get(y * cols + x).add(i);
+        }
+      }
+    }
+
+    cells = new int[cols * rows][];
+    for (int c = 0; c < cells.length; ++c) {
+      cells[c] = lists.get(c).stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  private static boolean overridesContains(Zone zone) {
+    try {
+      return zone.getClass().getMethod("contains", Point.class).getDeclaringClass() != Zone.class; //NON-NLS
+    }
+    catch (NoSuchMethodException | SecurityException e) {
+      return true;
+    }
+  }
+
+  /**
+   * @return the number of zones indexed
+   */
+  int size() {
+    return zones.length;
+  }
+
+  /**
+   * @param p Point to find
+   * @return the first zone containing the point, or null if none does
+   */
+  Zone find(Point p) {
+    final long x = (long) p.x - minX;
+    final long y = (long) p.y - minY;
+    final int[] candidates = x >= 0 && y >= 0 && x < (long) cols * cellW && y < (long) rows * cellH ?
+      cells[(int) (y / cellH) * cols + (int) (x / cellW)] : outside;
+
+    for (final int i : candidates) {
+      if (zones[i].contains(p)) {
+        return zones[i];
+      }
+    }
+    return null;
+  }
+}
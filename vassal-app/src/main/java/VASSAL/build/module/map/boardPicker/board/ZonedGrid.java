@@ -55,6 +55,9 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
   protected GridContainer container;
   protected ZonedGridHighlighter zoneHighlighters;
 
+  // Index of the zones' bounds for finding the zone containing a point; null until needed
+  private ZoneIndex zoneIndex;
+
   @Override
   public String[] getAttributeDescriptions() {
     return new String[0];
@@ -257,11 +260,9 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
   @Override
   public String locationName(Point p) {
     String name = null;
-    for (final Zone zone : zones) {
-      if (zone.contains(p)) {
-        name = zone.locationName(p);
-        break;
-      }
+    final Zone zone = findZone(p);
+    if (zone != null) {
+      name = zone.locationName(p);
     }
     if (name == null
         && background != null) {
@@ -273,11 +274,9 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
   @Override
   public String localizedLocationName(Point p) {
     String name = null;
-    for (final Zone zone : zones) {
-      if (zone.contains(p)) {
-        name = zone.localizedLocationName(p);
-        break;
-      }
+    final Zone zone = findZone(p);
+    if (zone != null) {
+      name = zone.localizedLocationName(p);
     }
     if (name == null
         && background != null) {
@@ -327,13 +326,20 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
     return a;
   }
 
+  /**
+   * @param p Point on the board
+   * @return the first of our zones containing the point, or null if none does
+   */
   public Zone findZone(Point p) {
-    for (final Zone zone : zones) {
-      if (zone.contains(p)) {
-        return zone;
-      }
+    ZoneIndex index = zoneIndex;
+
+    // Rebuild the index if the zones have changed, including directly through the zones list
+    if (index == null || index.size() != zones.size()) {
+      index = new ZoneIndex(zones);
+      zoneIndex = index;
     }
-    return null;
+
+    return index.find(p);
   }
 
   public Zone findZone(String name) {
@@ -370,20 +376,29 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
 
   @Override
   public boolean isLocationRestricted(Point p) {
-    for (final Zone zone : zones) {
-      if (zone.contains(p)) {
-        return zone.getGrid() != null && zone.getGrid().isLocationRestricted(p);
-      }
+    final Zone zone = findZone(p);
+    if (zone != null) {
+      return zone.getGrid() != null && zone.getGrid().isLocationRestricted(p);
     }
     return background != null && background.isLocationRestricted(p);
   }
 
   public void addZone(Zone z) {
     zones.add(z);
+    zonesChanged();
   }
 
   public void removeZone(Zone z) {
     zones.remove(z);
+    zonesChanged();
+  }
+
+  /**
+   * Discard everything cached about the shapes of our zones. Called whenever a zone is added, removed or reshaped.
+   */
+  public void zonesChanged() {
+    zoneIndex = null;
+    clipCache.clear();
   }
 
   public Iterator<Zone> getZones() {
@@ -258,6 +258,9 @@ public class Zone extends AbstractConfigurable implements GridContainer, Mutable
     }
     else if (PATH.equals(key)) {
       myPolygon = PolygonEditor.stringToPolygon((String) val);
+      if (parentGrid != null) {
+        parentGrid.zonesChanged();
+      }
     }
     else if (LOCATION_FORMAT.equals(key)) {
       locationFormat = (String) val;
@@ -62,6 +62,9 @@ public class MetaDataFactory {
 
       // Check if it is a Save Game file
       ZipEntry entry = zip.getEntry(GameState.SAVEFILE_ZIP_ENTRY);
+      if (entry == null) {
+        entry = zip.getEntry(GameState.SAVEFILE_ENVELOPE_ZIP_ENTRY);
+      }
       if (entry != null) {
         return new SaveMetaData(zip);
       }
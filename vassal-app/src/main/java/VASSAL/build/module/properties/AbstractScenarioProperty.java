@@ -67,7 +67,7 @@ public abstract class AbstractScenarioProperty extends GlobalProperty {
     final GameState gs = gm.getGameState();
     if (!gs.getGameComponents().contains(this)) {
       gs.addGameComponent(this);
-      gm.addCommandEncoder(this);
+      addCommandEncoder(gm);
       setAllAttributesUntranslatable();
     }
   }
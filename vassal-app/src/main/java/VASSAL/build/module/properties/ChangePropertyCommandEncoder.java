@@ -70,6 +70,11 @@ public class ChangePropertyCommandEncoder implements CommandEncoder {
     return new ChangePropertyCommand(p, key, oldValue, newValue);
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { COMMAND_PREFIX };
+  }
+
   @Override
   public String encode(Command c) {
     if (!(c instanceof ChangePropertyCommand)) {
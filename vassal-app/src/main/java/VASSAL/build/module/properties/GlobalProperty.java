@@ -189,6 +189,7 @@ public class GlobalProperty extends AbstractConfigurable implements ToolBarCompo
   public void removeFrom(Buildable parent) {
     property.removeFromContainer();
     GameModule.getGameModule().removeCommandEncoder(this);
+    GlobalPropertyDecoder.getInstance(GameModule.getGameModule()).remove(this);
     GameModule.getGameModule().getGameState().removeGameComponent(this);
   }
 
@@ -221,11 +222,22 @@ public class GlobalProperty extends AbstractConfigurable implements ToolBarCompo
     final GameState gs = gm.getGameState();
     if (!gs.getGameComponents().contains(this)) {
       gs.addGameComponent(this);
-      gm.addCommandEncoder(this);
+      addCommandEncoder(gm);
       setAllAttributesUntranslatable();
     }
   }
 
+  /**
+   * Register this property with the module to encode its commands, and with the {@link GlobalPropertyDecoder} to
+   * decode them
+   *
+   * @param gm The module
+   */
+  protected void addCommandEncoder(GameModule gm) {
+    gm.addCommandEncoder(this);
+    GlobalPropertyDecoder.getInstance(gm).add(this);
+  }
+
   @Override
   public JToolBar getToolBar() {
     return tempToolbar.getToolBar();
@@ -264,6 +276,12 @@ public class GlobalProperty extends AbstractConfigurable implements ToolBarCompo
     return new SetGlobalProperty(this, property.getPropertyValue(), newValue);
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    // Commands are offered by the GlobalPropertyDecoder, only to the properties with the id they name
+    return new String[0];
+  }
+
   /**
    * A String that identifies this property in an encoded Command
    * @return propertyId
@@ -0,0 +1,153 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.properties;
+
+import VASSAL.build.GameModule;
+import VASSAL.command.Command;
+import VASSAL.command.CommandDecoderTable;
+import VASSAL.command.CommandEncoder;
+import VASSAL.tools.SequenceEncoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the commands of every {@link GlobalProperty} in a module, offering each only to the properties with the
+ * property id it names, rather than to every property in turn.
+ *
+ * Each GlobalProperty is still registered with the module as a {@link CommandEncoder}, to encode its commands, but
+ * declares no prefixes of its own, so it is only offered commands by this decoder. A subclass which overrides
+ * {@link GlobalProperty#decode} is left to be offered every command, as before.
+ *
+ * Property ids can change, as when a property or the Zone holding it is renamed, so the properties are looked up by
+ * the ids they had when last looked at. If none of those decodes a command, the ids are looked at again and the
+ * command offered again, so a command is decoded by the same property as a scan of every property would pick.
+ *
+ * @since 3.8.0
+ */
+public class GlobalPropertyDecoder implements CommandEncoder {
+
+  private static GlobalPropertyDecoder instance;
+
+  private final GameModule module;
+
+  /** The properties decoded for, in the order they were added */
+  private final List<GlobalProperty> properties = new ArrayList<>();
+
+  /** The properties by property id, or null if they must be looked at again */
+  private Map<String, List<GlobalProperty>> byId;
+
+  private GlobalPropertyDecoder(GameModule module) {
+    this.module = module;
+  }
+
+  /**
+   * @param gm The module
+   * @return the decoder for the module's Global Properties, registering it with the module if this is the first time
+   */
+  public static synchronized GlobalPropertyDecoder getInstance(GameModule gm) {
+    if (instance == null || instance.module != gm) {
+      instance = new GlobalPropertyDecoder(gm);
+      gm.addCommandEncoder(instance);
+    }
+    return instance;
+  }
+
+  /**
+   * @param p A property to decode commands for
+   */
+  public synchronized void add(GlobalProperty p) {
+    if (CommandDecoderTable.declaredPrefixes(p) != null && !properties.contains(p)) {
+      properties.add(p);
+      byId = null;
+    }
+  }
+
+  /**
+   * @param p A property to stop decoding commands for
+   */
+  public synchronized void remove(GlobalProperty p) {
+    if (properties.remove(p)) {
+      byId = null;
+    }
+  }
+
+  @Override
+  public Command decode(String command) {
+    if (!command.startsWith(GlobalProperty.COMMAND_PREFIX)) {
+      return null;
+    }
+
+    final SequenceEncoder.Decoder sd = new SequenceEncoder.Decoder(command, ';');
+    sd.nextToken("");
+    final String propertyId = sd.nextToken("");
+
+    final boolean fresh;
+    final List<GlobalProperty> candidates;
+    synchronized (this) {
+      fresh = byId == null;
+      candidates = getById(propertyId);
+    }
+
+    final Command c = decode(candidates, command);
+    if (c != null || fresh) {
+      return c;
+    }
+
+    // A property may have changed its id since they were last looked at
+    final List<GlobalProperty> current;
+    synchronized (this) {
+      byId = null;
+      current = getById(propertyId);
+    }
+    return decode(current, command);
+  }
+
+  private static Command decode(List<GlobalProperty> candidates, String command) {
+    for (final GlobalProperty p : candidates) {
+      final Command c = p.decode(command);
+      if (c != null) {
+        return c;
+      }
+    }
+    return null;
+  }
+
+  private List<GlobalProperty> getById(String propertyId) {
+    if (byId == null) {
+      byId = new HashMap<>();
+      for (final GlobalProperty p : properties) {
+        byId.computeIfAbsent(p.getPropertyId(), k -> new ArrayList<>()).add(p);
+      }
+    }
+    return byId.getOrDefault(propertyId, List.of());
+  }
+
+  @Override
+  public String encode(Command c) {
+    return null;
+  }
+
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { GlobalProperty.COMMAND_PREFIX };
+  }
+}
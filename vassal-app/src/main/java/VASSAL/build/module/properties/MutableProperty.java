@@ -18,6 +18,7 @@
 package VASSAL.build.module.properties;
 
 import VASSAL.build.GameModule;
+import VASSAL.build.module.index.PieceBoundsIndex;
 import VASSAL.command.Command;
 
 import java.beans.PropertyChangeEvent;
@@ -105,7 +106,11 @@ public interface MutableProperty {
         parent.removeMutableProperty(propertyName);
         parent.addMutableProperty(name, this);
       }
+      PropertyDependencies.propertyChanged(propertyName);
+      PieceBoundsIndex.propertyChanged(propertyName);
       propertyName = name;
+      PropertyDependencies.propertyChanged(propertyName);
+      PieceBoundsIndex.propertyChanged(propertyName);
     }
 
     public void removeFromContainer() {
@@ -117,6 +122,7 @@ public interface MutableProperty {
 
     @Override
     public String getPropertyValue() {
+      PropertyDependencies.propertyRead(propertyName);
       return value;
     }
 
@@ -146,6 +152,9 @@ public interface MutableProperty {
       final String oldValue = value;
       final Command c = getChangeCommand(value, newValue);
       value = newValue;
+      PropertyDependencies.propertyChanged(propertyName);
+      // Pieces showing the value may change size
+      PieceBoundsIndex.propertyChanged(propertyName);
       propSupport.firePropertyChange(propertyName, oldValue, newValue);
       GameModule.getGameModule().updateMutableButtonLabels();
       return c;
@@ -0,0 +1,359 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.properties;
+
+import VASSAL.build.module.index.PieceBoundsIndex;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.Decorator;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks what the value of a computed property, such as a {@link VASSAL.counters.CalculatedProperty}, was computed
+ * from, so that the value can be reused until one of those things changes.
+ *
+ * While a value is computed inside {@link #startRecording} and {@link #stopRecording}, the name of every
+ * {@link MutableProperty} (Global, Zone or Map property) read is recorded, along with every piece whose properties
+ * are read. The {@link Dependencies} returned stay current until one of those properties or pieces changes. Pieces
+ * report their changes through {@link #stateChanged(GamePiece)}: moves, changes of state and properties, and key
+ * commands, which may change state in any trait. A value computed from pieces which cannot be named in advance,
+ * such as a count of the pieces in a Zone, reports it through {@link #anyPieceRead}, and stays current only until
+ * any piece changes.
+ *
+ * A computation which calls something with side effects, or with a random result, reports it through
+ * {@link #uncacheable}, and its value is not reused.
+ */
+public final class PropertyDependencies {
+
+  /** Changes whenever anything properties are computed from, other than a piece or a MutableProperty, does */
+  private static final AtomicLong STATE_VERSION = new AtomicLong();
+
+  /** Changes whenever any piece does */
+  private static final AtomicLong PIECES_VERSION = new AtomicLong();
+
+  /** Changes whenever any MutableProperty does */
+  private static final AtomicLong PROPERTY_VERSION = new AtomicLong();
+
+  /** The PROPERTY_VERSION at the last change to each MutableProperty, by name */
+  private static final Map<String, Long> PROPERTY_VERSIONS = new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<Recording> RECORDING = new ThreadLocal<>();
+
+  /** The number of recordings in progress on all threads, so that reads need not check RECORDING otherwise */
+  private static volatile int recordings;
+
+  private static boolean enabled = true;
+
+  private static final AtomicLong HITS = new AtomicLong();
+  private static final AtomicLong MISSES = new AtomicLong();
+
+  private PropertyDependencies() {
+  }
+
+  /**
+   * @param enable false to compute every value afresh, as a module whose expressions have side effects may need
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+    stateChanged();
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Report a change to anything computed properties may be read from other than a piece or a
+   * {@link MutableProperty}, such as the side the player is playing
+   */
+  public static void stateChanged() {
+    STATE_VERSION.incrementAndGet();
+  }
+
+  /**
+   * Report a change to a piece
+   *
+   * @param p The piece, or a Stack, all of whose pieces have changed
+   */
+  public static void stateChanged(GamePiece p) {
+    final long v = PIECES_VERSION.incrementAndGet();
+    if (p instanceof Stack) {
+      final Stack s = (Stack) p;
+      for (int i = 0; i < s.getPieceCount(); ++i) {
+        final PieceVersion pv = versionOf(s.getPieceAt(i));
+        if (pv != null) {
+          pv.version = v;
+        }
+      }
+    }
+    else {
+      final PieceVersion pv = versionOf(p);
+      if (pv != null) {
+        pv.version = v;
+      }
+    }
+  }
+
+  private static PieceVersion versionOf(GamePiece p) {
+    final GamePiece inner = Decorator.getInnermost(p);
+    return inner instanceof BasicPiece ? ((BasicPiece) inner).getDependencyVersion() : null;
+  }
+
+  /**
+   * Report a change to the value of a {@link MutableProperty}
+   *
+   * @param name The name of the property
+   */
+  public static void propertyChanged(String name) {
+    if (name != null) {
+      PROPERTY_VERSIONS.put(name, PROPERTY_VERSION.incrementAndGet());
+    }
+  }
+
+  /**
+   * Report a read of a {@link MutableProperty}, which is recorded if a value is being computed on this thread
+   *
+   * @param name The name of the property
+   */
+  public static void propertyRead(String name) {
+    if (recordings > 0) {
+      final Recording r = RECORDING.get();
+      if (r != null && name != null) {
+        r.names.add(name);
+      }
+    }
+  }
+
+  /**
+   * Report a read of the properties of a piece, which is recorded if a value is being computed on this thread
+   *
+   * @param p The piece
+   */
+  public static void pieceRead(GamePiece p) {
+    if (recordings > 0) {
+      final Recording r = RECORDING.get();
+      if (r != null && p != null && !r.anyPiece) {
+        final PieceVersion pv = p instanceof Stack ? null : versionOf(p);
+        if (pv == null) {
+          // A Stack's properties depend on its pieces, and a piece with no BasicPiece has nowhere to keep a version
+          r.anyPiece = true;
+        }
+        else if (!r.pieces.contains(pv)) {
+          if (PieceBoundsIndex.reportsChanges(p)) {
+            r.pieces.add(pv);
+          }
+          else {
+            // Traits from a module may change without reporting it, so any change to any piece may be one to this
+            r.anyPiece = true;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Report a read of pieces which cannot be named in advance, such as those in a Zone, which is recorded if a
+   * value is being computed on this thread
+   */
+  public static void anyPieceRead() {
+    if (recordings > 0) {
+      final Recording r = RECORDING.get();
+      if (r != null) {
+        r.anyPiece = true;
+      }
+    }
+  }
+
+  /**
+   * Report that the value being computed on this thread, if any, may not be reused
+   */
+  public static void uncacheable() {
+    if (recordings > 0) {
+      final Recording r = RECORDING.get();
+      if (r != null) {
+        r.cacheable = false;
+      }
+    }
+  }
+
+  /**
+   * Start recording what a value is computed from. Each call must be matched by a call to {@link #stopRecording}.
+   * Recordings nest: what the inner one records is recorded by the outer one too.
+   *
+   * @return the recording started
+   */
+  public static Recording startRecording() {
+    final Recording r = new Recording(RECORDING.get());
+    RECORDING.set(r);
+    synchronized (PropertyDependencies.class) {
+      ++recordings;
+    }
+    return r;
+  }
+
+  /**
+   * @param r The recording started by the matching call to {@link #startRecording}
+   * @return what the value was computed from, or null if it may not be reused
+   */
+  public static Dependencies stopRecording(Recording r) {
+    synchronized (PropertyDependencies.class) {
+      --recordings;
+    }
+    RECORDING.set(r.outer);
+    if (r.outer != null) {
+      r.outer.add(r.names, r.pieces, r.anyPiece, r.cacheable);
+    }
+    return enabled && r.cacheable ? new Dependencies(r) : null;
+  }
+
+  /**
+   * Report that a value computed from the given dependencies has been reused, so that they are recorded as
+   * dependencies of any value now being computed
+   *
+   * @param d What the reused value was computed from
+   */
+  public static void reused(Dependencies d) {
+    HITS.incrementAndGet();
+    if (recordings > 0) {
+      final Recording r = RECORDING.get();
+      if (r != null) {
+        r.add(d.names, d.pieces, d.anyPiece, true);
+      }
+    }
+  }
+
+  /**
+   * Report that a value has been computed afresh, for the statistics
+   */
+  public static void evaluated() {
+    MISSES.incrementAndGet();
+  }
+
+  /** @return the number of values reused since the count was last reset */
+  public static long getHits() {
+    return HITS.get();
+  }
+
+  /** @return the number of values computed afresh since the count was last reset */
+  public static long getMisses() {
+    return MISSES.get();
+  }
+
+  public static void resetStatistics() {
+    HITS.set(0);
+    MISSES.set(0);
+  }
+
+  /**
+   * What a value is being computed from, recorded while it is
+   */
+  public static final class Recording {
+    private final Recording outer;
+    private final long stateVersion = STATE_VERSION.get();
+    private final long piecesVersion = PIECES_VERSION.get();
+    private final long propertyVersion = PROPERTY_VERSION.get();
+    private final Set<String> names = new HashSet<>();
+    private final Set<PieceVersion> pieces = new HashSet<>();
+    private boolean anyPiece;
+    private boolean cacheable = true;
+
+    private Recording(Recording outer) {
+      this.outer = outer;
+    }
+
+    private void add(Set<String> n, Set<PieceVersion> p, boolean any, boolean c) {
+      names.addAll(n);
+      pieces.addAll(p);
+      anyPiece |= any;
+      cacheable &= c;
+    }
+
+    /** @return the names of the MutableProperties read so far */
+    public Set<String> getPropertiesRead() {
+      return names;
+    }
+
+    /** @return false if something read so far means the value may not be reused */
+    public boolean isCacheable() {
+      return cacheable;
+    }
+  }
+
+  /**
+   * What a value was computed from, and the versions of each when the computation began
+   */
+  public static final class Dependencies {
+    private final long stateVersion;
+    private final long piecesVersion;
+    private final long propertyVersion;
+    private final Set<String> names;
+    private final Set<PieceVersion> pieces;
+    private final boolean anyPiece;
+
+    private Dependencies(Recording r) {
+      stateVersion = r.stateVersion;
+      piecesVersion = r.piecesVersion;
+      propertyVersion = r.propertyVersion;
+      names = r.names;
+      pieces = r.pieces;
+      anyPiece = r.anyPiece;
+    }
+
+    /**
+     * @return true if nothing the value was computed from has changed since
+     */
+    public boolean isCurrent() {
+      if (!enabled || stateVersion != STATE_VERSION.get()) {
+        return false;
+      }
+      if (piecesVersion != PIECES_VERSION.get()) {
+        if (anyPiece) {
+          return false;
+        }
+        for (final PieceVersion p : pieces) {
+          if (p.version > piecesVersion) {
+            return false;
+          }
+        }
+      }
+      if (propertyVersion == PROPERTY_VERSION.get()) {
+        return true;
+      }
+      for (final String name : names) {
+        final Long v = PROPERTY_VERSIONS.get(name);
+        if (v != null && v > propertyVersion) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The version of a piece at its last change, kept by its {@link BasicPiece}
+   */
+  public static final class PieceVersion {
+    private volatile long version;
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.properties;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * The value of a property, as the String it is stored as, together with the boolean, int or float an expression
+ * reads it as. The String is only parsed the first time its type is asked for.
+ *
+ * Values are shared through a small, bounded cache of those seen lately, keyed by content, so that a property which
+ * is read again and again without changing is parsed only once. Properties are still looked up as Strings, through
+ * {@link PropertySource#getProperty}, and only wrapped when an expression reads them.
+ */
+public final class PropertyValue {
+
+  public static final PropertyValue EMPTY = new PropertyValue("");
+
+  private static final byte UNPARSED = 0;
+  private static final byte STRING = 1;
+  private static final byte BOOLEAN = 2;
+  private static final byte INTEGER = 3;
+  private static final byte FLOAT = 4;
+
+  private static final int CACHE_BITS = 14;
+  private static final PropertyValue[] CACHE = new PropertyValue[1 << CACHE_BITS];
+
+  private final String string;
+
+  // The numeric fields are written before kind, and only read after it
+  private volatile byte kind;
+  private boolean leadingZeroInteger;
+  private int intValue;
+  private float floatValue;
+
+  private PropertyValue(String string) {
+    this.string = string;
+  }
+
+  /**
+   * @param value The value of a property, as returned by {@link PropertySource#getProperty}
+   * @return the PropertyValue of its String form, which is the same as was returned the last time an equal value
+   * was passed, unless that has since been displaced from the cache
+   */
+  public static PropertyValue of(Object value) {
+    if (value == null) {
+      return EMPTY;
+    }
+    else if (value instanceof PropertyValue) {
+      return (PropertyValue) value;
+    }
+
+    final String s = value.toString();
+    if (s.isEmpty()) {
+      return EMPTY;
+    }
+
+    final int i = (s.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - CACHE_BITS);
+    final PropertyValue cached = CACHE[i];
+    if (cached != null && (cached.string == s || cached.string.equals(s))) {
+      return cached;
+    }
+    final PropertyValue v = new PropertyValue(s);
+    CACHE[i] = v;
+    return v;
+  }
+
+  private byte kind() {
+    byte k = kind;
+    if (k == UNPARSED) {
+      k = parse();
+      kind = k;
+    }
+    return k;
+  }
+
+  /**
+   * Read the String as {@link VASSAL.script.ExpressionInterpreter} always has: "true" and "false" are booleans,
+   * anything made only of signs, points and digits is an int if it fits in one, a String if it is an integer
+   * too large for one (such as a piece id), or else a float if it is a number at all.
+   */
+  private byte parse() {
+    if (string.isEmpty()) {
+      return STRING;
+    }
+    else if ("true".equals(string)) { // NON-NLS
+      return BOOLEAN;
+    }
+    else if ("false".equals(string)) { // NON-NLS
+      return BOOLEAN;
+    }
+
+    boolean digits = true;
+    for (int i = 0; i < string.length(); ++i) {
+      final char c = string.charAt(i);
+      if (c < '0' || c > '9') {
+        digits = false;
+        if (c != '+' && c != '-' && c != '.') {
+          return STRING;
+        }
+      }
+    }
+
+    leadingZeroInteger = digits && string.length() > 1 && string.charAt(0) == '0';
+
+    // Only an int may be parsed without exceptions being thrown on the way
+    if (digits && string.length() < 10) {
+      intValue = Integer.parseInt(string);
+      return INTEGER;
+    }
+
+    try {
+      intValue = Integer.parseInt(string);
+      return INTEGER;
+    }
+    catch (NumberFormatException e1) {
+      try {
+        NumberUtils.createBigInteger(string);
+        return STRING;
+      }
+      catch (NumberFormatException e2) {
+        try {
+          floatValue = Float.parseFloat(string);
+          return FLOAT;
+        }
+        catch (NumberFormatException e3) {
+          return STRING;
+        }
+      }
+    }
+  }
+
+  public boolean isString() {
+    return kind() == STRING;
+  }
+
+  public boolean isBoolean() {
+    return kind() == BOOLEAN;
+  }
+
+  public boolean isInteger() {
+    return kind() == INTEGER;
+  }
+
+  public boolean isFloat() {
+    return kind() == FLOAT;
+  }
+
+  /**
+   * @return true if this is 2 or more digits starting with 0, which the 'Store Integers with leading zeros as
+   * Strings' option keeps as a String
+   */
+  public boolean isLeadingZeroInteger() {
+    kind();
+    return leadingZeroInteger;
+  }
+
+  public boolean booleanValue() {
+    return isBoolean() && string.charAt(0) == 't';
+  }
+
+  public int intValue() {
+    return isInteger() ? intValue : 0;
+  }
+
+  public float floatValue() {
+    switch (kind()) {
+    case INTEGER:
+      return intValue;
+    case FLOAT:
+      return floatValue;
+    default:
+      return 0;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof PropertyValue && string.equals(((PropertyValue) o).string);
+  }
+
+  @Override
+  public int hashCode() {
+    return string.hashCode();
+  }
+
+  /**
+   * @return the value as a String, which is the same String each time
+   */
+  @Override
+  public String toString() {
+    return string;
+  }
+}
@@ -71,7 +71,7 @@ public class ZoneProperty extends GlobalProperty {
     }
 
     property.addTo((MutablePropertiesContainer) parent);
-    GameModule.getGameModule().addCommandEncoder(this);
+    addCommandEncoder(GameModule.getGameModule());
     GameModule.getGameModule().getGameState().addGameComponent(this);
     propertySource = (PropertySource) parent;
     parentZone = (Zone) parent;
@@ -826,6 +826,11 @@ public class TurnTracker extends TurnComponent implements CommandEncoder, GameCo
     return new SetTurn(sd.nextToken(""), this); //$NON-NLS-1$
   }
 
+  @Override
+  public String[] getDecodePrefixes() {
+    return new String[] { COMMAND_PREFIX };
+  }
+
   @Override
   public String encode(Command c) {
     if (!(c instanceof SetTurn)) {
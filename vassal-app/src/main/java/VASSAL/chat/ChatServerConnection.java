@@ -36,6 +36,8 @@ public interface ChatServerConnection extends ServerConnection {
   String PLAYER_INFO = "Player"; //$NON-NLS-1$
   /** Property representing a message received from the remove server */
   String INCOMING_MSG = "Msg"; //$NON-NLS-1$
+  /** Property representing a message received from the remote server which holds Commands in a {@link VASSAL.command.CommandEnvelope} */
+  String INCOMING_ENVELOPE = "Envelope"; //$NON-NLS-1$
   /** Property representing the StatusServer implementation */
   String STATUS_SERVER = "StatusServer"; //$NON-NLS-1$
 
@@ -24,17 +24,36 @@ import javax.swing.SwingUtilities;
 import VASSAL.build.GameModule;
 import VASSAL.command.Command;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
- * Listens for incoming messages (PropertyChangeEvents with name {ChatServerConnection.INCOMING_MSG}) and
+ * Listens for incoming messages (PropertyChangeEvents with name {ChatServerConnection.INCOMING_MSG}, or
+ * {ChatServerConnection.INCOMING_ENVELOPE} for messages in a {@link VASSAL.command.CommandEnvelope}) and
  * interprets the message as a command to be executed
  *
  * @author rodneykinney
  *
  */
 public class CommandDecoder implements PropertyChangeListener {
+  private static final Logger logger = LoggerFactory.getLogger(CommandDecoder.class);
+
   @Override
   public void propertyChange(PropertyChangeEvent evt) {
-    final Command c = GameModule.getGameModule().decode((String) evt.getNewValue());
+    final String msg = (String) evt.getNewValue();
+    final Command c;
+    if (ChatServerConnection.INCOMING_ENVELOPE.equals(evt.getPropertyName())) {
+      try {
+        c = GameModule.getGameModule().decodeEnvelope(msg);
+      }
+      catch (final IllegalArgumentException e) {
+        logger.error("Discarding malformed command envelope", e); //NON-NLS
+        return;
+      }
+    }
+    else {
+      c = GameModule.getGameModule().decode(msg);
+    }
     if (c != null) {
       SwingUtilities.invokeLater(() -> {
         c.execute();
@@ -22,6 +22,7 @@ import java.net.UnknownHostException;
 
 import VASSAL.Info;
 import VASSAL.build.GameModule;
+import VASSAL.command.CommandEnvelope;
 import VASSAL.tools.SequenceEncoder;
 
 /**
@@ -41,6 +42,8 @@ public class SimpleStatus implements PlayerStatus {
   public static final String AWAY = "away"; //$NON-NLS-1$
   public static final String LOOKING = "looking"; //$NON-NLS-1$
   public static final String NAME = "name"; //$NON-NLS-1$
+  /** The latest version of {@link CommandEnvelope} the client can read, empty if it cannot read any */
+  public static final String COMMAND_ENVELOPE = "commandEnvelope"; //$NON-NLS-1$
 
   private final boolean looking;
   private final boolean away;
@@ -50,6 +53,7 @@ public class SimpleStatus implements PlayerStatus {
   private String moduleVersion;
   private String crc;
   private String combinedCrc;
+  private String commandEnvelope;
 
   public SimpleStatus() {
     this(false, false, ""); //$NON-NLS-1$
@@ -68,6 +72,10 @@ public class SimpleStatus implements PlayerStatus {
   }
 
   public SimpleStatus(boolean looking, boolean away, String profile, String client, String ip, String module, String crc, String combinedCrc) {
+    this(looking, away, profile, client, ip, module, crc, combinedCrc, "");
+  }
+
+  public SimpleStatus(boolean looking, boolean away, String profile, String client, String ip, String module, String crc, String combinedCrc, String commandEnvelope) {
     this.looking = looking;
     this.away = away;
     this.profile = profile;
@@ -76,6 +84,7 @@ public class SimpleStatus implements PlayerStatus {
     this.moduleVersion = module;
     this.crc = crc;
     this.combinedCrc = combinedCrc;
+    this.commandEnvelope = commandEnvelope;
   }
 
   public boolean isAway() {
@@ -110,6 +119,24 @@ public class SimpleStatus implements PlayerStatus {
     return combinedCrc;
   }
 
+  public String getCommandEnvelope() {
+    return commandEnvelope;
+  }
+
+  /**
+   * @return true if the client has said it can read Commands sent in the version of {@link CommandEnvelope} this
+   * client writes. Clients from before 3.8.0 say nothing, and are sent Commands in the old format.
+   */
+  public boolean canReadCommandEnvelope() {
+    try {
+      return commandEnvelope != null && !commandEnvelope.isEmpty() &&
+        Integer.parseInt(commandEnvelope) >= CommandEnvelope.VERSION;
+    }
+    catch (final NumberFormatException e) {
+      return false;
+    }
+  }
+
   public static String encode(SimpleStatus s) {
     final SequenceEncoder se = new SequenceEncoder(',');
     se.append(s.looking);
@@ -120,13 +147,14 @@ public class SimpleStatus implements PlayerStatus {
     se.append(s.moduleVersion);
     se.append(s.crc);
     se.append(s.combinedCrc);
+    se.append(s.commandEnvelope);
     return se.getValue();
   }
 
   public static SimpleStatus decode(String s) {
     final SequenceEncoder.Decoder sd = new SequenceEncoder.Decoder(s, ',');
     return new SimpleStatus(sd.nextBoolean(false), sd.nextBoolean(false), sd.nextToken(""), sd.nextToken(""),  //$NON-NLS-1$ //$NON-NLS-2$
-        sd.nextToken(""), sd.nextToken(""), sd.nextToken(""));         //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        sd.nextToken(""), sd.nextToken(""), sd.nextToken(""), sd.nextToken(""), sd.nextToken(""));         //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
   }
 
   /**
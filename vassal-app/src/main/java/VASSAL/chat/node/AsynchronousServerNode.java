@@ -22,11 +22,19 @@
 package VASSAL.chat.node;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import VASSAL.chat.HttpRequestWrapper;
@@ -43,18 +51,37 @@ import VASSAL.tools.PropertiesEncoder;
 public class AsynchronousServerNode extends ServerNode {
   private static final Logger logger =
     Logger.getLogger(AsynchronousServerNode.class.getName());
+
+  /** The default time in milliseconds for which changes to a module are gathered up before they are sent */
+  public static final long DEFAULT_COALESCE_WINDOW = 250L;
+
+  private final long coalesceWindow;
   private StatusReporter statusReporter;
   private ReportContentsThread contentsReporter;
 
   public AsynchronousServerNode(String url) {
+    this(url, DEFAULT_COALESCE_WINDOW);
+  }
+
+  /**
+   * @param url            The URL to which the players connected are reported, or null
+   * @param coalesceWindow The time in milliseconds for which changes to a module are gathered up before they are
+   *                       sent to its players
+   */
+  public AsynchronousServerNode(String url, long coalesceWindow) {
     super();
+    this.coalesceWindow = coalesceWindow;
     init(url);
   }
 
   protected void init(String url) {
     statusReporter = new StatusReporter(
       url == null ? null : new HttpRequestWrapper(url), this);
-    contentsReporter = new ReportContentsThread(this);
+    contentsReporter = new ReportContentsThread(this, coalesceWindow);
+  }
+
+  public ReportContentsThread getContentsReporter() {
+    return contentsReporter;
   }
 
   @Override
@@ -62,14 +89,46 @@ public class AsynchronousServerNode extends ServerNode {
     contentsReporter.markChanged(node);
   }
 
+  /**
+   * Tells the players in each module which has changed who is connected and what rooms there are.
+   *
+   * Changes are gathered up for a short window, so that a burst of players joining or leaving is sent to each
+   * player in one message. A player whose client has asked for {@link Protocol#encodeListDelta list deltas} is sent
+   * the full list of players once, and then only the entries which have changed. Other players are sent the full
+   * list whenever it changes, and every two minutes besides.
+   */
   public static class ReportContentsThread extends Thread {
     private final AsynchronousServerNode server;
+    private final long coalesceWindow;
     private final Set<Node> changed;
+    private final Map<String, ModuleContents> contents = new HashMap<>();
     private long lastGlobalUpdate;
     private static final long GLOBAL_UPDATE_INTERVAL = 1000L * 120L;
 
+    private final AtomicLong listsSent = new AtomicLong();
+    private final AtomicLong deltasSent = new AtomicLong();
+    private final AtomicLong roomInfosSent = new AtomicLong();
+    private final AtomicLong charsSent = new AtomicLong();
+    private final long[] lastRates = new long[4];
+    private long lastRatesTime = System.currentTimeMillis();
+
+    /** What the players in a module were last sent */
+    private static class ModuleContents {
+      private Map<String, String> entries = new HashMap<>();
+      private Map<String, String> paths = new HashMap<>();
+      private Set<Node> players = Collections.newSetFromMap(new IdentityHashMap<>());
+      private String roomInfo;
+      private Map<Node, String> ownersChecked = new IdentityHashMap<>();
+    }
+
     public ReportContentsThread(AsynchronousServerNode server) {
+      this(server, 0L);
+    }
+
+    public ReportContentsThread(AsynchronousServerNode server, long coalesceWindow) {
+      super("report contents"); //$NON-NLS-1$
       this.server = server;
+      this.coalesceWindow = coalesceWindow;
       changed = new HashSet<>();
       start();
     }
@@ -79,59 +138,193 @@ public class AsynchronousServerNode extends ServerNode {
       while (true) {
         try {
           synchronized (this) {
-            wait();
-            sendContents();
+            while (changed.isEmpty()) {
+              wait();
+            }
           }
+          // Let a burst of changes gather
+          if (coalesceWindow > 0) {
+            sleep(coalesceWindow);
+          }
+          sendContents();
         }
         catch (final InterruptedException e) {
         }
+        catch (final RuntimeException e) {
+          logger.log(Level.WARNING, "Error sending contents", e); //$NON-NLS-1$
+        }
       }
     }
 
-    private synchronized void sendContents() {
+    private void sendContents() {
+      final Set<Node> modules;
+      synchronized (this) {
+        modules = new LinkedHashSet<>(changed);
+        changed.clear();
+      }
+
       server.statusReporter.updateContents(server.getLeafDescendants());
       final long time = System.currentTimeMillis();
-      final Iterator<Node> modules;
-      if (time - lastGlobalUpdate < GLOBAL_UPDATE_INTERVAL) {
-        modules = Arrays.asList(server.getChildren()).iterator();
+      final boolean global = time - lastGlobalUpdate >= GLOBAL_UPDATE_INTERVAL;
+      if (global) {
+        modules.addAll(Arrays.asList(server.getChildren()));
         lastGlobalUpdate = time;
+        logRates(time);
       }
-      else {
-        modules = changed.iterator();
-      }
-      while (modules.hasNext()) {
-        final Node module = modules.next();
+
+      for (final Node module : modules) {
         logger.fine("Sending contents of " + module.getId()); //$NON-NLS-1$
-        final Node[] players = module.getLeafDescendants();
-        final Node[] rooms = module.getChildren();
-
-        // Check if any rooms have lost their first player
-        for (int i = 1; i < rooms.length; i++) {
-          final Node[] c = rooms[i].getChildren();
-          if (c.length > 0) {
-            try {
-              final Properties roomProps = new PropertiesEncoder(rooms[i].getInfo()).getProperties();
-              final String roomOwner = roomProps.getProperty("owner");  //NON-NLS
-              final String playerId = new PropertiesEncoder(c[0].getInfo()).getProperties().getProperty("id");  //NON-NLS
-              if (roomOwner == null || (! roomOwner.equals(playerId))) {
-                roomProps.setProperty("owner", playerId); //NON-NLS
-                rooms[i].setInfo(new PropertiesEncoder(roomProps).toString());
-              }
-            }
-            catch (final IOException e) {
-              // Error encoding/decoding properties. Shouldn't happen.
-              e.printStackTrace();
-            }
+        sendContents(module, global);
+      }
+    }
+
+    private void sendContents(Node module, boolean global) {
+      final Node[] players = module.getLeafDescendants();
+      final Node[] rooms = module.getChildren();
+      if (players.length == 0) {
+        contents.remove(module.getId());
+        return;
+      }
+
+      final ModuleContents mc = contents.computeIfAbsent(module.getId(), k -> new ModuleContents());
+      checkOwners(mc, rooms);
+
+      // Work out which entries have changed since the players were last sent them
+      final Map<String, String> entries = new HashMap<>();
+      final Map<String, String> paths = new HashMap<>();
+      final List<String> delta = new ArrayList<>();
+      for (final Node player : players) {
+        final String entry = Protocol.encodeListEntry(player);
+        if (entry != null) {
+          entries.put(player.getId(), entry);
+          paths.put(player.getId(), player.getPath());
+          if (!entry.equals(mc.entries.get(player.getId()))) {
+            delta.add(entry);
           }
         }
+      }
+      for (final Map.Entry<String, String> e : mc.paths.entrySet()) {
+        if (!entries.containsKey(e.getKey())) {
+          delta.add(Protocol.encodeListRemoval(e.getValue()));
+        }
+      }
+
+      final String deltaCommand = delta.isEmpty() ? null : Protocol.encodeListDelta(delta);
+      final String roomInfo = Protocol.encodeRoomsInfo(rooms);
+      final boolean roomsChanged = !roomInfo.equals(mc.roomInfo);
+      String listCommand = null;
+
+      final Set<Node> sent = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (final Node player : players) {
+        final boolean known = mc.players.contains(player);
+        final boolean wantsDeltas = player instanceof PlayerNode && ((PlayerNode) player).wantsListDeltas();
 
-        final String listCommand = Protocol.encodeListCommand(players);
-        logger.finer(listCommand);
-        module.send(listCommand);
-        final String roomInfo = Protocol.encodeRoomsInfo(rooms);
-        module.send(roomInfo);
+        String msg = null;
+        boolean full = false;
+        if (known && wantsDeltas) {
+          if (deltaCommand != null) {
+            msg = deltaCommand;
+            deltasSent.incrementAndGet();
+          }
+        }
+        else if (!known || global || deltaCommand != null) {
+          if (listCommand == null) {
+            listCommand = Protocol.encodeListCommand(players);
+            logger.finer(listCommand);
+          }
+          msg = listCommand;
+          full = true;
+          listsSent.incrementAndGet();
+        }
+
+        if (msg != null) {
+          send(player, msg);
+        }
+
+        // A client which has just been sent a full list has been told nothing about the rooms
+        if (roomsChanged || full) {
+          send(player, roomInfo);
+          roomInfosSent.incrementAndGet();
+        }
+        sent.add(player);
+      }
+
+      mc.entries = entries;
+      mc.paths = paths;
+      mc.players = sent;
+      mc.roomInfo = roomInfo;
+    }
+
+    private void send(Node player, String msg) {
+      player.send(msg);
+      charsSent.addAndGet(msg.length());
+    }
+
+    /**
+     * Check if any rooms have lost their first player, for only those rooms whose first player or info has
+     * changed since they were last checked
+     */
+    private void checkOwners(ModuleContents mc, Node[] rooms) {
+      final Map<Node, String> checked = new IdentityHashMap<>();
+      for (int i = 1; i < rooms.length; i++) {
+        final Node[] c = rooms[i].getChildren();
+        if (c.length > 0) {
+          final String firstPlayerInfo = c[0].getInfo();
+          final String key = firstPlayerInfo + '\n' + rooms[i].getInfo();
+          if (key.equals(mc.ownersChecked.get(rooms[i]))) {
+            checked.put(rooms[i], key);
+            continue;
+          }
+
+          try {
+            final Properties roomProps = new PropertiesEncoder(rooms[i].getInfo()).getProperties();
+            final String roomOwner = roomProps.getProperty("owner");  //NON-NLS
+            final String playerId = new PropertiesEncoder(firstPlayerInfo).getProperties().getProperty("id");  //NON-NLS
+            if (roomOwner == null || (! roomOwner.equals(playerId))) {
+              roomProps.setProperty("owner", playerId); //NON-NLS
+              rooms[i].setInfo(new PropertiesEncoder(roomProps).toString());
+            }
+            checked.put(rooms[i], firstPlayerInfo + '\n' + rooms[i].getInfo());
+          }
+          catch (final IOException e) {
+            // Error encoding/decoding properties. Shouldn't happen.
+            e.printStackTrace();
+          }
+        }
       }
-      changed.clear();
+      mc.ownersChecked = checked;
+    }
+
+    private void logRates(long time) {
+      final long[] now = {
+        listsSent.get(), deltasSent.get(), roomInfosSent.get(), charsSent.get()
+      };
+      final double seconds = Math.max(1L, time - lastRatesTime) / 1000.0;
+      logger.info(String.format("Sent %.1f lists/s, %.1f deltas/s, %.1f room infos/s, %.0f chars/s", //$NON-NLS-1$
+        (now[0] - lastRates[0]) / seconds, (now[1] - lastRates[1]) / seconds,
+        (now[2] - lastRates[2]) / seconds, (now[3] - lastRates[3]) / seconds));
+      System.arraycopy(now, 0, lastRates, 0, now.length);
+      lastRatesTime = time;
+    }
+
+    /** @return the number of full player lists sent since the server started */
+    public long getListsSent() {
+      return listsSent.get();
+    }
+
+    /** @return the number of list deltas sent since the server started */
+    public long getDeltasSent() {
+      return deltasSent.get();
+    }
+
+    /** @return the number of room info messages sent since the server started */
+    public long getRoomInfosSent() {
+      return roomInfosSent.get();
+    }
+
+    /** @return the number of characters of lists, deltas and room info sent since the server started */
+    public long getCharsSent() {
+      return charsSent.get();
     }
 
     public synchronized void markChanged(Node module) {
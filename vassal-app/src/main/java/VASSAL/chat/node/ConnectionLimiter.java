@@ -26,16 +26,16 @@ import VASSAL.i18n.Resources;
  * Limits connections to the server to one per registered username
  */
 public class ConnectionLimiter {
-  private final Map<String, SocketHandler> connections = new HashMap<>();
+  private final Map<String, LineConnection> connections = new HashMap<>();
 
-  public synchronized void register(String name, SocketHandler handler) {
+  public synchronized void register(String name, LineConnection handler) {
     if (connections.containsKey(name)) {
       kickOff(connections.get(name));
     }
     connections.put(name, handler);
   }
 
-  private void kickOff(SocketHandler handler) {
+  private void kickOff(LineConnection handler) {
     handler.writeLine(Resources.getString("Chat.too_many")); //$NON-NLS-1$
     handler.close();
   }
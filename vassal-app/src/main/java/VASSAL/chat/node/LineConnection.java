@@ -0,0 +1,36 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.chat.node;
+
+import java.net.InetAddress;
+
+/**
+ * The server's end of a connection to a client, over which lines of text are sent
+ *
+ * @since 3.8.0
+ */
+public interface LineConnection {
+  /** Queue a line to be sent, without waiting for it to be written */
+  void writeLine(String line);
+
+  /** Sign off and close the connection once the lines already queued have been sent */
+  void close();
+
+  InetAddress getInetAddress();
+}
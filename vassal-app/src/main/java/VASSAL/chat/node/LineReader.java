@@ -0,0 +1,122 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.chat.node;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads lines of UTF-8 text from a stream which may switch, at the end of a line, to being deflated. Unlike a
+ * {@link java.io.BufferedReader}, it keeps hold of what it has read beyond the end of the line, so that can be
+ * inflated.
+ *
+ * Lines longer than a limit are refused, since a few bytes of deflated input can inflate to an endless line.
+ *
+ * @since 3.8.0
+ */
+class LineReader implements AutoCloseable {
+  /**
+   * The longest line, in bytes, accepted by default. No line this long could be delivered anyway, since it is as
+   * much as the server will queue to be sent to one client.
+   */
+  static final int MAX_LINE_LENGTH = NioServer.DEFAULT_QUEUE_LIMIT;
+
+  private InputStream in;
+  private final int maxLineLength;
+  private final byte[] buffer = new byte[8192];
+  private int pos;
+  private int limit;
+  private byte[] line = new byte[256];
+  private int lineLength;
+
+  LineReader(InputStream in) {
+    this(in, MAX_LINE_LENGTH);
+  }
+
+  /**
+   * @param in            The stream to read
+   * @param maxLineLength The longest line to accept, in bytes
+   */
+  LineReader(InputStream in, int maxLineLength) {
+    this.in = in;
+    this.maxLineLength = maxLineLength;
+  }
+
+  /**
+   * @return the next line, without its line terminator, or null at the end of the stream
+   * @throws IOException if reading fails, or the line is longer than the limit
+   */
+  String readLine() throws IOException {
+    lineLength = 0;
+    while (true) {
+      for (int i = pos; i < limit; ++i) {
+        if (buffer[i] == '\n') {
+          append(pos, i);
+          pos = i + 1;
+          return toLine();
+        }
+      }
+      append(pos, limit);
+
+      final int n = in.read(buffer, 0, buffer.length);
+      if (n < 0) {
+        pos = limit = 0;
+        return lineLength > 0 ? toLine() : null;
+      }
+      pos = 0;
+      limit = n;
+    }
+  }
+
+  /**
+   * Inflate everything read after the last line returned
+   */
+  void inflate() {
+    final InputStream rest = new ByteArrayInputStream(Arrays.copyOfRange(buffer, pos, limit));
+    in = new InflaterInputStream(new SequenceInputStream(rest, in));
+    pos = limit = 0;
+  }
+
+  private void append(int from, int to) throws IOException {
+    final int n = to - from;
+    if (n > maxLineLength - lineLength) {
+      throw new IOException("Line longer than " + maxLineLength + " bytes"); //NON-NLS
+    }
+    if (lineLength + n > line.length) {
+      line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + n));
+    }
+    System.arraycopy(buffer, from, line, lineLength, n);
+    lineLength += n;
+  }
+
+  private String toLine() {
+    final int n = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+    return new String(line, 0, n, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,512 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.chat.node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A server core which serves every client from a single thread, selecting over non-blocking channels, where
+ * {@link Server} starts a read thread and a write thread for each client. The clients are {@link PlayerNode}s
+ * just as they are with {@link Server}, so the protocol is unchanged: lines of UTF-8 text, a client signing off
+ * with "!BYE", an empty line sent to a client to which nothing has been sent for two minutes, and the offer to
+ * compress the connection described by {@link SocketHandler}.
+ *
+ * Messages are handled on the server thread as they are read. The lines sent to a client are queued until its
+ * channel will take them, and the queue is bounded: a client which falls so far behind that its queue would
+ * hold more than the limit is disconnected, rather than being allowed to hold ever more of the server's memory.
+ * A single line is always queued, however long it is.
+ *
+ * @since 3.8.0
+ */
+public class NioServer extends Thread {
+  private static final Logger logger = Logger.getLogger(NioServer.class.getName());
+
+  /** The default limit on the bytes queued to be sent to one client */
+  public static final int DEFAULT_QUEUE_LIMIT = 16 * 1024 * 1024;
+
+  private static final String SIGN_OFF = "!BYE"; //$NON-NLS-1$
+  private static final long KEEP_ALIVE = TimeUnit.MINUTES.toMillis(2);
+  private static final long KEEP_ALIVE_CHECK = TimeUnit.SECONDS.toMillis(10);
+  private static final int READ_BUFFER_SIZE = 8192;
+  private static final int MAX_GATHER = 64;
+
+  private final AsynchronousServerNode rootNode;
+  private final int queueLimit;
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+  /** Connections with lines newly queued, or which have fallen too far behind */
+  private final Queue<Connection> pending = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean running = true;
+  private long lastKeepAliveCheck;
+
+  public NioServer(AsynchronousServerNode rootNode, int port) throws IOException {
+    this(rootNode, port, DEFAULT_QUEUE_LIMIT);
+  }
+
+  /**
+   * Start a server
+   *
+   * @param rootNode   The root of the tree of modules, rooms and players
+   * @param port       The port on which to listen, or 0 for any free port
+   * @param queueLimit The most bytes which may be queued to be sent to one client
+   */
+  public NioServer(AsynchronousServerNode rootNode, int port, int queueLimit) throws IOException {
+    super("chat server"); //$NON-NLS-1$
+    this.rootNode = rootNode;
+    this.queueLimit = queueLimit;
+
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(port));
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+    System.err.println("Started server on port " + getPort()); //$NON-NLS-1$
+    start();
+  }
+
+  /** @return the port on which the server is listening */
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Stop the server, closing the connection to every client
+   */
+  public void shutdown() {
+    running = false;
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        selector.select(KEEP_ALIVE_CHECK);
+
+        Connection c;
+        while ((c = pending.poll()) != null) {
+          c.flush();
+        }
+
+        for (final Iterator<SelectionKey> i = selector.selectedKeys().iterator(); i.hasNext(); ) {
+          final SelectionKey key = i.next();
+          i.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+
+          if (key.isAcceptable()) {
+            accept();
+          }
+          else {
+            c = (Connection) key.attachment();
+            if (key.isReadable()) {
+              c.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              c.flush();
+            }
+          }
+        }
+
+        sendKeepAlives();
+      }
+      catch (final IOException e) {
+        logger.log(Level.WARNING, "Error selecting", e); //$NON-NLS-1$
+      }
+    }
+
+    for (final SelectionKey key : selector.keys()) {
+      if (key.attachment() instanceof Connection) {
+        ((Connection) key.attachment()).closeNow();
+      }
+    }
+    try {
+      serverChannel.close();
+      selector.close();
+    }
+    catch (final IOException e) {
+      logger.log(Level.WARNING, "Error closing server", e); //$NON-NLS-1$
+    }
+  }
+
+  private void accept() {
+    SocketChannel channel = null;
+    try {
+      channel = serverChannel.accept();
+      if (channel == null) {
+        return;
+      }
+      channel.configureBlocking(false);
+      final Connection c = new Connection(channel);
+      c.key = channel.register(selector, SelectionKey.OP_READ, c);
+    }
+    catch (final IOException e) {
+      logger.log(Level.WARNING, "Error accepting connection", e); //$NON-NLS-1$
+      if (channel != null) {
+        try {
+          channel.close();
+        }
+        catch (final IOException ignore) {
+        }
+      }
+    }
+  }
+
+  private void sendKeepAlives() {
+    final long now = System.currentTimeMillis();
+    if (now - lastKeepAliveCheck < KEEP_ALIVE_CHECK) {
+      return;
+    }
+    lastKeepAliveCheck = now;
+
+    for (final SelectionKey key : selector.keys()) {
+      if (key.attachment() instanceof Connection) {
+        final Connection c = (Connection) key.attachment();
+        if (now - c.lastWrite >= KEEP_ALIVE) {
+          c.writeLine("");
+        }
+      }
+    }
+  }
+
+  /**
+   * A connection to one client. Lines may be queued from any thread, but only the server thread reads, writes
+   * or closes the channel.
+   */
+  private class Connection implements LineConnection {
+    private final SocketChannel channel;
+    private final InetAddress address;
+    private final PlayerNode node;
+    private SelectionKey key;
+
+    /** Guarded by this */
+    private final Deque<ByteBuffer> queue = new ArrayDeque<>();
+    private long queued;
+    private boolean signedOff;
+    private boolean overflowed;
+    private boolean deflating;
+    private Deflater deflater;
+    private final byte[] deflateBuffer = new byte[8192];
+
+    /** Used only by the server thread */
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private long lastWrite = System.currentTimeMillis();
+    private boolean closed;
+    private Inflater inflater;
+    private final byte[] inflateBuffer = new byte[8192];
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+      address = channel.socket().getInetAddress();
+      node = new PlayerNode(this, rootNode);
+    }
+
+    @Override
+    public void writeLine(String s) {
+      final ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(s + '\n'));
+      final boolean wasEmpty;
+      synchronized (this) {
+        if (signedOff || overflowed) {
+          return;
+        }
+        // Lines must be deflated in the order they are queued
+        final ByteBuffer b = deflater == null ? encoded : deflate(encoded);
+        if (!queue.isEmpty() && queued + b.remaining() > queueLimit) {
+          // Too far behind; drop what is queued and have the server thread disconnect it
+          overflowed = true;
+          queue.clear();
+          queued = 0;
+          wasEmpty = true;
+        }
+        else {
+          wasEmpty = queue.isEmpty();
+          queue.addLast(b);
+          queued += b.remaining();
+          signedOff = SIGN_OFF.equals(s);
+          if (SocketHandler.DEFLATE.equals(s)) {
+            deflater = new Deflater();
+          }
+        }
+      }
+
+      // A connection with lines already queued is already waiting to be written
+      if (wasEmpty) {
+        pending.add(this);
+        selector.wakeup();
+      }
+    }
+
+    /**
+     * Deflate a line, flushing the deflater so that the client can read it at once
+     */
+    private ByteBuffer deflate(ByteBuffer in) {
+      deflater.setInput(in);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(in.remaining() / 2 + 16);
+      int n;
+      do {
+        n = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+        out.write(deflateBuffer, 0, n);
+      } while (n == deflateBuffer.length);
+      return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private synchronized void startDeflating() {
+      if (!deflating) {
+        deflating = true;
+        writeLine(SocketHandler.DEFLATE);
+      }
+    }
+
+    @Override
+    public void close() {
+      writeLine(SIGN_OFF);
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+      return address;
+    }
+
+    /**
+     * Write as many of the queued lines as the channel will take, and wait to be able to write the rest
+     */
+    private void flush() {
+      if (closed) {
+        return;
+      }
+
+      final ByteBuffer[] buffers = new ByteBuffer[MAX_GATHER];
+      try {
+        while (true) {
+          final boolean dropped;
+          int n = 0;
+          synchronized (this) {
+            dropped = overflowed;
+            if (!dropped) {
+              n = Math.min(queue.size(), MAX_GATHER);
+              final Iterator<ByteBuffer> i = queue.iterator();
+              for (int j = 0; j < n; ++j) {
+                buffers[j] = i.next();
+              }
+            }
+          }
+
+          if (dropped) {
+            logger.warning("Disconnecting " + address + ", which has fallen too far behind"); //$NON-NLS-1$ //$NON-NLS-2$
+            closeNow();
+            return;
+          }
+
+          if (n == 0) {
+            break;
+          }
+
+          channel.write(buffers, 0, n);
+          lastWrite = System.currentTimeMillis();
+
+          int written = 0;
+          synchronized (this) {
+            while (written < n && !buffers[written].hasRemaining()) {
+              queued -= buffers[written].limit();
+              queue.removeFirst();
+              ++written;
+            }
+          }
+          Arrays.fill(buffers, 0, n, null);
+
+          if (written < n) {
+            // The channel is full
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+          }
+        }
+
+        key.interestOps(SelectionKey.OP_READ);
+
+        final boolean done;
+        synchronized (this) {
+          done = signedOff && queue.isEmpty();
+        }
+        if (done) {
+          closeNow();
+        }
+      }
+      catch (final IOException e) {
+        closeNow();
+      }
+    }
+
+    /**
+     * Read what has arrived, and handle each line which has been completed
+     */
+    private void read() {
+      try {
+        readBuffer.clear();
+        if (channel.read(readBuffer) < 0) {
+          closeNow();
+          return;
+        }
+
+        if (inflater == null) {
+          readLines(readBuffer.array(), 0, readBuffer.position());
+        }
+        else {
+          inflate(readBuffer.array(), 0, readBuffer.position());
+        }
+      }
+      catch (final IOException | DataFormatException e) {
+        closeNow();
+      }
+    }
+
+    private void inflate(byte[] bytes, int from, int to) throws IOException, DataFormatException {
+      inflater.setInput(bytes, from, to - from);
+      int n;
+      while (!closed && (n = inflater.inflate(inflateBuffer)) > 0) {
+        readLines(inflateBuffer, 0, n);
+      }
+    }
+
+    /**
+     * Handle each line which has been completed
+     *
+     * @throws IOException if a line is longer than {@link LineReader#MAX_LINE_LENGTH}, such as one inflated from a
+     *                     few bytes of deflated input, in which case the connection must be closed
+     */
+    private void readLines(byte[] bytes, int from, int end) throws IOException, DataFormatException {
+      // A newline byte is never part of a multi-byte UTF-8 character
+      int start = from;
+      for (int i = from; i < end; ++i) {
+        if (bytes[i] == '\n') {
+          append(bytes, start, i);
+          start = i + 1;
+
+          int length = lineLength;
+          if (length > 0 && line[length - 1] == '\r') {
+            --length;
+          }
+          final String s = new String(line, 0, length, StandardCharsets.UTF_8);
+          lineLength = 0;
+
+          if (SIGN_OFF.equals(s)) {
+            closeNow();
+            return;
+          }
+          else if (SocketHandler.DEFLATE.equals(s) && inflater == null) {
+            // The rest of what the client sends is deflated
+            inflater = new Inflater();
+            startDeflating();
+            inflate(bytes, start, end);
+            return;
+          }
+          else if (SocketHandler.DEFLATE_OFFER.equals(s)) {
+            if (SocketHandler.isAcceptDeflate()) {
+              startDeflating();
+            }
+          }
+          else if (!s.isEmpty()) {
+            handle(s);
+            if (closed) {
+              return;
+            }
+          }
+        }
+      }
+      append(bytes, start, end);
+    }
+
+    private void append(byte[] bytes, int from, int to) throws IOException {
+      final int n = to - from;
+      if (n > LineReader.MAX_LINE_LENGTH - lineLength) {
+        throw new IOException("Line longer than " + LineReader.MAX_LINE_LENGTH + " bytes"); //NON-NLS
+      }
+      if (lineLength + n > line.length) {
+        line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + n));
+      }
+      System.arraycopy(bytes, from, line, lineLength, n);
+      lineLength += n;
+    }
+
+    private void handle(String s) {
+      try {
+        node.handleMessage(s);
+      }
+      catch (final RuntimeException e) {
+        // Keep reading
+        logger.log(Level.WARNING, "Caught " + e.getClass().getName() + " handling " + s, e); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+
+    private void closeNow() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+
+      synchronized (this) {
+        signedOff = true;
+        queue.clear();
+        queued = 0;
+        if (deflater != null) {
+          deflater.end();
+        }
+      }
+      if (inflater != null) {
+        inflater.end();
+      }
+
+      key.cancel();
+      try {
+        channel.close();
+      }
+      catch (final IOException ignore) {
+      }
+
+      node.connectionClosed();
+    }
+  }
+}
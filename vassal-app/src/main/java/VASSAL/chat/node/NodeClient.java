@@ -49,6 +49,7 @@ import VASSAL.chat.ui.SimpleStatusControlsInitializer;
 import VASSAL.chat.ui.SynchAction;
 import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
+import VASSAL.command.CommandEnvelope;
 import VASSAL.i18n.Resources;
 import VASSAL.tools.PropertiesEncoder;
 import VASSAL.tools.SequenceEncoder;
@@ -73,6 +74,14 @@ import org.apache.commons.lang3.ArrayUtils;
 public class NodeClient implements LockableChatServerConnection,
     PlayerEncoder, ChatControlsInitializer, SocketWatcher {
   public static final String ZIP_HEADER = "!ZIP!"; //$NON-NLS-1$
+
+  /**
+   * Marks a message holding Commands in a {@link CommandEnvelope}. Envelopes are only sent to players who have said
+   * in their status that they can read them ({@link SimpleStatus#COMMAND_ENVELOPE}), and each one is marked so that
+   * the receiver knows which format it is in without having to guess from the Commands themselves.
+   * @since 3.8.0
+   */
+  public static final String ENVELOPE_HEADER = "!ENV!"; //$NON-NLS-1$
   protected PropertyChangeSupport propSupport = new PropertyChangeSupport(this);
   protected NodePlayer me;
   protected SimpleRoom currentRoom;
@@ -93,6 +102,9 @@ public class NodeClient implements LockableChatServerConnection,
   protected PropertyChangeListener profileChangeListener;
   protected NodeRoom pendingSynchToRoom;
 
+  /** The players connected to the server, as last listed, to which list deltas are applied */
+  private Node listedPlayers;
+
   private SocketHandler sender;
 
   protected final String host;
@@ -144,7 +156,8 @@ public class NodeClient implements LockableChatServerConnection,
         s.getIp(),
         s.getModuleVersion(),
         s.getCrc(),
-        s.getCombinedCrc()
+        s.getCombinedCrc(),
+        s.getCommandEnvelope()
       );
       p.setStatus(s);
       setUserInfo(p);
@@ -193,6 +206,7 @@ public class NodeClient implements LockableChatServerConnection,
         .getValue();
       send(Protocol.encodeRegisterCommand(me.getId(), path,
         new PropertiesEncoder(me.toProperties()).getStringValue()));
+      send(Protocol.encodeDeltasRequest());
       if (GameModule.getGameModule() != null) {
         final String username = (String) GameModule.getGameModule().getPrefs()
           .getValue("Login"); //$NON-NLS-1$
@@ -208,6 +222,7 @@ public class NodeClient implements LockableChatServerConnection,
     synchronized (this) {
       sender = new SocketHandler(s, this);
       sender.start();
+      sender.offerDeflate();
     }
   }
 
@@ -287,7 +302,34 @@ public class NodeClient implements LockableChatServerConnection,
 
   @Override
   public void sendToOthers(Command c) {
-    sendToOthers(encoder.encode(c));
+    if (currentRoom != null) {
+      final List<Player> others = new ArrayList<>(currentRoom.getPlayerList());
+      others.remove(me);
+      sendToOthers(encode(c, others));
+    }
+  }
+
+  /**
+   * Encode Commands to send to other players: in a {@link CommandEnvelope} marked with {@link #ENVELOPE_HEADER} if
+   * every one of them can read one, otherwise in the format every version of VASSAL reads. Messages in the default
+   * room are never sent in an envelope, since they are filtered by decoding and encoding them again.
+   *
+   * @param c Commands to send
+   * @param recipients The players who will receive them
+   * @return the message to send
+   */
+  protected String encode(Command c, List<Player> recipients) {
+    if (encoder instanceof GameModule
+      && currentRoom != null && !defaultRoomName.equals(currentRoom.getName())
+      && !recipients.isEmpty() && recipients.stream().allMatch(NodeClient::canReadCommandEnvelope)) {
+      final String envelope = ((GameModule) encoder).encodeEnvelope(c);
+      return envelope == null ? null : ENVELOPE_HEADER + envelope;
+    }
+    return encoder.encode(c);
+  }
+
+  private static boolean canReadCommandEnvelope(Player p) {
+    return p.getStatus() instanceof SimpleStatus && ((SimpleStatus) p.getStatus()).canReadCommandEnvelope();
   }
 
   public void sendToAll(String msg) {
@@ -328,7 +370,7 @@ public class NodeClient implements LockableChatServerConnection,
   public void sendTo(Player recipient, Command c) {
     final String path = new SequenceEncoder(moduleName, '/')
       .append("*").append(recipient.getId()).getValue(); //$NON-NLS-1$
-    forward(path, encoder.encode(c));
+    forward(path, encode(c, List.of(recipient)));
   }
 
   @Override
@@ -506,9 +548,11 @@ public class NodeClient implements LockableChatServerConnection,
    *          Encoded message
    */
   public void handleMessageFromServer(String msg) {
-    final Node n;
+    Node n;
     final Properties p;
-    if ((n = Protocol.decodeListCommand(msg)) != null) {
+    if ((n = Protocol.decodeListCommand(msg)) != null
+      || (listedPlayers != null && (n = Protocol.decodeListDelta(msg, listedPlayers)) != null)) {
+      listedPlayers = n;
       final Node mod = n.getChild(moduleName);
       if (mod != null) {
         updateRooms(mod);
@@ -545,6 +589,16 @@ public class NodeClient implements LockableChatServerConnection,
       }
     }
     else if ((p = Protocol.decodeRoomsInfo(msg)) != null) {
+      // Keep the rooms' info to hand for when the players are next updated by a delta
+      final Node mod = listedPlayers == null ? null : listedPlayers.getChild(moduleName);
+      if (mod != null) {
+        for (final Node room : mod.getChildren()) {
+          final String infoString = p.getProperty(room.getId());
+          if (infoString != null && infoString.length() > 0) {
+            room.setInfo(infoString);
+          }
+        }
+      }
       for (final NodeRoom aRoom : allRooms) {
         final String infoString = p.getProperty(aRoom.getName());
         if (infoString != null && infoString.length() > 0) {
@@ -581,7 +635,12 @@ public class NodeClient implements LockableChatServerConnection,
           e.printStackTrace();
         }
       }
-      propSupport.firePropertyChange(INCOMING_MSG, null, msg);
+      if (msg.startsWith(ENVELOPE_HEADER)) {
+        propSupport.firePropertyChange(INCOMING_ENVELOPE, null, msg.substring(ENVELOPE_HEADER.length()));
+      }
+      else {
+        propSupport.firePropertyChange(INCOMING_MSG, null, msg);
+      }
     }
   }
 
@@ -699,7 +758,8 @@ public class NodeClient implements LockableChatServerConnection,
         .getGameVersion()
         + ((g.getArchiveWriter() == null) ? "" : " " + Resources.getString("Editor.NodeClient.editing")),
         Long.toHexString(g.getCrc()),
-        Long.toHexString(g.getCombinedCrc()));
+        Long.toHexString(g.getCombinedCrc()),
+        Integer.toString(CommandEnvelope.VERSION));
     me.setStatus(s);
     g.getPrefs().getOption(GameModule.PERSONAL_INFO).addPropertyChangeListener(
         profileChangeListener);
@@ -54,9 +54,9 @@ public abstract class NodeClientFactory extends ChatServerFactory {
       logger.error(mess);
     });
 
-    server.addPropertyChangeListener(
-      ChatServerConnection.INCOMING_MSG, new CommandDecoder()
-    );
+    final CommandDecoder decoder = new CommandDecoder();
+    server.addPropertyChangeListener(ChatServerConnection.INCOMING_MSG, decoder);
+    server.addPropertyChangeListener(ChatServerConnection.INCOMING_ENVELOPE, decoder);
 
     return server;
   }
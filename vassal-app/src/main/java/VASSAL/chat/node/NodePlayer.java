@@ -71,7 +71,8 @@ public class NodePlayer extends SimplePlayer {
                     p.getProperty(SimpleStatus.IP, ""), //$NON-NLS-1$
                     p.getProperty(SimpleStatus.MODULE_VERSION, ""), //$NON-NLS-1$
                     p.getProperty(SimpleStatus.CRC, ""),
-                    p.getProperty(SimpleStatus.COMBINED_CRC, ""))); //$NON-NLS-1$
+                    p.getProperty(SimpleStatus.COMBINED_CRC, ""), //$NON-NLS-1$
+                    p.getProperty(SimpleStatus.COMMAND_ENVELOPE, ""))); //$NON-NLS-1$
   }
 
   public Properties toProperties() {
@@ -106,6 +107,10 @@ public class NodePlayer extends SimplePlayer {
     if (ip != null) {
       p1.put(SimpleStatus.COMBINED_CRC, combinedCrc);
     }
+    final String commandEnvelope = status.getCommandEnvelope();
+    if (commandEnvelope != null) {
+      p1.put(SimpleStatus.COMMAND_ENVELOPE, commandEnvelope);
+    }
     p1.put(ID, id == null ? "" : id);
     return p1;
   }
@@ -31,17 +31,29 @@ import VASSAL.tools.SequenceEncoder;
  * {@link #getInfo} returns an encoded {@link java.util.Properties} object with real name, profile, etc.
  */
 public class PlayerNode extends Node implements SocketWatcher {
-  private final SocketHandler input;
+  private final LineConnection input;
   protected String id;
   protected String info;
+  private volatile boolean listDeltas;
   private final AsynchronousServerNode server;
   private static ConnectionLimiter connLimiter = new ConnectionLimiter();
 
   public PlayerNode(Socket socket, AsynchronousServerNode server) throws IOException {
     super(null, null, null);
     this.server = server;
-    input = new SocketHandler(socket, this);
-    input.start();
+    final SocketHandler handler = new SocketHandler(socket, this);
+    input = handler;
+    handler.start();
+  }
+
+  /**
+   * A player reached over a connection which is already open, and which passes the lines it reads to
+   * {@link #handleMessage} and tells {@link #connectionClosed} when it is closed
+   */
+  PlayerNode(LineConnection connection, AsynchronousServerNode server) {
+    super(null, null, null);
+    this.server = server;
+    input = connection;
   }
 
   @Override
@@ -49,6 +61,11 @@ public class PlayerNode extends Node implements SocketWatcher {
     return id;
   }
 
+  /** @return true if the player's client has asked to be sent list deltas */
+  public boolean wantsListDeltas() {
+    return listDeltas;
+  }
+
   @Override
   public boolean isLeaf() {
     return true;
@@ -131,10 +148,17 @@ public class PlayerNode extends Node implements SocketWatcher {
     else if ((cmd = Protocol.decodeLoginCommand(line)) != null) {
       connLimiter.register(cmd, input);
     }
+    else if (Protocol.decodeDeltasRequest(line)) {
+      listDeltas = true;
+    }
   }
 
   @Override
   public void socketClosed(SocketHandler handler) {
+    connectionClosed();
+  }
+
+  void connectionClosed() {
     server.disconnect(this);
   }
 }
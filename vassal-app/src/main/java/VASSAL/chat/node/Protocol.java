@@ -18,6 +18,7 @@
 package VASSAL.chat.node;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Properties;
 
 import VASSAL.tools.PropertiesEncoder;
@@ -40,6 +41,8 @@ public class Protocol {
   public static final String ROOM_INFO = "ROOM_INFO\t"; //$NON-NLS-1$
   public static final String LOGIN = "LOGIN\t"; //$NON-NLS-1$
   public static final String KICK = "KICK\t"; //$NON-NLS-1$
+  public static final String LIST_DELTA = "LIST_DELTA\t"; //$NON-NLS-1$
+  public static final String DELTAS = "DELTAS\t"; //$NON-NLS-1$
 
   /**
    * Contains registration information sent when a client initially connects to
@@ -229,16 +232,105 @@ public class Protocol {
   public static String encodeListCommand(Node[] nodes) {
     final SequenceEncoder list = new SequenceEncoder('\t');
     for (final Node node : nodes) {
-      if (node.getPath() != null && node.getInfo() != null) {
-        final SequenceEncoder info = new SequenceEncoder('=');
-        info.append(node.getPath()).append(node.getInfo());
-        list.append(info.getValue());
+      final String entry = encodeListEntry(node);
+      if (entry != null) {
+        list.append(entry);
       }
     }
     final String value = list.getValue();
     return value == null ? LIST : LIST + value;
   }
 
+  /**
+   * @return the entry for a player in a list or list delta, or null if the player is not to be listed
+   */
+  public static String encodeListEntry(Node node) {
+    final String path = node.getPath();
+    final String info = node.getInfo();
+    return path == null || info == null ? null : new SequenceEncoder(path, '=').append(info).getValue();
+  }
+
+  /**
+   * @return the entry in a list delta for a player who has left the given path
+   */
+  public static String encodeListRemoval(String path) {
+    return new SequenceEncoder(path, '=').getValue();
+  }
+
+  /**
+   * The changes to the players connected to the server since the last list or list delta sent to a client. Each
+   * entry is either an entry as in a {@link #encodeListCommand list}, for a player who has connected, moved or
+   * changed their info, or just the path of a player who has left.
+   *
+   * @param entries from {@link #encodeListEntry} and {@link #encodeListRemoval}
+   */
+  public static String encodeListDelta(List<String> entries) {
+    final SequenceEncoder list = new SequenceEncoder('\t');
+    for (final String entry : entries) {
+      list.append(entry);
+    }
+    final String value = list.getValue();
+    return value == null ? LIST_DELTA : LIST_DELTA + value;
+  }
+
+  /**
+   * Apply a list delta to the tree of players built from a {@link #decodeListCommand list}
+   *
+   * @see #encodeListDelta
+   * @param cmd
+   * @param root the tree, which is changed
+   * @return the tree, or null if the command is not a list delta
+   */
+  public static Node decodeListDelta(String cmd, Node root) {
+    if (!cmd.startsWith(LIST_DELTA)) {
+      return null;
+    }
+
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(cmd.substring(LIST_DELTA.length()), '\t');
+    while (st.hasMoreTokens()) {
+      final SequenceEncoder.Decoder st2 = new SequenceEncoder.Decoder(st.nextToken(), '=');
+      final String path = st2.nextToken();
+
+      // Take the player out of wherever they were
+      final SequenceEncoder.Decoder sp = new SequenceEncoder.Decoder(path, '/');
+      final String moduleId = sp.nextToken();
+      String playerId = moduleId;
+      while (sp.hasMoreTokens()) {
+        playerId = sp.nextToken();
+      }
+      final Node module = root.getChild(moduleId);
+      if (module != null) {
+        for (final Node room : module.getChildren()) {
+          final Node player = room.getChild(playerId);
+          if (player != null) {
+            room.remove(player);
+            if (room.getChildren().length == 0) {
+              module.remove(room);
+            }
+          }
+        }
+      }
+
+      // And put them where they are now, unless they have left
+      if (st2.hasMoreTokens()) {
+        Node.build(root, path).setInfo(st2.nextToken());
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Sent by a client which can apply {@link #encodeListDelta list deltas}, asking to be sent them in place of
+   * full lists once it has been sent the first
+   */
+  public static String encodeDeltasRequest() {
+    return DELTAS;
+  }
+
+  public static boolean decodeDeltasRequest(String cmd) {
+    return cmd.startsWith(DELTAS);
+  }
+
   /**
    * @see #encodeListCommand
    * @param cmd
@@ -68,8 +68,17 @@ public class Server extends Thread {
     if ("null".equals(reportURL)) { //$NON-NLS-1$
       reportURL = null;
     }
+    final long coalesce = Long.parseLong(p.getProperty("coalesce", //$NON-NLS-1$
+      Long.toString(AsynchronousServerNode.DEFAULT_COALESCE_WINDOW)));
+    SocketHandler.setAcceptDeflate(!"false".equals(p.getProperty("deflate"))); //$NON-NLS-1$ //$NON-NLS-2$
     if (!"true".equals(p.getProperty("test"))) { //$NON-NLS-1$ //$NON-NLS-2$
-      new Server(new AsynchronousServerNode(reportURL), port);
+      final AsynchronousServerNode rootNode = new AsynchronousServerNode(reportURL, coalesce);
+      if ("true".equals(p.getProperty("nio"))) { //$NON-NLS-1$ //$NON-NLS-2$
+        new NioServer(rootNode, port);
+      }
+      else {
+        new Server(rootNode, port);
+      }
       new LockWatcher(1000L * 60 * 30, 1000L * 60, port).start();
     }
     if (p.getProperty("test") != null) { //$NON-NLS-1$
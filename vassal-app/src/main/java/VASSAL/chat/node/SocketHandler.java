@@ -17,37 +17,66 @@
  */
 package VASSAL.chat.node;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
 
-public class SocketHandler {
+/**
+ * Reads and writes lines of text over a socket, each on its own thread.
+ *
+ * Either end may {@link #offerDeflate offer} to compress the connection. An end which accepts, or which is told
+ * that the other end has begun compressing, sends {@link #DEFLATE} and deflates everything it sends after that,
+ * flushing the deflater at the end of each line so that the compression dictionary carries from one line to the
+ * next. An end which does not understand the offer ignores it, and the connection stays uncompressed.
+ */
+public class SocketHandler implements LineConnection {
   private final Socket sock;
   private final SocketWatcher handler;
-  private final BufferedReader reader;
-  private final BufferedWriter writer;
+  private final LineReader reader;
+  private Writer writer;
   private final BlockingQueue<String> writeQueue = new LinkedBlockingQueue<>();
   private boolean isOpen = true;
+  private boolean deflating = false;
   private Thread readThread = null;
   private Thread writeThread = null;
 
   private static final String SIGN_OFF = "!BYE"; //$NON-NLS-1$
 
+  /** Offers to compress the connection */
+  static final String DEFLATE_OFFER = "!DEFLATE?"; //$NON-NLS-1$
+
+  /** Everything sent after this line is deflated */
+  static final String DEFLATE = "!DEFLATE"; //$NON-NLS-1$
+
+  private static volatile boolean acceptDeflate = true;
+
   public SocketHandler(Socket sock, SocketWatcher handler) throws IOException {
     this.sock = sock;
     this.handler = handler;
-    reader = new BufferedReader(new InputStreamReader(sock.getInputStream(), StandardCharsets.UTF_8));
+    reader = new LineReader(sock.getInputStream());
     writer = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream(), StandardCharsets.UTF_8));
   }
 
+  /**
+   * @param accept false if offers from the other end of a connection to compress it are to be ignored
+   */
+  public static void setAcceptDeflate(boolean accept) {
+    acceptDeflate = accept;
+  }
+
+  public static boolean isAcceptDeflate() {
+    return acceptDeflate;
+  }
+
   public void start() {
     if (readThread == null) {
       readThread = startReadThread();
@@ -65,6 +94,15 @@ public class SocketHandler {
           if (SIGN_OFF.equals(line)) {
             break;
           }
+          else if (DEFLATE.equals(line)) {
+            reader.inflate();
+            startDeflating();
+          }
+          else if (DEFLATE_OFFER.equals(line)) {
+            if (acceptDeflate) {
+              startDeflating();
+            }
+          }
           else if (line.length() > 0) {
             try {
               handler.handleMessage(line);
@@ -141,8 +179,32 @@ public class SocketHandler {
   private void writeNext(String line) throws IOException {
     writer.write(line + '\n');
     writer.flush();
+    if (DEFLATE.equals(line)) {
+      writer = new BufferedWriter(new OutputStreamWriter(new DeflaterOutputStream(
+        new BufferedOutputStream(sock.getOutputStream()), true), StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Offer to compress the connection. If the other end accepts, both ends begin compressing what they send.
+   */
+  public void offerDeflate() {
+    writeLine(DEFLATE_OFFER);
+  }
+
+  /** @return true if what is sent over the connection is being compressed */
+  public synchronized boolean isDeflating() {
+    return deflating;
+  }
+
+  private synchronized void startDeflating() {
+    if (!deflating) {
+      deflating = true;
+      writeLine(DEFLATE);
+    }
   }
 
+  @Override
   public void writeLine(String pMessage) {
     try {
       writeQueue.put(pMessage);
@@ -155,6 +217,7 @@ public class SocketHandler {
     }
   }
 
+  @Override
   public void close() {
     writeLine(SIGN_OFF);
   }
@@ -187,6 +250,7 @@ public class SocketHandler {
     }
   }
 
+  @Override
   public InetAddress getInetAddress() {
     return sock.getInetAddress();
   }
@@ -74,6 +74,9 @@ public class ChangePiece extends Command {
         target.setState(newState);
       }
       bounds.addPiece(target);
+      if (target.getMap() != null) {
+        target.getMap().pieceChanged(target);
+      }
       bounds.repaint();
       if (target.getMap() != null
         && GlobalOptions.getInstance().centerOnOpponentsMove()
@@ -0,0 +1,289 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decodes a single command by offering it to a list of {@link CommandEncoder}s in turn until one of them
+ * decodes it, as {@link VASSAL.build.GameModule} does, but only offers it to the encoders which could decode it.
+ *
+ * The prefixes declared by {@link CommandEncoder#getDecodePrefixes} are held in a trie. Each node of the trie
+ * holds, in the order they were added, the encoders which declared no prefixes together with those which declared
+ * the prefix ending at that node or any shorter prefix of it. A command is then offered to the encoders held by the
+ * deepest node it reaches, which are tried in the same order as a scan of every encoder would try them, so the same
+ * encoder decodes it. An empty prefix stands for the empty command alone, which is offered to the encoders which
+ * declared no prefixes together with those which declared the empty one.
+ *
+ * The time spent in each encoder's decode method is counted, for the /decoders console command.
+ *
+ * @since 3.8.0
+ */
+public class CommandDecoderTable {
+
+  /** The number of calls to an encoder's decode method, and the time spent in them */
+  public static class Stats {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    public long getCalls() {
+      return calls.sum();
+    }
+
+    public long getDecoded() {
+      return decoded.sum();
+    }
+
+    public long getNanos() {
+      return nanos.sum();
+    }
+
+    @Override
+    public String toString() {
+      return "calls=" + getCalls() + " decoded=" + getDecoded() + " time=" + getNanos() / 1000 + "us"; //NON-NLS
+    }
+  }
+
+  /** A registered encoder and its statistics */
+  private static class Entry {
+    private final CommandEncoder encoder;
+    private final Stats stats = new Stats();
+    private final int order;
+
+    Entry(CommandEncoder encoder, int order) {
+      this.encoder = encoder;
+      this.order = order;
+    }
+  }
+
+  private static class Node {
+    private final Map<Character, Node> children = new HashMap<>();
+    private List<Entry> declared;
+    private Entry[] entries;
+
+    /** At the root only, the encoders which could decode the empty command */
+    private Entry[] empty;
+  }
+
+  private final List<Entry> entries = new ArrayList<>();
+  private int added = 0;
+
+  /** The trie, or null if it must be rebuilt */
+  private volatile Node root;
+
+  /**
+   * Adds an encoder, after all those already added
+   * @param ce Encoder to add
+   */
+  public synchronized void add(CommandEncoder ce) {
+    entries.add(new Entry(ce, added++));
+    root = null;
+  }
+
+  /**
+   * Removes an encoder
+   * @param ce Encoder to remove
+   */
+  public synchronized void remove(CommandEncoder ce) {
+    for (int i = 0; i < entries.size(); ++i) {
+      if (entries.get(i).encoder.equals(ce)) {
+        entries.remove(i);
+        root = null;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Offers a command to each encoder which could decode it, in the order they were added, until one does.
+   * @param command A single command
+   * @return the decoded {@link Command}, or null if no encoder could decode it
+   */
+  public Command decode(String command) {
+    for (final Entry e : lookup(command)) {
+      final long start = System.nanoTime();
+      final Command c = e.encoder.decode(command);
+      e.stats.nanos.add(System.nanoTime() - start);
+      e.stats.calls.increment();
+      if (c != null) {
+        e.stats.decoded.increment();
+        return c;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param command A single command
+   * @return the encoders which could decode it, in the order they were added
+   */
+  List<CommandEncoder> getCandidates(String command) {
+    final List<CommandEncoder> l = new ArrayList<>();
+    for (final Entry e : lookup(command)) {
+      l.add(e.encoder);
+    }
+    return l;
+  }
+
+  private Entry[] lookup(String command) {
+    Node node = root;
+    if (node == null) {
+      node = rebuild();
+    }
+    if (command.isEmpty()) {
+      return node.empty;
+    }
+    for (int i = 0; i < command.length(); ++i) {
+      final Node next = node.children.get(command.charAt(i));
+      if (next == null) {
+        break;
+      }
+      node = next;
+    }
+    return node.entries;
+  }
+
+  /**
+   * @return the decode statistics of the encoders, totalled by encoder class, most time first
+   */
+  public synchronized Map<String, Stats> getStats() {
+    final Map<String, Stats> totals = new HashMap<>();
+    for (final Entry e : entries) {
+      final Stats t = totals.computeIfAbsent(e.encoder.getClass().getName(), k -> new Stats());
+      t.calls.add(e.stats.getCalls());
+      t.decoded.add(e.stats.getDecoded());
+      t.nanos.add(e.stats.getNanos());
+    }
+
+    final List<Map.Entry<String, Stats>> sorted = new ArrayList<>(totals.entrySet());
+    sorted.sort((a, b) -> Long.compare(b.getValue().getNanos(), a.getValue().getNanos()));
+
+    final Map<String, Stats> result = new LinkedHashMap<>();
+    for (final Map.Entry<String, Stats> e : sorted) {
+      result.put(e.getKey(), e.getValue());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Resets the decode statistics of every encoder
+   */
+  public synchronized void resetStats() {
+    for (final Entry e : entries) {
+      e.stats.calls.reset();
+      e.stats.decoded.reset();
+      e.stats.nanos.reset();
+    }
+  }
+
+  /**
+   * Build a new trie, and swap it in whole so that decoding need not lock. This is done on the first decode after
+   * the encoders change, rather than on each change, as modules add many encoders while they load.
+   */
+  private synchronized Node rebuild() {
+    if (root != null) {
+      return root;
+    }
+
+    final Node r = new Node();
+    final List<Entry> unprefixed = new ArrayList<>();
+    final List<Entry> empty = new ArrayList<>();
+
+    for (final Entry e : entries) {
+      final String[] prefixes = declaredPrefixes(e.encoder);
+      if (prefixes == null) {
+        unprefixed.add(e);
+        empty.add(e);
+        continue;
+      }
+
+      for (final String prefix : prefixes) {
+        if (prefix.isEmpty()) {
+          if (!empty.contains(e)) {
+            empty.add(e);
+          }
+          continue;
+        }
+
+        Node node = r;
+        for (int i = 0; i < prefix.length(); ++i) {
+          node = node.children.computeIfAbsent(prefix.charAt(i), k -> new Node());
+        }
+        if (node.declared == null) {
+          node.declared = new ArrayList<>();
+        }
+        if (!node.declared.contains(e)) {
+          node.declared.add(e);
+        }
+      }
+    }
+
+    fill(r, unprefixed);
+    r.empty = empty.toArray(new Entry[0]);
+    root = r;
+    return r;
+  }
+
+  /**
+   * @return the prefixes declared by an encoder, or null if it declares none or if a subclass has overridden its
+   * decode method without declaring prefixes again, as custom module classes may do
+   */
+  public static String[] declaredPrefixes(CommandEncoder ce) {
+    final String[] prefixes = ce.getDecodePrefixes();
+    if (prefixes == null) {
+      return null;
+    }
+
+    try {
+      final Class<?> decoder = ce.getClass().getMethod("decode", String.class).getDeclaringClass(); //NON-NLS
+      final Class<?> declarer = ce.getClass().getMethod("getDecodePrefixes").getDeclaringClass(); //NON-NLS
+      return declarer.isAssignableFrom(decoder) && decoder != declarer ? null : prefixes;
+    }
+    catch (NoSuchMethodException | SecurityException e) {
+      return null;
+    }
+  }
+
+  /** Give each node every encoder which could decode a command reaching it, in the order they were added */
+  private static void fill(Node node, List<Entry> inherited) {
+    final List<Entry> here = new ArrayList<>(inherited);
+    if (node.declared != null) {
+      for (final Entry e : node.declared) {
+        if (!here.contains(e)) {
+          here.add(e);
+        }
+      }
+      here.sort(Comparator.comparingInt(e -> e.order));
+      node.declared = null;
+    }
+    node.entries = here.toArray(new Entry[0]);
+
+    for (final Node child : node.children.values()) {
+      fill(child, here);
+    }
+  }
+}
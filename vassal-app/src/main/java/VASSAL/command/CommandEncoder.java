@@ -42,4 +42,17 @@ public interface CommandEncoder  {
   Command decode(String command);
   /** Translate a {@link Command} into a String */
   String encode(Command c);
+
+  /**
+   * Declares the prefixes of the Strings this encoder decodes, so that {@link VASSAL.build.GameModule} need only offer
+   * it Strings starting with one of them. An encoder which declares prefixes must return null from {@link #decode} for
+   * any String starting with none of them, and its prefixes must not change while it is registered. An empty prefix
+   * stands for the empty String alone. An encoder which returns an empty array is offered no Strings, as when another
+   * encoder decodes on its behalf.
+   *
+   * @return the prefixes, or null if this encoder must be offered every String
+   */
+  default String[] getDecodePrefixes() {
+    return null;
+  }
 }
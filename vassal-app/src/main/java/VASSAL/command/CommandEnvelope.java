@@ -0,0 +1,286 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Encodes a {@link Command} tree as a flat list of length-prefixed records, instead of nesting the encoding of
+ * each level inside the level above as {@link VASSAL.build.GameModule#encode(Command)} does.
+ *
+ * The envelope starts with a header, {@link #MAGIC} followed by the format version and a newline, and then holds
+ * one record per Command in the order they execute. Each record is the depth of the Command in the tree, a comma,
+ * the length of its encoding, a colon, and then the encoding itself, unescaped. Since no level is ever escaped
+ * again by the level above, the size of the envelope is the total size of the encodings plus a few characters per
+ * Command, however deep the tree, and both writing and reading walk the tree iteratively.
+ *
+ * An encoding in the old format can start with anything at all, since a Command tree whose root has no encoding of
+ * its own starts with the separator, and one whose root has no sub-commands is just the root's own encoding. So the
+ * header cannot tell an envelope from the old format, and nothing here tries to: whoever reads an encoding must
+ * already know which format it is in, from where it was found. Save games and logfiles written in an envelope are
+ * stored under {@link VASSAL.build.module.GameState#SAVEFILE_ENVELOPE_ZIP_ENTRY}, and online clients only send each
+ * other envelopes once they have said in their status that they can read them, marking the messages that hold
+ * them (see {@link VASSAL.chat.node.NodeClient#ENVELOPE_HEADER}). The header only checks that what was found is
+ * what was expected, and which version of the format it is in.
+ *
+ * @since 3.8.0
+ */
+public class CommandEnvelope {
+
+  /** Starts every envelope, followed by its version */
+  public static final String MAGIC = "VCMD/"; //NON-NLS
+
+  /** The version of the envelope format written */
+  public static final int VERSION = 1;
+
+  private final Function<Command, String> encoder;
+  private final Function<String, Command> decoder;
+
+  /** A Command being read, and the sub-commands appended to it so far */
+  private static class Node {
+    private Command c;
+
+    Node(Command c) {
+      this.c = c;
+    }
+  }
+
+  /**
+   * @param encoder Encodes a single Command, ignoring any sub-commands; returns null if the Command has no encoding
+   * @param decoder Decodes a single Command, returning null if it is not recognized
+   */
+  public CommandEnvelope(Function<Command, String> encoder, Function<String, Command> decoder) {
+    this.encoder = encoder;
+    this.decoder = decoder;
+  }
+
+  /**
+   * Encode a Command tree in an envelope
+   *
+   * @param c Command to encode
+   * @return the envelope, or null if the Command has no encoding
+   */
+  public String encode(Command c) {
+    final StringWriter w = new StringWriter();
+    try {
+      return write(c, w) ? w.toString() : null;
+    }
+    catch (IOException e) {
+      // Can't happen, StringWriter does not throw
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Write a Command tree in an envelope
+   *
+   * @param c   Command to encode
+   * @param out Writer to write to
+   * @return false if the Command has no encoding, in which case nothing is written
+   * @throws IOException if the Writer fails
+   */
+  public boolean write(Command c, Writer out) throws IOException {
+    if (c == null) {
+      return false;
+    }
+
+    final String s = encoder.apply(c);
+    final Command[] sub = c.getSubCommands();
+    if (s == null && sub.length == 0) {
+      return false;
+    }
+
+    out.write(MAGIC);
+    out.write(Integer.toString(VERSION));
+    out.write('\n');
+    writeRecord(0, s, out);
+
+    // The sub-commands still to be written at each level below the root
+    final Deque<Iterator<Command>> stack = new ArrayDeque<>();
+    stack.push(Arrays.asList(sub).iterator());
+
+    while (!stack.isEmpty()) {
+      final Iterator<Command> i = stack.peek();
+      if (!i.hasNext()) {
+        stack.pop();
+        continue;
+      }
+
+      final Command command = i.next();
+      final String s2 = encoder.apply(command);
+      final Command[] sub2 = command.getSubCommands();
+      if (s2 == null && sub2.length == 0) {
+        continue;
+      }
+
+      writeRecord(stack.size(), s2, out);
+      if (sub2.length > 0) {
+        stack.push(Arrays.asList(sub2).iterator());
+      }
+    }
+
+    return true;
+  }
+
+  private static void writeRecord(int depth, String s, Writer out) throws IOException {
+    final String enc = s == null ? "" : s;
+    out.write(Integer.toString(depth));
+    out.write(',');
+    out.write(Integer.toString(enc.length()));
+    out.write(':');
+    out.write(enc);
+  }
+
+  /**
+   * Decode a Command tree from an envelope, rebuilding it as {@link VASSAL.build.GameModule#decode(String)} would
+   * from the old format
+   *
+   * @param s The envelope
+   * @return the decoded Command, or null if none of it could be decoded
+   * @throws IllegalArgumentException if the envelope is malformed
+   */
+  public Command decode(String s) {
+    try {
+      return readTree(new StringReader(s), null);
+    }
+    catch (IOException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Read a Command tree from an envelope, rebuilding it as {@link VASSAL.build.GameModule#decode(String)} would
+   * from the old format
+   *
+   * @param in Reader to read from; it is read to the end, but not closed
+   * @param decoded If not null, is passed each Command as soon as it has been decoded, such as to report progress
+   * @return the decoded Command, or null if none of it could be decoded
+   * @throws IOException if the Reader fails or the envelope is malformed
+   */
+  public Command readTree(Reader in, Consumer<Command> decoded) throws IOException {
+    readHeader(in);
+
+    // The bottom of the stack holds the root, the rest the path from the root to the last Command read
+    final Deque<Node> stack = new ArrayDeque<>();
+    stack.push(new Node(null));
+
+    for (Record r = readRecord(in); r != null; r = readRecord(in)) {
+      if (r.depth >= stack.size()) {
+        throw new IOException("Command envelope skips a level at depth " + r.depth); //NON-NLS
+      }
+
+      while (stack.size() > r.depth + 1) {
+        appendTop(stack);
+      }
+      final Command c = decoder.apply(r.encoding);
+      if (c != null && decoded != null) {
+        decoded.accept(c);
+      }
+      stack.push(new Node(c));
+    }
+
+    while (stack.size() > 1) {
+      appendTop(stack);
+    }
+    return stack.pop().c;
+  }
+
+  /** Finish the Command on top of the stack, and append it to its parent as GameModule.decode(String) would */
+  private static void appendTop(Deque<Node> stack) {
+    final Command child = stack.pop().c;
+    final Node parent = stack.peek();
+    parent.c = parent.c == null ? child : parent.c.append(child);
+  }
+
+  private static void readHeader(Reader in) throws IOException {
+    for (int i = 0; i < MAGIC.length(); ++i) {
+      if (in.read() != MAGIC.charAt(i)) {
+        throw new IOException("Not a command envelope"); //NON-NLS
+      }
+    }
+
+    final int version = readNumber(in, '\n');
+    if (version > VERSION) {
+      throw new IOException("Command envelope version " + version + " is newer than the supported version " + VERSION); //NON-NLS
+    }
+  }
+
+  private static class Record {
+    private final int depth;
+    private final String encoding;
+
+    Record(int depth, String encoding) {
+      this.depth = depth;
+      this.encoding = encoding;
+    }
+  }
+
+  /** @return the next record, or null at the end of the envelope */
+  private static Record readRecord(Reader in) throws IOException {
+    final int first = in.read();
+    if (first < 0) {
+      return null;
+    }
+
+    final int depth = readNumber(in, first, ',');
+    final int length = readNumber(in, ':');
+
+    final char[] buf = new char[length];
+    for (int off = 0; off < length; ) {
+      final int n = in.read(buf, off, length - off);
+      if (n < 0) {
+        throw new IOException("Command envelope ends within a command"); //NON-NLS
+      }
+      off += n;
+    }
+
+    return new Record(depth, new String(buf));
+  }
+
+  private static int readNumber(Reader in, char terminator) throws IOException {
+    return readNumber(in, in.read(), terminator);
+  }
+
+  private static int readNumber(Reader in, int first, char terminator) throws IOException {
+    int n = 0;
+    int digits = 0;
+    for (int c = first; c != terminator; c = in.read()) {
+      if (c < '0' || c > '9' || ++digits > 9) {
+        throw new IOException("Malformed command envelope"); //NON-NLS
+      }
+      n = n * 10 + (c - '0');
+    }
+
+    if (digits == 0) {
+      throw new IOException("Malformed command envelope"); //NON-NLS
+    }
+    return n;
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads an encoded {@link Command} tree, as written by {@link VASSAL.build.GameModule#encode(Command)} or
+ * {@link CommandTreeWriter}, from a {@link Reader}, decoding each Command as soon as it has been read instead of
+ * first reading the encoding of the whole tree into a single String.
+ *
+ * {@link VASSAL.build.GameModule#decode(String)} splits its input on the separator with a
+ * {@link VASSAL.tools.SequenceEncoder.Decoder} and recursively decodes each token, so that each level of nesting
+ * removes one level of escaping. This class does the same, but each token is a view of its parent which removes
+ * the escaping as characters are read, so only the encoding of the single Command currently being decoded is ever
+ * held in memory.
+ *
+ * The Commands are put together into the same tree {@link VASSAL.build.GameModule#decode(String)} would return, since
+ * some Commands, such as those of a logfile, act on their sub-commands rather than just executing them in turn.
+ * As with {@link CommandTreeWriter}, a token starting with a single quote cannot be streamed, since whether it was
+ * quoted depends on its last character; such tokens are read into a String and decoded from that.
+ */
+public class CommandTreeReader {
+
+  private final char separator;
+  private final Function<String, Command> decoder;
+  private final Function<String, Command> treeDecoder;
+
+  /**
+   * @param separator   Separator character used between Commands
+   * @param decoder     Decodes a single Command, returning null if it is not recognized
+   * @param treeDecoder Decodes a Command and all its sub-commands from a String, used for tokens that cannot be streamed
+   */
+  public CommandTreeReader(char separator, Function<String, Command> decoder, Function<String, Command> treeDecoder) {
+    this.separator = separator;
+    this.decoder = decoder;
+    this.treeDecoder = treeDecoder;
+  }
+
+  /**
+   * Read and decode an encoded Command tree
+   *
+   * @param in Reader to read from; it is read to the end, but not closed
+   * @return the decoded Command tree, or null if none of it could be decoded
+   * @throws IOException if the Reader fails
+   */
+  public Command read(Reader in) throws IOException {
+    return read(in, null);
+  }
+
+  /**
+   * Read and decode an encoded Command tree
+   *
+   * @param in      Reader to read from; it is read to the end, but not closed
+   * @param decoded If not null, is passed each Command as soon as it has been decoded, such as to report progress
+   * @return the decoded Command tree, or null if none of it could be decoded
+   * @throws IOException if the Reader fails
+   */
+  public Command read(Reader in, Consumer<Command> decoded) throws IOException {
+    final Source src = new ReaderSource(in);
+    if (src.peek() == '\'') {
+      return notify(treeDecoder.apply(readAll(src)), decoded);
+    }
+    return decode(src, decoded);
+  }
+
+  /**
+   * Decode a String which does not start with a quote, as {@link VASSAL.build.GameModule#decode(String)} would
+   */
+  private Command decode(Source src, Consumer<Command> decoded) throws IOException {
+    // Read up to the first separator, if any. No separator means this is a single Command.
+    final StringBuilder buf = new StringBuilder();
+    int c;
+    while ((c = src.read()) != -1 && c != separator) {
+      buf.append((char) c);
+    }
+
+    if (c == -1) {
+      return notify(decoder.apply(buf.toString()), decoded);
+    }
+
+    // Otherwise, this is a sequence. Put back what we have read, and decode each token in it,
+    // appending each to the first as GameModule.decode(String) does.
+    src.unread(c);
+    for (int i = buf.length() - 1; i >= 0; --i) {
+      src.unread(buf.charAt(i));
+    }
+
+    Command cmd = null;
+    TokenSource tok;
+    do {
+      tok = new TokenSource(src);
+      final Command next;
+      if (tok.peek() == '\'') {
+        next = notify(treeDecoder.apply(unquote(readAll(tok))), decoded);
+      }
+      else {
+        next = decode(tok, decoded);
+      }
+      cmd = cmd == null ? next : cmd.append(next);
+      tok.skip();
+    } while (tok.endedWithSeparator());
+
+    return cmd;
+  }
+
+  private static Command notify(Command c, Consumer<Command> decoded) {
+    if (c != null && decoded != null) {
+      decoded.accept(c);
+    }
+    return c;
+  }
+
+  private static String readAll(Source src) throws IOException {
+    final StringBuilder buf = new StringBuilder();
+    int c;
+    while ((c = src.read()) != -1) {
+      buf.append((char) c);
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Strip enclosing quotes, as {@link VASSAL.tools.SequenceEncoder.Decoder} does
+   */
+  private static String unquote(String s) {
+    final int len = s.length();
+    return len > 1 && s.charAt(0) == '\'' && s.charAt(len - 1) == '\'' ? s.substring(1, len - 1) : s;
+  }
+
+  /**
+   * A source of characters, with pushback
+   */
+  private abstract static class Source {
+    private char[] pushback = new char[16];
+    private int pushed = 0;
+
+    /** @return The next character, or -1 at the end */
+    public int read() throws IOException {
+      return pushed > 0 ? pushback[--pushed] : readNext();
+    }
+
+    public int peek() throws IOException {
+      final int c = read();
+      if (c != -1) {
+        unread(c);
+      }
+      return c;
+    }
+
+    public void unread(int c) {
+      if (pushed == pushback.length) {
+        final char[] a = new char[pushed * 2];
+        System.arraycopy(pushback, 0, a, 0, pushed);
+        pushback = a;
+      }
+      pushback[pushed++] = (char) c;
+    }
+
+    protected abstract int readNext() throws IOException;
+  }
+
+  private static class ReaderSource extends Source {
+    private final Reader in;
+
+    ReaderSource(Reader in) {
+      this.in = in;
+    }
+
+    @Override
+    protected int readNext() throws IOException {
+      return in.read();
+    }
+  }
+
+  /**
+   * One token of a sequence being read from another Source. An escaped separator is returned as a separator, and an
+   * unescaped separator ends the token.
+   */
+  private class TokenSource extends Source {
+    private final Source parent;
+    private boolean ended = false;
+    private boolean endedWithSeparator = false;
+
+    TokenSource(Source parent) {
+      this.parent = parent;
+    }
+
+    @Override
+    protected int readNext() throws IOException {
+      if (ended) {
+        return -1;
+      }
+
+      final int c = parent.read();
+      if (c == '\\') {
+        final int next = parent.read();
+        if (next == separator) {
+          return separator;
+        }
+        if (next != -1) {
+          parent.unread(next);
+        }
+        return c;
+      }
+      else if (c == separator) {
+        ended = endedWithSeparator = true;
+        return -1;
+      }
+      else if (c == -1) {
+        ended = true;
+      }
+      return c;
+    }
+
+    /** Skip to the end of the token */
+    void skip() throws IOException {
+      while (read() != -1) {
+        // skip
+      }
+    }
+
+    /** @return true if the token ended with a separator, so there is another token after it */
+    boolean endedWithSeparator() {
+      return endedWithSeparator;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Function;
+
+/**
+ * Writes a compound {@link Command} tree to a {@link Writer} in exactly the form produced by
+ * {@link VASSAL.build.GameModule#encode(Command)}, without ever building the encoding of the whole tree
+ * as a single String.
+ *
+ * {@link VASSAL.build.GameModule#encode(Command)} joins each Command with its sub-commands using a
+ * {@link VASSAL.tools.SequenceEncoder}, so every level of nesting escapes the level below it again. Each
+ * escaping pass puts a backslash in front of each separator character, so a separator originating at nesting
+ * depth <i>d</i> ends up preceded by <i>d</i> backslashes. This class tracks the depth as it walks the tree
+ * and writes each character with its final escaping directly.
+ *
+ * The one case which cannot be streamed is a sub-tree whose encoding starts with a single quote, as the
+ * SequenceEncoder then needs to see its last character to decide whether to quote it. Such sub-trees are
+ * encoded to a String first, and written from that.
+ */
+public class CommandTreeWriter {
+
+  private final char separator;
+  private final Function<Command, String> encoder;
+  private final Function<Command, String> treeEncoder;
+
+  /**
+   * @param separator   Separator character used between Commands
+   * @param encoder     Encodes a single Command, ignoring any sub-commands; returns null if the Command has no encoding
+   * @param treeEncoder Encodes a Command and all its sub-commands to a String, used for sub-trees that cannot be streamed
+   */
+  public CommandTreeWriter(char separator, Function<Command, String> encoder, Function<Command, String> treeEncoder) {
+    this.separator = separator;
+    this.encoder = encoder;
+    this.treeEncoder = treeEncoder;
+  }
+
+  /**
+   * Write the encoding of a Command tree
+   *
+   * @param c   Command to encode
+   * @param out Writer to write to
+   * @return false if the Command has no encoding, in which case nothing is written
+   * @throws IOException if the Writer fails
+   */
+  public boolean write(Command c, Writer out) throws IOException {
+    if (c == null) {
+      return false;
+    }
+
+    final String s = encoder.apply(c);
+    final Command[] sub = c.getSubCommands();
+    if (s == null && sub.length == 0) {
+      return false;
+    }
+
+    write(s, sub, out, 0);
+    return true;
+  }
+
+  /**
+   * Write a Command tree
+   *
+   * @param s     Encoding of the Command itself
+   * @param sub   Sub-commands of the Command
+   * @param out   Writer to write to
+   * @param depth Depth of escaping to apply to the encoding of the Command
+   */
+  private void write(String s, Command[] sub, Writer out, int depth) throws IOException {
+    if (sub.length == 0) {
+      writeEscaped(s, out, depth);
+      return;
+    }
+
+    // With sub-commands, the Command's own encoding is the first element of a sequence
+    writeElement(s, out, depth);
+
+    for (final Command command : sub) {
+      final String s2 = encoder.apply(command);
+      final Command[] sub2 = command.getSubCommands();
+      if (s2 == null && sub2.length == 0) {
+        continue;
+      }
+
+      writeSeparator(out, depth);
+
+      final char first = firstChar(s2, sub2.length > 0);
+      if (first == '\\') {
+        // Encoding starts with a backslash, so is always quoted
+        out.write('\'');
+        write(s2, sub2, out, depth + 1);
+        out.write('\'');
+      }
+      else if (first == '\'') {
+        // Whether this is quoted depends on the last character, which we don't know yet
+        writeElement(treeEncoder.apply(command), out, depth);
+      }
+      else {
+        write(s2, sub2, out, depth + 1);
+      }
+    }
+  }
+
+  /**
+   * Write a String as one element of a sequence, quoting it as {@link VASSAL.tools.SequenceEncoder#append(String)} would.
+   */
+  private void writeElement(String s, Writer out, int depth) throws IOException {
+    if (s == null || s.isEmpty()) {
+      return;
+    }
+
+    if (s.charAt(0) == '\\' || (s.charAt(0) == '\'' && s.charAt(s.length() - 1) == '\'')) {
+      out.write('\'');
+      writeEscaped(s, out, depth + 1);
+      out.write('\'');
+    }
+    else {
+      writeEscaped(s, out, depth + 1);
+    }
+  }
+
+  /**
+   * @return The first character of the encoding of a Command tree, or 0 if the encoding can neither be quoted
+   * nor start with a backslash
+   */
+  private char firstChar(String s, boolean hasSubCommands) {
+    if (s == null || s.isEmpty()) {
+      return 0;
+    }
+
+    final char c = s.charAt(0);
+    if (!hasSubCommands) {
+      return c;
+    }
+
+    // The Command's own encoding will be the first element of a sequence, and may be quoted or escaped
+    if (c == '\\' || (c == '\'' && s.charAt(s.length() - 1) == '\'')) {
+      return '\'';
+    }
+    return c == separator ? '\\' : c;
+  }
+
+  private void writeSeparator(Writer out, int depth) throws IOException {
+    for (int i = 0; i < depth; i++) {
+      out.write('\\');
+    }
+    out.write(separator);
+  }
+
+  private void writeEscaped(String s, Writer out, int depth) throws IOException {
+    if (s == null) {
+      return;
+    }
+
+    if (depth == 0) {
+      out.write(s);
+      return;
+    }
+
+    int begin = 0;
+    int end = s.indexOf(separator);
+    while (end >= 0) {
+      out.write(s, begin, end - begin);
+      writeSeparator(out, depth);
+      begin = end + 1;
+      end = s.indexOf(separator, begin);
+    }
+    out.write(s, begin, s.length() - begin);
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.util.Objects;
+
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+
+/**
+ * The type and state of a {@link GamePiece} at some moment, and the {@link Stack} it was in, or the fact that no
+ * piece with its id existed. Snapshots are immutable, so one may be shared by every moment at which the piece was
+ * unchanged.
+ *
+ * @since 3.8.0
+ */
+public final class PieceSnapshot {
+  private final String id;
+  private final String type;
+  private final String state;
+  private final String parentId;
+
+  /**
+   * @param id       Piece id
+   * @param type     Type of the piece, or null if it need not be recreated
+   * @param state    State of the piece, or null if no such piece existed
+   * @param parentId Id of the Stack holding the piece, or null
+   */
+  public PieceSnapshot(String id, String type, String state, String parentId) {
+    this.id = id;
+    this.type = type;
+    this.state = state;
+    this.parentId = parentId;
+  }
+
+  /**
+   * @param id Piece id
+   * @return a snapshot recording that no piece with the id existed
+   */
+  public static PieceSnapshot absent(String id) {
+    return new PieceSnapshot(id, null, null, null);
+  }
+
+  /**
+   * @param id    Piece id
+   * @param piece The piece with the id, or null if there is none
+   * @return a snapshot of the piece as it is now
+   */
+  public static PieceSnapshot of(String id, GamePiece piece) {
+    return of(id, piece, null);
+  }
+
+  /**
+   * @param id       Piece id
+   * @param piece    The piece with the id, or null if there is none
+   * @param previous An earlier snapshot of the same piece, whose strings are reused where they are unchanged
+   * @return a snapshot of the piece as it is now
+   */
+  public static PieceSnapshot of(String id, GamePiece piece, PieceSnapshot previous) {
+    if (piece == null) {
+      return absent(id);
+    }
+
+    String type = piece.getType();
+    String state = piece.getState();
+    if (previous != null) {
+      if (type.equals(previous.type)) {
+        type = previous.type;
+      }
+      if (state.equals(previous.state)) {
+        state = previous.state;
+      }
+    }
+
+    final Stack parent = piece.getParent();
+    return new PieceSnapshot(id, type, state, parent == null ? null : parent.getId());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public String getParentId() {
+    return parentId;
+  }
+
+  /** @return true if the piece existed */
+  public boolean isPresent() {
+    return state != null;
+  }
+
+  /**
+   * @return this snapshot without the type of the piece, which is only needed to recreate it
+   */
+  public PieceSnapshot withoutType() {
+    return type == null ? this : new PieceSnapshot(id, null, state, parentId);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PieceSnapshot)) {
+      return false;
+    }
+    final PieceSnapshot s = (PieceSnapshot) o;
+    return id.equals(s.id) && Objects.equals(type, s.type) && Objects.equals(state, s.state) &&
+      Objects.equals(parentId, s.parentId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, type, state, parentId);
+  }
+
+  @Override
+  public String toString() {
+    return id + (isPresent() ? "=" + state : " absent"); //NON-NLS
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import VASSAL.build.module.Chatter;
+import VASSAL.build.module.properties.ChangePropertyCommand;
+import VASSAL.counters.GamePiece;
+
+/**
+ * Keeps the state each piece had before each of the most recent steps of a game, so that any number of those steps
+ * can be undone by a single {@link RestorePieces} instead of by executing the undo Command of every step.
+ *
+ * The history holds a {@link PieceSnapshot} of every piece as it was after the last step recorded. Each step
+ * records the snapshots, from before it, of only the pieces it touched and of the stacks they left or joined, and
+ * then replaces those with new snapshots; as snapshots are immutable, a piece which does not change is never copied.
+ * Undoing several steps restores, for each piece, its snapshot from before the earliest of them, so costs no more
+ * than undoing the one of them which touched the most pieces.
+ *
+ * A step can only be undone this way if every Command in it which has an undo Command either changes pieces in a
+ * way the history can follow, or is a chat message or a property change, whose undo Command is kept with the step.
+ * A step with any other undoable Command, or whose {@link ChangePiece}s show that the history has fallen out of
+ * step with the game, is not kept. Such a step may have changed pieces the history cannot see, so rather than take
+ * new snapshots of every piece, the history stops trusting the snapshots it has. Each is trusted again once a step
+ * touches its piece: a step which touches a piece with an untrusted snapshot is not kept either, unless its
+ * {@link ChangePiece} shows the snapshot to be right, and the piece's snapshot is taken afresh.
+ *
+ * @since 3.8.0
+ */
+public class PieceSnapshotHistory {
+
+  /** The snapshots taken before a step, and the undo Commands of the rest of it */
+  private static class Step {
+    private final int logIndex;
+    private final Map<String, PieceSnapshot> before;
+    private final List<Command> otherUndos;
+
+    Step(int logIndex, Map<String, PieceSnapshot> before, List<Command> otherUndos) {
+      this.logIndex = logIndex;
+      this.before = before;
+      this.otherUndos = otherUndos;
+    }
+  }
+
+  /** What a step did */
+  private class Walk {
+    private final Set<String> ids = new LinkedHashSet<>();
+    private final Set<String> added = new HashSet<>();
+    private final Set<String> verified = new HashSet<>();
+    private final List<Command> otherUndos = new ArrayList<>();
+    private boolean unknown;
+    private boolean stale;
+
+    private void visit(Command c) {
+      if (c instanceof ChangePiece) {
+        final ChangePiece cp = (ChangePiece) c;
+        // Only the first change to a piece in a step can be checked against the snapshot
+        if (touch(cp.getId()) && cp.getOldState() != null) {
+          final PieceSnapshot s = current.get(cp.getId());
+          if (s != null) {
+            if (cp.getOldState().equals(s.getState())) {
+              verified.add(cp.getId());
+            }
+            else {
+              stale = true;
+            }
+          }
+        }
+      }
+      else if (c instanceof MovePiece) {
+        touch(((MovePiece) c).getId());
+      }
+      else if (c instanceof AddPiece) {
+        final GamePiece p = ((AddPiece) c).getTarget();
+        if (p != null && p.getId() != null) {
+          touch(p.getId());
+          added.add(p.getId());
+        }
+      }
+      else if (c instanceof RemovePiece) {
+        touch(((RemovePiece) c).getId());
+      }
+      else if (c instanceof SetPersistentPropertyCommand) {
+        touch(((SetPersistentPropertyCommand) c).getId());
+      }
+      else if (c instanceof RestorePieces) {
+        for (final PieceSnapshot s : ((RestorePieces) c).getSnapshots()) {
+          touch(s.getId());
+          added.add(s.getId());
+        }
+      }
+      else {
+        final Command undo = c.myUndoCommand();
+        if (undo != null) {
+          if (c instanceof Chatter.DisplayText || c instanceof ChangePropertyCommand) {
+            otherUndos.add(undo);
+          }
+          else {
+            unknown = true;
+          }
+        }
+      }
+    }
+
+    private boolean touch(String id) {
+      return id != null && ids.add(id);
+    }
+  }
+
+  private final Supplier<Collection<GamePiece>> allPieces;
+  private final Function<String, GamePiece> pieceForId;
+  private final Deque<Step> steps = new ArrayDeque<>();
+  private Map<String, PieceSnapshot> current;
+
+  /** The number of the step after which each snapshot in current was taken */
+  private final Map<String, Integer> takenAt = new HashMap<>();
+
+  /** The number of steps recorded */
+  private int recorded;
+
+  /** Snapshots taken after steps numbered lower than this may not match their pieces */
+  private int trustedFrom;
+  private int capacity;
+
+  /**
+   * @param capacity   The number of steps to keep
+   * @param allPieces  Supplies every piece in the game
+   * @param pieceForId Finds the piece with an id, or returns null if there is none
+   */
+  public PieceSnapshotHistory(int capacity, Supplier<Collection<GamePiece>> allPieces,
+                              Function<String, GamePiece> pieceForId) {
+    this.capacity = Math.max(0, capacity);
+    this.allPieces = allPieces;
+    this.pieceForId = pieceForId;
+  }
+
+  /**
+   * Start, or start again, following the game from its present state, forgetting any steps recorded so far
+   */
+  public void start() {
+    steps.clear();
+    snapshotAll();
+  }
+
+  /**
+   * Stop following the game, and forget everything recorded
+   */
+  public void stop() {
+    steps.clear();
+    current = null;
+    takenAt.clear();
+  }
+
+  /** @return true if the history is following the game */
+  public boolean isStarted() {
+    return current != null;
+  }
+
+  /**
+   * Forget the steps recorded so far, but go on following the game
+   */
+  public void clearSteps() {
+    steps.clear();
+  }
+
+  /**
+   * @param capacity The number of steps to keep; the oldest are forgotten first
+   */
+  public void setCapacity(int capacity) {
+    this.capacity = Math.max(0, capacity);
+    trim();
+  }
+
+  /** @return the number of steps which can be undone */
+  public int getStepCount() {
+    return steps.size();
+  }
+
+  private void snapshotAll() {
+    current = new HashMap<>();
+    takenAt.clear();
+    recorded = 0;
+    trustedFrom = 0;
+    for (final GamePiece p : allPieces.get()) {
+      current.put(p.getId(), PieceSnapshot.of(p.getId(), p));
+      takenAt.put(p.getId(), 0);
+    }
+  }
+
+  /**
+   * @return true if the snapshot of a piece may not match the piece as it was before the step being recorded
+   */
+  private boolean isUntrusted(String id) {
+    final Integer taken = takenAt.get(id);
+    return taken != null && taken < trustedFrom;
+  }
+
+  private void trim() {
+    while (steps.size() > capacity) {
+      steps.removeFirst();
+    }
+  }
+
+  /**
+   * Record a step which has just been executed
+   *
+   * @param logIndex The position of the step in the log, by which it is undone, or -1 to follow the changes it made
+   *                 without keeping it as a step
+   * @param c        The Command executed
+   */
+  public void record(int logIndex, Command c) {
+    if (current == null || c == null) {
+      return;
+    }
+
+    final Walk walk = new Walk();
+    final Deque<Command> todo = new ArrayDeque<>();
+    todo.push(c);
+    while (!todo.isEmpty()) {
+      final Command command = todo.pop();
+      walk.visit(command);
+      final Command[] sub = command.getSubCommands();
+      for (int i = sub.length - 1; i >= 0; --i) {
+        todo.push(sub[i]);
+      }
+    }
+
+    // A piece which joins or leaves a stack changes the state of the stack too. Only a stack can come into being
+    // without being added, when a piece is moved to where there was none.
+    final Set<String> touched = new LinkedHashSet<>(walk.ids);
+    for (final String id : walk.ids) {
+      final PieceSnapshot s = current.get(id);
+      if (s == null) {
+        walk.stale |= !walk.added.contains(id);
+      }
+      else if (s.getParentId() != null) {
+        touched.add(s.getParentId());
+        walk.stale |= !current.containsKey(s.getParentId());
+      }
+      final GamePiece p = pieceForId.apply(id);
+      if (p != null && p.getParent() != null) {
+        touched.add(p.getParent().getId());
+      }
+    }
+
+    final int number = ++recorded;
+    boolean keep = !walk.unknown && !walk.stale;
+    if (!keep) {
+      // We can't tell what else changed, so none of the snapshots taken so far can be relied on
+      trustedFrom = number;
+    }
+    else {
+      for (final String id : touched) {
+        if (isUntrusted(id) && !walk.verified.contains(id)) {
+          keep = false;
+          break;
+        }
+      }
+    }
+
+    // Only the pieces the step touched are snapshotted again
+    final Map<String, PieceSnapshot> before = new LinkedHashMap<>();
+    for (final String id : touched) {
+      final PieceSnapshot s = current.get(id);
+      before.put(id, s == null ? PieceSnapshot.absent(id) : s);
+
+      final GamePiece p = pieceForId.apply(id);
+      if (p == null) {
+        current.remove(id);
+        takenAt.remove(id);
+      }
+      else {
+        current.put(id, PieceSnapshot.of(id, p, s));
+        takenAt.put(id, number);
+      }
+    }
+
+    if (keep && logIndex >= 0 && capacity > 0 && (!before.isEmpty() || !walk.otherUndos.isEmpty())) {
+      // Undo the rest of the step in the reverse of the order it was executed
+      final List<Command> otherUndos = new ArrayList<>(walk.otherUndos);
+      Collections.reverse(otherUndos);
+      steps.addLast(new Step(logIndex, before, otherUndos));
+      trim();
+    }
+  }
+
+  /**
+   * Build a single Command undoing the given steps
+   *
+   * @param logIndexes The positions in the log of the steps to undo, latest first
+   * @return the Command, or null if any of the steps was not kept
+   */
+  public Command getUndoCommand(List<Integer> logIndexes) {
+    if (current == null || logIndexes.isEmpty()) {
+      return null;
+    }
+
+    // Each piece goes back to its snapshot from before the earliest step
+    final Map<String, PieceSnapshot> merged = new LinkedHashMap<>();
+    final List<Command> otherUndos = new ArrayList<>();
+    for (final int logIndex : logIndexes) {
+      final Step step = findStep(logIndex);
+      if (step == null) {
+        return null;
+      }
+      merged.putAll(step.before);
+      otherUndos.addAll(step.otherUndos);
+    }
+
+    // Only a piece which no longer exists needs its type to be recreated
+    final List<PieceSnapshot> restore = new ArrayList<>(merged.size());
+    for (final PieceSnapshot s : merged.values()) {
+      restore.add(pieceForId.apply(s.getId()) == null ? s : s.withoutType());
+    }
+
+    Command undo = restore.isEmpty() ? new NullCommand() : new RestorePieces(restore);
+    for (final Command c : otherUndos) {
+      undo = undo.append(c);
+    }
+    return undo;
+  }
+
+  private Step findStep(int logIndex) {
+    for (final Iterator<Step> i = steps.descendingIterator(); i.hasNext(); ) {
+      final Step step = i.next();
+      if (step.logIndex == logIndex) {
+        return step;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.GameState;
+import VASSAL.build.module.Map;
+import VASSAL.counters.BoundsTracker;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.KeyBuffer;
+import VASSAL.counters.Stack;
+
+/**
+ * This Command puts a set of {@link GamePiece}s back the way they were in a set of {@link PieceSnapshot}s: pieces
+ * which did not exist are removed, pieces which did are recreated if need be, and every piece is given back its
+ * state and its place in its {@link Stack}. Its undo Command is another RestorePieces holding the states the pieces
+ * had before it was executed.
+ *
+ * @since 3.8.0
+ */
+public class RestorePieces extends Command {
+  private final List<PieceSnapshot> snapshots;
+  private Command undo;
+
+  /**
+   * @param snapshots The states to restore; the type of a piece need only be given if it may have to be recreated
+   */
+  public RestorePieces(List<PieceSnapshot> snapshots) {
+    this.snapshots = List.copyOf(snapshots);
+  }
+
+  public List<PieceSnapshot> getSnapshots() {
+    return snapshots;
+  }
+
+  @Override
+  protected void executeCommand() {
+    final GameModule g = GameModule.getGameModule();
+    final GameState gs = g.getGameState();
+
+    final List<PieceSnapshot> before = new ArrayList<>(snapshots.size());
+    for (final PieceSnapshot s : snapshots) {
+      // Only a piece about to be removed may have to be recreated by the undo
+      final PieceSnapshot b = PieceSnapshot.of(s.getId(), gs.getPieceForId(s.getId()));
+      before.add(s.isPresent() ? b.withoutType() : b);
+    }
+    undo = new RestorePieces(before);
+
+    final BoundsTracker bounds = new BoundsTracker();
+
+    // Remove the pieces which did not exist, emptying their stacks before removing the stacks
+    final List<GamePiece> removedStacks = new ArrayList<>();
+    for (final PieceSnapshot s : snapshots) {
+      final GamePiece p = gs.getPieceForId(s.getId());
+      if (p != null && !s.isPresent()) {
+        if (p instanceof Stack) {
+          removedStacks.add(p);
+        }
+        else {
+          bounds.addPiece(p);
+          remove(p, gs);
+        }
+      }
+    }
+
+    // Recreate the pieces which were removed, and restore the state of each piece before that of the stacks
+    // which list them
+    final List<GamePiece> pieces = new ArrayList<>();
+    final List<PieceSnapshot> pieceStates = new ArrayList<>();
+    final List<GamePiece> stacks = new ArrayList<>();
+    final List<PieceSnapshot> stackStates = new ArrayList<>();
+    for (final PieceSnapshot s : snapshots) {
+      if (!s.isPresent()) {
+        continue;
+      }
+
+      GamePiece p = gs.getPieceForId(s.getId());
+      if (p == null) {
+        if (s.getType() == null || (p = g.createPiece(s.getType())) == null) {
+          continue;
+        }
+        p.setId(s.getId());
+        gs.addPiece(p);
+      }
+
+      if (p instanceof Stack) {
+        stacks.add(p);
+        stackStates.add(s);
+      }
+      else {
+        pieces.add(p);
+        pieceStates.add(s);
+      }
+    }
+
+    for (int i = 0; i < pieces.size(); ++i) {
+      final GamePiece p = pieces.get(i);
+      final PieceSnapshot s = pieceStates.get(i);
+      bounds.addPiece(p);
+
+      final Stack parent = p.getParent();
+      if (parent != null && !Objects.equals(parent.getId(), s.getParentId())) {
+        parent.remove(p);
+      }
+
+      p.setState(s.getState());
+
+      // A piece which was not in a stack must be on its map in its own right
+      final Map m = p.getMap();
+      if (s.getParentId() == null && p.getParent() == null && m != null) {
+        m.addPiece(p);
+      }
+      bounds.addPiece(p);
+    }
+
+    for (int i = 0; i < stacks.size(); ++i) {
+      final GamePiece p = stacks.get(i);
+      bounds.addPiece(p);
+      p.setState(stackStates.get(i).getState());
+      bounds.addPiece(p);
+    }
+
+    for (final GamePiece p : removedStacks) {
+      bounds.addPiece(p);
+      remove(p, gs);
+    }
+
+    bounds.repaint();
+  }
+
+  private static void remove(GamePiece p, GameState gs) {
+    final Map m = p.getMap();
+    final Stack parent = p.getParent();
+    if (parent != null) {
+      parent.remove(p);
+    }
+    if (m != null) {
+      m.removePiece(p);
+      p.setMap(null);
+    }
+    gs.removePiece(p);
+    KeyBuffer.getBuffer().remove(p);
+  }
+
+  @Override
+  protected Command myUndoCommand() {
+    return undo;
+  }
+
+  @Override
+  public String getDetails() {
+    return "pieces=" + snapshots.size(); //NON-NLS
+  }
+}
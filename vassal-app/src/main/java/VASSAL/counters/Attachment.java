@@ -21,6 +21,7 @@ import VASSAL.build.module.GameState;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.build.module.map.MassKeyCommand;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.ChangeTracker;
 import VASSAL.command.Command;
 import VASSAL.command.NullCommand;
@@ -360,6 +361,7 @@ public class Attachment extends Decorator implements TranslatablePiece, Recursio
 
     final ChangeTracker ct = new ChangeTracker(this);
     contents.clear();
+    pieceChanged(this);
     c = c.append(ct.getChangeCommand());
 
     return c;
@@ -464,6 +466,7 @@ public class Attachment extends Decorator implements TranslatablePiece, Recursio
     if (!hasTarget(p)) {
       final ChangeTracker ct = new ChangeTracker(this);
       contents.add(p);
+      pieceChanged(this);
       c = c.append(ct.getChangeCommand());
 
       // If our target has "on attach" conditions in an equivalently named Attachment, process them
@@ -514,6 +517,7 @@ public class Attachment extends Decorator implements TranslatablePiece, Recursio
     if (hasTarget(p)) {
       final ChangeTracker ct = new ChangeTracker(this);
       removeTarget(p);
+      pieceChanged(this);
       c = c.append(ct.getChangeCommand());
 
       // If our detach condition is ON_DETACH_REMOVE, then remove incoming attachment at the same time
@@ -608,6 +612,8 @@ public class Attachment extends Decorator implements TranslatablePiece, Recursio
     if (contents.isEmpty()) return null;
 
     for (final GamePiece piece : contents) {
+      // Which piece is first depends on whether those before it still exist
+      PropertyDependencies.pieceRead(piece);
       if (piece.getMap() == null) continue;
       return piece;
     }
@@ -732,6 +738,7 @@ public class Attachment extends Decorator implements TranslatablePiece, Recursio
   public void setProperty(Object key, Object value) {
     if (ATTACH_NAME.equals(key)) {
       setAttachName((String)value);
+      PropertyDependencies.stateChanged(this);
       return;
     }
     super.setProperty(key, value);
@@ -26,6 +26,7 @@ import VASSAL.build.module.Map;
 import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.build.module.map.boardPicker.Board;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.build.module.properties.PropertyNameSource;
 import VASSAL.command.AddPiece;
 import VASSAL.command.ChangePiece;
@@ -42,6 +43,7 @@ import VASSAL.property.PersistentPropertyContainer;
 import VASSAL.search.AbstractImageFinder;
 import VASSAL.tools.SequenceEncoder;
 import VASSAL.tools.image.ImageUtils;
+import VASSAL.tools.imageop.ImageOp;
 import VASSAL.tools.imageop.ScaledImagePainter;
 
 import javax.swing.JLabel;
@@ -139,6 +141,9 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
    */
   private java.util.Map<Object, Object> persistentProps;
 
+  /** The version of this piece at its last change, for computed properties read from it */
+  private final PropertyDependencies.PieceVersion dependencyVersion = new PropertyDependencies.PieceVersion();
+
   /** @deprecated Moved into own traits, retained for backward compatibility */
   @Deprecated(since = "2021-12-01", forRemoval = true)
   private char cloneKey;
@@ -203,6 +208,7 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
     if (map != this.map) {
       commands = null;
       this.map = map;
+      PropertyDependencies.stateChanged(this);
     }
   }
 
@@ -501,6 +507,10 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
     else {
       props.put(key, val);
     }
+    // These are set around drawing a piece and reporting on it, and no expression reads them
+    if (!Properties.USE_UNROTATED_SHAPE.equals(key) && !Properties.SNAPSHOT.equals(key)) {
+      PropertyDependencies.stateChanged(this);
+    }
   }
 
   /**
@@ -525,6 +535,7 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
   @Override
   public Command setPersistentProperty(Object key, Object newValue) {
     final Object oldValue = newValue == null ? getPersistentProps().remove(key) : getPersistentProps().put(key, newValue);
+    PropertyDependencies.stateChanged(this);
     return Objects.equals(oldValue, newValue) ? null : new SetPersistentPropertyCommand(getId(), key, oldValue, newValue);
   }
 
@@ -543,6 +554,14 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
     }
     return persistentProps;
   }
+
+  /**
+   * @return the version of this piece at its last change, see {@link PropertyDependencies#stateChanged(GamePiece)}
+   * @since 3.8.0
+   */
+  public PropertyDependencies.PieceVersion getDependencyVersion() {
+    return dependencyVersion;
+  }
   /**
    * @param s Name of a module preference to be read
    * @return Value of the preference
@@ -567,6 +586,14 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
     imagePainter.draw(g, x + (int) (zoom * imageBounds.x), y + (int) (zoom * imageBounds.y), zoom, obs);
   }
 
+  /**
+   * @param zoom the scaling factor
+   * @return the operation giving the image {@link #draw} draws at that zoom, or null if there is none
+   */
+  public ImageOp getImageOp(double zoom) {
+    return imagePainter.getOp(zoom);
+  }
+
   /**
    * @return the set of key commands that will populate the a BasicPiece's right-click menu.
    * This will normally be an empty array in the present age of the world, but the ability to contain a
@@ -646,7 +673,9 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
       getMap().repaint(getMap().boundingBoxOf(Decorator.getOutermost(this)));
     }
     pos = p;
+    PropertyDependencies.stateChanged(this);
     if (getMap() != null && getParent() == null) {
+      getMap().pieceChanged(Decorator.getOutermost(this));
       getMap().repaint(getMap().boundingBoxOf(Decorator.getOutermost(this)));
     }
   }
@@ -665,6 +694,7 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
   @Override
   public void setParent(Stack s) {
     parent = s;
+    PropertyDependencies.stateChanged(this);
     // When adding a piece to a Stack, make sure our map matches the parent
     if (parent != null) setMap(parent.getMap());
   }
@@ -963,6 +993,7 @@ public class BasicPiece extends AbstractImageFinder implements TranslatablePiece
       final String val = st.nextToken("");
       getPersistentProps().put(key, val);
     }
+    PropertyDependencies.stateChanged(this);
   }
 
   /**
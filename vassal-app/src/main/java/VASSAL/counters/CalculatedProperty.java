@@ -20,6 +20,7 @@ package VASSAL.counters;
 
 import VASSAL.build.AbstractBuildable;
 import VASSAL.build.module.documentation.HelpFile;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.Command;
 import VASSAL.configure.BeanShellExpressionConfigurer;
 import VASSAL.configure.StringConfigurer;
@@ -44,6 +45,8 @@ import javax.swing.KeyStroke;
 /**
  * Conditional Marker
  * A marker with a variable value depending on conditions.
+ *
+ * The value is reused until something it was computed from changes, as tracked by {@link PropertyDependencies}.
  * */
 public class CalculatedProperty extends Decorator implements EditablePiece, Loopable {
 
@@ -55,6 +58,10 @@ public class CalculatedProperty extends Decorator implements EditablePiece, Loop
   protected Expression expression;
   protected String description = "";
 
+  // The value last computed, and what it was computed from, or null if it may not be reused
+  protected String cachedValue;
+  protected PropertyDependencies.Dependencies cachedDependencies;
+
   public CalculatedProperty() {
     this(ID, null);
   }
@@ -139,6 +146,7 @@ public class CalculatedProperty extends Decorator implements EditablePiece, Loop
     name = st.nextToken("");
     expression = BeanShellExpression.createExpression(st.nextToken(""), true);
     description = st.nextToken("");
+    cachedDependencies = null;
   }
 
   protected String getExpression() {
@@ -185,7 +193,7 @@ public class CalculatedProperty extends Decorator implements EditablePiece, Loop
         try {
           RecursionLimiter.startExecution(this);
 
-          result = evaluate();
+          result = evaluateIfChanged();
         }
         catch (RecursionLimitException e) {
           RecursionLimiter.infiniteLoop(e);
@@ -208,6 +216,37 @@ public class CalculatedProperty extends Decorator implements EditablePiece, Loop
     return super.getLocalizedProperty(key);
   }
 
+  /**
+   * Evaluate the calculated property, unless nothing the value last computed was computed from has changed since
+   *
+   * @return value
+   */
+  protected String evaluateIfChanged() {
+    if (!PropertyDependencies.isEnabled()) {
+      return evaluate();
+    }
+
+    final PropertyDependencies.Dependencies d = cachedDependencies;
+    if (d != null && d.isCurrent()) {
+      PropertyDependencies.reused(d);
+      return cachedValue;
+    }
+
+    PropertyDependencies.evaluated();
+    String result = null;
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    try {
+      PropertyDependencies.pieceRead(getOutermost(this));
+      result = evaluate();
+    }
+    finally {
+      final PropertyDependencies.Dependencies dependencies = PropertyDependencies.stopRecording(r);
+      cachedValue = result;
+      cachedDependencies = result == null ? null : dependencies;
+    }
+    return result;
+  }
+
   /**
    * Evaluate the calculated property. Do not call Decorator.reportDataError as this will probably
    * cause an infinite reporting loop.
@@ -1351,6 +1351,7 @@ public class Deck extends Stack implements PlayerRoster.SideChangeListener {
     if (Map.isChangeReportingEnabled()) {
       c = c.append(reportCommand(faceDown ? faceDownMsgFormat : faceUpMsgFormat, value ? Resources.getString("Deck.face_down") : Resources.getString("Deck.face_up")));
     }
+    Decorator.pieceChanged(this);
     return t.getChangeCommand().append(c);
   }
 
@@ -1396,6 +1397,7 @@ public class Deck extends Stack implements PlayerRoster.SideChangeListener {
   public Command pieceRemoved(GamePiece p) {
     final ChangeTracker tracker = new ChangeTracker(p);
     p.setProperty(Properties.OBSCURED_TO_OTHERS, isFaceDown() && !isDrawFaceUp());
+    Decorator.pieceChanged(p);
     return tracker.getChangeCommand();
   }
 
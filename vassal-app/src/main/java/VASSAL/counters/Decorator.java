@@ -23,6 +23,7 @@ import VASSAL.build.module.GameState;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.map.boardPicker.Board;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.build.module.properties.PropertyNameSource;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.command.ChangePiece;
@@ -381,6 +382,7 @@ public abstract class Decorator extends AbstractImageFinder implements EditableP
             // Value is changing
             final ChangeTracker tracker = new ChangeTracker(piece);
             dp.setValue(newValue == null ? "" : newValue);
+            pieceChanged(piece);
             c = c.append(tracker.getChangeCommand());
           }
         }
@@ -389,6 +391,22 @@ public abstract class Decorator extends AbstractImageFinder implements EditableP
     return c;
   }
 
+  /**
+   * Tells the Map a piece is on that the piece has changed in a way that may affect its size or its indexed
+   * properties, see {@link Map#pieceChanged}. A trait changing its own piece in {@link #myKeyEvent} need not call
+   * this, as {@link #keyEvent} does it for them, but code changing other pieces, or changing pieces other than
+   * in response to a Key Command, must.
+   *
+   * @param p Piece that has changed
+   */
+  public static void pieceChanged(GamePiece p) {
+    final GamePiece outer = getOutermost(p);
+    final Map map = outer.getMap();
+    if (map != null) {
+      map.pieceChanged(outer);
+    }
+  }
+
   /** @return next piece "outward" (away from BasicPiece) in the trait list. This method is required
    * by {@link Obscurable} to handle masking of getProperty calls. */
   public Decorator getOuter() {
@@ -467,6 +485,7 @@ public abstract class Decorator extends AbstractImageFinder implements EditableP
     final String innerOldState = stOld.nextToken();
     if (!myOldState.equals(myNewState)) {
       mySetState(myNewState);
+      PropertyDependencies.stateChanged(this);
     }
     if (piece instanceof StateMergeable) {
       ((StateMergeable)piece).mergeState(innerNewState, innerOldState);
@@ -607,6 +626,10 @@ public abstract class Decorator extends AbstractImageFinder implements EditableP
   @Override
   public Command keyEvent(KeyStroke stroke) {
     final Command c = myKeyEvent(stroke);
+    if (c != null) {
+      pieceChanged(this);
+    }
+    PropertyDependencies.stateChanged(this);
     return c == null ? piece.keyEvent(stroke)
       : c.append(piece.keyEvent(stroke));
   }
@@ -24,6 +24,7 @@ import VASSAL.build.module.properties.EnumeratedPropertyPrompt;
 import VASSAL.build.module.properties.IncrementProperty;
 import VASSAL.build.module.properties.PropertyChanger;
 import VASSAL.build.module.properties.PropertyChangerConfigurer;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.build.module.properties.PropertyPrompt;
 import VASSAL.build.module.properties.PropertySetter;
 import VASSAL.build.module.properties.PropertySource;
@@ -213,6 +214,7 @@ public class DynamicProperty extends Decorator implements TranslatablePiece, Pro
         final Point pos = getPosition();
         map.removePiece(outer);
         this.value = value;
+        PropertyDependencies.stateChanged(this);
         map.placeOrMerge(outer, pos);
       }
       else {
@@ -224,10 +226,12 @@ public class DynamicProperty extends Decorator implements TranslatablePiece, Pro
           final Point pos = parent.getPosition();
           map.removePiece(parent);
           this.value = value;
+          PropertyDependencies.stateChanged(this);
           map.placeOrMerge(parent, pos);
         }
         else {
           this.value = value;
+          PropertyDependencies.stateChanged(this);
           if (!map.getPieceCollection().canMerge(other, outer)) {
             map.placeOrMerge(outer, parent.getPosition());
           }
@@ -236,6 +240,7 @@ public class DynamicProperty extends Decorator implements TranslatablePiece, Pro
     }
     else {
       this.value = value;
+      PropertyDependencies.stateChanged(this);
     }
   }
 
@@ -84,6 +84,7 @@ public interface EditablePiece extends GamePiece {
       if ((map != null) && map.isMarkMoved()) {
         final ChangeTracker tracker = new ChangeTracker(outer);
         outer.setProperty(Properties.MAYBE_MOVED, Boolean.TRUE);
+        Decorator.pieceChanged(outer);
         c = c.append(tracker.getChangeCommand());
       }
     }
@@ -126,6 +127,7 @@ public interface EditablePiece extends GamePiece {
     final GamePiece outer = Decorator.getOutermost(this);
     final ChangeTracker tracker = new ChangeTracker(outer);
     outer.setProperty(Properties.MOVED, Boolean.TRUE);
+    Decorator.pieceChanged(outer);
     return tracker.getChangeCommand();
   }
 
@@ -43,6 +43,7 @@ import VASSAL.tools.SequenceEncoder;
 import VASSAL.tools.icon.IconFactory;
 import VASSAL.tools.icon.IconFamily;
 import VASSAL.tools.image.ImageUtils;
+import VASSAL.tools.imageop.ImageOp;
 import VASSAL.tools.imageop.ScaledImagePainter;
 import net.miginfocom.swing.MigLayout;
 
@@ -569,6 +570,26 @@ public class Embellishment extends Decorator implements TranslatablePiece, Recur
     }
   }
 
+  /**
+   * @param zoom the scaling factor
+   * @return the operation giving the image of the current level that {@link #draw} draws at that zoom, or null
+   * if it draws none
+   */
+  public ImageOp getCurrentImageOp(double zoom) {
+    checkPropertyLevel();
+
+    if (followProperty && !onlyPropertyName.isEmpty()
+      && checkProperty(onlyPropertyName) != ("true".equals(onlyPropertyState))) { //NON-NLS
+      return null;
+    }
+
+    final int i = value - 1;
+    if (!isActive() || i >= imagePainter.length || imagePainter[i] == null) {
+      return null;
+    }
+    return imagePainter[i].getOp((scale == 1.0) ? zoom : zoom * scale);
+  }
+
   /*
    * Calculate the new level to display based on a property?
    */
@@ -730,6 +730,7 @@ public class FreeRotator extends Decorator
         }
         final double origAngle = getAngle();
         setAngle(tempAngle);
+        pieceChanged(this);
         c = tracker.getChangeCommand().append(c);
 
         // Mat Support
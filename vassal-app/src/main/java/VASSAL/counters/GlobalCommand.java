@@ -22,6 +22,7 @@ import VASSAL.build.GameModule;
 import VASSAL.build.module.Chatter;
 import VASSAL.build.module.GlobalOptions;
 import VASSAL.build.module.Map;
+import VASSAL.build.module.index.IndexManager;
 import VASSAL.build.module.map.DrawPile;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.command.Command;
@@ -192,8 +193,15 @@ public class GlobalCommand implements Auditable {
     if (!target.fastMatchProperty || fastProperty.isEmpty()) return true;
 
     final Object prop = gamePiece.getProperty(fastProperty);
-    final String value = (prop == null) ? null : prop.toString();
+    return passesPropertyFastMatch((prop == null) ? null : prop.toString());
+  }
 
+  /**
+   * Check the Property Fast Match for a given value of the Fast Match property
+   * @param value the value, may be null
+   * @return true if the value matches
+   */
+  private boolean passesPropertyFastMatch(String value) {
     // Intentionally favors the default "Equals" as first to process
     switch (target.targetCompare) {
     case EQUALS:
@@ -203,7 +211,7 @@ public class GlobalCommand implements Auditable {
     }
 
     // The non-equals-y ones have to deal with null
-    if (prop == null || value == null) {
+    if (value == null) {
       return false;
     }
 
@@ -245,6 +253,130 @@ public class GlobalCommand implements Auditable {
     return false; // Never gets here, but checkStyle doesn't understand that.
   }
 
+  /**
+   * Plan which piece indexes to use to find the pieces a command may apply to. Each location, range or property
+   * Fast Match which can be answered by an index, and each equality in the filter on an indexed property, becomes
+   * a lookup; the command then need only check the pieces found by every lookup.
+   *
+   * @param maps Maps the command applies to
+   * @param filter Filter of the command
+   * @param curPiece Piece issuing the command, may be null
+   * @param audit Audit trail of the filter
+   * @param fastMap evaluated Map name
+   * @param fastZone evaluated Zone name
+   * @param fastLocation evaluated Location name
+   * @param fastX evaluated X position
+   * @param fastY evaluated Y position
+   * @return the plan, or null if the Fast Match names the stack, deck, mat or attachments to check directly
+   */
+  private GlobalCommandPlanner planIndexedLookups(Map[] maps, PieceFilter filter, GamePiece curPiece, AuditTrail audit,
+                                                  String fastMap, String fastZone, String fastLocation, String fastX, String fastY) {
+    if (target.fastMatchLocation) {
+      switch (target.targetType) {
+      case CURSTACK:
+      case DECK:
+      case CURMAT:
+      case CURATTACH:
+        return null;
+      }
+    }
+
+    // The maps whose pieces we may apply to
+    final List<Map> planMaps = new ArrayList<>();
+    for (final Map map : maps) {
+      if (target.fastMatchLocation) {
+        if (target.targetType.isCurrent()) {
+          if ((curPiece != null) && !map.equals(curPiece.getMap())) {
+            continue;
+          }
+        }
+        else if (!fastMap.isEmpty() && !fastMap.equals(map.getConfigureName())) {
+          continue;
+        }
+      }
+      planMaps.add(map);
+    }
+
+    final IndexManager indexManager = GameModule.getGameModule().getIndexManager();
+    final GlobalCommandPlanner plan = new GlobalCommandPlanner(indexManager, planMaps);
+
+    if (target.fastMatchLocation) {
+      switch (target.targetType) {
+      case XY:
+        final Point pt = new Point(NumberUtils.toInt(fastX), NumberUtils.toInt(fastY));
+        final List<GamePiece> atPoint = new ArrayList<>();
+        for (final Map map : planMaps) {
+          atPoint.addAll(indexManager.getPieces(map, pt));
+        }
+        plan.addLookup("X,Y=" + pt.x + "," + pt.y, atPoint); //NON-NLS
+        break;
+      case ZONE:
+      case CURZONE:
+        if (fastZone != null) {
+          plan.addLookup(planMaps, BasicPiece.CURRENT_ZONE, fastZone);
+        }
+        break;
+      case LOCATION:
+      case CURLOC:
+        if (fastLocation != null) {
+          plan.addLookup(planMaps, BasicPiece.LOCATION_NAME, fastLocation);
+        }
+        break;
+      }
+    }
+
+    if (fastRange != null && curPiece != null && curPiece.getMap() != null && curPiece.getPosition() != null) {
+      plan.addLookup("Range=" + fastRange, indexManager.getPieces(curPiece, fastRange)); //NON-NLS
+    }
+
+    if (target.fastMatchProperty && !fastProperty.isEmpty() && indexManager.isIndexed(fastProperty)) {
+      if (target.targetCompare == GlobalCommandTarget.CompareMode.EQUALS) {
+        plan.addLookup(planMaps, fastProperty, fastValue);
+      }
+      else {
+        // Compare each distinct value of the property once, rather than the value of every piece
+        final List<GamePiece> matching = new ArrayList<>();
+        for (final Map map : planMaps) {
+          matching.addAll(indexManager.getPieces(map, fastProperty, value -> passesPropertyFastMatch(value)));
+        }
+        plan.addLookup(fastProperty + " " + target.targetCompare + " " + fastValue, matching);
+      }
+    }
+
+    plan.planFilter(filter, planMaps, owner, audit);
+    return plan;
+  }
+
+  /**
+   * Check the Zone, Location or XY Fast Match for a given gamePiece
+   * @param gamePiece the game piece
+   * @param fastZone evaluated Zone name
+   * @param fastLocation evaluated Location name
+   * @param fastBoard evaluated Board name
+   * @param fastX evaluated X position
+   * @param fastY evaluated Y position
+   * @return true if piece matches
+   */
+  private boolean passesLocationFastMatch(GamePiece gamePiece, String fastZone, String fastLocation, String fastBoard, String fastX, String fastY) {
+    switch (target.targetType) {
+    case ZONE:
+    case CURZONE:
+      return Objects.equals(fastZone, gamePiece.getProperty(BasicPiece.CURRENT_ZONE));
+    case LOCATION:
+    case CURLOC:
+      return Objects.equals(fastLocation, gamePiece.getProperty(BasicPiece.LOCATION_NAME));
+    case XY:
+      // Fast Match of "exact XY position"
+      if (!fastBoard.isEmpty() && !fastBoard.equals(gamePiece.getProperty(BasicPiece.CURRENT_BOARD))) {
+        return false;
+      }
+      final Point pt = new Point(gamePiece.getPosition());
+      return fastX.equals(Integer.toString((int) pt.getX())) && fastY.equals(Integer.toString((int) pt.getY()));
+    default:
+      return true;
+    }
+  }
+
   /**
    * Need a super-fast (i.e. not dependent on exception-throwing) plan for detecting valid numbers
    * @param s string to check
@@ -434,7 +566,12 @@ public class GlobalCommand implements Auditable {
       }
 
       // This dispatcher will eventually handle applying the Beanshell filter and actually issuing the command to any pieces that match
-      final GlobalCommandVisitor visitor = getVisitor(command, filter, keyStroke, audit, owner, getSelectFromDeck());
+      final GlobalCommandPlanner plan = usePieceIndexing ? planIndexedLookups(maps, filter, curPiece, audit, fastMap, fastZone, fastLocation, fastX, fastY) : null;
+      final PieceFilter residualFilter = (plan != null && plan.isIndexed()) ? plan.getResidualFilter() : filter;
+      if (plan != null && !plan.isIndexed() && audit != null) {
+        audit.addMessage(plan.toString());
+      }
+      final GlobalCommandVisitor visitor = getVisitor(command, residualFilter, keyStroke, audit, owner, getSelectFromDeck());
       final DeckVisitorDispatcher dispatcher = new DeckVisitorDispatcher(visitor);
 
       // Fastmatch lookups that use the IndexManager to return location based lists of units need to handle Deck Policy
@@ -585,99 +722,33 @@ public class GlobalCommand implements Auditable {
         }
       }
 
-      // If a specific X, Y target has been specified AND a valid target map, then we can go direct to the Qtree index to find those pieces
-      else if (target.fastMatchLocation && target.targetType == GlobalCommandTarget.Target.XY && targetFastMap != null && usePieceIndexing) {
-
-        int x = 0;
-        int y = 0;
-
-        try {
-          x = Integer.parseInt(fastX);
-        }
-        catch (NumberFormatException ignored) {
-          x = 0;
-        }
-
-        try {
-          y = Integer.parseInt(fastY);
-        }
-        catch (NumberFormatException ignored) {
-          y = 0;
-        }
-
-        // Process just the pieces at that exact location
-        for (final GamePiece piece : GameModule.getGameModule().getIndexManager().getPieces(targetFastMap, new Point(x, y))) {
-
-          // If a property-based Fast Match is specified, we eliminate non-matchers of that first.
-          if (!passesPropertyFastMatch(piece)) continue;
-
-          // Check for Deck Policy limits.
-          indexedFastmatchDeckPolicyManager.accept(piece, dispatcher, visitor);
-        }
-      }
-
-      // If a specific LocationName target has been specified AND a valid target map, then we can go direct to the LocationName index to find those pieces
-      else if (target.fastMatchLocation && target.targetType == GlobalCommandTarget.Target.LOCATION && targetFastMap != null && !fastLocation.isEmpty() && usePieceIndexing)  {
-
-        for (final GamePiece piece : GameModule.getGameModule().getIndexManager().getPieces(targetFastMap, BasicPiece.LOCATION_NAME, fastLocation)) {
-
-          // If a property-based Fast Match is specified, we eliminate non-matchers of that first.
-          if (!passesPropertyFastMatch(piece)) continue;
-
-          // Check for Deck Policy limits.
-          indexedFastmatchDeckPolicyManager.accept(piece, dispatcher, visitor);
-        }
-      }
-
-      // if Current Location has been specified (Counter GKC), we can go find the pieces directly from the Qtree index
-      else if (target.fastMatchLocation && target.targetType == GlobalCommandTarget.Target.CURLOC && curPiece != null && curPiece.getMap() != null && curPiece.getPosition() != null && usePieceIndexing) {
-        for (final GamePiece piece : GameModule.getGameModule().getIndexManager().getPieces(curPiece.getMap(), BasicPiece.LOCATION_NAME, (String) curPiece.getProperty(BasicPiece.LOCATION_NAME))) {
-
-          // If a property-based Fast Match is specified, we eliminate non-matchers of that first.
-          if (!passesPropertyFastMatch(piece)) continue;
-
-          // Check for Deck Policy limits.
-          indexedFastmatchDeckPolicyManager.accept(piece, dispatcher, visitor);
+      // If the plan found indexes for any of the Fast Matches or the filter, then only the pieces found by all of those
+      // indexes need to be checked. The Fast Matches are checked again, as they are cheap, and some (such as the Board
+      // for an XY match) are not answered by the indexes.
+      else if (plan != null && plan.isIndexed()) {
+        final List<GamePiece> candidates = plan.getCandidates();
+        if (audit != null) {
+          audit.addMessage(plan.toString());
         }
-      }
 
-      // If a Range has been specified, quickly find the in-range pieces
-      else if (fastRange != null && curPiece != null && curPiece.getMap() != null && curPiece.getPosition() != null && usePieceIndexing) {
-        for (final GamePiece piece : GameModule.getGameModule().getIndexManager().getPieces(curPiece, fastRange)) {
+        for (final GamePiece piece : candidates) {
+          // Pieces may have been removed by an earlier piece's command
+          if (piece.getMap() == null) continue;
 
-          // If a property-based Fast Match is specified, we eliminate non-matchers of that first.
           if (!passesPropertyFastMatch(piece)) continue;
 
-          // Check for Deck Policy limits.
-          indexedFastmatchDeckPolicyManager.accept(piece, dispatcher, visitor);
-        }
-      }
-
-      // If current Zone has been specified use the Zone index to find those pieces
-      else if (target.fastMatchLocation && target.targetType == GlobalCommandTarget.Target.CURZONE && curPiece != null && curPiece.getMap() != null && usePieceIndexing)  {
-        final String currentZone = (String) curPiece.getProperty(BasicPiece.CURRENT_ZONE);
-        for (final GamePiece piece : GameModule.getGameModule().getIndexManager().getPieces(curPiece.getMap(), BasicPiece.CURRENT_ZONE, currentZone)) {
-
-          // If a property-based Fast Match is specified, we eliminate non-matchers of that first.
-          if (!passesPropertyFastMatch(piece)) continue;
-
-          // Check for Deck Policy limits.
-          indexedFastmatchDeckPolicyManager.accept(piece, dispatcher, visitor);
-        }
-      }
-      // If a specific Zone target has been specified AND a valid target map, then we can go direct to the Zone index to find those pieces
-      else if (target.fastMatchLocation && target.targetType == GlobalCommandTarget.Target.ZONE && targetFastMap != null && !fastZone.isEmpty() && usePieceIndexing)  {
-        for (final GamePiece piece : GameModule.getGameModule().getIndexManager().getPieces(targetFastMap, BasicPiece.CURRENT_ZONE, fastZone)) {
-
-          // If a property-based Fast Match is specified, we eliminate non-matchers of that first.
-          if (!passesPropertyFastMatch(piece)) continue;
+          if (target.fastMatchLocation) {
+            if (target.targetType == GlobalCommandTarget.Target.XY) {
+              // XY matches keep the index's notion of the same position, but the index does not know the Board
+              if (!fastBoard.isEmpty() && !fastBoard.equals(piece.getProperty(BasicPiece.CURRENT_BOARD))) continue;
+            }
+            else if (!passesLocationFastMatch(piece, fastZone, fastLocation, fastBoard, fastX, fastY)) continue;
+          }
 
           // Check for Deck Policy limits.
           indexedFastmatchDeckPolicyManager.accept(piece, dispatcher, visitor);
-
         }
       }
-
       else {
         // For most Global Key Commands we need to run through the larger lists of maps & pieces. Ideally the Fast Matches
         // here will filter some of that out to improve performance, but we also want to do the best job possible for old
@@ -810,32 +881,8 @@ public class GlobalCommand implements Auditable {
 
                   // These basic location filters are faster than equivalent filters in the Beanshell expression,
                   // and avoid re-evaluating/re-loading the source property for every target piece.
-
-                  // Fast matches for Zone / Location
-                  switch (target.targetType) {
-                  case ZONE:
-                  case CURZONE:
-                    if (!fastZone.equals(gamePiece.getProperty(BasicPiece.CURRENT_ZONE))) {
-                      continue;
-                    }
-                    break;
-                  case LOCATION:
-                  case CURLOC:
-                    if (!fastLocation.equals(gamePiece.getProperty(BasicPiece.LOCATION_NAME))) {
-                      continue;
-                    }
-                    break;
-                  }
-
-                  // Fast Match of "exact XY position"
-                  if (target.targetType == GlobalCommandTarget.Target.XY) {
-                    if (!fastBoard.isEmpty() && !fastBoard.equals(gamePiece.getProperty(BasicPiece.CURRENT_BOARD))) {
-                      continue;
-                    }
-                    final Point pt = new Point(gamePiece.getPosition());
-                    if (!fastX.equals(Integer.toString((int) pt.getX())) || !fastY.equals(Integer.toString((int) pt.getY()))) {
-                      continue;
-                    }
+                  if (!passesLocationFastMatch(gamePiece, fastZone, fastLocation, fastBoard, fastX, fastY)) {
+                    continue;
                   }
 
                   // Passed all the "Fast Match" tests -- the dispatcher will apply the BeanShell filter and if that passes will issue the command to the piece
@@ -0,0 +1,456 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import VASSAL.build.module.Map;
+import VASSAL.build.module.index.IndexManager;
+import VASSAL.script.BeanShell;
+import VASSAL.script.expression.AuditTrail;
+import VASSAL.script.expression.Auditable;
+import VASSAL.script.expression.BeanShellExpression;
+import VASSAL.script.expression.Expression;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plans how a {@link GlobalCommand} finds the pieces it applies to.
+ *
+ * Each Fast Match clause, and each property equality at the top level of the BeanShell filter, that the
+ * {@link IndexManager} can answer becomes a lookup giving the pieces that could pass that clause. The candidate pieces
+ * are the intersection of all the lookups, found by walking the smallest lookup and checking the others. The parts of
+ * the filter not answered by an index are left as a residual filter to be evaluated on the candidates only.
+ *
+ * The candidates are returned in the order a scan of the maps would visit them, so that the pieces a command
+ * applies to are found in the same order whether or not an index is used.
+ *
+ * If there are no lookups, the command must scan the maps as before.
+ */
+public class GlobalCommandPlanner {
+
+  /** A top-level {@code Name == "value"} or {@code GetProperty("Name") == "value"} clause, either way round */
+  private static final Pattern EQUALITY = Pattern.compile(
+    "^(?:([\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*)|GetProperty\\(\"([^\"\\\\]+)\"\\))" + //NON-NLS
+    "\\s*==\\s*\"([^\"\\\\]*)\"$" //NON-NLS
+  );
+  private static final Pattern REVERSED_EQUALITY = Pattern.compile(
+    "^\"([^\"\\\\]*)\"\\s*==\\s*" + //NON-NLS
+    "(?:([\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*)|GetProperty\\(\"([^\"\\\\]+)\"\\))$" //NON-NLS
+  );
+
+  /** The most filters to remember the split of; those used least recently are forgotten first */
+  private static final int MAX_SPLITS = 200;
+
+  /** The clauses of a filter, and the residual filter last made from them, cached by the text of the filter */
+  private static final class Split {
+    private final List<String> terms;
+    private final List<String[]> equalities = new ArrayList<>();
+
+    /** Which clauses were answered by an index when the residual filter was made */
+    private boolean[] indexed;
+    private String residualText;
+    private Expression residual;
+
+    private Split(String filterText) {
+      terms = splitConjuncts(filterText);
+      for (final String term : terms) {
+        equalities.add(parseEquality(term));
+      }
+    }
+  }
+
+  private static final java.util.Map<String, Split> SPLITS = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(java.util.Map.Entry<String, Split> eldest) {
+      return size() > MAX_SPLITS;
+    }
+  });
+
+  /** The pieces which may pass one Fast Match or filter clause */
+  private static class Lookup {
+    private final String description;
+    private final Collection<GamePiece> pieces;
+
+    Lookup(String description, Collection<GamePiece> pieces) {
+      this.description = description;
+      this.pieces = pieces;
+    }
+  }
+
+  private final IndexManager indexManager;
+  private final List<Map> maps;
+  private final List<Lookup> lookups = new ArrayList<>();
+  private final List<String> residual = new ArrayList<>();
+  private PieceFilter residualFilter;
+  private int candidateCount = -1;
+
+  public GlobalCommandPlanner(IndexManager indexManager) {
+    this(indexManager, List.of());
+  }
+
+  /**
+   * @param indexManager Index Manager to look pieces up in
+   * @param maps         Maps the command applies to, in the order a scan would visit them
+   */
+  public GlobalCommandPlanner(IndexManager indexManager, List<Map> maps) {
+    this.indexManager = indexManager;
+    this.maps = maps;
+  }
+
+  /**
+   * Add a lookup of the pieces that could pass a clause of the command
+   *
+   * @param description Description of the clause, for the audit trail
+   * @param pieces      Pieces that could pass the clause
+   */
+  public void addLookup(String description, Collection<GamePiece> pieces) {
+    lookups.add(new Lookup(description, pieces));
+  }
+
+  /**
+   * Add a lookup of the pieces on the given maps with a given value of an indexed property
+   *
+   * @param maps          Maps to look on
+   * @param propertyName  Indexed property
+   * @param propertyValue Value of the property
+   */
+  public void addLookup(Collection<Map> maps, String propertyName, String propertyValue) {
+    final List<GamePiece> pieces = new ArrayList<>();
+    for (final Map map : maps) {
+      pieces.addAll(indexManager.getPieces(map, propertyName, propertyValue));
+    }
+    addLookup(propertyName + "=" + propertyValue, pieces);
+  }
+
+  /**
+   * @return true if at least one index can be used, so there is no need to scan the maps
+   */
+  public boolean isIndexed() {
+    return !lookups.isEmpty();
+  }
+
+  /**
+   * @return the pieces found by every lookup, in the order of the maps, then the order the pieces are drawn in
+   */
+  public List<GamePiece> getCandidates() {
+    final List<GamePiece> candidates = new ArrayList<>();
+    if (lookups.isEmpty()) {
+      return candidates;
+    }
+
+    // Cheapest first: walk the smallest lookup, and only hash the others if there is anything to check against them
+    lookups.sort(Comparator.comparingInt(l -> l.pieces.size()));
+    final List<Set<GamePiece>> others = new ArrayList<>();
+    for (int i = 1; i < lookups.size(); i++) {
+      others.add(new HashSet<>(lookups.get(i).pieces));
+    }
+
+    for (final GamePiece piece : new LinkedHashSet<>(lookups.get(0).pieces)) {
+      boolean found = true;
+      for (final Set<GamePiece> other : others) {
+        if (!other.contains(piece)) {
+          found = false;
+          break;
+        }
+      }
+      if (found) {
+        candidates.add(piece);
+      }
+    }
+
+    // The indexes return pieces in no particular order. Work out where each piece is once before sorting, walking
+    // each Stack only once, instead of searching for the piece again on every comparison
+    final IdentityHashMap<GamePiece, Integer> stackPositions = new IdentityHashMap<>();
+    final Set<Stack> walked = Collections.newSetFromMap(new IdentityHashMap<>());
+    final IdentityHashMap<GamePiece, int[]> positions = new IdentityHashMap<>(candidates.size());
+    for (final GamePiece p : candidates) {
+      final Stack parent = p.getParent();
+      if (parent != null && walked.add(parent)) {
+        for (int i = 0; i < parent.getPieceCount(); i++) {
+          stackPositions.put(parent.getPieceAt(i), i);
+        }
+      }
+      final Map map = p.getMap();
+      positions.put(p, new int[] {
+        map == null ? -1 : maps.indexOf(map),
+        drawOrderIndex(p),
+        stackPositions.getOrDefault(p, 0)
+      });
+    }
+
+    candidates.sort(Comparator.comparingInt((GamePiece p) -> positions.get(p)[0])
+      .thenComparingInt(p -> positions.get(p)[1])
+      .thenComparingInt(p -> positions.get(p)[2]));
+
+    candidateCount = candidates.size();
+    return candidates;
+  }
+
+  /**
+   * @return the position in its map's draw order of the piece, or of the Stack or Deck it is in
+   */
+  private static int drawOrderIndex(GamePiece p) {
+    final Map map = p.getMap();
+    if (map == null) {
+      return -1;
+    }
+    return map.getDrawOrderIndex(p.getParent() == null ? p : p.getParent());
+  }
+
+  /**
+   * Take any property equalities that can be answered by an index out of a filter, adding a lookup for each.
+   *
+   * @param filter Filter of the command, may be null
+   * @param maps   Maps the command applies to
+   * @param owner  Owner of the filter, for reporting errors in the residual filter
+   * @param audit  Audit trail of the filter
+   */
+  public void planFilter(PieceFilter filter, Collection<Map> maps, Auditable owner, AuditTrail audit) {
+    residualFilter = splitFilter(filter, maps, owner, audit);
+  }
+
+  /**
+   * @return the filter the candidate pieces must still pass, null if none
+   */
+  public PieceFilter getResidualFilter() {
+    return residualFilter;
+  }
+
+  private PieceFilter splitFilter(PieceFilter filter, Collection<Map> maps, Auditable owner, AuditTrail audit) {
+    if (filter instanceof BooleanAndPieceFilter) {
+      final BooleanAndPieceFilter and = (BooleanAndPieceFilter) filter;
+      final PieceFilter f1 = splitFilter(and.getFilter1(), maps, owner, audit);
+      final PieceFilter f2 = splitFilter(and.getFilter2(), maps, owner, audit);
+      if (f1 == null) {
+        return f2;
+      }
+      if (f2 == null) {
+        return f1;
+      }
+      return (f1 == and.getFilter1() && f2 == and.getFilter2()) ? filter : new BooleanAndPieceFilter(f1, f2);
+    }
+
+    if (!(filter instanceof BeanShellExpression.BshFilter)) {
+      if (filter != null) {
+        residual.add(filter.toString());
+      }
+      return filter;
+    }
+
+    final String filterText = ((BeanShellExpression.BshFilter) filter).toBeanShellString();
+    final Split split = SPLITS.computeIfAbsent(filterText, Split::new);
+
+    final boolean[] indexed = new boolean[split.terms.size()];
+    boolean planned = false;
+    for (int i = 0; i < indexed.length; i++) {
+      final String[] equality = split.equalities.get(i);
+      if (equality != null && indexManager.isIndexed(equality[0])) {
+        addLookup(maps, equality[0], equality[1]);
+        indexed[i] = true;
+        planned = true;
+      }
+    }
+
+    if (!planned) {
+      residual.add(filterText);
+      return filter;
+    }
+
+    synchronized (split) {
+      // The indexed properties rarely change, so the residual filter made last time can usually be used again
+      if (!Arrays.equals(indexed, split.indexed)) {
+        final List<String> remaining = new ArrayList<>();
+        for (int i = 0; i < indexed.length; i++) {
+          if (!indexed[i]) {
+            remaining.add(split.terms.get(i));
+          }
+        }
+        split.residualText = remaining.isEmpty() ? null : "(" + String.join(") && (", remaining) + ")";
+        split.residual = remaining.isEmpty() ? null : Expression.createExpression("{" + split.residualText + "}");
+        split.indexed = indexed;
+      }
+
+      if (split.residual == null) {
+        return null;
+      }
+      residual.add(split.residualText);
+      return split.residual.getFilter(owner, audit);
+    }
+  }
+
+  /**
+   * Split a BeanShell expression into the clauses of its top-level {@code &&}. An expression with a top-level
+   * {@code ||} or {@code ?} is returned whole, as its clauses cannot be tested separately.
+   *
+   * @param expression BeanShell expression without braces
+   * @return Clauses, each trimmed and with any enclosing parentheses removed
+   */
+  static List<String> splitConjuncts(String expression) {
+    final List<String> terms = new ArrayList<>();
+    int depth = 0;
+    int start = 0;
+    boolean quoted = false;
+
+    for (int i = 0; i < expression.length(); i++) {
+      final char c = expression.charAt(i);
+      if (quoted) {
+        if (c == '\\') {
+          i++;
+        }
+        else if (c == '"') {
+          quoted = false;
+        }
+      }
+      else if (c == '"') {
+        quoted = true;
+      }
+      else if (c == '(') {
+        depth++;
+      }
+      else if (c == ')') {
+        depth--;
+      }
+      else if (depth == 0) {
+        if (c == '?' || expression.startsWith("||", i)) {
+          return List.of(unwrap(expression));
+        }
+        if (expression.startsWith("&&", i)) {
+          terms.add(unwrap(expression.substring(start, i)));
+          start = i + 2;
+          i++;
+        }
+      }
+    }
+
+    terms.add(unwrap(expression.substring(start)));
+    return terms;
+  }
+
+  /**
+   * @param term Clause of a BeanShell expression
+   * @return the property name and value of a clause comparing a property to a literal String whose value the
+   * index compares the same way as BeanShell does, or null
+   */
+  static String[] parseEquality(String term) {
+    final String name;
+    final String value;
+
+    Matcher m = EQUALITY.matcher(term);
+    if (m.matches()) {
+      name = m.group(1) != null ? m.group(1) : m.group(2);
+      value = m.group(3);
+    }
+    else {
+      m = REVERSED_EQUALITY.matcher(term);
+      if (!m.matches()) {
+        return null;
+      }
+      value = m.group(1);
+      name = m.group(2) != null ? m.group(2) : m.group(3);
+    }
+
+    // BeanShell sees missing properties as "", and converts booleans and numbers, so leave those to the filter
+    if (value.isEmpty() || BeanShell.TRUE.equals(value) || BeanShell.FALSE.equals(value)
+      || StringUtils.containsOnly(value, "+-.0123456789")) { // NON-NLS
+      return null;
+    }
+
+    return new String[] { name, value };
+  }
+
+  /** Trim a clause and remove any parentheses enclosing all of it */
+  private static String unwrap(String term) {
+    String s = term.trim();
+    while (s.startsWith("(") && s.endsWith(")") && closes(s)) {
+      s = s.substring(1, s.length() - 1).trim();
+    }
+    return s;
+  }
+
+  /** @return true if the opening parenthesis of s is closed by its last character */
+  private static boolean closes(String s) {
+    int depth = 0;
+    boolean quoted = false;
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      if (quoted) {
+        if (c == '\\') {
+          i++;
+        }
+        else if (c == '"') {
+          quoted = false;
+        }
+      }
+      else if (c == '"') {
+        quoted = true;
+      }
+      else if (c == '(') {
+        depth++;
+      }
+      else if (c == ')') {
+        depth--;
+        if (depth == 0 && i < s.length() - 1) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return Description of the plan, for the audit trail
+   */
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("Global Key Command plan: "); //NON-NLS
+    if (lookups.isEmpty()) {
+      sb.append("scan all pieces"); //NON-NLS
+    }
+    else {
+      sb.append("index lookups "); //NON-NLS
+      for (int i = 0; i < lookups.size(); i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        final Lookup l = lookups.get(i);
+        sb.append(l.description).append(" (").append(l.pieces.size()).append(')');
+      }
+      if (candidateCount >= 0) {
+        sb.append(" -> ").append(candidateCount).append(" candidates"); //NON-NLS
+      }
+    }
+    if (!residual.isEmpty()) {
+      sb.append("; then filter ").append(String.join(" && ", residual)); //NON-NLS
+    }
+    return sb.toString();
+  }
+}
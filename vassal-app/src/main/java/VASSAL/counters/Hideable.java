@@ -18,6 +18,7 @@
 package VASSAL.counters;
 
 import VASSAL.build.module.documentation.HelpFile;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.ChangeTracker;
 import VASSAL.command.Command;
 import VASSAL.configure.BooleanConfigurer;
@@ -70,6 +71,7 @@ public class Hideable extends Decorator implements TranslatablePiece {
   public void setProperty(Object key, Object val) {
     if (HIDDEN_BY.equals(key)) {
       hiddenBy = (String) val;
+      PropertyDependencies.stateChanged(this);
     }
     else {
       super.setProperty(key, val);
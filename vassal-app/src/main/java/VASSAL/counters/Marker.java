@@ -17,6 +17,7 @@
  */
 package VASSAL.counters;
 
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.i18n.Resources;
 import java.awt.Component;
 import java.awt.Graphics;
@@ -117,6 +118,7 @@ public class Marker extends Decorator implements EditablePiece {
     for (int i = 0; i < keys.length; ++i) {
       if (keys[i].equals(key)) {
         values[i] = (String) value;
+        PropertyDependencies.stateChanged(this);
         return;
       }
     }
@@ -20,6 +20,7 @@ import VASSAL.build.BadDataReport;
 import VASSAL.build.GameModule;
 import VASSAL.build.module.GameState;
 import VASSAL.build.module.documentation.HelpFile;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.ChangeTracker;
 import VASSAL.command.Command;
 import VASSAL.command.NullCommand;
@@ -196,11 +197,14 @@ public class Mat extends Decorator implements TranslatablePiece {
 
           final Mat mat = (Mat)getDecorator(mt, Mat.class);
           mat.removeCargo(p);
+          pieceChanged(mt);
         }
       }
     }
 
     addCargo(p);
+    pieceChanged(this);
+    pieceChanged(p);
 
     Command c = ct.getChangeCommand().append(ct2.getChangeCommand());
     if (ct3 != null) {
@@ -230,6 +234,8 @@ public class Mat extends Decorator implements TranslatablePiece {
     final ChangeTracker ct2 = new ChangeTracker(p);
 
     removeCargo(p);
+    pieceChanged(this);
+    pieceChanged(p);
 
     return ct.getChangeCommand().append(ct2.getChangeCommand());
   }
@@ -346,6 +352,7 @@ public class Mat extends Decorator implements TranslatablePiece {
   public void setProperty(Object key, Object value) {
     if (MAT_NAME.equals(key)) {
       matName = (String) value;
+      PropertyDependencies.stateChanged(this);
       return;
     }
     super.setProperty(key, value);
@@ -20,6 +20,7 @@ import VASSAL.build.BadDataReport;
 import VASSAL.build.GameModule;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.documentation.HelpFile;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.ChangeTracker;
 import VASSAL.command.Command;
 import VASSAL.command.NullCommand;
@@ -186,6 +187,10 @@ public class MatCargo extends Decorator implements TranslatablePiece {
     final ChangeTracker ct = new ChangeTracker(this);
 
     clearMat();
+    pieceChanged(this);
+    if (actualMat != null) {
+      pieceChanged(actualMat);
+    }
 
     Command c = ct.getChangeCommand();
     if (ctMat != null) {
@@ -508,6 +513,10 @@ public class MatCargo extends Decorator implements TranslatablePiece {
   @Override
   public Object getProperty(Object key) {
     if (mat != null) {
+      // These are read from our mat, so a value computed from them depends on it too
+      if (key instanceof String && ((String) key).startsWith(CURRENT_MAT)) {
+        PropertyDependencies.pieceRead(mat);
+      }
       if (CURRENT_MAT.equals(key)) {
         return mat.getProperty(Mat.MAT_NAME);
       }
@@ -562,6 +571,9 @@ public class MatCargo extends Decorator implements TranslatablePiece {
   @Override
   public Object getLocalizedProperty(Object key) {
     if (mat != null) {
+      if (key instanceof String && ((String) key).startsWith(CURRENT_MAT)) {
+        PropertyDependencies.pieceRead(mat);
+      }
       if (CURRENT_MAT.equals(key)) {
         return mat.getLocalizedProperty(Mat.MAT_NAME);
       }
@@ -22,6 +22,7 @@ import VASSAL.build.module.ObscurableOptions;
 import VASSAL.build.module.PlayerRoster;
 import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.build.module.map.CounterDetailViewer;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.ChangeTracker;
 import VASSAL.command.Command;
 import VASSAL.configure.BooleanConfigurer;
@@ -283,6 +284,7 @@ public class Obscurable extends Decorator implements TranslatablePiece {
           obscuredBy = null;
           obscuredOptions = null;
         }
+        PropertyDependencies.stateChanged(this);
       }
     }
     else if (Properties.SELECTED.equals(key)) {
@@ -298,6 +300,7 @@ public class Obscurable extends Decorator implements TranslatablePiece {
       }
       obscuredBy = owner;
       obscuredOptions = new ObscurableOptions(ObscurableOptions.getInstance().encodeOptions());
+      PropertyDependencies.stateChanged(this);
     }
     else {
       super.setProperty(key, val);
@@ -551,7 +554,12 @@ public class Obscurable extends Decorator implements TranslatablePiece {
       return super.keyEvent(stroke);
     }
     else if (isMaskable()) {
-      return myKeyEvent(stroke);
+      final Command c = myKeyEvent(stroke);
+      if (c != null) {
+        pieceChanged(this);
+      }
+      PropertyDependencies.stateChanged(this);
+      return c;
     }
     else {
       return null;
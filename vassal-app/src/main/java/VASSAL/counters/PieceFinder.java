@@ -31,6 +31,15 @@ public interface PieceFinder {
   /** Return the argument GamePiece (or one of its children if a Stack) found at the given point on the given Map */
   GamePiece select(Map map, GamePiece piece, Point pt);
 
+  /**
+   * @return true if this finder only ever selects from a piece, Stack or Deck whose bounding box contains the point,
+   * so that a Map need only offer it those. Only VASSAL's own finders return true. A subclass of one of them may
+   * select pieces some other way, so it returns false unless it overrides this method.
+   */
+  default boolean isBounded() {
+    return false;
+  }
+
   /** Return a Stack overlapping the given point */
   PieceFinder STACK_ONLY = new StackOnly();
 
@@ -50,7 +59,12 @@ public interface PieceFinder {
   /** Returns a Stack if unexpanded and overlapping the given point,
    * or a piece within that stack if expanded and overlapping the given point
    */
-  PieceFinder MOVABLE = new Movable();
+  PieceFinder MOVABLE = new Movable() {
+    @Override
+    public boolean isBounded() {
+      return true;
+    }
+  };
 
   PieceFinder MAT_ONLY = new MatOnly();
 
@@ -71,6 +85,11 @@ public interface PieceFinder {
     public Object visitStack(Stack s) {
       return null;
     }
+
+    @Override
+    public boolean isBounded() {
+      return getClass() == MatOnly.class;
+    }
   }
 
   class StackOnly extends Movable {
@@ -88,6 +107,11 @@ public interface PieceFinder {
       }
       return selected;
     }
+
+    @Override
+    public boolean isBounded() {
+      return getClass() == StackOnly.class;
+    }
   }
 
 
@@ -99,6 +123,11 @@ public interface PieceFinder {
       final Point p = new Point(pt.x - pos.x, pt.y - pos.y);
       return (s.contains(p) ? d : null);
     }
+
+    @Override
+    public boolean isBounded() {
+      return getClass() == DeckOrPieceInStack.class;
+    }
   }
 
 
@@ -112,6 +141,11 @@ public interface PieceFinder {
       }
       return selected;
     }
+
+    @Override
+    public boolean isBounded() {
+      return getClass() == PieceInStack.class;
+    }
   }
 
   class Movable implements PieceFinder, DeckVisitor {
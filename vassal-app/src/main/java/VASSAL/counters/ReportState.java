@@ -123,7 +123,11 @@ public class ReportState extends Decorator implements TranslatablePiece {
   @Override
   public Command keyEvent(KeyStroke stroke) {
     final Command c = piece.keyEvent(stroke);
-    return c == null ? myKeyEvent(stroke) : c.append(myKeyEvent(stroke));
+    final Command mine = myKeyEvent(stroke);
+    if (mine != null) {
+      pieceChanged(this);
+    }
+    return c == null ? mine : c.append(mine);
   }
 
   @Override
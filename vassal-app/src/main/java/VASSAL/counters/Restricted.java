@@ -317,6 +317,7 @@ public class Restricted extends Decorator implements EditablePiece {
 
         final ChangeTracker t = new ChangeTracker(p);
         r.owningPlayer = "";
+        pieceChanged(p);
         return t.getChangeCommand();
       }
       return null;
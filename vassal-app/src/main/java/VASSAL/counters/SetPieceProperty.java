@@ -283,6 +283,7 @@ public class SetPieceProperty extends DynamicProperty implements RecursionLimite
           final ChangeTracker ct = new ChangeTracker(currentDP);
 
           currentDP.setValue(newValue);
+          pieceChanged(currentDP);
 
           comm = comm.append(ct.getChangeCommand());
           break;  // No need to search further, any deeper DP's of the same name are shadowed by this one.
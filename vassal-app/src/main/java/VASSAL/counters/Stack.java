@@ -37,6 +37,7 @@ import VASSAL.build.module.Map;
 import VASSAL.build.module.map.CompoundPieceCollection;
 import VASSAL.build.module.map.PieceCollection;
 import VASSAL.build.module.map.StackMetrics;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.command.Command;
 import VASSAL.tools.EnumeratedIterator;
 import VASSAL.tools.ErrorDialog;
@@ -176,6 +177,7 @@ public class Stack extends AbstractImageFinder implements GamePiece, StateMergea
         contents[i] = contents[i + 1];
       }
       expanded = expanded && pieceCount > 1;
+      boundsChanged();
     }
   }
 
@@ -225,6 +227,7 @@ public class Stack extends AbstractImageFinder implements GamePiece, StateMergea
 
     contents[index] = p;
     pieceCount++;
+    boundsChanged();
   }
 
 
@@ -234,6 +237,7 @@ public class Stack extends AbstractImageFinder implements GamePiece, StateMergea
   public void removeAll() {
     pieceCount = 0;
     expanded = false;
+    boundsChanged();
   }
 
   /**
@@ -596,6 +600,7 @@ public class Stack extends AbstractImageFinder implements GamePiece, StateMergea
    */
   public void setExpanded(boolean b) {
     expanded = b && getPieceCount() > 1;
+    boundsChanged();
   }
 
   /**
@@ -799,6 +804,17 @@ public class Stack extends AbstractImageFinder implements GamePiece, StateMergea
   @Override
   public void setPosition(Point p) {
     pos = p;
+    boundsChanged();
+  }
+
+  /**
+   * Let our Map know that our position, contents or expansion has changed, so our painted bounds may have too
+   */
+  protected void boundsChanged() {
+    PropertyDependencies.stateChanged(this);
+    if (map != null) {
+      map.pieceChanged(this);
+    }
   }
 
   /**
@@ -37,6 +37,8 @@ import javax.swing.JList;
 import javax.swing.UIManager;
 
 import VASSAL.Info;
+import VASSAL.build.GameModule;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.configure.StringEnumConfigurer;
 import VASSAL.preferences.Prefs;
 import VASSAL.tools.ErrorDialog;
@@ -365,6 +367,7 @@ public class Resources {
 
   private void setInstanceLocale(Locale l) {
     locale = l;
+    PropertyDependencies.propertyChanged(GameModule.MODULE_CURRENT_LOCALE);
     editorBundle = null;
     vassalBundle = null;
     UIManager.put("OptionPane.yesButtonText", getInstanceString(YES)); //$NON-NLS-1$
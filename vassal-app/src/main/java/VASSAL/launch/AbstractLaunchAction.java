@@ -35,6 +35,7 @@ import VASSAL.tools.concurrent.FutureUtils;
 import VASSAL.tools.deprecation.RemovalAndDeprecationChecker;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.filechooser.ModuleFileFilter;
+import VASSAL.tools.image.tilecache.TileUtils;
 import VASSAL.tools.io.ProcessLauncher;
 import VASSAL.tools.io.ProcessWrapper;
 import VASSAL.tools.lang.MemoryUtils;
@@ -297,13 +298,21 @@ public abstract class AbstractLaunchAction extends AbstractAction {
           3*PHYS_MEMORY/4
         );
 
+        final boolean pack_tiles = Boolean.TRUE.equals(
+          Prefs.getGlobalPrefs().getValue(ModuleManager.TILER_PACK_TILES)
+        );
+
+        final boolean in_process = Boolean.TRUE.equals(
+          Prefs.getGlobalPrefs().getValue(ModuleManager.TILER_IN_PROCESS)
+        );
+
         // slice tiles for module
         final String aname = lr.module.getAbsolutePath();
         final ModuleMetaData meta = new ModuleMetaData(new ZipFile(aname));
         final String hstr =
           DigestUtils.sha1Hex(meta.getName() + "_" + meta.getVersion());
 
-        final File cdir = new File(Info.getCacheDir(), "tiles/" + hstr);
+        final File cdir = new File(Info.getCacheDir(), TileUtils.CACHE_DIR + "/" + hstr);
 
         final TilingHandler th = new TilingHandler(
           aname,
@@ -311,6 +320,8 @@ public abstract class AbstractLaunchAction extends AbstractAction {
           new Dimension(256, 256),
           max_tiler_heap
         );
+        th.setPackTiles(pack_tiles);
+        th.setInProcess(in_process);
 
         try {
           th.sliceTiles();
@@ -328,6 +339,8 @@ public abstract class AbstractLaunchAction extends AbstractAction {
             new Dimension(256, 256),
             max_tiler_heap
           );
+          eth.setPackTiles(pack_tiles);
+          eth.setInProcess(in_process);
 
           try {
             eth.sliceTiles();
@@ -87,6 +87,12 @@ public class LoadModuleAction extends GameModuleAction {
   }
 
   private void showWizardOrPlayerWindow(GameModule module) {
+    // Pick up where a game left off if VASSAL stopped without closing it
+    if (module.getAutoSaver().offerRecovery()) {
+      module.getPlayerWindow().setVisible(true);
+      return;
+    }
+
     final Boolean showWizard = (Boolean) Prefs.getGlobalPrefs().getValue(WizardSupport.WELCOME_WIZARD_KEY);
     if (Boolean.TRUE.equals(showWizard)) {
       module.getWizardSupport().showWelcomeWizard();
@@ -71,6 +71,8 @@ public class ModuleManager {
 
   public static final String CONVERTER_MAXIMUM_HEAP = "converterMaximumHeap"; //$NON-NLS-1$
   public static final String TILER_MAXIMUM_HEAP = "tilerMaximumHeap"; //$NON-NLS-1$
+  public static final String TILER_PACK_TILES = "tilerPackTiles"; //$NON-NLS-1$
+  public static final String TILER_IN_PROCESS = "tilerInProcess"; //$NON-NLS-1$
 
   @Deprecated(since = "2022-02-25", forRemoval = true)
   public static final String MAXIMUM_HEAP = "maximumHeap"; //$NON-NLS-1$
@@ -359,6 +361,28 @@ public class ModuleManager {
       Resources.getString("Prefs.tiler_tab"), //NON-NLS
       maxHeapConf
     );
+
+    // whether to write one tile pack per image instead of one file per tile
+    final BooleanConfigurer packConf = new BooleanConfigurer(
+      TILER_PACK_TILES,
+      Resources.getString("ModuleManager.tiler_pack_tiles"),  //$NON-NLS-1$
+      false
+    );
+    globalPrefs.addOption(
+      Resources.getString("Prefs.tiler_tab"), //NON-NLS
+      packConf
+    );
+
+    // whether to tile what fits in memory here instead of in the tiler process
+    final BooleanConfigurer inProcessConf = new BooleanConfigurer(
+      TILER_IN_PROCESS,
+      Resources.getString("ModuleManager.tiler_in_process"),  //$NON-NLS-1$
+      false
+    );
+    globalPrefs.addOption(
+      Resources.getString("Prefs.tiler_tab"), //NON-NLS
+      inProcessConf
+    );
   }
 
   private void converterHeapSetup(Prefs globalPrefs) {
@@ -43,6 +43,7 @@ import VASSAL.tools.SequenceEncoder;
 import VASSAL.tools.WriteErrorDialog;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.filechooser.ModuleExtensionFileFilter;
+import VASSAL.tools.image.tilecache.TileUtils;
 import VASSAL.tools.io.DirectoryTreeDeleter;
 import VASSAL.tools.logging.LogPane;
 import VASSAL.tools.menu.CheckBoxMenuItemProxy;
@@ -491,9 +492,12 @@ public class ModuleManagerWindow extends JFrame {
       final SwingWorker task = new SwingWorker<Void, Void>() {
         @Override
         public Void doInBackground() throws InterruptedException, IOException {
-          // clear tiles in both old (conf) and new (cache) locations
-          for (final File d : List.of(Info.getCacheDir(), Info.getConfDir())) {
-            final Path tdir = d.toPath().resolve("tiles");
+          // clear tiles in the old (conf) location, and both old and new
+          // formats in the new (cache) location
+          for (final Path tdir : List.of(
+            Info.getCacheDir().toPath().resolve(TileUtils.CACHE_DIR),
+            Info.getCacheDir().toPath().resolve(TileUtils.OLD_CACHE_DIR),
+            Info.getConfDir().toPath().resolve(TileUtils.OLD_CACHE_DIR))) {
             if (Files.exists(tdir)) {
               try {
                 Files.walkFileTree(tdir, new DirectoryTreeDeleter());
@@ -1634,13 +1638,16 @@ public class ModuleManagerWindow extends JFrame {
         metadata.getName() + "_" + metadata.getVersion()
       );
 
-      final Path tdir = Info.getCacheDir().toPath().resolve("tiles/" + hstr);
-      if (Files.exists(tdir)) {
-        try {
-          Files.walkFileTree(tdir, new DirectoryTreeDeleter());
-        }
-        catch (IOException e) {
-          WriteErrorDialog.error(e, tdir.toFile());
+      // clear tiles in both the old and new formats
+      for (final String dir : List.of(TileUtils.CACHE_DIR, TileUtils.OLD_CACHE_DIR)) {
+        final Path tdir = Info.getCacheDir().toPath().resolve(dir + "/" + hstr);
+        if (Files.exists(tdir)) {
+          try {
+            Files.walkFileTree(tdir, new DirectoryTreeDeleter());
+          }
+          catch (IOException e) {
+            WriteErrorDialog.error(e, tdir.toFile());
+          }
         }
       }
     }
@@ -122,6 +122,11 @@ public class Player extends Launcher {
   private void showWizardOrPlayerWindow(GameModule module) {
     module.getPlayerWindow().setVisible(true);
 
+    // Pick up where a game left off if VASSAL stopped without closing it
+    if (module.getAutoSaver().offerRecovery()) {
+      return;
+    }
+
     final Boolean showWizard = (Boolean) Prefs.getGlobalPrefs().getValue(WizardSupport.WELCOME_WIZARD_KEY);
     if (Boolean.TRUE.equals(showWizard)) {
       module.getWizardSupport().showWelcomeWizard();
@@ -20,8 +20,12 @@ package VASSAL.launch;
 import VASSAL.Info;
 import VASSAL.i18n.Resources;
 import VASSAL.tools.DataArchive;
+import VASSAL.tools.image.ImageIOImageLoader;
 import VASSAL.tools.image.ImageUtils;
+import VASSAL.tools.image.MemoryImageTypeConverter;
 import VASSAL.tools.image.tilecache.ImageTileDiskCache;
+import VASSAL.tools.image.tilecache.ParallelImageTiler;
+import VASSAL.tools.image.tilecache.TileSlicerImpl;
 import VASSAL.tools.image.tilecache.TileUtils;
 import VASSAL.tools.io.ArgEncoding;
 import VASSAL.tools.io.FileArchive;
@@ -30,6 +34,7 @@ import VASSAL.tools.io.InputOutputStreamPump;
 import VASSAL.tools.io.InputStreamPump;
 import VASSAL.tools.io.ProcessLauncher;
 import VASSAL.tools.io.ProcessWrapper;
+import VASSAL.tools.io.ZipArchive;
 import VASSAL.tools.lang.MemoryUtils;
 import VASSAL.tools.lang.Pair;
 import VASSAL.tools.swing.EDT;
@@ -50,10 +55,17 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
 
 import static VASSAL.tools.image.tilecache.ZipFileImageTilerState.DONE;
 import static VASSAL.tools.image.tilecache.ZipFileImageTilerState.IMAGE_BEGIN;
@@ -75,6 +87,8 @@ public class TilingHandler {
   protected final File cdir;
   protected final Dimension tdim;
   protected final int maxheap_limit;
+  protected boolean packTiles = false;
+  protected boolean inProcess = false;
 
   /**
    * Creates a {@code TilingHandler}.
@@ -90,6 +104,30 @@ public class TilingHandler {
     this.maxheap_limit = mhlim;
   }
 
+  /**
+   * Sets whether the tiles of each image are written to a single
+   * {@link VASSAL.tools.image.tilecache.TilePack} instead of to one file
+   * per tile.
+   *
+   * @param packTiles whether to write tile packs
+   */
+  public void setPackTiles(boolean packTiles) {
+    this.packTiles = packTiles;
+  }
+
+  /**
+   * Sets whether to tile images in this process where memory permits.
+   * Images which are too large are always tiled in a separate process.
+   * The default is to tile every image in a separate process, whose heap
+   * is sized for the largest image, since the memory needed here can only
+   * be estimated, and running out of it would stop this process.
+   *
+   * @param inProcess whether to tile in this process
+   */
+  public void setInProcess(boolean inProcess) {
+    this.inProcess = inProcess;
+  }
+
   protected boolean isFresh(
     FileArchive archive,
     FileStore tcache,
@@ -103,6 +141,11 @@ public class TilingHandler {
       return false;
     }
 
+    // a pack holds all the tiles for an image, but is read only if packing
+    if (packTiles && imtime < tcache.getMTime(TileUtils.packName(ipath))) {
+      return true;
+    }
+
     final int iw = idim.width;
     final int ih = idim.height;
     final int tw = tdim.width;
@@ -159,6 +202,15 @@ public class TilingHandler {
     FileStore tcache,
     List<String> multi,
     List<Pair<String, IOException>> failed) throws IOException {
+    return findImages(archive, tcache, multi, new HashMap<>(), failed);
+  }
+
+  protected Pair<Integer, Integer> findImages(
+    DataArchive archive,
+    FileStore tcache,
+    List<String> multi,
+    Map<String, Dimension> sizes,
+    List<Pair<String, IOException>> failed) throws IOException {
 
     // build a list of all multi-tile images and count tiles
 
@@ -191,6 +243,7 @@ public class TilingHandler {
 
       tcount += t;
       multi.add(ipath);
+      sizes.put(ipath, idim);
 
       // check whether this image has the most pixels
       if (idim.width * idim.height > maxpix) {
@@ -225,6 +278,9 @@ public class TilingHandler {
     private final ProgressDialog pd;
     private final Progressor progressor;
 
+    // tiles are written on many threads at once when tiling in-process
+    private final AtomicInteger written = new AtomicInteger();
+
     public MyStateMachineHandler(int tcount, Future<Integer> fut) {
       this.tcount = tcount;
       this.fut = fut;
@@ -268,16 +324,17 @@ public class TilingHandler {
       });
     }
 
-    @Override
-    public void handleFinishedImageState(String ipath) {
-    }
-
     @Override
     public void handleTileWrittenState() {
-      progressor.increment();
+      // tiles of an image which is retried are counted again
+      final int n = written.incrementAndGet();
+      if (n <= tcount) {
+        // the progressor updates the dialog on the EDT
+        progressor.increment();
+      }
 
-      if (progressor.get() >= tcount) {
-        pd.setVisible(false);
+      if (n == tcount) {
+        SwingUtilities.invokeLater(() -> pd.setVisible(false));
       }
     }
 
@@ -291,7 +348,7 @@ public class TilingHandler {
 
     @Override
     public void handleFailure() {
-      pd.setVisible(false);
+      SwingUtilities.invokeLater(() -> pd.setVisible(false));
     }
   }
 
@@ -320,6 +377,10 @@ public class TilingHandler {
     args.add(String.valueOf(tdim.width));
     args.add(String.valueOf(tdim.height));
 
+    if (packTiles) {
+      args.add("--pack"); //NON-NLS
+    }
+
     return args.toArray(new String[0]);
   }
 
@@ -459,6 +520,82 @@ public class TilingHandler {
     }
   }
 
+  /**
+   * Tiles images in this process, on as many threads as there are
+   * processors.
+   *
+   * @param multi the images to tile
+   * @param sizes the dimensions of the images
+   * @param h the state handler
+   * @return the images which were too large to tile in this process
+   */
+  protected List<String> runInProcess(
+    List<String> multi,
+    Map<String, Dimension> sizes,
+    StateMachineHandler h
+  ) throws CancellationException, IOException {
+
+    final ParallelImageTiler tiler = new ParallelImageTiler(
+      Runtime.getRuntime().availableProcessors(),
+      ParallelImageTiler.defaultMemoryBudget()
+    );
+
+    final Map<String, Dimension> images = new LinkedHashMap<>();
+    for (final String ipath : multi) {
+      images.put(ipath, sizes.get(ipath));
+    }
+
+    final List<String> rest = new ArrayList<>();
+
+    final FutureTask<Integer> task = new FutureTask<>(() -> {
+      try (FileArchive fa = new ZipArchive(aname)) {
+        rest.addAll(tiler.run(
+          fa, cdir.getAbsolutePath(), tdim.width, tdim.height, images,
+          new ImageIOImageLoader(new MemoryImageTypeConverter()),
+          new TileSlicerImpl(packTiles),
+          h::handleStartingImageState,
+          obj -> h.handleTileWrittenState()
+        ));
+      }
+      return 0;
+    }) {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        tiler.cancel();
+        return super.cancel(mayInterruptIfRunning);
+      }
+    };
+
+    // the progress dialog cancels through this
+    h.handleRestart(task);
+
+    task.run();
+
+    try {
+      task.get();
+      return rest;
+    }
+    catch (CancellationException e) {
+      // clear the interrupt used to cancel the task
+      Thread.interrupted();
+      throw e;
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      else if (cause instanceof CancellationException) {
+        throw (CancellationException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    catch (InterruptedException e) {
+      // should never happen, the task is already done
+      throw new IllegalStateException(e);
+    }
+  }
+
   protected void makeHashDirs() throws IOException {
     for (int i = 0; i < 16; ++i) {
       for (int j = 0; j < 16; ++j) {
@@ -479,13 +616,14 @@ public class TilingHandler {
    */
   public void sliceTiles() throws CancellationException, IOException {
     final List<String> multi = new ArrayList<>();
+    final Map<String, Dimension> sizes = new HashMap<>();
     final List<Pair<String, IOException>> failed =
       new ArrayList<>();
 
     final Pair<Integer, Integer> s;
     try (DataArchive archive = new DataArchive(aname)) {
       final FileStore tcache = new ImageTileDiskCache(cdir.getAbsolutePath());
-      s = findImages(archive, tcache, multi, failed);
+      s = findImages(archive, tcache, multi, sizes, failed);
     }
 
     // nothing to do if no images need tiling
@@ -497,17 +635,34 @@ public class TilingHandler {
     // ensure that the tile directories exist
     makeHashDirs();
 
-    // Fix the max heap
-    final int max_data_mbytes = (int)((4 * (long) s.second) >> 20);
-
-    // This was determined empirically.
-    final int maxheap = (int) (1.66 * max_data_mbytes + 150);
-
     final StateMachineHandler h = createStateMachineHandler(s.first, null);
     h.handleStart();
 
     // slice, and cleanup on failure
     try {
+      if (inProcess) {
+        // tile what fits in memory here, leaving the rest for the tiler process
+        multi.retainAll(runInProcess(multi, sizes, h));
+
+        if (multi.isEmpty()) {
+          h.handleTilingFinishedState();
+          h.handleSuccess();
+          return;
+        }
+      }
+
+      // Fix the max heap
+      long maxpix = 0;
+      for (final String ipath : multi) {
+        final Dimension idim = sizes.get(ipath);
+        maxpix = Math.max(maxpix, (long) idim.width * idim.height);
+      }
+
+      final int max_data_mbytes = (int)((4 * maxpix) >> 20);
+
+      // This was determined empirically.
+      final int maxheap = (int) (1.66 * max_data_mbytes + 150);
+
       // result is (return value, next max heap to try)
       Pair<Integer, Integer> result = Pair.of(0, maxheap);
       do {
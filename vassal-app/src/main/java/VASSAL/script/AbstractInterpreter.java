@@ -21,6 +21,7 @@ import VASSAL.build.GameModule;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.PlayerRoster;
 import VASSAL.build.module.PrivateMap;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.tools.NamedKeyStroke;
 import VASSAL.tools.WarningDialog;
 
@@ -122,6 +123,7 @@ public abstract class AbstractInterpreter extends Interpreter {
    * @return                blank string
    */
   public Object alert(Object message, Object closeAfterDelay) {
+    PropertyDependencies.uncacheable();
     int ms;
     try {
       if (closeAfterDelay instanceof Integer) {
@@ -22,7 +22,9 @@ import VASSAL.build.GameModule;
 import VASSAL.build.module.GlobalOptions;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
+import VASSAL.build.module.properties.PropertyDependencies;
 import VASSAL.build.module.properties.PropertySource;
+import VASSAL.build.module.properties.PropertyValue;
 import VASSAL.configure.PropertyExpression;
 import VASSAL.counters.Attachment;
 import VASSAL.counters.BasicPiece;
@@ -44,11 +46,15 @@ import VASSAL.tools.RecursionLimitException;
 import VASSAL.tools.RecursionLimiter;
 import VASSAL.tools.RecursionLimiter.Loopable;
 import VASSAL.tools.WarningDialog;
+import VASSAL.tools.concurrent.DaemonThreadFactory;
 import VASSAL.tools.swing.DialogCloser;
 
 import bsh.BeanShellExpressionValidator;
+import bsh.CompiledExpression;
 import bsh.EvalError;
+import bsh.ExpressionCompiler;
 import bsh.NameSpace;
+import bsh.Primitive;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
@@ -66,7 +72,15 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -82,6 +96,12 @@ import java.util.List;
  *    parsed expression. All expressions in all traits that are the same
  *    will use the one Expression NameSpace.
  *
+ * An expression which is evaluated often, and which uses only the operators,
+ * String methods and functions {@link ExpressionCompiler} supports, is
+ * compiled to a Java class and evaluated without BeanShell, unless its
+ * compiled form meets a case it leaves to BeanShell. Expressions are compiled
+ * on a background thread, and evaluated by BeanShell until they are ready.
+ *
  */
 public class ExpressionInterpreter extends AbstractInterpreter implements Loopable {
 
@@ -96,6 +116,49 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   protected static final String MAGIC3 = "_plover"; // NON-NLS
   protected static final String ERROR_PREFIX = " inline evaluation of: ``_xyzzy=_plugh();''";
 
+  /**
+   * The functions in init_expression.bsh which a compiled expression may call, by name and number of arguments.
+   * Each is handled by {@link #callFunction}.
+   */
+  protected static final Set<String> COMPILED_FUNCTIONS = Set.of(
+    "GetProperty/1", "GetString/1", "GetLocalizedProperty/1", // NON-NLS
+    "GetZoneProperty/2", "GetZoneProperty/3", "GetMapProperty/2", // NON-NLS
+    "SumStack/1", "SumStack/2", "CountStack/0", "CountStack/1", "CountStack/2", // NON-NLS
+    "SumMat/1", "SumMat/2", "CountMat/1", "CountMat/2", // NON-NLS
+    "SumLocation/1", "SumLocation/2", "SumLocation/3", "SumLocation/4", // NON-NLS
+    "CountLocation/0", "CountLocation/1", "CountLocation/2", "CountLocation/3", "CountLocation/4", // NON-NLS
+    "SumMap/1", "SumMap/2", "SumMap/3", "CountMap/0", "CountMap/1", "CountMap/2", "CountMap/3", // NON-NLS
+    "SumZone/1", "SumZone/2", "SumZone/3", "SumZone/4", // NON-NLS
+    "CountZone/0", "CountZone/1", "CountZone/2", "CountZone/3", "CountZone/4" // NON-NLS
+  );
+
+  /** The most compiled expressions to keep; those used least recently are dropped first */
+  private static final int MAX_COMPILED = 1000;
+
+  /** The compiled form of each expression compiled recently, which completes with null if it could not be compiled */
+  private static final java.util.Map<String, CompletableFuture<CompiledExpression>> COMPILED =
+    Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(java.util.Map.Entry<String, CompletableFuture<CompiledExpression>> eldest) {
+        return size() > MAX_COMPILED;
+      }
+    });
+
+  private static Executor compiler;
+
+  static {
+    final ThreadPoolExecutor ex = new ThreadPoolExecutor(
+      1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new DaemonThreadFactory(ExpressionCompiler.class.getSimpleName())
+    );
+    ex.allowCoreThreadTimeOut(true);
+    compiler = ex;
+  }
+
+  private static int compileThreshold = 10;
+
   // Top-level static NameSpace shared between all ExpressionInterpreters
   // Loaded with utility methods available to all interpreters
   protected static NameSpace topLevelNameSpace;
@@ -112,6 +175,15 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   protected PropertySource source;
   protected AuditTrail currentAudit;
   protected Auditable currentOwner;
+
+  // The compiled form of the expression, once it has been evaluated often enough, or null
+  protected transient CompiledExpression compiled;
+  // true once compiling the expression has finished, whether or not it could be compiled
+  protected transient boolean compileTried;
+  protected transient CompletableFuture<CompiledExpression> compiling;
+  protected int evaluations;
+  private final transient CompiledExpression.Functions functions = this::callFunction;
+
   @Override
   public String getComponentTypeName() {
     return Resources.getString("Editor.ExpressionInterpreter.component_type");
@@ -269,89 +341,33 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
       currentAudit = audit;
       currentOwner = owner;
 
+      // Look up the value of each property the expression refers to, those it uses as Strings last
+      final int n = variables.size();
+      final PropertyValue[] values = new PropertyValue[n + stringVariables.size()];
+      for (int i = 0; i < values.length; ++i) {
+        values[i] = lookup(i < n ? variables.get(i) : stringVariables.get(i - n), properties, localized, audit);
+      }
+
+      final String compiledResult = evaluateCompiled(values);
+      if (compiledResult != null) {
+        return compiledResult;
+      }
+
       setNameSpace(expressionNameSpace);
 
       // Bind each undeclared variable with the value of the
-      // corresponding Vassal property. Allow for old-style $variable$ references
-      for (final String var : variables) {
-        String name = var;
-        final String origName = name;
-        if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
-          name = name.substring(1, name.length() - 1);
-        }
-        // Check for a propoerty in the passed property Map, then check the source if not found
-        Object prop = properties == null ? null : properties.get(name);
-        if (prop == null) {
-          prop = (source == null) ? "" : localized ? source.getLocalizedProperty(name) : source.getProperty(name);
-        }
-        final String value = prop == null ? "" : prop.toString();
-        if (audit != null) {
-          audit.addMessage(" " + origName + "=" + (value == null ? "" : value));
-        }
-        if (value == null) {
-          setVar(var, "");
-        }
-        else if (BeanShell.TRUE.equals(value)) {
-          setVar(var, true);
-        }
-        else if (BeanShell.FALSE.equals(value)) {
-          setVar(var, false);
-        }
-        else if (!StringUtils.containsOnly(value, "+-.0123456789")) { // NON-NLS
-          setVar(var, value);
-        }
-        // Special case where the 'Store Integers with leading zeros as Strings' option is turned on AND
-        // the string is 2 or more numerical digits commencing with 0, then store it as a String so that
-        // the leading zeros are preserved. It is up to the Designer to convert this to an integer later
-        // using Integer.parseInt(x) if they need to do arithmetic on it.
-        else if (GlobalOptions.getInstance() != null && GlobalOptions.getInstance().isStoreLeadingZeroIntegersAsStrings()
-          && value.length() > 1 && value.startsWith("0")
-          && StringUtils.containsOnly(value, "0123456789")) {
-          setVar(var, value);
-        }
-        else {
-          try {
-            setVar(var, Integer.parseInt(value));
-          }
-          catch (NumberFormatException ex1) {
-            // A very large integer (e.g. a PieceUID) will fail to convert to an Integer.
-            // Don't let it convert to a Float, store it as a String instead
-            try {
-              NumberUtils.createBigInteger(value); // Will fail if non-integer
-              setVar(var, value);
-            }
-            catch (NumberFormatException ex3) {
-              try {
-                setVar(var, Float.parseFloat(value));
-              }
-              catch (NumberFormatException ex2) {
-                setVar(var, value);
-              }
-            }
-          }
-        }
+      // corresponding Vassal property.
+      for (int i = 0; i < n; ++i) {
+        setVar(variables.get(i), toValue(values[i]));
       }
 
       final StringBuilder argList = new StringBuilder();
-      for (final String var : stringVariables) {
-        String name = var;
-        final String origName = name;
-        if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
-          name = name.substring(1, name.length() - 1);
-        }
-        // Check for a property in the passed property Map, then check the source if not found
-        Object prop = properties == null ? null : properties.get(name);
-        if (prop == null) {
-          prop = (source == null) ? "" : localized ? source.getLocalizedProperty(name) : source.getProperty(name);
-        }
-        final String value = prop == null ? "" : prop.toString();
-        if (audit != null) {
-          audit.addMessage(" " + origName + "=" + (value == null ? "" : value));
-        }
+      for (int i = n; i < values.length; ++i) {
+        final String value = values[i].toString();
         if (argList.length() > 0) {
           argList.append(',');
         }
-        argList.append('"').append(value == null ? "" : value.replace("\"", "\\\"")).append('"');
+        argList.append('"').append(value.replace("\"", "\\\"")).append('"');
       }
 
       // Re-evaluate the pre-parsed expression now that the undefined variables have
@@ -391,6 +407,289 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
     return result;
   }
 
+  /**
+   * Look up the value of a property an expression refers to. Allow for old-style $variable$ references.
+   */
+  protected PropertyValue lookup(String var, java.util.Map<String, String> properties, boolean localized, AuditTrail audit) {
+    String name = var;
+    if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
+      name = name.substring(1, name.length() - 1);
+    }
+    // Check for a property in the passed property Map, then check the source if not found
+    Object prop = properties == null ? null : properties.get(name);
+    if (prop == null) {
+      if (source instanceof GamePiece) {
+        PropertyDependencies.pieceRead((GamePiece) source);
+      }
+      prop = (source == null) ? "" : localized ? source.getLocalizedProperty(name) : source.getProperty(name);
+    }
+    final PropertyValue value = PropertyValue.of(prop);
+    if (audit != null) {
+      audit.addMessage(" " + var + "=" + value);
+    }
+    return value;
+  }
+
+  /**
+   * Convert the value of a property to the value of a variable in the expression
+   *
+   * @return a boolean, int or float {@link Primitive} if the value looks like one, or else the value
+   */
+  protected Object toValue(String value) {
+    return toValue(PropertyValue.of(value));
+  }
+
+  /**
+   * Convert the value of a property to the value of a variable in the expression, without parsing it again if it
+   * has been before
+   *
+   * @return a boolean, int or float {@link Primitive} if the value looks like one, or else the value
+   */
+  protected Object toValue(PropertyValue value) {
+    if (value.isBoolean()) {
+      return new Primitive(value.booleanValue());
+    }
+    // Special case where the 'Store Integers with leading zeros as Strings' option is turned on AND
+    // the string is 2 or more numerical digits commencing with 0, then store it as a String so that
+    // the leading zeros are preserved. It is up to the Designer to convert this to an integer later
+    // using Integer.parseInt(x) if they need to do arithmetic on it.
+    else if (value.isLeadingZeroInteger() && GlobalOptions.getInstance() != null
+      && GlobalOptions.getInstance().isStoreLeadingZeroIntegersAsStrings()) {
+      return value.toString();
+    }
+    else if (value.isInteger()) {
+      return new Primitive(value.intValue());
+    }
+    else if (value.isFloat()) {
+      return new Primitive(value.floatValue());
+    }
+    // A very large integer (e.g. a PieceUID) is kept as a String rather than converted to a Float
+    return value.toString();
+  }
+
+  /**
+   * Set the number of times an expression is evaluated by BeanShell before it is compiled
+   *
+   * @param threshold The number of evaluations, or a negative number never to compile expressions
+   */
+  public static void setCompileThreshold(int threshold) {
+    compileThreshold = threshold;
+  }
+
+  /**
+   * Set the Executor expressions are compiled on. Tests use one which compiles straight away.
+   *
+   * @param executor The Executor
+   */
+  static void setCompiler(Executor executor) {
+    compiler = executor;
+  }
+
+  /**
+   * Forget the expressions compiled so far, such as when a module is closed
+   */
+  public static void clearCompiled() {
+    COMPILED.clear();
+  }
+
+  /**
+   * Evaluate the compiled form of the expression, starting to compile it in the background if it has been evaluated
+   * often enough
+   *
+   * @param values The values of the variables, then of the String variables
+   * @return the result, or null if the expression must be evaluated by BeanShell
+   */
+  protected String evaluateCompiled(PropertyValue[] values) {
+    if (!compileTried) {
+      if (compiling == null) {
+        if (compileThreshold < 0 || evaluations++ < compileThreshold) {
+          return null;
+        }
+        compiling = COMPILED.computeIfAbsent(getExpression(), e -> CompletableFuture.supplyAsync(() -> compile(e), compiler));
+      }
+      if (!compiling.isDone()) {
+        return null;
+      }
+      compiled = compiling.isCompletedExceptionally() ? null : compiling.getNow(null);
+      compiling = null;
+      compileTried = true;
+    }
+    if (compiled == null) {
+      return null;
+    }
+
+    final int n = variables.size();
+    final Object[] args = new Object[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      if (i < n) {
+        args[i] = toValue(values[i]);
+      }
+      else {
+        // BeanShell reads String variables from a String literal, where these would not stand for themselves
+        final String value = values[i].toString();
+        if (StringUtils.containsAny(value, '\\', '\n', '\r')) {
+          return null;
+        }
+        args[i] = value;
+      }
+    }
+
+    try {
+      return compiled.evaluate(args, functions);
+    }
+    catch (CompiledExpression.Unsupported e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the compiled form of an expression, or null if it cannot be compiled
+   */
+  private CompiledExpression compile(String expression) {
+    // BeanShell reads an expression starting with ~ as part of an =~ following the assignment it is wrapped in
+    if (expression.startsWith("~")) {
+      return null;
+    }
+    try {
+      return ExpressionCompiler.compile(expression, variables, stringVariables, COMPILED_FUNCTIONS);
+    }
+    catch (RuntimeException e) {
+      logger.error("Error compiling expression " + expression, e); // NON-NLS
+      return null;
+    }
+  }
+
+  /**
+   * Call a function in init_expression.bsh for a compiled expression, as the script does
+   */
+  private Object callFunction(String function, Object[] a) {
+    final Object result;
+    switch (function) {
+    case "GetString/1": // NON-NLS
+      return getString(a[0]);
+    case "GetProperty/1": // NON-NLS
+      result = getProperty(a[0]);
+      break;
+    case "GetLocalizedProperty/1": // NON-NLS
+      result = getLocalizedProperty(a[0]);
+      break;
+    case "GetZoneProperty/2": // NON-NLS
+      result = getZoneProperty(a[0], a[1]);
+      break;
+    case "GetZoneProperty/3": // NON-NLS
+      result = getZoneProperty(a[0], a[1], a[2]);
+      break;
+    case "GetMapProperty/2": // NON-NLS
+      result = getMapProperty(a[0], a[1]);
+      break;
+    case "SumStack/1": // NON-NLS
+      result = sumStack(a[0], source);
+      break;
+    case "SumStack/2": // NON-NLS
+      result = sumStack(a[0], a[1], source);
+      break;
+    case "CountStack/0": // NON-NLS
+      result = countStack("", source);
+      break;
+    case "CountStack/1": // NON-NLS
+      result = countStack(a[0], source);
+      break;
+    case "CountStack/2": // NON-NLS
+      result = countStack(a[0], a[1], source);
+      break;
+    case "SumMat/1": // NON-NLS
+      result = sumMat(a[0], source);
+      break;
+    case "SumMat/2": // NON-NLS
+      result = sumMat(a[0], a[1], source);
+      break;
+    case "CountMat/1": // NON-NLS
+      result = countMat(a[0], source);
+      break;
+    case "CountMat/2": // NON-NLS
+      result = countMat(a[0], a[1], source);
+      break;
+    case "SumLocation/1": // NON-NLS
+      result = sumLocation(a[0], source);
+      break;
+    case "SumLocation/2": // NON-NLS
+      result = sumLocation(a[0], a[1], source);
+      break;
+    case "SumLocation/3": // NON-NLS
+      result = sumLocation(a[0], a[1], a[2], source);
+      break;
+    case "SumLocation/4": // NON-NLS
+      result = sumLocation(a[0], a[1], a[2], a[3], source);
+      break;
+    case "CountLocation/0": // NON-NLS
+      result = countLocation(source);
+      break;
+    case "CountLocation/1": // NON-NLS
+      result = countLocation(a[0], source);
+      break;
+    case "CountLocation/2": // NON-NLS
+      result = countLocation(a[0], a[1], source);
+      break;
+    case "CountLocation/3": // NON-NLS
+      result = countMapLocation(a[0], a[1], a[2], source);
+      break;
+    case "CountLocation/4": // NON-NLS
+      result = countMapLocation(a[0], a[1], a[2], a[3], source);
+      break;
+    case "SumMap/1": // NON-NLS
+      result = sumMap(a[0], source);
+      break;
+    case "SumMap/2": // NON-NLS
+      result = sumMap(a[0], a[1], source);
+      break;
+    case "SumMap/3": // NON-NLS
+      result = sumMap(a[0], a[1], a[2], source);
+      break;
+    case "CountMap/0": // NON-NLS
+      result = countMap(source);
+      break;
+    case "CountMap/1": // NON-NLS
+      result = countMap(a[0], source);
+      break;
+    case "CountMap/2": // NON-NLS
+      result = countMap(a[0], a[1], source);
+      break;
+    case "CountMap/3": // NON-NLS
+      result = countMap(a[0], a[1], a[2], source);
+      break;
+    case "SumZone/1": // NON-NLS
+      result = sumZone(a[0], null, null, null, source);
+      break;
+    case "SumZone/2": // NON-NLS
+      result = sumZone(a[0], null, null, a[1], source);
+      break;
+    case "SumZone/3": // NON-NLS
+      result = sumZone(a[0], a[1], a[2], null, source);
+      break;
+    case "SumZone/4": // NON-NLS
+      result = sumZone(a[0], a[1], a[2], a[3], source);
+      break;
+    case "CountZone/0": // NON-NLS
+      result = countZone(source);
+      break;
+    case "CountZone/1": // NON-NLS
+      result = countZone(a[0], source);
+      break;
+    case "CountZone/2": // NON-NLS
+      result = countZone(a[0], a[1], source);
+      break;
+    case "CountZone/3": // NON-NLS
+      result = countZone(a[0], a[1], a[2], source);
+      break;
+    case "CountZone/4": // NON-NLS
+      result = countZone(a[0], a[1], a[2], a[3], source);
+      break;
+    default:
+      throw new IllegalStateException("No compiled function " + function); // NON-NLS
+    }
+    return CompiledExpression.primitive(result);
+  }
+
   public String evaluate() throws ExpressionException {
     return getExpression().length() == 0 ? "" : evaluate(GameModule.getGameModule());
   }
@@ -407,19 +706,15 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
     if (value == null) {
       return "";
     }
-    else if (BeanShell.TRUE.equals(value)) {
-      return Boolean.TRUE;
+    final PropertyValue v = PropertyValue.of(value);
+    if (v.isBoolean()) {
+      return v.booleanValue();
     }
-    else if (BeanShell.FALSE.equals(value)) {
-      return Boolean.FALSE;
+    else if (v.isInteger()) {
+      return v.intValue();
     }
     else {
-      try {
-        return Integer.valueOf(value);
-      }
-      catch (NumberFormatException e) {
-        return value;
-      }
+      return value;
     }
   }
 
@@ -535,6 +830,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return            Property value
    */
   private Object getAttachmentProperty(String attachment, String property, Integer index, String pieceName, PieceFilter filter, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     ps = translatePiece(ps);
 
     if (ps instanceof GamePiece) {
@@ -644,6 +940,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   private Object sumStack(String property, PieceFilter filter, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = 0;
 
     ps = translatePiece(ps);
@@ -686,6 +983,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
 
 
   private Object countStack(String property, PieceFilter filter, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = 0;
 
     ps = translatePiece(ps);
@@ -720,6 +1018,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return total
    */
   public Object maxAttachment(Object attachment, Object property, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = Integer.MIN_VALUE;
 
     ps = translatePiece(ps);
@@ -754,6 +1053,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return total
    */
   public Object minAttachment(Object attachment, Object property, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = Integer.MAX_VALUE;
 
     ps = translatePiece(ps);
@@ -790,6 +1090,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   private Object sumAttachment(String attachment, String property, PieceFilter filter, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = 0;
 
     ps = translatePiece(ps);
@@ -826,6 +1127,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   private Object countAttachment(String attachment, String property, PieceFilter filter, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = 0;
     ps = translatePiece(ps);
 
@@ -862,6 +1164,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   private Object sumMat(String property, PieceFilter filter, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = 0;
 
     ps = translatePiece(ps);
@@ -927,6 +1230,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   private Object countMat(String property, PieceFilter filter, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     int result = 0;
 
     ps = translatePiece(ps);
@@ -1052,6 +1356,12 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return
    */
   private Object sumLocation(String property, String locationName, Map map, PieceFilter filter) {
+    PropertyDependencies.anyPieceRead();
+    final Integer total = GameModule.getGameModule().getIndexManager().getTotal(map, BasicPiece.LOCATION_NAME, locationName, property, filter, true);
+    if (total != null) {
+      return total;
+    }
+
     int result = 0;
 
     // Ask IndexManager for list of pieces on that map at that location. Stacks are not returned by the IM.
@@ -1136,6 +1446,12 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return             Count of pieces
    */
   private Object countLocation(Object locationName, Map map, String property, PieceFilter filter) {
+    PropertyDependencies.anyPieceRead();
+    final Integer total = GameModule.getGameModule().getIndexManager().getTotal(map, BasicPiece.LOCATION_NAME, locationName.toString(), property, filter, false);
+    if (total != null) {
+      return total;
+    }
+
     int result = 0;
 
     // Ask IndexManager for list of pieces on that map at that location. Stacks are not returned by the IM.
@@ -1189,6 +1505,12 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return
    */
   private Object sumZone(String property, String zoneName, Map map, PieceFilter filter) {
+    PropertyDependencies.anyPieceRead();
+    final Integer total = GameModule.getGameModule().getIndexManager().getTotal(map, BasicPiece.CURRENT_ZONE, zoneName, property, filter, true);
+    if (total != null) {
+      return total;
+    }
+
     int result = 0;
 
     // Ask IndexManager for list of pieces on that map at that zone. Stacks are not returned by the IM.
@@ -1272,6 +1594,12 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return             Count of pieces
    */
   private Object countZone(String zoneName, Map map, String property, PieceFilter filter) {
+    PropertyDependencies.anyPieceRead();
+    final Integer total = GameModule.getGameModule().getIndexManager().getTotal(map, BasicPiece.CURRENT_ZONE, zoneName, property, filter, false);
+    if (total != null) {
+      return total;
+    }
+
     int result = 0;
 
     // Ask IndexManager for list of pieces on that map at that location. Stacks are not returned by the IM.
@@ -1331,6 +1659,12 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return             Count of pieces
    */
   private Object sumMap(String propertyName, Map map, PieceFilter filter) {
+    PropertyDependencies.anyPieceRead();
+    final Integer total = GameModule.getGameModule().getIndexManager().getTotal(map, null, null, propertyName, filter, true);
+    if (total != null) {
+      return total;
+    }
+
     int result = 0;
 
     if (map != null) {
@@ -1426,6 +1760,12 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return             Count of pieces
    */
   private Object countMap(Map map, String propertyName, PieceFilter filter) {
+    PropertyDependencies.anyPieceRead();
+    final Integer total = GameModule.getGameModule().getIndexManager().getTotal(map, null, null, propertyName, filter, false);
+    if (total != null) {
+      return total;
+    }
+
     int result = 0;
 
     if (map != null) {
@@ -1457,6 +1797,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   private Object rangeAttach(String attachmentName, PieceFilter filter, boolean asPixels,  PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
     if (ps instanceof GamePiece) {
       final Map map = ((GamePiece) ps).getMap();
       final Point from = ((GamePiece) ps).getPosition();
@@ -1485,6 +1826,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
 
   private Object rangeXY(Object x, Object y, PropertySource ps, boolean asPixels) {
     if (ps instanceof GamePiece) {
+      PropertyDependencies.pieceRead((GamePiece) ps);
       final Map map = ((GamePiece) ps).getMap();
       final Point from = ((GamePiece) ps).getPosition();
       return range(from, new Point(IntPropValue(x), IntPropValue(y)), map, asPixels);
@@ -1583,6 +1925,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return              Sum or Count
    */
   private Object sumOrCountRange(String propertyName, Object expression, Object minRange, Object maxRange, boolean asPixels, boolean doSum, PropertySource ps) {
+    PropertyDependencies.anyPieceRead();
 
     final PieceFilter filter = createFilter(expression, ps);
 
@@ -1673,6 +2016,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    */
 
   public Object random(Object src, Object minString, Object maxString) {
+    PropertyDependencies.uncacheable();
     final int min = parseInt(src, "Random", minString, 1); // NON-NLS
     int max = parseInt(src, "Random", maxString, 1); // NON-NLS
     if (max < min) {
@@ -1686,6 +2030,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   public Object isRandom(Object src, Object percentString) {
+    PropertyDependencies.uncacheable();
     int percent = parseInt(src, "IsRandom", percentString, 50); // NON-NLS
     if (percent < 0)
       percent = 0;
@@ -1725,6 +2070,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   public Object sum(Object src, Object propertyName, Object propertyMatch, Object mapName) {
+    PropertyDependencies.anyPieceRead();
     int result = 0;
     List<Map> mapList = new ArrayList<>();
 
@@ -1789,6 +2135,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
   }
 
   public Object count(Object src, Object propertyMatch, Object mapName) {
+    PropertyDependencies.anyPieceRead();
 
     int result = 0;
     List<Map> mapList = new ArrayList<>();
@@ -1958,6 +2305,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return                     Returns a blank string
    */
   public Object audit(Object message, Object conditionOrOptionList, Object optionList, PropertySource ps) {
+    PropertyDependencies.uncacheable();
 
     // If this is being called from a GamePiece that isn't on Map, do nothing
     if (ps instanceof GamePiece && ((GamePiece) ps).getMap() == null) return "";
@@ -2020,6 +2368,7 @@ public class ExpressionInterpreter extends AbstractInterpreter implements Loopab
    * @return    blank String
    */
   public Object sleep(Object ms, PropertySource ps) {
+    PropertyDependencies.uncacheable();
 
     final int milliSeconds = IntPropValue(ms);
     final JDialog dialog = new JDialog(GameModule.getGameModule().getPlayerWindow(), true);
@@ -145,6 +145,12 @@ public class BeanShellExpression extends Expression {
       return BeanShell.TRUE.equals(tryEvaluate(piece, owner, audit));
     }
 
+    /**
+     * @return the expression this filter evaluates, without its enclosing braces
+     */
+    public String toBeanShellString() {
+      return BeanShellExpression.this.toBeanShellString();
+    }
   }
   /**
    * Convert a Property name to its BeanShell equivalent.
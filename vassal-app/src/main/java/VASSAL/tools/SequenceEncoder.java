@@ -19,6 +19,7 @@ package VASSAL.tools;
 
 import java.awt.Color;
 import java.awt.event.InputEvent;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -208,18 +209,40 @@ public class SequenceEncoder {
     buffer.append(s, begin, s.length());
   }
 
+  /**
+   * Splits a String encoded by a SequenceEncoder back into its tokens.
+   *
+   * A token is found without copying it. {@link #nextToken()} then copies it into a String of its own; as many
+   * tokens, such as trait types, recur again and again, those Strings are shared through a small, bounded cache
+   * of the tokens seen lately rather than interned. {@link #nextInt}, {@link #nextBoolean}, {@link #nextColor} and
+   * the like parse a token where it lies, and {@link #nextCharSequence} returns a view of it, without creating a
+   * String at all.
+   */
   public static class Decoder implements Iterator<String> {
-    private String val;
+    private final String val;
     private final char delim;
+    private boolean done;
 
     private StringBuilder buf;
 
     private int start;
     private final int stop;
 
+    /**
+     * The bounds within val of the token last found, or, if it contained
+     * escaped delimiters and so had to be pieced together, its bounds in buf
+     */
+    private boolean pieced;
+    private int tokStart;
+    private int tokEnd;
+
+    private static final int DEDUP_SIZE = 1 << 13;
+    private static final String[] DEDUP = new String[DEDUP_SIZE];
+
     public Decoder(String value, char delimiter) {
       val = value;
       delim = delimiter;
+      done = val == null;
 
       start = 0;
       stop = val != null ? val.length() : 0;
@@ -228,13 +251,14 @@ public class SequenceEncoder {
     public Decoder(Decoder d) {
       val = d.val;
       delim = d.delim;
+      done = d.done;
 
       start = d.start;
       stop = d.stop;
     }
 
     public boolean hasMoreTokens() {
-      return val != null;
+      return !done;
     }
 
     public String getRemaining() {
@@ -244,20 +268,25 @@ public class SequenceEncoder {
       return val.substring(start, stop);
     }
 
-    public String nextToken() {
+    /**
+     * Find the next token, and move past it
+     */
+    private void scan() {
       if (!hasMoreTokens()) throw new NoSuchElementException();
 
+      pieced = false;
+
       if (start == stop) {
         // token for "null" is the empty string
-        val = null;
-        return "";
+        done = true;
+        tokStart = tokEnd = start;
+        return;
       }
 
       if (buf != null) {
         buf.setLength(0);
       }
 
-      String tok = null;
       int i = start;
       for ( ; i < stop; ++i) {
         if (val.charAt(i) == delim) {
@@ -267,47 +296,83 @@ public class SequenceEncoder {
               buf = new StringBuilder();
             }
             buf.append(val, start, i - 1);
+            pieced = true;
             start = i;
           }
           else {
             // real delimiter
-            if (buf == null || buf.length() == 0) {
-              // no escapes; take the token whole
-              tok = val.substring(start, i);
-            }
-            else {
-              // had an earlier escape; cobble on the end
-              buf.append(val, start, i);
-            }
+            setToken(i);
             start = i + 1;
-            break;
+            return;
           }
         }
       }
 
-      if (start < i) {
-        // i == stop; we reached the end without a delimiter
-        if (buf == null || buf.length() == 0) {
-          // no escapes; take the token whole
-          tok = val.substring(start);
-        }
-        else {
-          // had an earlier escape; cobble on the end
-          buf.append(val, start, stop);
-        }
-        val = null;
+      // i == stop; we reached the end without a delimiter
+      setToken(stop);
+      done = true;
+    }
+
+    private void setToken(int end) {
+      final CharSequence cs;
+      if (pieced) {
+        // had an earlier escape; cobble on the end
+        buf.append(val, start, end);
+        cs = buf;
+        tokStart = 0;
+        tokEnd = buf.length();
+      }
+      else {
+        // no escapes; take the token whole
+        cs = val;
+        tokStart = start;
+        tokEnd = end;
+      }
+
+      // strip enclosure by single quotes
+      if (tokEnd - tokStart > 1 && cs.charAt(tokStart) == '\'' && cs.charAt(tokEnd - 1) == '\'') {
+        ++tokStart;
+        --tokEnd;
       }
+    }
 
-      return unquote(tok != null ? tok : buf).intern();
+    /** @return the token last found */
+    private CharSequence token() {
+      return pieced ? buf : val;
     }
 
-    private String unquote(CharSequence cs) {
-      // strip enclosure by single quotes
-      final int len = cs.length();
-      return (
-        len > 1 && cs.charAt(0) == '\'' && cs.charAt(len - 1) == '\'' ?
-        cs.subSequence(1, len - 1) : cs
-      ).toString();
+    /** @return a copy of the token last found */
+    private String tokenString() {
+      return pieced ? buf.substring(tokStart, tokEnd) : val.substring(tokStart, tokEnd);
+    }
+
+    /**
+     * @return a String equal to s, which is the same String as was returned the last time an equal one was
+     * passed, unless that has since been displaced from the cache
+     */
+    static String dedup(String s) {
+      final int i = (s.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(DEDUP_SIZE));
+      final String cached = DEDUP[i];
+      if (s.equals(cached)) {
+        return cached;
+      }
+      DEDUP[i] = s;
+      return s;
+    }
+
+    public String nextToken() {
+      scan();
+      return tokEnd == tokStart ? "" : dedup(tokenString());
+    }
+
+    /**
+     * Return the next token without copying it. The token is only valid until the next token is read.
+     *
+     * @return a view of the next token
+     */
+    public CharSequence nextCharSequence() {
+      scan();
+      return pieced ? tokenString() : CharBuffer.wrap(val, tokStart, tokEnd);
     }
 
     @Override
@@ -335,9 +400,10 @@ public class SequenceEncoder {
      * @return next token as an integer, or defaultValue if it didn't exist or didn't parse
      */
     public int nextInt(int defaultValue) {
-      if (val != null) {
+      if (hasMoreTokens()) {
+        scan();
         try {
-          defaultValue = Integer.parseInt(nextToken());
+          defaultValue = Integer.parseInt(token(), tokStart, tokEnd, 10);
         }
         catch (NumberFormatException e) {
           // no action
@@ -347,9 +413,10 @@ public class SequenceEncoder {
     }
 
     public long nextLong(long defaultValue) {
-      if (val != null) {
+      if (hasMoreTokens()) {
+        scan();
         try {
-          defaultValue = Long.parseLong(nextToken());
+          defaultValue = Long.parseLong(token(), tokStart, tokEnd, 10);
         }
         catch (NumberFormatException e) {
           // no action
@@ -359,9 +426,10 @@ public class SequenceEncoder {
     }
 
     public double nextDouble(double defaultValue) {
-      if (val != null) {
+      if (hasMoreTokens()) {
+        scan();
         try {
-          defaultValue = Double.parseDouble(nextToken());
+          defaultValue = Double.parseDouble(tokenString());
         }
         catch (NumberFormatException e) {
           // no action
@@ -371,7 +439,15 @@ public class SequenceEncoder {
     }
 
     public boolean nextBoolean(boolean defaultValue) {
-      return val != null ? "true".equals(nextToken()) : defaultValue; //NON-NLS
+      if (hasMoreTokens()) {
+        scan();
+        return tokEnd - tokStart == 4 && regionMatches("true"); //NON-NLS
+      }
+      return defaultValue;
+    }
+
+    private boolean regionMatches(String s) {
+      return pieced ? buf.indexOf(s, tokStart) == tokStart : val.startsWith(s, tokStart);
     }
 
     /**
@@ -380,9 +456,9 @@ public class SequenceEncoder {
      * @return next token if a character is available, or defaultValue if no more tokens or the token has zero length
      */
     public char nextChar(char defaultValue) {
-      if (val != null) {
-        final String s = nextToken();
-        defaultValue = s.length() > 0 ? s.charAt(0) : defaultValue;
+      if (hasMoreTokens()) {
+        scan();
+        defaultValue = tokEnd > tokStart ? token().charAt(tokStart) : defaultValue;
       }
       return defaultValue;
     }
@@ -393,10 +469,10 @@ public class SequenceEncoder {
     }
 
     public Color nextColor(Color defaultValue) {
-      if (val != null) {
-        final String s = nextToken();
-        if (s.length() > 0) {
-          defaultValue = ColorConfigurer.stringToColor(s);
+      if (hasMoreTokens()) {
+        scan();
+        if (tokEnd > tokStart) {
+          defaultValue = parseColor();
         }
         else {
           defaultValue = null;
@@ -405,8 +481,40 @@ public class SequenceEncoder {
       return defaultValue;
     }
 
+    /**
+     * Parse a color written as R,G,B or R,G,B,A where it lies, or leave anything else to
+     * {@link ColorConfigurer#stringToColor}
+     */
+    private Color parseColor() {
+      final CharSequence cs = token();
+      final int[] c = new int[4];
+      int n = 0;
+      int from = tokStart;
+      for (int i = tokStart; i <= tokEnd && n < c.length; ++i) {
+        if (i == tokEnd || cs.charAt(i) == ',') {
+          if (i == from) {
+            break;
+          }
+          try {
+            c[n++] = Integer.parseInt(cs, from, i, 10);
+          }
+          catch (NumberFormatException e) {
+            break;
+          }
+          from = i + 1;
+          if (i == tokEnd) {
+            if (n >= 3 && c[0] >> 8 == 0 && c[1] >> 8 == 0 && c[2] >> 8 == 0 && c[3] >> 8 == 0) {
+              return n == 3 ? new Color(c[0], c[1], c[2]) : new Color(c[0], c[1], c[2], c[3]);
+            }
+            break;
+          }
+        }
+      }
+      return ColorConfigurer.stringToColor(tokenString());
+    }
+
     public KeyStroke nextKeyStroke(KeyStroke defaultValue) {
-      if (val != null) {
+      if (hasMoreTokens()) {
         final String s = nextToken();
         if (s.length() == 0) {
           defaultValue = null;
@@ -431,7 +539,7 @@ public class SequenceEncoder {
     }
 
     public NamedKeyStroke nextNamedKeyStroke(NamedKeyStroke defaultValue) {
-      if (val != null) {
+      if (hasMoreTokens()) {
         final String s = nextToken();
         if (s.length() == 0) {
           defaultValue = null;
@@ -452,12 +560,12 @@ public class SequenceEncoder {
      * @return next token, or the default value if no more tokens
      */
     public String nextToken(String defaultValue) {
-      return val != null ? nextToken() : (defaultValue != null ? defaultValue.intern() : null);
+      return hasMoreTokens() ? nextToken() : defaultValue;
     }
 
     public String[] nextStringArray(int minLength) {
       String[] retVal;
-      if (val != null) {
+      if (hasMoreTokens()) {
         retVal = StringArrayConfigurer.stringToArray(nextToken());
       }
       else {
@@ -23,10 +23,17 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import VASSAL.tools.image.ImageIOException;
 import VASSAL.tools.image.ImageTileSource;
@@ -34,27 +41,158 @@ import VASSAL.tools.io.FileStore;
 
 /**
  * An on-disk {@link ImageTileSource} and {@link FileStore} for image tiles.
+ * If packs are read, tiles are read from the {@link TilePack} for their
+ * image, if there is one, and otherwise from their individual tile files.
  *
  * @since 3.2.0
  * @author Joel Uckelman
  */
 public class ImageTileDiskCache implements ImageTileSource, FileStore {
+  private static final Logger logger =
+    LoggerFactory.getLogger(ImageTileDiskCache.class);
 
   protected final String cpath;
 
+  /** Whether to look for tile packs at all */
+  private final boolean readPacks;
+
+  /** How long the file for a pack is assumed unchanged after it was looked at */
+  private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final long recheckNanos;
+
+  /** A tile pack, as found when its file had a given modification time */
+  private static final class OpenPack {
+    /** The pack, or null if there is no file or it could not be read */
+    final TilePack pack;
+    /** The modification time of the file, or 0 if there is no file */
+    final long mtime;
+    /** When the file was last looked at, from {@link System#nanoTime()} */
+    volatile long checked;
+
+    OpenPack(TilePack pack, long mtime, long checked) {
+      this.pack = pack;
+      this.mtime = mtime;
+      this.checked = checked;
+    }
+  }
+
+  /** The tile packs opened so far, by image name */
+  private final Map<String, OpenPack> packs = new ConcurrentHashMap<>();
+
   /**
    * Creates an {@code ImageTileDiskCache}.
    *
    * @param cpath path to the root directory of the cache
    */
   public ImageTileDiskCache(String cpath) {
+    this(cpath, true);
+  }
+
+  /**
+   * Creates an {@code ImageTileDiskCache}.
+   *
+   * @param cpath path to the root directory of the cache
+   * @param readPacks whether to read tiles from tile packs, or only from
+   * tile files
+   * @since 3.8.0
+   */
+  public ImageTileDiskCache(String cpath, boolean readPacks) {
+    this(cpath, readPacks, RECHECK_NANOS);
+  }
+
+  ImageTileDiskCache(String cpath, boolean readPacks, long recheckNanos) {
     this.cpath = cpath;
+    this.readPacks = readPacks;
+    this.recheckNanos = recheckNanos;
   }
 
   private String tileNameFor(String name, int tileX, int tileY, double scale) {
     return cpath + '/' + TileUtils.tileName(name, tileX, tileY, (int)(1.0 / scale));
   }
 
+  /**
+   * Packs may be written, replaced or removed by the tiler after an image
+   * was first looked for, so the file for a pack, or its absence, is looked
+   * at again once it has gone unchecked for {@link #RECHECK_NANOS}, and an
+   * open pack is only used while its file is unchanged.
+   *
+   * @return the tile pack for an image, or null if there is none
+   */
+  private TilePack getPack(String name) {
+    if (!readPacks) {
+      return null;
+    }
+
+    final long now = System.nanoTime();
+    final OpenPack cur = packs.get(name);
+    if (cur != null && now - cur.checked < recheckNanos) {
+      return cur.pack;
+    }
+
+    final File f = new File(cpath, TileUtils.packName(name));
+    final long mtime = f.isFile() ? f.lastModified() : 0L;
+
+    final OpenPack op = packs.compute(name, (n, old) -> {
+      if (old != null) {
+        if (old.mtime == mtime) {
+          old.checked = now;
+          return old;
+        }
+        close(old);
+      }
+
+      if (mtime == 0L) {
+        return new OpenPack(null, 0L, now);
+      }
+
+      try {
+        return new OpenPack(TilePack.open(f), mtime, now);
+      }
+      catch (IOException e) {
+        // fall back to the tile files until the pack is written again
+        logger.warn("Unable to read tile pack {}", f, e); //NON-NLS
+        return new OpenPack(null, mtime, now);
+      }
+    });
+
+    return op.pack;
+  }
+
+  private static void close(OpenPack op) {
+    if (op.pack != null) {
+      try {
+        op.pack.close();
+      }
+      catch (IOException e) {
+        logger.warn("Unable to close tile pack", e); //NON-NLS
+      }
+    }
+  }
+
+  /**
+   * @return the data for a tile from its image's tile pack, or null if the
+   * tile is not in a pack
+   */
+  private ByteBuffer getPackedTile(
+    String name,
+    int tileX,
+    int tileY,
+    double scale) throws ImageIOException {
+
+    final TilePack pack = getPack(name);
+    if (pack == null) {
+      return null;
+    }
+
+    try {
+      return pack.getTile((int)(1.0 / scale), tileX, tileY);
+    }
+    catch (IOException e) {
+      throw new ImageIOException(TileUtils.packName(name), e);
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public BufferedImage getTile(
@@ -63,6 +201,16 @@ public class ImageTileDiskCache implements ImageTileSource, FileStore {
     int tileY,
     double scale) throws ImageIOException {
 
+    final ByteBuffer bb = getPackedTile(name, tileX, tileY, scale);
+    if (bb != null) {
+      try {
+        return TileUtils.read(bb);
+      }
+      catch (IOException e) {
+        throw new ImageIOException(TileUtils.packName(name), e);
+      }
+    }
+
     try {
       return TileUtils.read(tileNameFor(name, tileX, tileY, scale));
     }
@@ -79,6 +227,16 @@ public class ImageTileDiskCache implements ImageTileSource, FileStore {
     int tileY,
     double scale) throws ImageIOException {
 
+    final ByteBuffer bb = getPackedTile(name, tileX, tileY, scale);
+    if (bb != null) {
+      try {
+        return TileUtils.size(bb);
+      }
+      catch (IOException e) {
+        throw new ImageIOException(TileUtils.packName(name), e);
+      }
+    }
+
     try {
       return TileUtils.size(tileNameFor(name, tileX, tileY, scale));
     }
@@ -95,6 +253,10 @@ public class ImageTileDiskCache implements ImageTileSource, FileStore {
     int tileY,
     double scale) throws ImageIOException {
 
+    if (getPackedTile(name, tileX, tileY, scale) != null) {
+      return true;
+    }
+
     final File f = new File(tileNameFor(name, tileX, tileY, scale));
     return f.exists() && f.isFile();
   }
@@ -158,5 +320,8 @@ public class ImageTileDiskCache implements ImageTileSource, FileStore {
 
   /** {@inheritDoc} */
   @Override
-  public void close() {}
+  public void close() {
+    packs.values().forEach(ImageTileDiskCache::close);
+    packs.clear();
+  }
 }
@@ -0,0 +1,314 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import VASSAL.tools.image.ImageLoader;
+import VASSAL.tools.io.FileArchive;
+import VASSAL.tools.lang.Callback;
+
+/**
+ * Tiles images within the current JVM, slicing several images at once.
+ *
+ * All tiles of all images are sliced on one fork-join pool, so cores left
+ * idle by one image are used by the others. Images are started largest
+ * first, but only while the memory they need fits within a fixed budget;
+ * images which could never fit are left for the caller to tile in a
+ * separate process.
+ *
+ * @since 3.8.0
+ */
+public class ParallelImageTiler {
+  private static final Logger logger =
+    LoggerFactory.getLogger(ParallelImageTiler.class);
+
+  /**
+   * The number of bytes of heap needed per source pixel: the decoded image,
+   * and a second copy while the image loader converts its type.
+   */
+  private static final long BYTES_PER_PIXEL = 8;
+
+  /** The number of bytes of heap needed by each running tile task */
+  private static final long BYTES_PER_TASK = 1 << 20;
+
+  private final int parallelism;
+  private final long budget;
+
+  private volatile boolean cancelled = false;
+
+  /**
+   * Creates a {@code ParallelImageTiler}.
+   *
+   * @param parallelism the number of threads to slice with
+   * @param budget the maximum number of bytes of heap to use for images
+   */
+  public ParallelImageTiler(int parallelism, long budget) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism = " + parallelism + " < 1");
+    }
+
+    this.parallelism = parallelism;
+    this.budget = budget;
+  }
+
+  /**
+   * @return a memory budget of half the heap which is currently available
+   */
+  public static long defaultMemoryBudget() {
+    final Runtime rt = Runtime.getRuntime();
+    return (rt.maxMemory() - (rt.totalMemory() - rt.freeMemory())) / 2;
+  }
+
+  /**
+   * @param idim the image dimensions
+   * @return the number of bytes of heap needed to tile an image
+   */
+  public static long imageCost(Dimension idim) {
+    return BYTES_PER_PIXEL * idim.width * idim.height;
+  }
+
+  /**
+   * Stops tiling. Tiles already being written are finished, but no others
+   * are started.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Tiles images contained in an archive.
+   *
+   * @param fa the file archive
+   * @param tpath path to the output directory
+   * @param tw tile width, in pixels
+   * @param th tile height, in pixels
+   * @param images paths within the archive to the images to be tiled, with
+   * their dimensions
+   * @param loader the image loader
+   * @param slicer the tile slicer
+   * @param imageStartListener called when an image is started
+   * @param tileListener called when a tile is written
+   * @return the paths of the images which were not tiled, because they
+   * need more memory than the budget allows
+   *
+   * @throws IOException if a tile cannot be written
+   * @throws CancellationException if tiling is cancelled
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public List<String> run(
+    FileArchive fa,
+    String tpath,
+    int tw,
+    int th,
+    Map<String, Dimension> images,
+    ImageLoader loader,
+    TileSlicerImpl slicer,
+    Callback<String> imageStartListener,
+    Callback<Void> tileListener
+  ) throws IOException, InterruptedException {
+
+    // leave room for the tiles being sliced
+    final long avail = budget - parallelism * BYTES_PER_TASK;
+
+    // permits are in MB, so that large budgets fit in an int
+    final int total = (int) Math.min(Math.max(avail >> 20, 0), Integer.MAX_VALUE);
+    final Semaphore mem = new Semaphore(total);
+
+    final List<String> skipped = Collections.synchronizedList(new ArrayList<>());
+    final List<String> order = new ArrayList<>();
+
+    for (final Map.Entry<String, Dimension> e : images.entrySet()) {
+      if (permits(e.getValue()) > total) {
+        logger.info("Image {} is too large to tile in-process", e.getKey()); //NON-NLS
+        skipped.add(e.getKey());
+      }
+      else {
+        order.add(e.getKey());
+      }
+    }
+
+    // start the largest images first, so that the small ones fill the gaps
+    order.sort(Comparator.comparingLong(
+      (String ipath) -> imageCost(images.get(ipath))).reversed()
+    );
+
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    final List<Future<?>> futures = new ArrayList<>();
+
+    try {
+      for (final String ipath : order) {
+        final int p = permits(images.get(ipath));
+        mem.acquire(p);
+
+        if (cancelled) {
+          mem.release(p);
+          break;
+        }
+
+        futures.add(pool.submit(() -> {
+          try {
+            tileImage(fa, ipath, tpath, tw, th, loader, slicer,
+                      imageStartListener, tileListener);
+          }
+          finally {
+            mem.release(p);
+          }
+        }));
+      }
+
+      for (final Future<?> f : futures) {
+        f.get();
+      }
+    }
+    catch (ExecutionException e) {
+      cancelled = true;
+      final Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      throw new IOException(cause);
+    }
+    catch (InterruptedException e) {
+      cancelled = true;
+      throw e;
+    }
+    finally {
+      // wait for tiles in progress, so that none are written after we return
+      pool.shutdown();
+      while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+        logger.info("Waiting for tiling to stop"); //NON-NLS
+      }
+    }
+
+    if (cancelled) {
+      throw new CancellationException();
+    }
+
+    return skipped;
+  }
+
+  private static int permits(Dimension idim) {
+    return (int) Math.min((imageCost(idim) >> 20) + 1, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Tiles one image, slicing its tiles in parallel in the current pool.
+   */
+  private void tileImage(
+    FileArchive fa,
+    String ipath,
+    String tpath,
+    int tw,
+    int th,
+    ImageLoader loader,
+    TileSlicerImpl slicer,
+    Callback<String> imageStartListener,
+    Callback<Void> tileListener
+  ) {
+
+    if (cancelled) {
+      return;
+    }
+
+    TilePackWriter pack = null;
+    try {
+      logger.info("Tiling {}", ipath); //NON-NLS
+      imageStartListener.receive(ipath);
+
+      final BufferedImage src;
+      try (InputStream in = fa.getInputStream(ipath)) {
+        src = loader.load(
+          ipath, in, BufferedImage.TYPE_INT_RGB,
+          BufferedImage.TYPE_INT_ARGB_PRE, false
+        );
+      }
+      catch (IOException e) {
+        // as in FileArchiveImageTiler, skip images we can't read
+        logger.error("Tiling I/O error", e); //NON-NLS
+        return;
+      }
+
+      pack = slicer.openPack(ipath, tpath);
+
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (final TileTask tt : slicer.makeTileTasks(src, ipath, tpath, tw, th, pack)) {
+        tasks.add(ForkJoinTask.adapt(() -> {
+          if (cancelled) {
+            return;
+          }
+
+          try {
+            tt.call();
+            tileListener.receive(null);
+          }
+          catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }));
+      }
+
+      ForkJoinTask.invokeAll(tasks);
+
+      if (pack != null) {
+        if (cancelled) {
+          pack.abort();
+        }
+        else {
+          pack.finish();
+        }
+        pack = null;
+      }
+
+      logger.info("Tiled {}", ipath); //NON-NLS
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    finally {
+      if (pack != null) {
+        try {
+          pack.abort();
+        }
+        catch (IOException e) {
+          logger.error("", e);
+        }
+      }
+    }
+  }
+}
@@ -51,6 +51,27 @@ class ScaledTileTask extends TileTask {
     this.filter = filter;
   }
 
+  /**
+   * Creates a scaled tile task which writes to a tile pack.
+   *
+   * @param src the source image
+   * @param pack the tile pack to write to
+   * @param div the scale divisor
+   * @param filter the resampling filter
+   * @param tx the tile column
+   * @param ty the tile row
+   * @param tw the standard tile width
+   * @param th the standard tile height
+   * @param dw the width of the whole scaled image
+   * @param dh the height of the whole scaled image
+   */
+  public ScaledTileTask(BufferedImage src, TilePackWriter pack, int div,
+                        GeneralFilter.Filter filter,
+                        int tx, int ty, int tw, int th, int dw, int dh) {
+    super(src, pack, div, tx, ty, tw, th, dw, dh);
+    this.filter = filter;
+  }
+
   @Override
   protected BufferedImage sliceTile() {
     // get actual tile width, height (edge tiles can be less than full size)
@@ -0,0 +1,437 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses the pixels of version 2 image tiles.
+ *
+ * The compressed data is a mode byte followed by the data for that mode:
+ * <ul>
+ * <li>{@link #SOLID}: the single pixel value of a tile which is all one
+ * colour (4 bytes).</li>
+ * <li>{@link #RUNS}: runs of identical pixels, each a run length (varint)
+ * followed by the pixel value (4 bytes). Used for flat-colour tiles.</li>
+ * <li>{@link #LZ}: an LZ4-style block, but working on whole pixels rather
+ * than bytes. Each sequence is a token byte holding the number of literal
+ * pixels (high nibble) and the match length less 2 (low nibble), with a
+ * nibble of 15 continued in further bytes LZ4-fashion; then the literal
+ * pixels (4 bytes each); then the match offset in pixels (2 bytes). The last
+ * sequence has literals only.</li>
+ * <li>{@link #DEFLATE}: the pixels as big-endian ints, deflated. Used only
+ * for tiles which the other modes compress poorly, such as photographs.</li>
+ * </ul>
+ *
+ * All pixel values are big-endian. The fast modes decode directly into the
+ * destination pixel array, without any intermediate buffers.
+ */
+final class TileCodec {
+
+  static final byte SOLID = 0;
+  static final byte RUNS = 1;
+  static final byte LZ = 2;
+  static final byte DEFLATE = 3;
+
+  private static final int MIN_MATCH = 2;
+  private static final int MAX_OFFSET = 0xFFFF;
+  private static final int HASH_BITS = 14;
+
+  private TileCodec() {}
+
+  /**
+   * Compresses pixels, choosing whichever mode suits them best.
+   *
+   * @param px the pixels
+   * @param width the width of the image, in pixels
+   * @return the compressed data, starting with the mode byte
+   */
+  static byte[] encode(int[] px, int width) {
+    if (isSolid(px)) {
+      final Out out = new Out(5);
+      out.put(SOLID);
+      out.putInt(px.length > 0 ? px[0] : 0);
+      return out.toByteArray();
+    }
+
+    final Out runs = encodeRuns(px);
+    final Out lz = encodeLZ(px, width);
+    Out best = runs.len <= lz.len ? runs : lz;
+
+    // Deflate decodes several times more slowly, so use it only when it
+    // saves a substantial amount of space.
+    if (best.len > 2 * px.length) {
+      final Out def = encodeDeflate(px);
+      if (def.len < best.len * 3 / 4) {
+        best = def;
+      }
+    }
+
+    return best.toByteArray();
+  }
+
+  /**
+   * Decompresses pixels.
+   *
+   * @param src the compressed data, from the mode byte at its position to
+   * its limit; the position is not changed
+   * @param dst the array to fill with the decompressed pixels
+   * @throws IOException if the data is corrupt
+   */
+  static void decode(ByteBuffer src, int[] dst) throws IOException {
+    final int off = src.position();
+    if (src.remaining() < 1) {
+      throw new IOException("no tile data");
+    }
+
+    try {
+      switch (src.get(off)) {
+      case SOLID:
+        Arrays.fill(dst, src.getInt(off + 1));
+        break;
+      case RUNS:
+        decodeRuns(src, off + 1, dst);
+        break;
+      case LZ:
+        decodeLZ(src, off + 1, dst);
+        break;
+      case DEFLATE:
+        decodeDeflate(src.duplicate().position(off + 1), dst);
+        break;
+      default:
+        throw new IOException("unknown tile compression mode " + src.get(off));
+      }
+    }
+    catch (IndexOutOfBoundsException e) {
+      throw new IOException("corrupt tile data", e);
+    }
+  }
+
+  private static boolean isSolid(int[] px) {
+    for (int i = 1; i < px.length; ++i) {
+      if (px[i] != px[0]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Out encodeRuns(int[] px) {
+    final Out out = new Out(64);
+    out.put(RUNS);
+
+    int i = 0;
+    while (i < px.length) {
+      final int p = px[i];
+      int j = i + 1;
+      while (j < px.length && px[j] == p) {
+        ++j;
+      }
+      out.putVarint(j - i);
+      out.putInt(p);
+      i = j;
+    }
+
+    return out;
+  }
+
+  private static void decodeRuns(ByteBuffer src, int ip, int[] dst)
+                                                          throws IOException {
+    int op = 0;
+    while (op < dst.length) {
+      int run = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = src.get(ip++);
+        run |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+
+      if (run <= 0 || run > dst.length - op) {
+        throw new IOException("corrupt tile data: bad run length " + run);
+      }
+
+      Arrays.fill(dst, op, op + run, src.getInt(ip));
+      ip += 4;
+      op += run;
+    }
+  }
+
+  private static Out encodeLZ(int[] px, int width) {
+    final int n = px.length;
+    final Out out = new Out(n + 64);
+    out.put(LZ);
+
+    // positions + 1 of the last occurrence of each hashed pixel pair
+    final int[] table = new int[1 << HASH_BITS];
+
+    // match candidates, reused for every position
+    final int[] cands = new int[3];
+
+    int anchor = 0;
+    int i = 0;
+    while (i < n - 1) {
+      final int h = hash(px[i], px[i + 1]);
+      final int ref = table[h] - 1;
+      table[h] = i + 1;
+
+      // Besides the last occurrence of this pair of pixels, try the pixel to
+      // the left and the pixel above, which most often start long matches.
+      cands[0] = ref;
+      cands[1] = i - 1;
+      cands[2] = i - width;
+
+      int best = 0;
+      int mlen = 0;
+      for (final int cand : cands) {
+        final int len = matchLength(px, cand, i);
+        if (len > mlen) {
+          best = cand;
+          mlen = len;
+        }
+      }
+
+      if (mlen >= MIN_MATCH) {
+        putSequence(out, px, anchor, i - anchor, i - best, mlen);
+        i += mlen;
+        anchor = i;
+      }
+      else {
+        ++i;
+      }
+    }
+
+    // the remaining pixels are all literals
+    putSequence(out, px, anchor, n - anchor, 0, 0);
+    return out;
+  }
+
+  /**
+   * @return the number of pixels matching those at {@code i} starting at
+   * {@code ref}, or 0 if {@code ref} is out of range
+   */
+  private static int matchLength(int[] px, int ref, int i) {
+    if (ref < 0 || ref >= i || i - ref > MAX_OFFSET) {
+      return 0;
+    }
+
+    int len = 0;
+    while (i + len < px.length && px[ref + len] == px[i + len]) {
+      ++len;
+    }
+    return len;
+  }
+
+  private static void putSequence(Out out, int[] px, int lit, int llen, int offset, int mlen) {
+    final int mcode = mlen > 0 ? mlen - MIN_MATCH : 0;
+
+    out.put((byte) ((Math.min(llen, 15) << 4) | Math.min(mcode, 15)));
+    if (llen >= 15) {
+      out.putLength(llen - 15);
+    }
+
+    for (int k = lit; k < lit + llen; ++k) {
+      out.putInt(px[k]);
+    }
+
+    if (mlen > 0) {
+      out.put((byte) (offset >>> 8));
+      out.put((byte) offset);
+      if (mcode >= 15) {
+        out.putLength(mcode - 15);
+      }
+    }
+  }
+
+  private static void decodeLZ(ByteBuffer src, int ip, int[] dst)
+                                                          throws IOException {
+    final int n = dst.length;
+    int op = 0;
+
+    while (true) {
+      final int token = src.get(ip++) & 0xFF;
+
+      int llen = token >>> 4;
+      if (llen == 15) {
+        int b;
+        do {
+          b = src.get(ip++) & 0xFF;
+          llen += b;
+        } while (b == 255);
+      }
+
+      if (llen > n - op) {
+        throw new IOException("corrupt tile data: too many literals");
+      }
+
+      for (final int end = op + llen; op < end; ++op, ip += 4) {
+        dst[op] = src.getInt(ip);
+      }
+
+      if (op == n) {
+        return;
+      }
+
+      final int offset = src.getShort(ip) & 0xFFFF;
+      ip += 2;
+
+      int mlen = token & 0x0F;
+      if (mlen == 15) {
+        int b;
+        do {
+          b = src.get(ip++) & 0xFF;
+          mlen += b;
+        } while (b == 255);
+      }
+      mlen += MIN_MATCH;
+
+      final int ref = op - offset;
+      if (offset == 0 || ref < 0 || mlen > n - op) {
+        throw new IOException("corrupt tile data: bad match");
+      }
+
+      if (offset == 1) {
+        // a run of one pixel
+        Arrays.fill(dst, op, op + mlen, dst[ref]);
+        op += mlen;
+      }
+      else {
+        // an overlapping match repeats the last offset pixels, so copy in
+        // chunks which double in length as the repeated pattern grows
+        for (int rem = mlen; rem > 0; ) {
+          final int c = Math.min(op - ref, rem);
+          System.arraycopy(dst, ref, dst, op, c);
+          op += c;
+          rem -= c;
+        }
+      }
+    }
+  }
+
+  private static Out encodeDeflate(int[] px) {
+    final ByteBuffer bb = ByteBuffer.allocate(4 * px.length);
+    bb.asIntBuffer().put(px);
+
+    final Deflater def = new Deflater(Deflater.BEST_SPEED);
+    try {
+      def.setInput(bb.array());
+      def.finish();
+
+      final Out out = new Out(px.length);
+      out.put(DEFLATE);
+      while (!def.finished()) {
+        out.ensure(8192);
+        out.len += def.deflate(out.buf, out.len, out.buf.length - out.len);
+      }
+      return out;
+    }
+    finally {
+      def.end();
+    }
+  }
+
+  private static void decodeDeflate(ByteBuffer src, int[] dst)
+                                                          throws IOException {
+    final byte[] b = new byte[4 * dst.length];
+    final Inflater inf = new Inflater();
+    try {
+      inf.setInput(src);
+      int n = 0;
+      while (n < b.length && !inf.finished()) {
+        final int r = inf.inflate(b, n, b.length - n);
+        if (r == 0 && (inf.needsInput() || inf.needsDictionary())) {
+          break;
+        }
+        n += r;
+      }
+
+      if (n != b.length) {
+        throw new IOException("corrupt tile data: expected " + b.length + " bytes, got " + n);
+      }
+    }
+    catch (DataFormatException e) {
+      throw new IOException("corrupt tile data", e);
+    }
+    finally {
+      inf.end();
+    }
+
+    ByteBuffer.wrap(b).asIntBuffer().get(dst);
+  }
+
+  private static int hash(int a, int b) {
+    return ((a * 0x9E3779B1) ^ (b * 0x85EBCA77)) >>> (32 - HASH_BITS);
+  }
+
+  /** A growable byte array */
+  private static class Out {
+    byte[] buf;
+    int len;
+
+    Out(int capacity) {
+      buf = new byte[Math.max(capacity, 16)];
+    }
+
+    void ensure(int n) {
+      if (len + n > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+      }
+    }
+
+    void put(byte b) {
+      ensure(1);
+      buf[len++] = b;
+    }
+
+    void putInt(int v) {
+      ensure(4);
+      buf[len++] = (byte) (v >>> 24);
+      buf[len++] = (byte) (v >>> 16);
+      buf[len++] = (byte) (v >>> 8);
+      buf[len++] = (byte) v;
+    }
+
+    void putVarint(int v) {
+      while ((v & ~0x7F) != 0) {
+        put((byte) ((v & 0x7F) | 0x80));
+        v >>>= 7;
+      }
+      put((byte) v);
+    }
+
+    /** Writes an LZ4-style length continuation */
+    void putLength(int v) {
+      while (v >= 255) {
+        put((byte) 255);
+        v -= 255;
+      }
+      put((byte) v);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buf, len);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A pack of all the tiles of one image, at all scales, in a single file.
+ *
+ * A pack consists of the tiles, each exactly as written by
+ * {@link TileUtils#write(java.awt.image.BufferedImage, java.io.OutputStream)},
+ * one after another; then an index with an entry for each tile; then a
+ * trailer. Each index entry is the scale divisor, tile column, tile row
+ * (4 bytes each), offset of the tile in the file (8 bytes) and length of
+ * the tile (4 bytes). The trailer is the offset of the index (8 bytes),
+ * the number of index entries (4 bytes), the pack version (4 bytes) and the
+ * signature 'VASSALTP' (8 bytes).
+ *
+ * Packs are read through a memory mapping of the whole file, so reading a
+ * tile is an index lookup and a slice of the mapping, with no copying.
+ * Packs are written by {@link TilePackWriter}.
+ *
+ * @since 3.8.0
+ */
+public class TilePack implements Closeable {
+
+  static final byte[] SIGNATURE =
+    "VASSALTP".getBytes(StandardCharsets.US_ASCII); //NON-NLS
+
+  static final int VERSION = 1;
+
+  static final int INDEX_ENTRY_LENGTH = 24;
+  static final int TRAILER_LENGTH = 24;
+
+  /** The mapped file, or null if it was too large to map */
+  private final ByteBuffer map;
+
+  /** The open file, if it was too large to map */
+  private final FileChannel channel;
+
+  /** Sorted keys for the tiles; see {@link #key} */
+  private final long[] keys;
+  private final long[] offsets;
+  private final int[] lengths;
+
+  private TilePack(ByteBuffer map, FileChannel channel,
+                   long[] keys, long[] offsets, int[] lengths) {
+    this.map = map;
+    this.channel = channel;
+    this.keys = keys;
+    this.offsets = offsets;
+    this.lengths = lengths;
+  }
+
+  /**
+   * Opens a tile pack.
+   *
+   * @param file the pack file
+   * @return the pack
+   *
+   * @throws IOException if the pack can't be read or is invalid
+   */
+  public static TilePack open(File file) throws IOException {
+    final FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final long size = ch.size();
+      if (size < TRAILER_LENGTH) {
+        throw new IOException("tile pack too short: " + file);
+      }
+
+      // Files too large for one mapping are read tile by tile instead. The
+      // mapping remains valid after the channel is closed.
+      final ByteBuffer map = size <= Integer.MAX_VALUE ?
+        ch.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+
+      // read the trailer
+      final ByteBuffer trailer = read(map, ch, size - TRAILER_LENGTH, TRAILER_LENGTH);
+      final long indexOffset = trailer.getLong();
+      final int count = trailer.getInt();
+      final int version = trailer.getInt();
+      final byte[] sig = new byte[SIGNATURE.length];
+      trailer.get(sig);
+
+      if (!Arrays.equals(sig, SIGNATURE)) {
+        throw new IOException("bad tile pack signature: " + file);
+      }
+
+      if (version != VERSION) {
+        throw new IOException("unsupported tile pack version " + version + ": " + file);
+      }
+
+      if (count < 0 || indexOffset < 0 ||
+          indexOffset + (long) count * INDEX_ENTRY_LENGTH != size - TRAILER_LENGTH) {
+        throw new IOException("bad tile pack index: " + file);
+      }
+
+      // read the index
+      final ByteBuffer index = read(map, ch, indexOffset, count * INDEX_ENTRY_LENGTH);
+
+      final long[] keys = new long[count];
+      final long[] offsets = new long[count];
+      final int[] lengths = new int[count];
+
+      for (int i = 0; i < count; ++i) {
+        keys[i] = key(index.getInt(), index.getInt(), index.getInt());
+        offsets[i] = index.getLong();
+        lengths[i] = index.getInt();
+
+        if (i > 0 && keys[i] <= keys[i - 1]) {
+          throw new IOException("unsorted tile pack index: " + file);
+        }
+
+        if (offsets[i] < 0 || lengths[i] < 0 ||
+            offsets[i] + lengths[i] > indexOffset) {
+          throw new IOException("bad tile pack index entry: " + file);
+        }
+      }
+
+      if (map != null) {
+        ch.close();
+      }
+
+      return new TilePack(map, map == null ? ch : null, keys, offsets, lengths);
+    }
+    catch (IOException | RuntimeException e) {
+      ch.close();
+      throw e;
+    }
+  }
+
+  private static ByteBuffer read(ByteBuffer map, FileChannel ch, long off, int len) throws IOException {
+    if (map != null) {
+      return map.duplicate().position((int) off).limit((int) off + len).slice();
+    }
+
+    final ByteBuffer buf = ByteBuffer.allocate(len);
+    while (buf.hasRemaining()) {
+      if (ch.read(buf, off + buf.position()) < 0) {
+        throw new IOException("unexpected end of tile pack");
+      }
+    }
+    return buf.flip();
+  }
+
+  /**
+   * @return the index key for a tile; keys order by scale, then column,
+   * then row
+   */
+  static long key(int div, int tileX, int tileY) {
+    return ((long) Integer.numberOfTrailingZeros(div) << 48) |
+           ((long) (tileX & 0xFFFFFF) << 24) |
+           (tileY & 0xFFFFFF);
+  }
+
+  /**
+   * Gets the data for a tile.
+   *
+   * @param div the scale divisor
+   * @param tileX the tile column
+   * @param tileY the tile row
+   * @return the tile data, in the tile format read by
+   * {@link TileUtils#read(ByteBuffer)}, or null if the pack has no such tile
+   *
+   * @throws IOException if the tile can't be read
+   */
+  public ByteBuffer getTile(int div, int tileX, int tileY) throws IOException {
+    final int i = Arrays.binarySearch(keys, key(div, tileX, tileY));
+    if (i < 0) {
+      return null;
+    }
+
+    synchronized (this) {
+      if (map == null && !channel.isOpen()) {
+        throw new IOException("tile pack is closed");
+      }
+      return read(map, channel, offsets[i], lengths[i]);
+    }
+  }
+
+  /**
+   * @return the number of tiles in the pack
+   */
+  public int getTileCount() {
+    return keys.length;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes a {@link TilePack}.
+ *
+ * Tiles may be written in any order, and from several threads at once. The
+ * pack is written to a temporary file, which replaces the pack file only
+ * when {@link #finish()} is called, so a pack which is incomplete due to
+ * an error or cancellation is never seen by readers. The pack it replaces
+ * may be mapped by a reader, so is moved aside rather than overwritten;
+ * see {@link #retire(Path)}.
+ *
+ * @since 3.8.0
+ */
+public class TilePackWriter implements Closeable {
+
+  private final Path dst;
+  private final Path tmp;
+  private final FileChannel out;
+
+  private final List<long[]> entries = new ArrayList<>();
+  private long offset = 0;
+  private boolean done = false;
+
+  /**
+   * Creates a {@code TilePackWriter}.
+   *
+   * @param dst the pack file
+   *
+   * @throws IOException if the temporary file cannot be created
+   */
+  public TilePackWriter(File dst) throws IOException {
+    this.dst = dst.toPath();
+    this.tmp = dst.toPath().resolveSibling(dst.getName() + ".tmp");
+    this.out = FileChannel.open(
+      tmp,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING
+    );
+  }
+
+  /**
+   * Adds a tile to the pack.
+   *
+   * @param div the scale divisor
+   * @param tileX the tile column
+   * @param tileY the tile row
+   * @param tile the tile image
+   *
+   * @throws IOException if the write fails
+   */
+  public void write(int div, int tileX, int tileY, BufferedImage tile)
+                                                           throws IOException {
+    // encode outside the lock, as this is the expensive part
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    TileUtils.write(tile, bout);
+    write(div, tileX, tileY, bout.toByteArray());
+  }
+
+  /**
+   * Adds a tile to the pack.
+   *
+   * @param div the scale divisor
+   * @param tileX the tile column
+   * @param tileY the tile row
+   * @param tile the tile data, as written by
+   * {@link TileUtils#write(BufferedImage, java.io.OutputStream)}
+   *
+   * @throws IOException if the write fails
+   */
+  public synchronized void write(int div, int tileX, int tileY, byte[] tile)
+                                                           throws IOException {
+    if (done) {
+      throw new IOException("tile pack is closed");
+    }
+
+    if (Integer.bitCount(div) != 1) {
+      throw new IllegalArgumentException("div = " + div + " is not a power of 2");
+    }
+
+    writeFully(ByteBuffer.wrap(tile));
+    entries.add(new long[] {
+      TilePack.key(div, tileX, tileY), div, tileX, tileY, offset, tile.length
+    });
+    offset += tile.length;
+  }
+
+  /**
+   * Writes the index and moves the pack into place.
+   *
+   * @throws IOException if the write fails
+   */
+  public synchronized void finish() throws IOException {
+    if (done) {
+      throw new IOException("tile pack is closed");
+    }
+
+    entries.sort(Comparator.comparingLong(e -> e[0]));
+    for (int i = 1; i < entries.size(); ++i) {
+      if (entries.get(i)[0] == entries.get(i - 1)[0]) {
+        abort();
+        throw new IOException("duplicate tile in tile pack: " + dst);
+      }
+    }
+
+    final ByteBuffer bb = ByteBuffer.allocate(
+      entries.size() * TilePack.INDEX_ENTRY_LENGTH + TilePack.TRAILER_LENGTH
+    );
+
+    for (final long[] e : entries) {
+      bb.putInt((int) e[1])
+        .putInt((int) e[2])
+        .putInt((int) e[3])
+        .putLong(e[4])
+        .putInt((int) e[5]);
+    }
+
+    bb.putLong(offset)
+      .putInt(entries.size())
+      .putInt(TilePack.VERSION)
+      .put(TilePack.SIGNATURE);
+
+    try {
+      writeFully(bb.flip());
+      out.force(false);
+      out.close();
+      done = true;
+      retire(dst);
+      Files.move(tmp, dst, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      abort();
+      throw e;
+    }
+  }
+
+  /**
+   * Discards the pack.
+   *
+   * @throws IOException if the temporary file cannot be removed
+   */
+  public synchronized void abort() throws IOException {
+    done = true;
+    out.close();
+    Files.deleteIfExists(tmp);
+  }
+
+  /**
+   * Discards the pack, unless it was finished.
+   *
+   * @throws IOException if the temporary file cannot be removed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (out.isOpen()) {
+      abort();
+    }
+  }
+
+  /**
+   * Removes a pack file, even if a reader has it memory-mapped. Windows
+   * will not delete or overwrite a mapped file, but will rename it, so the
+   * pack is first moved to a new name. It is deleted if it can be, and
+   * otherwise the next time a pack of the same name is retired.
+   *
+   * @param pack the pack file, which need not exist
+   *
+   * @throws IOException if the pack cannot be moved aside
+   */
+  static void retire(Path pack) throws IOException {
+    final Path dir = pack.getParent();
+    if (dir == null || !Files.isDirectory(dir)) {
+      return;
+    }
+
+    final String retired = pack.getFileName() + ".old"; //NON-NLS
+
+    // packs retired earlier, which were still mapped then
+    try (DirectoryStream<Path> ds =
+           Files.newDirectoryStream(dir, retired + ".*")) { //NON-NLS
+      for (final Path p : ds) {
+        deleteIfUnmapped(p);
+      }
+    }
+
+    if (Files.exists(pack)) {
+      final Path old = dir.resolve(retired + '.' + System.nanoTime());
+      Files.move(pack, old, StandardCopyOption.ATOMIC_MOVE);
+      deleteIfUnmapped(old);
+    }
+  }
+
+  private static void deleteIfUnmapped(Path p) {
+    try {
+      Files.deleteIfExists(p);
+    }
+    catch (IOException e) {
+      // still mapped; try again next time
+    }
+  }
+
+  private void writeFully(ByteBuffer bb) throws IOException {
+    while (bb.hasRemaining()) {
+      out.write(bb);
+    }
+  }
+}
@@ -38,6 +38,25 @@ import VASSAL.tools.lang.Callback;
  * @author Joel Uckelman
  */
 public class TileSlicerImpl implements TileSlicer {
+  private final boolean packs;
+
+  /**
+   * Creates a {@code TileSlicerImpl} which writes each tile to its own file.
+   */
+  public TileSlicerImpl() {
+    this(false);
+  }
+
+  /**
+   * Creates a {@code TileSlicerImpl}.
+   *
+   * @param packs whether to write the tiles of each image to a single
+   * {@link TilePack} instead of to one file per tile
+   */
+  public TileSlicerImpl(boolean packs) {
+    this.packs = packs;
+  }
+
   /**
    * Slices an image into tiles.
    *
@@ -60,37 +79,12 @@ public class TileSlicerImpl implements TileSlicer {
     Callback<Void> progress
   ) throws IOException {
 
-    final int sw = src.getWidth();
-    final int sh = src.getHeight();
+    final TilePackWriter pack = openPack(iname, tpath);
+    boolean ok = false;
 
     final List<Future<Void>> futures = new ArrayList<>();
-
-    // slice unscaled 1:1 tiles
-    final TaskMaker unscaled = TileTask::new;
-
-    queueTileTasks(
-      src, iname, tpath, 1, tw, th, sw, sh, unscaled, exec, futures
-    );
-
-    // slice scaled tiles, starting at 1:2
-    final TaskMaker scaled = new TaskMaker() {
-      private final GeneralFilter.Filter filter =
-        new GeneralFilter.Lanczos3Filter();
-
-      @Override
-      public TileTask make(BufferedImage src, File f,
-                           int tx, int ty, int tw, int th, int dw, int dh) {
-        return new ScaledTileTask(src, f, filter, tx, ty, tw, th, dw, dh);
-      }
-    };
-
-    for (int div = 2; sw / div > 0 && sh / div > 0; div <<= 1) {
-      final int dw = sw / div;
-      final int dh = sh / div;
-
-      queueTileTasks(
-        src, iname, tpath, div, tw, th, dw, dh, scaled, exec, futures
-      );
+    for (final TileTask tt : makeTileTasks(src, iname, tpath, tw, th, pack)) {
+      futures.add(exec.submit(tt));
     }
 
     // wait for all tiles to complete
@@ -99,6 +93,11 @@ public class TileSlicerImpl implements TileSlicer {
         f.get();
         progress.receive(null);
       }
+
+      if (pack != null) {
+        pack.finish();
+      }
+      ok = true;
     }
     catch (CancellationException | InterruptedException e) {
       // should never happen
@@ -112,16 +111,94 @@ public class TileSlicerImpl implements TileSlicer {
       for (final Future<Void> f : futures) {
         if (!f.isDone()) f.cancel(true);
       }
+
+      if (pack != null && !ok) {
+        pack.abort();
+      }
     }
   }
 
+  /**
+   * Prepares to write the tiles for an image.
+   *
+   * @param iname the basename for the tiles
+   * @param tpath the path for the tiles
+   * @return the pack to which to write the tiles, or null if tiles are
+   * written to individual files
+   *
+   * @throws IOException if the pack cannot be created
+   */
+  protected TilePackWriter openPack(String iname, String tpath)
+                                                           throws IOException {
+    final File pfile = new File(tpath, TileUtils.packName(iname));
+    if (packs) {
+      return new TilePackWriter(pfile);
+    }
+
+    // a pack would hide the loose tiles we are about to write
+    TilePackWriter.retire(pfile.toPath());
+    return null;
+  }
+
+  /**
+   * Creates the tasks which slice an image into tiles at all scales,
+   * without running them.
+   *
+   * @param src the source image
+   * @param iname the basename for the tiles
+   * @param tpath the path for the tiles
+   * @param tw the tile width
+   * @param th the tile height
+   * @param pack the pack to which to write the tiles, or null to write the
+   * tiles to individual files
+   * @return the tasks
+   */
+  protected List<TileTask> makeTileTasks(
+    BufferedImage src,
+    String iname,
+    String tpath,
+    int tw,
+    int th,
+    TilePackWriter pack
+  ) {
+
+    final int sw = src.getWidth();
+    final int sh = src.getHeight();
+
+    final List<TileTask> tasks = new ArrayList<>();
+
+    // slice unscaled 1:1 tiles
+    final TaskMaker unscaled = pack != null ?
+      (s, f, tx, ty, w, h, dw, dh) -> new TileTask(s, pack, 1, tx, ty, w, h, dw, dh) :
+      TileTask::new;
+
+    makeTileTasks(src, iname, tpath, 1, tw, th, sw, sh, unscaled, tasks);
+
+    // slice scaled tiles, starting at 1:2
+    final GeneralFilter.Filter filter = new GeneralFilter.Lanczos3Filter();
+
+    for (int div = 2; sw / div > 0 && sh / div > 0; div <<= 1) {
+      final int dw = sw / div;
+      final int dh = sh / div;
+      final int d = div;
+
+      final TaskMaker scaled = pack != null ?
+        (s, f, tx, ty, w, h, sdw, sdh) -> new ScaledTileTask(s, pack, d, filter, tx, ty, w, h, sdw, sdh) :
+        (s, f, tx, ty, w, h, sdw, sdh) -> new ScaledTileTask(s, f, filter, tx, ty, w, h, sdw, sdh);
+
+      makeTileTasks(src, iname, tpath, div, tw, th, dw, dh, scaled, tasks);
+    }
+
+    return tasks;
+  }
+
   @FunctionalInterface
   protected interface TaskMaker {
     TileTask make(BufferedImage src, File f,
                          int tx, int ty, int tw, int th, int dw, int dh);
   }
 
-  protected static void queueTileTasks(
+  private static void makeTileTasks(
     BufferedImage src,
     String iname,
     String tpath,
@@ -131,8 +208,7 @@ public class TileSlicerImpl implements TileSlicer {
     int dw,
     int dh,
     TaskMaker tm,
-    ExecutorService exec,
-    List<Future<Void>> futures
+    List<TileTask> tasks
   ) {
 
     final int tcols = (int) Math.ceil((double) dw / tw);
@@ -143,8 +219,7 @@ public class TileSlicerImpl implements TileSlicer {
         final String tn = TileUtils.tileName(iname, tx, ty, div);
         final File f = new File(tpath, tn);
 
-        final TileTask tt = tm.make(src, f, tx, ty, tw, th, dw, dh);
-        futures.add(exec.submit(tt));
+        tasks.add(tm.make(src, f, tx, ty, tw, th, dw, dh));
       }
     }
   }
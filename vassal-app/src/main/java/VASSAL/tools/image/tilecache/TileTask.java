@@ -39,6 +39,8 @@ class TileTask implements Callable<Void> {
   protected final int th;
   protected final int dw;
   protected final int dh;
+  protected final TilePackWriter pack;
+  protected final int div;
 
   /**
    * @param src the source image
@@ -52,8 +54,31 @@ class TileTask implements Callable<Void> {
    */
   public TileTask(BufferedImage src, File dst,
                   int tx, int ty, int tw, int th, int dw, int dh) {
+    this(src, dst, null, 1, tx, ty, tw, th, dw, dh);
+  }
+
+  /**
+   * @param src the source image
+   * @param pack the tile pack to write to
+   * @param div the scale divisor
+   * @param tx the tile column
+   * @param ty the tile row
+   * @param tw the standard tile width
+   * @param th the standard tile height
+   * @param dw the width of the whole destination image
+   * @param dh the height of the whole destination image
+   */
+  public TileTask(BufferedImage src, TilePackWriter pack, int div,
+                  int tx, int ty, int tw, int th, int dw, int dh) {
+    this(src, null, pack, div, tx, ty, tw, th, dw, dh);
+  }
+
+  private TileTask(BufferedImage src, File dst, TilePackWriter pack, int div,
+                   int tx, int ty, int tw, int th, int dw, int dh) {
     this.src = src;
     this.dst = dst;
+    this.pack = pack;
+    this.div = div;
     this.tx = tx;
     this.ty = ty;
     this.tw = tw;
@@ -66,7 +91,12 @@ class TileTask implements Callable<Void> {
   @Override
   public Void call() throws IOException {
     final BufferedImage tile = sliceTile();
-    TileUtils.write(tile, dst);
+    if (pack != null) {
+      pack.write(div, tx, ty, tile);
+    }
+    else {
+      TileUtils.write(tile, dst);
+    }
     return null;
   }
 
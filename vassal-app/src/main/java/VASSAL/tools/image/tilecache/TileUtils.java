@@ -21,7 +21,6 @@ package VASSAL.tools.image.tilecache;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -29,13 +28,11 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -44,15 +41,38 @@ import VASSAL.tools.image.ImageIOException;
 /**
  * A class for reading and writing image tiles.
  *
- * The VASSAL tile format consists of the 18-byte header, followed by gzipped
+ * The VASSAL tile format consists of the 18-byte header, followed by the
  * 4-bpp image data. The header is the signature 'VASSAL' (6 bytes), the tile
  * width (4 bytes), the tile height (4 bytes), and the image type (4 bytes).
  *
+ * In version 1 of the format, the image data is gzipped. In version 2, the
+ * image data is the version byte {@link #FORMAT_V2} followed by the data
+ * compressed by {@link TileCodec}, which is much faster to decode. Version 1
+ * tiles start with the gzip magic number instead, so both can be read.
+ * Tiles are always written in version 2, so they are kept under
+ * {@link #CACHE_DIR}, where versions of VASSAL which read only version 1
+ * do not look for them.
+ *
  * @since 3.2.0
  * @author Joel Uckelman
  */
 public class TileUtils {
 
+  /** The length of the tile header */
+  static final int HEADER_LENGTH = 18;
+
+  /** The byte following the header in version 2 tiles */
+  static final byte FORMAT_V2 = 2;
+
+  /**
+   * The directory under the cache directory holding the tiles of each module.
+   * Version 1 tiles were kept under {@link #OLD_CACHE_DIR}.
+   */
+  public static final String CACHE_DIR = "tiles-v2"; //NON-NLS
+
+  /** The directory under the cache directory which held version 1 tiles */
+  public static final String OLD_CACHE_DIR = "tiles"; //NON-NLS
+
   private TileUtils() {}
 
   /**
@@ -78,9 +98,8 @@ public class TileUtils {
    * @throws TileNotFoundException if the file isn't found
    */
   public static BufferedImage read(File src) throws ImageIOException {
-    try (InputStream fin = Files.newInputStream(src.toPath());
-         InputStream in = new BufferedInputStream(fin)) {
-      return read(in);
+    try {
+      return read(Files.readAllBytes(src.toPath()));
     }
     catch (NoSuchFileException e) {
       throw new TileNotFoundException(src, e);
@@ -99,11 +118,37 @@ public class TileUtils {
    * @throws IOException if the read fails
    */
   public static BufferedImage read(InputStream in) throws IOException {
-    ByteBuffer bb;
+    return read(in.readAllBytes());
+  }
 
-    // read the header
-    final byte[] header = readHeader(in);
-    bb = ByteBuffer.wrap(header);
+  /**
+   * Reads an image tile.
+   *
+   * @param tile the tile data
+   * @return the tile image
+   *
+   * @throws IOException if the data is not a valid tile
+   */
+  public static BufferedImage read(byte[] tile) throws IOException {
+    return read(ByteBuffer.wrap(tile));
+  }
+
+  /**
+   * Reads an image tile. The data is decoded directly from the buffer, which
+   * may be a slice of a memory-mapped file.
+   *
+   * @param tile the tile data, from the buffer's position to its limit; the
+   * position is not changed
+   * @return the tile image
+   *
+   * @throws IOException if the data is not a valid tile
+   */
+  public static BufferedImage read(ByteBuffer tile) throws IOException {
+    if (tile.remaining() < HEADER_LENGTH) {
+      throw new IOException("header too short!");
+    }
+
+    final ByteBuffer bb = tile.duplicate();
 
     // validate the signature
     final byte[] sig = new byte[6];
@@ -115,15 +160,6 @@ public class TileUtils {
     final int h = bb.getInt();
     final int type = bb.getInt();
 
-    // read the image data
-    final byte[] cdata = in.readAllBytes();
-
-    // decompress the image data
-    try (InputStream bin = new ByteArrayInputStream(cdata);
-         InputStream zin = new GZIPInputStream(bin)) {
-      bb = ByteBuffer.wrap(zin.readAllBytes());
-    }
-
     // build the image
     final BufferedImage img = new BufferedImage(w, h, type);
 
@@ -132,19 +168,66 @@ public class TileUtils {
     final DataBufferInt db = (DataBufferInt) img.getRaster().getDataBuffer();
     final int[] data = db.getData();
 
-    final IntBuffer ib = bb.asIntBuffer();
-    ib.get(data);
-
-/*
-    if (ib.hasRemaining()) {
-      // buffer contains garbage at the end!
-      throw new IOException("found " + (4*ib.remaining()) + " more bytes!");
+    // decompress the image data directly into the image
+    if (bb.hasRemaining() && bb.get(bb.position()) == FORMAT_V2) {
+      bb.get();
+      TileCodec.decode(bb, data);
+    }
+    else {
+      final byte[] cdata;
+      final int off;
+      if (bb.hasArray()) {
+        cdata = bb.array();
+        off = bb.arrayOffset() + bb.position();
+      }
+      else {
+        cdata = new byte[bb.remaining()];
+        bb.duplicate().get(cdata);
+        off = 0;
+      }
+
+      try (InputStream zin = new GZIPInputStream(
+             new ByteArrayInputStream(cdata, off, bb.remaining()))) {
+        readV1Data(zin, data);
+      }
     }
-*/
 
     return img;
   }
 
+  /**
+   * Reads decompressed version 1 image data into an array.
+   *
+   * @param in the decompressed data
+   * @param data the array to fill
+   *
+   * @throws IOException if the read fails or there is too little data
+   */
+  private static void readV1Data(InputStream in, int[] data)
+                                                          throws IOException {
+    final byte[] buf = new byte[8192];
+    int pending = 0;
+    int op = 0;
+
+    while (op < data.length) {
+      final int r = in.read(buf, pending, buf.length - pending);
+      if (r < 0) {
+        throw new IOException(
+          "image data too short: expected " + data.length + " pixels, got " + op
+        );
+      }
+
+      final int avail = pending + r;
+      final int count = Math.min(avail / 4, data.length - op);
+      ByteBuffer.wrap(buf, 0, 4 * count).asIntBuffer().get(data, op, count);
+      op += count;
+
+      // keep any partial pixel for the next read
+      pending = avail - 4 * count;
+      System.arraycopy(buf, 4 * count, buf, 0, pending);
+    }
+  }
+
   /**
    * Reads the tile header from the stream.
    *
@@ -155,7 +238,7 @@ public class TileUtils {
    */
   static byte[] readHeader(InputStream in) throws IOException {
     // read the header
-    final byte[] header = new byte[18];
+    final byte[] header = new byte[HEADER_LENGTH];
     if (in.readNBytes(header, 0, header.length) != header.length) {
       throw new IOException("header too short!");
     }
@@ -203,7 +286,7 @@ public class TileUtils {
    */
   public static Dimension size(File src) throws ImageIOException {
     try (InputStream in = Files.newInputStream(src.toPath())) {
-      // NB: We don't buffer here because we're reading only 18 bytes.
+      // NB: We don't buffer here because we're reading only the header.
       return size(in);
     }
     catch (NoSuchFileException e) {
@@ -238,6 +321,31 @@ public class TileUtils {
     return new Dimension(bb.getInt(), bb.getInt());
   }
 
+  /**
+   * Reads the dimensions of the tile from a buffer.
+   *
+   * @param tile the tile data, from the buffer's position to its limit; the
+   * position is not changed
+   * @return the dimensions
+   *
+   * @throws IOException if the data is not a valid tile
+   */
+  public static Dimension size(ByteBuffer tile) throws IOException {
+    if (tile.remaining() < HEADER_LENGTH) {
+      throw new IOException("header too short!");
+    }
+
+    final ByteBuffer bb = tile.duplicate();
+
+    // validate the signature
+    final byte[] sig = new byte[6];
+    bb.get(sig);
+    checkSignature(sig);
+
+    // get the dimensions
+    return new Dimension(bb.getInt(), bb.getInt());
+  }
+
   /**
    * Write a tile image to a tile file.
    *
@@ -280,28 +388,20 @@ public class TileUtils {
    */
   public static void write(BufferedImage tile, OutputStream out)
                                                            throws IOException {
-    ByteBuffer bb;
-
-    // write the header
-    bb = ByteBuffer.allocate(18);
+    // write the header and format version
+    final ByteBuffer bb = ByteBuffer.allocate(HEADER_LENGTH + 1);
 
     bb.put("VASSAL".getBytes(StandardCharsets.UTF_8)) //NON-NLS
       .putInt(tile.getWidth())
       .putInt(tile.getHeight())
-      .putInt(tile.getType());
+      .putInt(tile.getType())
+      .put(FORMAT_V2);
 
     out.write(bb.array());
 
     // write the tile data
     final DataBufferInt db = (DataBufferInt) tile.getRaster().getDataBuffer();
-    final int[] data = db.getData();
-
-    bb = ByteBuffer.allocate(4 * data.length);
-    bb.asIntBuffer().put(data);
-
-    final GZIPOutputStream zout = new GZIPOutputStream(out);
-    zout.write(bb.array());
-    zout.finish();
+    out.write(TileCodec.encode(db.getData(), tile.getWidth()));
   }
 
   /**
@@ -395,4 +495,16 @@ public class TileUtils {
 
     return sha.substring(0, 1) + '/' + sha.substring(0, 2) + '/' + sha;
   }
+
+  /**
+   * Gets the name of a tile pack file.
+   *
+   * @param iname the image name
+   * @return the name of the tile pack file
+   * @see TilePack
+   */
+  public static String packName(String iname) {
+    final String sha = DigestUtils.sha1Hex(iname + "(pack"); //NON-NLS
+    return sha.substring(0, 1) + '/' + sha.substring(0, 2) + '/' + sha + ".pack"; //NON-NLS
+  }
 }
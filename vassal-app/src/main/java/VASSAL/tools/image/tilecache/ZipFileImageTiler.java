@@ -33,6 +33,7 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -65,12 +66,14 @@ public class ZipFileImageTiler {
     LoggerFactory.getLogger(ZipFileImageTiler.class);
 
   private static String[] decodeArgs(String[] args) {
-    return "--encoded-args".equals(args[0]) ?  new String[] {
-      ArgEncoding.decode(args[1]),
-      ArgEncoding.decode(args[2]),
-      args[3],
-      args[4]
-    } : args;
+    if (!"--encoded-args".equals(args[0])) {
+      return args;
+    }
+
+    final String[] dargs = Arrays.copyOfRange(args, 1, args.length);
+    dargs[0] = ArgEncoding.decode(dargs[0]);
+    dargs[1] = ArgEncoding.decode(dargs[1]);
+    return dargs;
   }
 
   public static void main(String[] args) {
@@ -95,15 +98,16 @@ public class ZipFileImageTiler {
       final String tpath = args[1];
       final int tw = Integer.parseInt(args[2]);
       final int th = Integer.parseInt(args[3]);
+      final boolean packs = args.length > 4 && "--pack".equals(args[4]); //NON-NLS
 
       // TODO: Remove after next VASL & VSQL releases?
       final String portProp = System.getProperty("VASSAL.port");
 
       if (portProp != null) {
-        writeToSocket(portProp, zpath, tpath, tw, th);
+        writeToSocket(portProp, zpath, tpath, tw, th, packs);
       }
       else {
-        writeToStream(System.out, zpath, tpath, tw, th);
+        writeToStream(System.out, zpath, tpath, tw, th, packs);
       }
     }
     finally {
@@ -112,7 +116,7 @@ public class ZipFileImageTiler {
   }
 
   // TODO: Remove after next VASL & VSQL releases?
-  private static void writeToSocket(String portProp, String zpath, String tpath, int tw, int th) {
+  private static void writeToSocket(String portProp, String zpath, String tpath, int tw, int th, boolean packs) {
     final InetAddress lo;
     try {
       lo = InetAddress.getByName(null);
@@ -125,14 +129,14 @@ public class ZipFileImageTiler {
     final int port = Integer.parseInt(portProp);
     try (Socket sock = new Socket(lo, port)) {
       sock.shutdownInput();
-      writeToStream(sock.getOutputStream(), zpath, tpath, tw, th);
+      writeToStream(sock.getOutputStream(), zpath, tpath, tw, th, packs);
     }
     catch (IOException e) {
       logger.error("Error while setting up socket", e); //NON-NLS
     }
   }
 
-  private static void writeToStream(OutputStream os, String zpath, String tpath, int tw, int th) {
+  private static void writeToStream(OutputStream os, String zpath, String tpath, int tw, int th, boolean packs) {
 
     // TODO: Determine what the optimal number of threads is.
     final Runtime runtime = Runtime.getRuntime();
@@ -147,7 +151,7 @@ public class ZipFileImageTiler {
     final ImageTypeConverter itc = new MemoryImageTypeConverter();
     final ImageLoader loader = new ImageIOImageLoader(itc);
 
-    final TileSlicer slicer = new TileSlicerImpl();
+    final TileSlicer slicer = new TileSlicerImpl(packs);
     final FileArchiveImageTiler tiler = new FileArchiveImageTiler();
 
     // Get the image paths from stdin, one per line
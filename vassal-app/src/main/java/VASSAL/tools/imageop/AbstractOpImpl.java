@@ -68,6 +68,13 @@ public abstract class AbstractOpImpl
     cache.clear();
   }
 
+  /**
+   * @return the cache which contains calculated <code>Image</code>s
+   */
+  public static OpCache getCache() {
+    return cache;
+  }
+
   public AbstractOpImpl() {
     super(cache);
   }
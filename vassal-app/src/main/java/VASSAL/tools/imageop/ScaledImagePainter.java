@@ -41,24 +41,32 @@ public class ScaledImagePainter {
   }
 
   public void draw(Graphics g, int x, int y, double scale, ImageObserver obs) {
-    if (srcOp == null || scale <= 0) return;
-
-    final BufferedImage img;
-    if (scale == 1.0) {
-      img = srcOp.getImage();
-    }
-    else {
-      if (scaleOp == null || scaleOp.getScale() != scale) {
-        scaleOp = Op.scale(srcOp, scale);
-      }
-      img = scaleOp.getImage();
-    }
+    final ImageOp op = getOp(scale);
+    if (op == null) return;
 
+    final BufferedImage img = op.getImage();
     if (img == null) return;
 
     g.drawImage(img, x, y, obs);
   }
 
+  /**
+   * @param scale the scaling factor
+   * @return the operation giving the image this draws at that scale, or null if it draws nothing
+   */
+  public ImageOp getOp(double scale) {
+    if (srcOp == null || scale <= 0) return null;
+
+    if (scale == 1.0) {
+      return srcOp;
+    }
+
+    if (scaleOp == null || scaleOp.getScale() != scale) {
+      scaleOp = Op.scale(srcOp, scale);
+    }
+    return scaleOp;
+  }
+
   public ImageOp getSource() {
     return srcOp;
   }
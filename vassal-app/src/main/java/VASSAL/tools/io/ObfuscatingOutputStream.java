@@ -40,6 +40,9 @@ public class ObfuscatingOutputStream extends FilterOutputStream {
 
   private final byte key;
   private final byte[] pair = new byte[2];
+  private final byte[] buf = new byte[2 * BUFFER_SIZE];
+
+  private static final int BUFFER_SIZE = 4096;
 
   /**
    * @param out the stream to wrap
@@ -69,7 +72,18 @@ public class ObfuscatingOutputStream extends FilterOutputStream {
   /** {@inheritDoc} */
   @Override
   public void write(byte[] bytes, int off, int len) throws IOException {
-    for (int i = 0; i < len; ++i) write(bytes[off + i]);
+    // Obfuscate in chunks rather than passing each byte to the wrapped stream
+    while (len > 0) {
+      final int n = Math.min(len, BUFFER_SIZE);
+      for (int i = 0; i < n; ++i) {
+        final int b = bytes[off + i] ^ key;
+        buf[2 * i] = HEX[(b & 0xF0) >>> 4];
+        buf[2 * i + 1] = HEX[b & 0x0F];
+      }
+      out.write(buf, 0, 2 * n);
+      off += n;
+      len -= n;
+    }
   }
 
   private static final byte[] HEX = {
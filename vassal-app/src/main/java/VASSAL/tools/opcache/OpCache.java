@@ -18,10 +18,16 @@
 
 package VASSAL.tools.opcache;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -30,6 +36,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.swing.SwingWorker;
 
@@ -39,6 +47,18 @@ import VASSAL.tools.concurrent.ConcurrentSoftHashMap;
 /**
  * A memory-sensitive cache for {@link Op}s and their results.
  *
+ * <p>All results are held softly, so may be discarded by the garbage
+ * collector when memory is short. In addition, the most recently used
+ * results up to a total size set by {@link #setMaxBytes} are held strongly,
+ * so that the working set survives a full garbage collection. Each result
+ * is weighed by {@link #weigh}, which for images is the size of the
+ * raster. Results evicted from the strongly held set stay in the cache
+ * until they are collected.</p>
+ *
+ * <p>Using a result only marks it with the time it was used, so that hits
+ * take no lock. Results are ordered by those times only when adding one
+ * takes the strongly held set over its size.</p>
+ *
  * @since 3.1.0
  * @author Joel Uckelman
  */
@@ -98,6 +118,218 @@ public class OpCache {
   protected final ConcurrentMap<Key<?>, Future<?>> cache =
     new ConcurrentSoftHashMap<>();
 
+  /** The strongly held results */
+  private final ConcurrentMap<Key<?>, Retained> retained =
+    new ConcurrentHashMap<>();
+
+  /** The total weight of the strongly held results */
+  private final AtomicLong retainedBytes = new AtomicLong();
+
+  /** The maximum total weight of the strongly held results */
+  private volatile long maxBytes = 0;
+
+  /** Counts the uses of results, for ordering them by when last used */
+  private final AtomicLong clock = new AtomicLong();
+
+  /** Held while choosing which results to evict */
+  private final Object evictLock = new Object();
+
+  private final ConcurrentMap<Class<?>, Stats> stats =
+    new ConcurrentHashMap<>();
+
+  private static final class Retained {
+    private final Future<?> fut;
+    private final long weight;
+    private volatile long lastUsed;
+
+    private Retained(Future<?> fut, long weight, long lastUsed) {
+      this.fut = fut;
+      this.weight = weight;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  /** A strongly held result, with when it was last used as evicting began */
+  private static final class Candidate {
+    private final Key<?> key;
+    private final Retained r;
+    private final long lastUsed;
+
+    private Candidate(Key<?> key, Retained r) {
+      this.key = key;
+      this.r = r;
+      this.lastUsed = r.lastUsed;
+    }
+  }
+
+  /**
+   * Hit, miss and eviction counts for one type of {@link Op}.
+   */
+  public static final class Stats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** @return the number of requests for results which were cached */
+    public long getHits() {
+      return hits.sum();
+    }
+
+    /** @return the number of requests for results which were not cached */
+    public long getMisses() {
+      return misses.sum();
+    }
+
+    /** @return the number of results evicted from the strongly held set */
+    public long getEvictions() {
+      return evictions.sum();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return "hits=" + getHits() + ", misses=" + getMisses() + //NON-NLS
+        ", evictions=" + getEvictions(); //NON-NLS
+    }
+  }
+
+  private Stats statsFor(Key<?> key) {
+    return stats.computeIfAbsent(key.op.getClass(), c -> new Stats());
+  }
+
+  /**
+   * Sets the maximum total size of the results which are held strongly.
+   * Results beyond this are held only softly.
+   *
+   * @param maxBytes the maximum size, in bytes; 0 holds all results softly
+   */
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = Math.max(maxBytes, 0);
+    evict();
+  }
+
+  /**
+   * @return the maximum total size of the results which are held strongly
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * @return the total size of the results which are held strongly
+   */
+  public long getRetainedBytes() {
+    return retainedBytes.get();
+  }
+
+  /**
+   * @return the hit, miss and eviction counts, by the simple name of the
+   * {@link Op} class
+   */
+  public Map<String, Stats> getStats() {
+    final Map<String, Stats> m = new TreeMap<>();
+    stats.forEach((c, s) -> m.put(c.getName().substring(c.getName().lastIndexOf('.') + 1), s));
+    return m;
+  }
+
+  /**
+   * Weighs a result, for limiting the total size of the results held
+   * strongly.
+   *
+   * @param val the result
+   * @return the approximate number of bytes used by {@code val}
+   */
+  protected long weigh(Object val) {
+    if (val instanceof BufferedImage) {
+      final DataBuffer db = ((BufferedImage) val).getRaster().getDataBuffer();
+      return (long) db.getSize() * db.getNumBanks() *
+        DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+    return val == null ? 0 : 64;
+  }
+
+  /**
+   * Holds a completed result strongly, or marks it as most recently used
+   * if it is already held.
+   */
+  private void retain(Key<?> key, Future<?> fut, Object val) {
+    if (maxBytes == 0) {
+      return;
+    }
+
+    final Retained r = retained.get(key);
+    if (r != null && r.fut == fut) {
+      r.lastUsed = clock.incrementAndGet();
+      return;
+    }
+
+    final Retained added = new Retained(fut, weigh(val), clock.incrementAndGet());
+    final Retained old = retained.put(key, added);
+    retainedBytes.addAndGet(old == null ? added.weight : added.weight - old.weight);
+    evict();
+  }
+
+  /**
+   * Marks a cached result as most recently used.
+   */
+  private void touch(Key<?> key, Future<?> fut) {
+    if (!fut.isDone() || fut == failure || maxBytes == 0) {
+      return;
+    }
+
+    final Retained r = retained.get(key);
+    if (r != null && r.fut == fut) {
+      r.lastUsed = clock.incrementAndGet();
+      return;
+    }
+
+    // the result was evicted, but not yet collected
+    try {
+      retain(key, fut, fut.get());
+    }
+    catch (CancellationException | ExecutionException | InterruptedException e) {
+      // not a result to retain
+    }
+  }
+
+  private void release(Key<?> key) {
+    final Retained r = retained.remove(key);
+    if (r != null) {
+      retainedBytes.addAndGet(-r.weight);
+    }
+  }
+
+  /**
+   * Evicts the least recently used results until those left fit in
+   * {@link #maxBytes}.
+   */
+  private void evict() {
+    if (retainedBytes.get() <= maxBytes) {
+      return;
+    }
+
+    synchronized (evictLock) {
+      if (retainedBytes.get() <= maxBytes) {
+        return;
+      }
+
+      // the times are copied, as they may change while sorting
+      final List<Candidate> candidates = new ArrayList<>(retained.size());
+      retained.forEach((k, r) -> candidates.add(new Candidate(k, r)));
+      candidates.sort(Comparator.comparingLong(c -> c.lastUsed));
+
+      for (final Candidate c : candidates) {
+        if (retainedBytes.get() <= maxBytes) {
+          break;
+        }
+        if (retained.remove(c.key, c.r)) {
+          retainedBytes.addAndGet(-c.r.weight);
+          statsFor(c.key).evictions.increment();
+        }
+      }
+    }
+  }
+
   /**
    * A request for execution of an {@link Op} which will be completed
    * synchronously and set manually.
@@ -207,18 +439,22 @@ public class OpCache {
     protected void done() {
       try {
         final V val = get();
+        retain(key, this, val);
         if (obs != null) obs.succeeded(key.op, val);
       }
       catch (CancellationException e) {
         cache.remove(key, this);
+        release(key);
         if (obs != null) obs.cancelled(key.op, e);
       }
       catch (InterruptedException e) {
         cache.remove(key, this);
+        release(key);
         if (obs != null) obs.interrupted(key.op, e);
       }
       catch (ExecutionException e) {
         cache.replace(key, this, failure);
+        release(key);
         if (obs != null) obs.failed(key.op, e);
       }
     }
@@ -268,14 +504,17 @@ public class OpCache {
       }
       catch (CancellationException e) {
         cache.remove(key, fut);
+        release(key);
         throw (CancellationException) new CancellationException().initCause(e);
       }
       catch (InterruptedException e) {
         cache.remove(key, fut);
+        release(key);
         throw (InterruptedException) new InterruptedException().initCause(e);
       }
       catch (ExecutionException e) {
         cache.replace(key, fut, failure);
+        release(key);
         throw new ExecutionException(e);
       }
     }
@@ -306,6 +545,8 @@ public class OpCache {
 
     Future<V> fut = (Future<V>) cache.get(key);
     if (fut == null) {
+      statsFor(key).misses.increment();
+
       if (obs == null) {
         // check whether any other op has beat us into the cache
         final Result<V> res = new Result<>();
@@ -326,6 +567,7 @@ public class OpCache {
             res.set(val);
           }
 
+          retain(key, res, val);
           fut = res;
         }
       }
@@ -339,6 +581,9 @@ public class OpCache {
       }
     }
     else {
+      statsFor(key).hits.increment();
+      touch(key, fut);
+
       // Are we a synchronous request in the queue being re-requested?
       if (obs == null && fut instanceof Runnable) {
         if (requestQueue.remove(fut)) {
@@ -381,6 +626,7 @@ public class OpCache {
   public <V> V getIfDone(Key<V> key) {
     final Future<V> fut = (Future<V>) cache.get(key);
     if (fut != null && fut.isDone()) {
+      touch(key, fut);
       try {
         return fut.get();
       }
@@ -393,5 +639,6 @@ public class OpCache {
   public void clear() {
 // FIXME: should cancel all pending requests?
     cache.clear();
+    retained.keySet().forEach(this::release);
   }
 }
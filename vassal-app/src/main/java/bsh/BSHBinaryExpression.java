@@ -83,6 +83,26 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
     // The following two boolean checks were tacked on.
     // This could probably be smoothed out.
 
+    final Object shortCircuit = shortCircuit(lhs, kind);
+    if (shortCircuit != null)
+      return shortCircuit;
+
+    Object rhs = ((SimpleNode) jjtGetChild(1)).eval(callstack, interpreter);
+    try {
+      return operate(lhs, rhs, kind);
+    }
+    catch (UtilEvalError e) {
+      throw e.toEvalError(this, callstack);
+    }
+  }
+
+  /**
+   * VASSAL - The value of a boolean AND or OR whose rhs need not be evaluated.
+   * Shared with {@link CompiledExpression}.
+   *
+   * @return the value, or null if the rhs must be evaluated
+   */
+  static Primitive shortCircuit(Object lhs, int kind) {
     /*
      * Look ahead and short circuit evaluation of the rhs if: we're a boolean
      * AND and the lhs is false.
@@ -107,13 +127,19 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
     }
 
     // end stuff that was tacked on for boolean short-circuiting.
+    return null;
+  }
 
+  /**
+   * VASSAL - Apply a binary operator, other than instanceof, to two values.
+   * Shared with {@link CompiledExpression}.
+   */
+  static Object operate(Object lhs, Object rhs, int kind) throws UtilEvalError {
     /*
      * Are both the lhs and rhs either wrappers or primitive values? do binary
      * op
      */
     boolean isLhsWrapper = isWrapper(lhs);
-    Object rhs = ((SimpleNode) jjtGetChild(1)).eval(callstack, interpreter);
     boolean isRhsWrapper = isWrapper(rhs);
     if ((isLhsWrapper || isPrimitiveValue(lhs))
         && (isRhsWrapper || isPrimitiveValue(rhs))) {
@@ -134,7 +160,7 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
             return Primitive.binaryOperation(lhs.toString(), rhs.toString(), kind); 
           }
           catch (UtilEvalError e2) {
-            throw e.toEvalError(this, callstack);
+            throw e;
           }
         }
       }
@@ -149,39 +175,19 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
     else {
       // lhs in an Integer and rhs is the null string
       if (lhs instanceof Primitive && ((Primitive) lhs).getValue() instanceof Integer && rhs.equals("") ) {
-        try {
-          return Primitive.binaryOperation(lhs, new Primitive(0), kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        }
+        return Primitive.binaryOperation(lhs, new Primitive(0), kind);
       }
       // lhs is the null string and rhs is an Integer
       else if (rhs instanceof Primitive && ((Primitive) rhs).getValue() instanceof Integer && lhs.equals("") ) {
-        try {
-          return Primitive.binaryOperation(new Primitive(0), rhs, kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        }
+        return Primitive.binaryOperation(new Primitive(0), rhs, kind);
       }
       // lhs is primitive, right hand side is string
       else if ((isLhsWrapper || isPrimitiveValue(lhs)) && rhs instanceof String) {
-        try {
-          return Primitive.binaryOperation(lhs.toString(), rhs, kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        }
+        return Primitive.binaryOperation(lhs.toString(), rhs, kind);
       }
       // lhs is string, rhs is primitiv
       else if ((isRhsWrapper || isPrimitiveValue(rhs)) && lhs instanceof String) {
-        try {
-          return Primitive.binaryOperation(lhs, rhs.toString(), kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        } 
+        return Primitive.binaryOperation(lhs, rhs.toString(), kind);
       }
     }
     /*
@@ -217,25 +223,18 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
      * VASSAL - Handle Strings as a type of Primitive - allow comparison operators on Strings. 
      */
     if (lhs instanceof String && rhs instanceof String) {
-      try {
-        return Primitive.binaryOperation(lhs, rhs, kind);
-      }
-      catch (UtilEvalError e) {
-        throw e.toEvalError(this, callstack);
-      }
+      return Primitive.binaryOperation(lhs, rhs, kind);
     }
     else {
       if (lhs instanceof Primitive || rhs instanceof Primitive)
         if (lhs == Primitive.VOID || rhs == Primitive.VOID)
-          throw new EvalError(
-              "illegal use of undefined variable, class, or 'void' literal",
-              this, callstack);
+          throw new UtilEvalError(
+              "illegal use of undefined variable, class, or 'void' literal");
         else if (lhs == Primitive.NULL || rhs == Primitive.NULL)
-          throw new EvalError("illegal use of null value or 'null' literal",
-              this, callstack);
+          throw new UtilEvalError("illegal use of null value or 'null' literal");
 
-      throw new EvalError("Operator: '" + tokenImage[kind]
-          + "' inappropriate for objects", this, callstack);
+      throw new UtilEvalError("Operator: '" + tokenImage[kind]
+          + "' inappropriate for objects");
     }
   }
     
@@ -263,14 +262,14 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
   /*
    * object is a non-null and non-void Primitive type
    */
-  private boolean isPrimitiveValue(Object obj) {
+  private static boolean isPrimitiveValue(Object obj) {
     return ((obj instanceof Primitive) && (obj != Primitive.VOID) && (obj != Primitive.NULL));
   }
 
   /*
    * object is a java.lang wrapper for boolean, char, or number type
    */
-  private boolean isWrapper(Object obj) {
+  private static boolean isWrapper(Object obj) {
     return (obj instanceof Boolean || obj instanceof Character || obj instanceof Number);
   }
 }
@@ -80,7 +80,8 @@ class BSHUnaryExpression extends SimpleNode implements ParserConstants
 		return retVal;
     }
 
-    private Object unaryOperation( Object op, int kind ) throws UtilEvalError
+    // VASSAL - Shared with CompiledExpression
+    static Object unaryOperation( Object op, int kind ) throws UtilEvalError
     {
         if (op instanceof Boolean || op instanceof Character 
 			|| op instanceof Number)
@@ -94,7 +95,7 @@ class BSHUnaryExpression extends SimpleNode implements ParserConstants
         return Primitive.unaryOperation((Primitive)op, kind);
     }
 
-    private Object primitiveWrapperUnaryOperation(Object val, int kind)
+    private static Object primitiveWrapperUnaryOperation(Object val, int kind)
         throws UtilEvalError
     {
         Class operandType = val.getClass();
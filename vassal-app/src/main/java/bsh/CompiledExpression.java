@@ -0,0 +1,167 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package bsh;
+
+/**
+ * VASSAL - The base of the classes {@link ExpressionCompiler} generates from an expression. The generated code
+ * handles values just as the interpreter does, as {@link Primitive}s, Strings and other Objects, and applies
+ * operators to them through the same code, so gives the same result. Whenever it cannot be sure of doing so, such as
+ * when an operator fails, it gives up with {@link Unsupported}, and the expression should be interpreted instead.
+ *
+ * @since 3.8.0
+ */
+public abstract class CompiledExpression {
+
+  /**
+   * Thrown when a compiled expression leaves the evaluation to the interpreter
+   */
+  public static final class Unsupported extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private Unsupported() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final Unsupported UNSUPPORTED = new Unsupported();
+
+  /**
+   * The functions a compiled expression may call
+   */
+  @FunctionalInterface
+  public interface Functions {
+    /**
+     * @param function The name of the function and the number of its arguments, as "Name/2"
+     * @param args The arguments, as Java values
+     * @return the result, as a value for the expression
+     */
+    Object call(String function, Object[] args) throws Exception;
+  }
+
+  /** The literals in the expression */
+  protected Object[] constants;
+
+  protected CompiledExpression() {
+  }
+
+  void setConstants(Object[] constants) {
+    this.constants = constants;
+  }
+
+  /**
+   * @param values The values of the variables, as the interpreter would hold them
+   * @param functions The functions the expression may call
+   * @return the value of the expression
+   */
+  protected abstract Object eval(Object[] values, Functions functions) throws Exception;
+
+  /**
+   * Evaluate the expression
+   *
+   * @param values The values of the variables, as the interpreter would hold them
+   * @param functions The functions the expression may call
+   * @return the value of the expression, as a String
+   * @throws Unsupported if the expression should be interpreted instead
+   */
+  public String evaluate(Object[] values, Functions functions) throws Unsupported {
+    final Object result;
+    try {
+      result = eval(values, functions);
+    }
+    catch (Exception e) {
+      throw UNSUPPORTED;
+    }
+
+    if (result instanceof Primitive) {
+      if (result == Primitive.NULL || result == Primitive.VOID) {
+        throw UNSUPPORTED;
+      }
+      return ((Primitive) result).getValue().toString();
+    }
+    else if (result == null) {
+      throw UNSUPPORTED;
+    }
+    return result.toString();
+  }
+
+  /**
+   * Convert a value returned to an expression as the functions in init_expression.bsh do
+   */
+  public static Object primitive(Object value) {
+    if (value instanceof Integer) {
+      return new Primitive(((Integer) value).intValue());
+    }
+    else if (value instanceof Float) {
+      return new Primitive(((Float) value).floatValue());
+    }
+    else if (value instanceof Boolean) {
+      return new Primitive(((Boolean) value).booleanValue());
+    }
+    return value;
+  }
+
+  protected static Object operate(Object lhs, Object rhs, int kind) throws UtilEvalError {
+    return BSHBinaryExpression.operate(lhs, rhs, kind);
+  }
+
+  protected static Object shortCircuit(Object lhs, int kind) {
+    return BSHBinaryExpression.shortCircuit(lhs, kind);
+  }
+
+  protected static Object unary(Object operand, int kind) throws UtilEvalError {
+    return BSHUnaryExpression.unaryOperation(operand, kind);
+  }
+
+  /** As {@link BSHIfStatement#evaluateCondition} */
+  protected static boolean condition(Object value) throws Unsupported {
+    final Object obj = value instanceof Primitive && value != Primitive.VOID ? ((Primitive) value).getValue() : value;
+    if (obj instanceof Boolean) {
+      return (Boolean) obj;
+    }
+    throw UNSUPPORTED;
+  }
+
+  protected static String string(Object value) throws Unsupported {
+    if (value instanceof String) {
+      return (String) value;
+    }
+    throw UNSUPPORTED;
+  }
+
+  protected static int integer(Object value) throws Unsupported {
+    if (value instanceof Primitive && ((Primitive) value).getType() == Integer.TYPE) {
+      return (Integer) ((Primitive) value).getValue();
+    }
+    throw UNSUPPORTED;
+  }
+
+  protected static Object call(Functions functions, String function, Object[] args) throws Exception {
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i] == Primitive.VOID) {
+        throw UNSUPPORTED;
+      }
+      args[i] = Primitive.unwrap(args[i]);
+    }
+
+    final Object result = functions.call(function, args);
+    if (result == null) {
+      throw UNSUPPORTED;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package bsh;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassBodyEvaluator;
+
+/**
+ * VASSAL - Compiles an expression to a Java class with Janino, so that it can be evaluated without the interpreter.
+ *
+ * Only a subset of the language is compiled: literals, variables, the unary, binary and ternary operators other
+ * than increments, decrements and instanceof, a set of methods on String variables, and a set of functions supplied
+ * by the caller. Anything else is left to the interpreter.
+ *
+ * The expression is compiled from the tree the interpreter's own parser builds for it, and each operator is
+ * applied through the same code the interpreter uses, so the compiled expression gives the same results.
+ *
+ * @since 3.8.0
+ */
+public final class ExpressionCompiler {
+
+  /**
+   * The methods which can be called on a String variable, by name and number of arguments, and their types: that
+   * returned followed by those of the arguments, as I for int, Z for boolean and S for String
+   */
+  private static final Map<String, String> STRING_METHODS = Map.ofEntries(
+    Map.entry("compareTo/1", "IS"),
+    Map.entry("compareToIgnoreCase/1", "IS"),
+    Map.entry("contains/1", "ZS"),
+    Map.entry("endsWith/1", "ZS"),
+    Map.entry("equals/1", "ZS"),
+    Map.entry("equalsIgnoreCase/1", "ZS"),
+    Map.entry("indexOf/1", "IS"),
+    Map.entry("isBlank/0", "Z"),
+    Map.entry("isEmpty/0", "Z"),
+    Map.entry("lastIndexOf/1", "IS"),
+    Map.entry("length/0", "I"),
+    Map.entry("matches/1", "ZS"),
+    Map.entry("repeat/1", "SI"),
+    Map.entry("replace/2", "SSS"),
+    Map.entry("replaceAll/2", "SSS"),
+    Map.entry("replaceFirst/2", "SSS"),
+    Map.entry("startsWith/1", "ZS"),
+    Map.entry("strip/0", "S"),
+    Map.entry("stripLeading/0", "S"),
+    Map.entry("stripTrailing/0", "S"),
+    Map.entry("substring/1", "SI"),
+    Map.entry("substring/2", "SII"),
+    Map.entry("toLowerCase/0", "S"),
+    Map.entry("toString/0", "S"),
+    Map.entry("toUpperCase/0", "S"),
+    Map.entry("trim/0", "S")
+  );
+
+  /** Thrown when an expression falls outside the subset which is compiled */
+  private static class NotCompilable extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    NotCompilable() {
+      super(null, null, false, false);
+    }
+  }
+
+  private final List<String> variables;
+  private final List<String> stringVariables;
+  private final Set<String> functions;
+
+  private final StringBuilder code = new StringBuilder();
+  private final List<Object> constants = new ArrayList<>();
+  private int temps;
+
+  private ExpressionCompiler(List<String> variables, List<String> stringVariables, Set<String> functions) {
+    this.variables = variables;
+    this.stringVariables = stringVariables;
+    this.functions = functions;
+  }
+
+  /**
+   * Compile an expression
+   *
+   * @param expression The expression
+   * @param variables The variables in the expression, whose values will be passed first, in this order
+   * @param stringVariables The variables in the expression which are passed as Strings, whose values will be
+   *                        passed next, in this order; where a variable is in both lists, it is this value which
+   *                        the expression sees
+   * @param functions The functions the expression may call, by name and number of arguments, as "Name/2"
+   * @return the compiled expression, or null if it is not in the subset which can be compiled
+   */
+  public static CompiledExpression compile(String expression, List<String> variables, List<String> stringVariables,
+                                           Set<String> functions) {
+    final SimpleNode node = parse(expression);
+    if (node == null) {
+      return null;
+    }
+
+    final ExpressionCompiler compiler = new ExpressionCompiler(variables, stringVariables, functions);
+    final String result;
+    try {
+      result = compiler.generate(node);
+    }
+    catch (NotCompilable e) {
+      return null;
+    }
+
+    final String body =
+      "protected Object eval(Object[] v, bsh.CompiledExpression.Functions f) throws Exception {\n" +
+      compiler.code +
+      "  return " + result + ";\n" +
+      "}\n";
+
+    try {
+      final ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+      cbe.setParentClassLoader(CompiledExpression.class.getClassLoader());
+      cbe.setExtendedClass(CompiledExpression.class);
+      cbe.setDefaultImports("bsh.Primitive");
+      cbe.cook(body);
+
+      final CompiledExpression compiled =
+        (CompiledExpression) cbe.getClazz().getDeclaredConstructor().newInstance();
+      compiled.setConstants(compiler.constants.toArray());
+      return compiled;
+    }
+    catch (CompileException | ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the node for the expression, or null if it does not parse to a single one
+   */
+  private static SimpleNode parse(String expression) {
+    try {
+      final Parser p = new Parser(new StringReader(expression + ";"));
+      SimpleNode node = null;
+      while (!p.Line()) {
+        if (node != null) {
+          return null;
+        }
+        node = p.popNode();
+      }
+      return node;
+    }
+    catch (ParseException | TokenMgrError e) {
+      return null;
+    }
+  }
+
+  private String temp() {
+    return "t" + temps++;
+  }
+
+  private String assign(String value) {
+    final String t = temp();
+    code.append("  Object ").append(t).append(" = ").append(value).append(";\n");
+    return t;
+  }
+
+  /**
+   * Generate the code evaluating a node
+   *
+   * @return the variable holding its value
+   */
+  private String generate(SimpleNode node) throws NotCompilable {
+    if (node instanceof BSHPrimaryExpression) {
+      // Suffixes, such as field access and method calls on other than variables, are not compiled
+      if (node.jjtGetNumChildren() != 1) {
+        throw new NotCompilable();
+      }
+      return generate(node.getChild(0));
+    }
+    else if (node instanceof BSHLiteral) {
+      final Object value = ((BSHLiteral) node).value;
+      if (value == null) {
+        throw new NotCompilable();
+      }
+      constants.add(value);
+      return assign("constants[" + (constants.size() - 1) + "]");
+    }
+    else if (node instanceof BSHAmbiguousName) {
+      return assign("v[" + slot(((BSHAmbiguousName) node).text) + "]");
+    }
+    else if (node instanceof BSHMethodInvocation) {
+      return generateInvocation((BSHMethodInvocation) node);
+    }
+    else if (node instanceof BSHUnaryExpression) {
+      final BSHUnaryExpression unary = (BSHUnaryExpression) node;
+      if (unary.kind == ParserConstants.INCR || unary.kind == ParserConstants.DECR) {
+        throw new NotCompilable();
+      }
+      final String operand = generate(node.getChild(0));
+      return assign("unary(" + operand + ", " + unary.kind + ")");
+    }
+    else if (node instanceof BSHBinaryExpression) {
+      final int kind = ((BSHBinaryExpression) node).kind;
+      if (kind == ParserConstants.INSTANCEOF) {
+        throw new NotCompilable();
+      }
+      final String lhs = generate(node.getChild(0));
+
+      // The rhs of && and || is only evaluated if need be
+      final String t = assign("shortCircuit(" + lhs + ", " + kind + ")");
+      code.append("  if (").append(t).append(" == null) {\n");
+      final String rhs = generate(node.getChild(1));
+      code.append("  ").append(t).append(" = operate(").append(lhs).append(", ").append(rhs).append(", ")
+        .append(kind).append(");\n");
+      code.append("  }\n");
+      return t;
+    }
+    else if (node instanceof BSHTernaryExpression) {
+      final String condition = generate(node.getChild(0));
+      final String t = temp();
+      code.append("  Object ").append(t).append(";\n");
+      code.append("  if (condition(").append(condition).append(")) {\n");
+      final String ifTrue = generate(node.getChild(1));
+      code.append("  ").append(t).append(" = ").append(ifTrue).append(";\n");
+      code.append("  }\n  else {\n");
+      final String ifFalse = generate(node.getChild(2));
+      code.append("  ").append(t).append(" = ").append(ifFalse).append(";\n");
+      code.append("  }\n");
+      return t;
+    }
+
+    throw new NotCompilable();
+  }
+
+  private String generateInvocation(BSHMethodInvocation node) throws NotCompilable {
+    final String name = node.getNameNode().text;
+    final BSHArguments argsNode = node.getArgsNode();
+    final int arity = argsNode.jjtGetNumChildren();
+    final List<String> args = new ArrayList<>(arity);
+    for (int i = 0; i < arity; ++i) {
+      args.add(generate(argsNode.getChild(i)));
+    }
+
+    final int dot = name.indexOf('.');
+    if (dot < 0) {
+      final String function = name + "/" + arity;
+      if (!functions.contains(function)) {
+        throw new NotCompilable();
+      }
+      return assign("call(f, \"" + function + "\", new Object[] {" + String.join(", ", args) + "})");
+    }
+
+    // A method of a String variable
+    final String target = name.substring(0, dot);
+    final String signature = STRING_METHODS.get(name.substring(dot + 1) + "/" + arity);
+    if (signature == null || !stringVariables.contains(target)) {
+      throw new NotCompilable();
+    }
+
+    final StringBuilder call = new StringBuilder();
+    call.append("((String) v[").append(slot(target)).append("]).").append(name.substring(dot + 1)).append('(');
+    for (int i = 0; i < arity; ++i) {
+      if (i > 0) {
+        call.append(", ");
+      }
+      call.append(signature.charAt(i + 1) == 'I' ? "integer(" : "string(").append(args.get(i)).append(')');
+    }
+    call.append(')');
+
+    return assign(signature.charAt(0) == 'S' ? call.toString() : "new Primitive(" + call + ")");
+  }
+
+  /**
+   * @return the index of the value of a variable
+   */
+  private int slot(String name) throws NotCompilable {
+    if (!isIdentifier(name) || "this".equals(name) || "super".equals(name) || "global".equals(name)) {
+      throw new NotCompilable();
+    }
+
+    final int s = stringVariables.indexOf(name);
+    if (s >= 0) {
+      return variables.size() + s;
+    }
+
+    final int i = variables.indexOf(name);
+    if (i < 0) {
+      throw new NotCompilable();
+    }
+    return i;
+  }
+
+  private static boolean isIdentifier(String s) {
+    if (s.isEmpty() || !Character.isJavaIdentifierStart(s.charAt(0))) {
+      return false;
+    }
+    for (int i = 1; i < s.length(); ++i) {
+      if (!Character.isJavaIdentifierPart(s.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
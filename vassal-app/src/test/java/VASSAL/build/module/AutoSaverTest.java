@@ -0,0 +1,109 @@
+package VASSAL.build.module;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import VASSAL.tools.io.ZipWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AutoSaverTest {
+
+  @TempDir
+  File dir;
+
+  private File writeDelta(String generation, String... commands) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeUTF(generation);
+      for (final String s : commands) {
+        AutoSaver.writeRecord(out, s);
+      }
+    }
+
+    final File f = new File(dir, "delta");
+    Files.write(f.toPath(), bytes.toByteArray());
+    return f;
+  }
+
+  @Test
+  public void testReadDelta() throws IOException {
+    final File f = writeDelta("gen", "a", "", "b\u001bc\nd", "é");
+    assertThat(AutoSaver.readDelta(f, "gen"), contains("a", "", "b\u001bc\nd", "é"));
+  }
+
+  @Test
+  public void testOtherGeneration() throws IOException {
+    final File f = writeDelta("old", "a");
+    assertThat(AutoSaver.readDelta(f, "new"), is(empty()));
+    assertThat(AutoSaver.readDelta(f, null), is(empty()));
+    assertThat(AutoSaver.readDelta(new File(dir, "missing"), "old"), is(empty()));
+  }
+
+  @Test
+  public void testTruncatedRecord() throws IOException {
+    final File f = writeDelta("gen", "first", "second");
+
+    // Stopped partway through writing the second record
+    final byte[] bytes = Files.readAllBytes(f.toPath());
+    Files.write(f.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+    assertThat(AutoSaver.readDelta(f, "gen"), contains("first"));
+  }
+
+  @Test
+  public void testReadGeneration() throws IOException {
+    final File f = new File(dir, "snapshot");
+    try (ZipWriter zw = new ZipWriter(f)) {
+      zw.write("save".getBytes(StandardCharsets.UTF_8), GameState.SAVEFILE_ZIP_ENTRY);
+      zw.write("gen".getBytes(StandardCharsets.UTF_8), AutoSaver.GENERATION_ZIP_ENTRY);
+    }
+    assertThat(AutoSaver.readGeneration(f), equalTo("gen"));
+
+    try (ZipWriter zw = new ZipWriter(f)) {
+      zw.write("save".getBytes(StandardCharsets.UTF_8), GameState.SAVEFILE_ZIP_ENTRY);
+    }
+    assertThat(AutoSaver.readGeneration(f), is(nullValue()));
+  }
+
+  private File touch(String name, long modified) throws IOException {
+    final File f = new File(dir, name);
+    Files.write(f.toPath(), new byte[0]);
+    assertThat(f.setLastModified(modified), is(true));
+    return f;
+  }
+
+  @Test
+  public void testFindOrphan() throws IOException {
+    assertThat(AutoSaver.findOrphan(dir, "Game", (pid, start) -> false), is(nullValue()));
+
+    final File older = touch("Game.100-10.autosave", 1_000_000L);
+    final File newer = touch("Game.200-20.autosave", 2_000_000L);
+    touch("Game.200-20.autosave-delta", 3_000_000L);
+    touch("Game.300-30.autosave", 3_000_000L);
+    touch("Other Game.400-40.autosave", 4_000_000L);
+    touch("Game.500.autosave", 4_000_000L);
+    touch("Game.autosave", 4_000_000L);
+
+    // The most recent snapshot of a process which is not running
+    assertThat(AutoSaver.findOrphan(dir, "Game", (pid, start) -> pid == 300), is(equalTo(newer)));
+    assertThat(AutoSaver.findOrphan(dir, "Game", (pid, start) -> pid != 100), is(equalTo(older)));
+    assertThat(AutoSaver.findOrphan(dir, "Game", (pid, start) -> true), is(nullValue()));
+    assertThat(AutoSaver.findOrphan(new File(dir, "missing"), "Game", (pid, start) -> false), is(nullValue()));
+
+    // A process given the id of one which stopped is told apart by its start time
+    assertThat(AutoSaver.findOrphan(dir, "Game", (pid, start) -> pid == 300 || (pid == 200 && start == 21)), is(equalTo(newer)));
+  }
+}
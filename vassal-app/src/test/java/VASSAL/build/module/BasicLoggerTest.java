@@ -0,0 +1,174 @@
+package VASSAL.build.module;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import VASSAL.build.GameModule;
+import VASSAL.command.Command;
+import VASSAL.command.CommandEnvelope;
+import VASSAL.command.CommandTreeReader;
+import VASSAL.command.CommandTreeWriter;
+import VASSAL.tools.SequenceEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+public class BasicLoggerTest {
+
+  private static final char SEP = 27;
+  private static final String TEXT = "text\t";
+
+  private final BasicLogger logger = new BasicLogger();
+
+  /** Reference copy of GameModule.encodeSubCommand(), knowing only the logger and TextCommands */
+  private String encodeSubCommand(Command c) {
+    return c instanceof TextCommand ? TEXT + ((TextCommand) c).text : logger.encode(c);
+  }
+
+  /** Reference copy of GameModule.encode() */
+  private String encode(Command c) {
+    String s = encodeSubCommand(c);
+    final Command[] sub = c.getSubCommands();
+    if (sub.length > 0) {
+      final SequenceEncoder se = new SequenceEncoder(s, SEP);
+      for (final Command command : sub) {
+        se.append(encode(command));
+      }
+      s = se.getValue();
+    }
+    return s;
+  }
+
+  private Command decodeSubCommand(String s) {
+    return s.startsWith(TEXT) ? new TextCommand(s.substring(TEXT.length())) : logger.decode(s);
+  }
+
+  /** Reference copy of GameModule.decode() */
+  private Command decode(String command) {
+    Command c;
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(command, SEP);
+    final String first = st.nextToken();
+    if (command.equals(first)) {
+      c = decodeSubCommand(first);
+    }
+    else {
+      Command next;
+      c = decode(first);
+      while (st.hasMoreTokens()) {
+        next = decode(st.nextToken());
+        c = c == null ? next : c.append(next);
+      }
+    }
+    return c;
+  }
+
+  private GameModule mockModule() throws IOException {
+    final GameModule gm = mock(GameModule.class);
+    when(gm.encode(any(Command.class))).thenAnswer(i -> encode(i.getArgument(0)));
+    when(gm.decode(anyString())).thenAnswer(i -> decode(i.getArgument(0)));
+    when(gm.encode(any(Command.class), any(Writer.class))).thenAnswer(i ->
+      new CommandTreeWriter(SEP, this::encodeSubCommand, this::encode).write(i.getArgument(0), i.getArgument(1)));
+    when(gm.decode(any(Reader.class), any())).thenAnswer(i ->
+      new CommandTreeReader(SEP, this::decodeSubCommand, this::decode).read(i.getArgument(0), i.getArgument(1)));
+    when(gm.encodeEnvelope(any(Command.class), any(Writer.class))).thenAnswer(i ->
+      new CommandEnvelope(this::encodeSubCommand, this::decodeSubCommand).write(i.getArgument(0), i.getArgument(1)));
+    when(gm.decodeEnvelope(any(Reader.class), any())).thenAnswer(i ->
+      new CommandEnvelope(this::encodeSubCommand, this::decodeSubCommand).readTree(i.getArgument(0), i.getArgument(1)));
+    return gm;
+  }
+
+  /** @return a move made up of several Commands, some with sub-commands of their own */
+  private static Command move(int n) {
+    final Command move = new TextCommand("move " + n);
+    final Command first = new TextCommand("first part of move " + n);
+    first.append(new TextCommand("detail of move " + n));
+    move.append(first);
+    move.append(new TextCommand("second part of move " + n));
+    return move;
+  }
+
+  @Test
+  public void testLogRoundTrip() throws IOException {
+    checkLogRoundTrip(false);
+  }
+
+  @Test
+  public void testLogEnvelopeRoundTrip() throws IOException {
+    checkLogRoundTrip(true);
+  }
+
+  private void checkLogRoundTrip(boolean envelope) throws IOException {
+    try (MockedStatic<GameModule> staticGm = Mockito.mockStatic(GameModule.class)) {
+      final GameModule gm = mockModule();
+      staticGm.when(GameModule::getGameModule).thenReturn(gm);
+
+      // A logfile holds the state at the start of the log, followed by one LogCommand for each move
+      final Command log = new TextCommand("beginning state");
+      final List<String> moves = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        final Command move = move(i);
+        moves.add(encode(move));
+        log.append(new BasicLogger.LogCommand(move, new ArrayList<>(), logger.stepAction));
+      }
+
+      final ByteArrayOutputStream save = new ByteArrayOutputStream();
+      GameState.encodeSave(log, save, envelope);
+
+      final ByteArrayOutputStream zip = new ByteArrayOutputStream();
+      try (ZipOutputStream out = new ZipOutputStream(zip)) {
+        out.putNextEntry(new ZipEntry(envelope ? GameState.SAVEFILE_ENVELOPE_ZIP_ENTRY : GameState.SAVEFILE_ZIP_ENTRY));
+        out.write(save.toByteArray());
+      }
+
+      // Loading the log queues each move as a single step to replay, as it did before saves were streamed
+      final Command loaded = new GameState().decodeSavedGame(new ByteArrayInputStream(zip.toByteArray()));
+      loaded.execute();
+
+      final List<String> steps = new ArrayList<>();
+      for (final Command step : logger.logInput) {
+        steps.add(encode(step));
+      }
+      assertThat(logger.logInput.size(), is(moves.size()));
+      assertThat(steps, contains(moves.toArray()));
+    }
+  }
+
+  /** A Command holding some text, standing in for the moves of a game */
+  private static class TextCommand extends Command {
+    private final String text;
+
+    TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+
+    @Override
+    public boolean isNull() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import VASSAL.build.module.Map;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.PieceFilter;
+import VASSAL.script.expression.BeanShellExpression;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Dimension;
+import java.util.List;
+
+public class PieceAggregatesTest {
+
+  private static final String SIDE = "Side";
+  private static final String STRENGTH = "Strength";
+
+  private IndexManager indexManager;
+  private Map map;
+  private GamePiece a;
+  private GamePiece b;
+  private GamePiece c;
+
+  private static Map mockMap() {
+    final Map map = mock(Map.class);
+    when(map.getBoards()).thenReturn(List.of());
+    when(map.getEdgeBuffer()).thenReturn(new Dimension(0, 0));
+    return map;
+  }
+
+  private static GamePiece mockPiece(String id, String side, String strength, String zone) {
+    final GamePiece p = mock(GamePiece.class);
+    when(p.getId()).thenReturn(id);
+    when(p.getProperty(SIDE)).thenReturn(side);
+    when(p.getProperty(STRENGTH)).thenReturn(strength);
+    when(p.getProperty(BasicPiece.CURRENT_ZONE)).thenReturn(zone);
+    return p;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static PieceFilter alliesFilter(String expression) {
+    final BeanShellExpression.BshFilter filter = mock(BeanShellExpression.BshFilter.class);
+    when(filter.toBeanShellString()).thenReturn(expression);
+    when(filter.accept(any(GamePiece.class))).thenAnswer(i -> "Allies".equals(((GamePiece) i.getArgument(0)).getProperty(SIDE)));
+    return filter;
+  }
+
+  @BeforeEach
+  public void setUp() {
+    indexManager = new IndexManager();
+    indexManager.setIndexedProperties(List.of(SIDE, STRENGTH));
+    indexManager.setAggregatesEnabled(true);
+
+    map = mockMap();
+    a = mockPiece("a", "Allies", "3", "North");
+    b = mockPiece("b", "Axis", "5", "North");
+    c = mockPiece("c", "Allies", "2", "South");
+    when(map.getAllPieces()).thenReturn(new GamePiece[] {a, b, c});
+    indexManager.pieceMoved(a, map);
+    indexManager.pieceMoved(b, map);
+    indexManager.pieceMoved(c, map);
+  }
+
+  @Test
+  public void testTotalsFollowChanges() {
+    final PieceFilter allies = alliesFilter("Side == \"Allies\"");
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, null, true), is(10));
+    assertThat(indexManager.getTotal(map, null, null, "", allies, false), is(2));
+    assertThat(indexManager.getTotal(map, BasicPiece.CURRENT_ZONE, "North", STRENGTH, null, true), is(8));
+    assertThat(indexManager.getTotal(map, BasicPiece.CURRENT_ZONE, "North", null, allies, false), is(1));
+
+    // A change of state
+    when(a.getProperty(STRENGTH)).thenReturn("7");
+    indexManager.pieceChanged(a, map);
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, null, true), is(14));
+    assertThat(indexManager.getTotal(map, BasicPiece.CURRENT_ZONE, "North", STRENGTH, null, true), is(12));
+
+    // A move from one zone to another
+    when(b.getProperty(BasicPiece.CURRENT_ZONE)).thenReturn("South");
+    indexManager.pieceMoved(b, map);
+    assertThat(indexManager.getTotal(map, BasicPiece.CURRENT_ZONE, "North", STRENGTH, null, true), is(7));
+    assertThat(indexManager.getTotal(map, BasicPiece.CURRENT_ZONE, "South", STRENGTH, null, true), is(7));
+
+    // A change of side that the filter sees
+    when(b.getProperty(SIDE)).thenReturn("Allies");
+    indexManager.pieceChanged(b, map);
+    assertThat(indexManager.getTotal(map, null, null, "", allies, false), is(3));
+
+    // A move to another map
+    final Map other = mockMap();
+    indexManager.pieceMoved(c, other);
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, null, true), is(12));
+    assertThat(indexManager.getTotal(map, null, null, "", allies, false), is(2));
+
+    indexManager.pieceRemoved(a, map);
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, null, true), is(5));
+    assertThat(indexManager.getTotal(map, null, null, "", allies, false), is(1));
+  }
+
+  @Test
+  public void testTotalsNotKept() {
+    // Property not indexed
+    assertThat(indexManager.getTotal(map, null, null, "Morale", null, true), is(nullValue()));
+
+    // Filter reading a property which is not indexed, or calling a function
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, alliesFilter("Morale > 2"), true), is(nullValue()));
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, alliesFilter("GetProperty(\"Side\") == \"Allies\""), true), is(nullValue()));
+
+    // Not a BeanShell filter
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, mock(PieceFilter.class), true), is(nullValue()));
+
+    // Turned off
+    indexManager.setAggregatesEnabled(false);
+    assertThat(indexManager.getTotal(map, null, null, STRENGTH, null, true), is(nullValue()));
+  }
+}
@@ -0,0 +1,216 @@
+package VASSAL.build.module.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+import VASSAL.build.module.properties.PropertyDependencies;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.Embellishment;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PieceBoundsIndexTest {
+
+  private final Map<GamePiece, Rectangle> pieceBounds = new HashMap<>();
+
+  private GamePiece createPiece(int x, int y, int w, int h) {
+    final GamePiece p = mock(GamePiece.class);
+    pieceBounds.put(p, new Rectangle(x, y, w, h));
+    return p;
+  }
+
+  @Test
+  public void regionTest() {
+    final PieceBoundsIndex index = new PieceBoundsIndex(p -> new Rectangle(pieceBounds.get(p)));
+
+    final GamePiece p1 = createPiece(0, 0, 50, 50);
+    final GamePiece p2 = createPiece(1000, 1000, 50, 50);
+    final GamePiece p3 = createPiece(-300, -300, 75, 75);
+    final GamePiece big = createPiece(-10000, -10000, 20000, 20000);
+
+    index.addOrUpdatePiece(p1);
+    index.addOrUpdatePiece(p2);
+    index.addOrUpdatePiece(p3);
+    index.addOrUpdatePiece(big);
+    assertThat(index.getCount(), is(4));
+
+    assertThat(index.getPieces(new Rectangle(0, 0, 100, 100)), containsInAnyOrder(p1, big));
+    assertThat(index.getPieces(new Rectangle(-400, -400, 2000, 2000)), containsInAnyOrder(p1, p2, p3, big));
+    assertThat(index.getPieces(new Rectangle(-250, -250, 10, 10)), containsInAnyOrder(p3, big));
+    assertThat(index.getPieces(new Rectangle(20000, 20000, 10, 10)).isEmpty(), is(true));
+
+    assertThat(index.getPieces(new Point(1025, 1025)), containsInAnyOrder(p2, big));
+    assertThat(index.getPieces(new Point(1100, 1100)), containsInAnyOrder(big));
+
+    // Move a piece, the index is not updated until told about it
+    pieceBounds.get(p1).setLocation(1010, 1010);
+    assertThat(index.getPieces(new Point(1020, 1020)), containsInAnyOrder(p2, big));
+    index.updatePiece(p1);
+    assertThat(index.getPieces(new Point(1020, 1020)), containsInAnyOrder(p1, p2, big));
+    assertThat(index.getPieces(new Rectangle(0, 0, 100, 100)), containsInAnyOrder(big));
+
+    // Pieces not in the index are not added by an update
+    final GamePiece p4 = createPiece(0, 0, 10, 10);
+    index.updatePiece(p4);
+    assertThat(index.contains(p4), is(false));
+
+    index.removePiece(p2);
+    index.removePiece(big);
+    assertThat(index.getPieces(new Point(1020, 1020)), containsInAnyOrder(p1));
+    assertThat(index.contains(p2), is(false));
+
+    index.clear();
+    assertThat(index.getCount(), is(0));
+    assertThat(index.getPieces(new Rectangle(-400, -400, 2000, 2000)).isEmpty(), is(true));
+  }
+
+  @Test
+  public void topDownTest() {
+    final PieceBoundsIndex index = new PieceBoundsIndex(p -> pieceBounds.get(p) == null ? null : new Rectangle(pieceBounds.get(p)));
+
+    final GamePiece bottom = createPiece(0, 0, 100, 100);
+    final GamePiece elsewhere = createPiece(500, 500, 50, 50);
+    final GamePiece top = createPiece(50, 50, 100, 100);
+    final GamePiece noPosition = mock(GamePiece.class);
+
+    index.addOrUpdatePiece(bottom);
+    index.addOrUpdatePiece(elsewhere);
+    index.addOrUpdatePiece(top);
+    index.addOrUpdatePiece(noPosition);
+
+    final GamePiece[] drawOrder = {bottom, noPosition, elsewhere, top};
+    assertThat(index.getPiecesTopDown(new Point(75, 75), drawOrder), contains(top, noPosition, bottom));
+    assertThat(index.getPiecesTopDown(new Point(10, 10), drawOrder), contains(noPosition, bottom));
+    assertThat(index.getPiecesTopDown(new Point(1000, 1000), drawOrder), contains(noPosition));
+
+    // Only pieces in the draw order are returned, as when a layer is hidden
+    assertThat(index.getPiecesTopDown(new Point(75, 75), new GamePiece[] {bottom}), contains(bottom));
+  }
+
+  @Test
+  public void regionInDrawOrderTest() {
+    final PieceBoundsIndex index = new PieceBoundsIndex(p -> pieceBounds.get(p) == null ? null : new Rectangle(pieceBounds.get(p)));
+
+    final GamePiece bottom = createPiece(0, 0, 100, 100);
+    final GamePiece elsewhere = createPiece(500, 500, 50, 50);
+    final GamePiece top = createPiece(50, 50, 100, 100);
+    final GamePiece noPosition = mock(GamePiece.class);
+    final GamePiece unknown = createPiece(1000, 1000, 10, 10);
+
+    index.addOrUpdatePiece(bottom);
+    index.addOrUpdatePiece(elsewhere);
+    index.addOrUpdatePiece(top);
+    index.addOrUpdatePiece(noPosition);
+
+    // Pieces the index has no bounds for are always included
+    final GamePiece[] drawOrder = {bottom, noPosition, elsewhere, unknown, top};
+    assertThat(index.getPieces(new Rectangle(60, 60, 10, 10), drawOrder), contains(bottom, noPosition, unknown, top));
+    assertThat(index.getPieces(new Rectangle(510, 510, 10, 10), drawOrder), contains(noPosition, elsewhere, unknown));
+  }
+
+  @Test
+  public void propertyChangedTest() {
+    final Map<GamePiece, String> reads = new HashMap<>();
+    final PieceBoundsIndex index = new PieceBoundsIndex(p -> {
+      final String name = reads.get(p);
+      if ("random".equals(name)) {
+        PropertyDependencies.uncacheable();
+      }
+      else if (name != null) {
+        PropertyDependencies.propertyRead(name);
+      }
+      return new Rectangle(pieceBounds.get(p));
+    });
+
+    final GamePiece label = createPiece(0, 0, 10, 10);
+    final GamePiece other = createPiece(0, 0, 10, 10);
+    final GamePiece random = createPiece(0, 0, 10, 10);
+    reads.put(label, "Turn");
+    reads.put(other, "Phase");
+    reads.put(random, "random");
+    index.addOrUpdatePiece(label);
+    index.addOrUpdatePiece(other);
+    index.addOrUpdatePiece(random);
+    assertThat(index.getPieces(new Point(50, 50)).isEmpty(), is(true));
+
+    // Only the pieces which read a property, or which read something that cannot be recorded, are updated
+    pieceBounds.get(label).setSize(100, 100);
+    pieceBounds.get(other).setSize(100, 100);
+    pieceBounds.get(random).setSize(100, 100);
+    PieceBoundsIndex.propertyChanged("Turn");
+    assertThat(index.getPieces(new Point(50, 50)), containsInAnyOrder(label, random));
+
+    PieceBoundsIndex.propertyChanged("Phase");
+    assertThat(index.getPieces(new Point(50, 50)), containsInAnyOrder(label, other, random));
+  }
+
+  /** A piece class standing in for one from module code, when loaded by a {@link ModuleClassLoader} */
+  public static class CustomPiece extends BasicPiece {
+  }
+
+  /** Defines classes itself, as a module's DataArchive does, instead of leaving them to its parent */
+  private static class ModuleClassLoader extends ClassLoader {
+    ModuleClassLoader() {
+      super(PieceBoundsIndexTest.class.getClassLoader());
+    }
+
+    Class<?> define(Class<?> c) throws Exception {
+      try (InputStream in = getParent().getResourceAsStream(c.getName().replace('.', '/') + ".class")) {
+        final byte[] b = in.readAllBytes();
+        return defineClass(c.getName(), b, 0, b.length);
+      }
+    }
+  }
+
+  @Test
+  public void reportsChangesTest() throws Exception {
+    final GamePiece basic = new BasicPiece();
+    final GamePiece trait = new Embellishment(Embellishment.ID, basic);
+    assertThat(PieceBoundsIndex.reportsChanges(basic), is(true));
+    assertThat(PieceBoundsIndex.reportsChanges(trait), is(true));
+
+    final GamePiece custom = (GamePiece) new ModuleClassLoader().define(CustomPiece.class).getDeclaredConstructor().newInstance();
+    assertThat(PieceBoundsIndex.reportsChanges(custom), is(false));
+    assertThat(PieceBoundsIndex.reportsChanges(new Embellishment(Embellishment.ID, custom)), is(false));
+
+    final Stack stack = new Stack(trait);
+    assertThat(PieceBoundsIndex.reportsChanges(stack), is(true));
+    stack.add(custom);
+    assertThat(PieceBoundsIndex.reportsChanges(stack), is(false));
+  }
+
+  @Test
+  public void invalidateAllTest() {
+    final PieceBoundsIndex index = new PieceBoundsIndex(p -> pieceBounds.get(p) == null ? null : new Rectangle(pieceBounds.get(p)));
+
+    final GamePiece label = createPiece(0, 0, 10, 10);
+    final GamePiece noPosition = mock(GamePiece.class);
+    index.addOrUpdatePiece(label);
+    index.addOrUpdatePiece(noPosition);
+    assertThat(index.getPieces(new Point(50, 50)).isEmpty(), is(true));
+    assertThat(index.getUnbounded(), containsInAnyOrder(noPosition));
+
+    // A piece grows without a change of state, such as a label showing a Global Property
+    pieceBounds.get(label).setSize(100, 100);
+    assertThat(index.getPieces(new Point(50, 50)).isEmpty(), is(true));
+    PieceBoundsIndex.invalidateAll();
+    assertThat(index.getPieces(new Point(50, 50)), containsInAnyOrder(label));
+
+    // A piece without bounds is still known to the index, and is updated when it gets some
+    assertThat(index.contains(noPosition), is(true));
+    pieceBounds.put(noPosition, new Rectangle(40, 40, 20, 20));
+    index.updatePiece(noPosition);
+    assertThat(index.getPieces(new Point(50, 50)), containsInAnyOrder(label, noPosition));
+    assertThat(index.getUnbounded().isEmpty(), is(true));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import VASSAL.build.module.Map;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.GamePiece;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Dimension;
+import java.util.List;
+
+public class VassalMapPieceIndexTest {
+
+  private static final String SIDE = "Side";
+
+  private static Map mockMap() {
+    final Map map = mock(Map.class);
+    when(map.getBoards()).thenReturn(List.of());
+    when(map.getEdgeBuffer()).thenReturn(new Dimension(0, 0));
+    return map;
+  }
+
+  private static GamePiece mockPiece(String id, Object side) {
+    final GamePiece p = mock(GamePiece.class);
+    when(p.getId()).thenReturn(id);
+    when(p.getProperty(SIDE)).thenReturn(side);
+    return p;
+  }
+
+  @Test
+  public void testDeclaredProperty() {
+    final VassalMapPieceIndex index = new VassalMapPieceIndex(mockMap(), List.of(SIDE));
+    assertThat(index.isIndexed(SIDE), is(true));
+    assertThat(index.isIndexed(BasicPiece.CURRENT_ZONE), is(true));
+    assertThat(index.isIndexed("Strength"), is(false));
+
+    final GamePiece a = mockPiece("a", "Allies");
+    final GamePiece b = mockPiece("b", "Axis");
+    final GamePiece c = mockPiece("c", 1);
+    index.addOrUpdatePiece(a);
+    index.addOrUpdatePiece(b);
+    index.addOrUpdatePiece(c);
+
+    assertThat(index.getPieces(SIDE, "Allies"), containsInAnyOrder(a));
+    assertThat(index.getPieces(SIDE, "Axis"), containsInAnyOrder(b));
+    // Non-String values are indexed by their String form, as Fast Match compares them
+    assertThat(index.getPieces(SIDE, "1"), containsInAnyOrder(c));
+
+    // A state change is picked up without the piece moving
+    when(b.getProperty(SIDE)).thenReturn("Allies");
+    index.updateProperties(b);
+    assertThat(index.getPieces(SIDE, "Allies"), containsInAnyOrder(a, b));
+    assertThat(index.getPieces(SIDE, "Axis"), is(empty()));
+
+    index.removePiece(a);
+    assertThat(index.getPieces(SIDE, "Allies"), containsInAnyOrder(b));
+  }
+
+  @Test
+  public void testUndeclaredProperty() {
+    final VassalMapPieceIndex index = new VassalMapPieceIndex(mockMap());
+    final GamePiece a = mockPiece("a", "Allies");
+    index.addOrUpdatePiece(a);
+    assertThat(index.isIndexed(SIDE), is(false));
+    assertThat(index.getPieces(SIDE, "Allies"), is(empty()));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.jupiter.api.Test;
+
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.Properties;
+import VASSAL.tools.imageop.ImageOp;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ZoomPrefetcherTest {
+
+  private static void runAll(Queue<Runnable> q) {
+    while (!q.isEmpty()) {
+      q.remove().run();
+    }
+  }
+
+  @Test
+  public void testFetchesImages() {
+    final Queue<Runnable> q = new ArrayDeque<>();
+    final ZoomPrefetcher zp = new ZoomPrefetcher(null, q::add);
+
+    final ImageOp a = mock(ImageOp.class);
+    final ImageOp b = mock(ImageOp.class);
+    zp.schedule(List.of(a, b));
+    runAll(q);
+
+    verify(a).getImage();
+    verify(b).getImage();
+  }
+
+  @Test
+  public void testCancel() {
+    final Queue<Runnable> q = new ArrayDeque<>();
+    final ZoomPrefetcher zp = new ZoomPrefetcher(null, q::add);
+
+    final ImageOp a = mock(ImageOp.class);
+    final ImageOp b = mock(ImageOp.class);
+    zp.schedule(List.of(a));
+
+    // a newer prefetch supersedes the images still queued
+    zp.cancel();
+    zp.schedule(List.of(b));
+    runAll(q);
+
+    verify(a, never()).getImage();
+    verify(b).getImage();
+  }
+
+  @Test
+  public void testCollectImageOps() {
+    final ImageOp op = mock(ImageOp.class);
+    final BasicPiece p = mock(BasicPiece.class);
+    when(p.getImageOp(1.5)).thenReturn(op);
+
+    final List<ImageOp> ops = new ArrayList<>();
+    ZoomPrefetcher.collectImageOps(p, 1.5, ops);
+    assertThat(ops, contains(op));
+
+    // nothing is fetched for a piece this player cannot see
+    when(p.getProperty(Properties.OBSCURED_TO_ME)).thenReturn(Boolean.TRUE);
+    ops.clear();
+    ZoomPrefetcher.collectImageOps(p, 1.5, ops);
+    assertThat(ops, empty());
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map.boardPicker.board;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A program comparing the time taken to snap points to the nearest region
+ * by scanning every region, as RegionGrid used to, and with a
+ * {@link RegionIndex}.
+ *
+ * Usage: RegionIndexBenchmark [regions] [queries]
+ */
+public class RegionIndexBenchmark {
+
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+    final int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+    // Regions scattered over a large irregular-area map
+    final Random r = new Random(1);
+    final List<Point> points = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      points.add(new Point(r.nextInt(8000), r.nextInt(6000)));
+    }
+
+    final Point[] qs = new Point[queries];
+    for (int i = 0; i < queries; ++i) {
+      qs[i] = new Point(r.nextInt(8000), r.nextInt(6000));
+    }
+
+    for (int rep = 0; rep < 3; ++rep) {
+      long t = System.nanoTime();
+      long sum = 0;
+      for (final Point q : qs) {
+        sum += scan(points, q);
+      }
+      final long scanNanos = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      final RegionIndex index = new RegionIndex(points);
+      final long buildNanos = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      long sum2 = 0;
+      for (final Point q : qs) {
+        sum2 += index.nearest(q);
+      }
+      final long indexNanos = System.nanoTime() - t;
+
+      if (sum != sum2) {
+        throw new IllegalStateException("index and scan disagree");
+      }
+
+      System.out.printf(
+        "%d regions: scan %.0f ns/query, index %.0f ns/query (built in %.2f ms)%n",
+        n, (double) scanNanos / queries, (double) indexNanos / queries,
+        buildNanos / 1e6
+      );
+    }
+  }
+
+  private static int scan(List<Point> points, Point p) {
+    int best = -1;
+    double minDistSq = Double.MAX_VALUE;
+    for (int i = 0; i < points.size(); ++i) {
+      final Point c = points.get(i);
+      final double distSq = (p.x - c.x) * (p.x - c.x) + (p.y - c.y) * (p.y - c.y);
+      if (distSq < minDistSq) {
+        minDistSq = distSq;
+        best = i;
+      }
+    }
+    return best;
+  }
+}
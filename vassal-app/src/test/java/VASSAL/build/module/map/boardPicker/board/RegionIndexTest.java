@@ -0,0 +1,60 @@
+package VASSAL.build.module.map.boardPicker.board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class RegionIndexTest {
+
+  /** The first of the nearest points, as RegionGrid used to find it */
+  private static int scan(List<Point> points, Point p) {
+    int best = -1;
+    long bestDistSq = Long.MAX_VALUE;
+    for (int i = 0; i < points.size(); ++i) {
+      final long dx = p.x - points.get(i).x;
+      final long dy = p.y - points.get(i).y;
+      if (dx * dx + dy * dy < bestDistSq) {
+        bestDistSq = dx * dx + dy * dy;
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(-1, new RegionIndex(List.of()).nearest(new Point(3, 4)));
+  }
+
+  @Test
+  public void testSinglePoint() {
+    final RegionIndex index = new RegionIndex(List.of(new Point(10, 10)));
+    assertEquals(0, index.nearest(new Point(-5000, 7000)));
+    assertEquals(0, index.nearest(new Point(10, 10)));
+  }
+
+  @Test
+  public void testSameAsScan() {
+    final Random r = new Random(42);
+    for (int round = 0; round < 20; ++round) {
+      // A coarse lattice gives plenty of ties, and of duplicate points
+      final List<Point> points = new ArrayList<>();
+      final int n = 1 + r.nextInt(500);
+      final int spread = 1 + r.nextInt(2000);
+      for (int i = 0; i < n; ++i) {
+        points.add(new Point(r.nextInt(spread) / 10 * 10, r.nextInt(spread / 3 + 1) / 10 * 10));
+      }
+
+      final RegionIndex index = new RegionIndex(points);
+      for (int q = 0; q < 500; ++q) {
+        final Point p = new Point(r.nextInt(spread * 2) - spread / 2, r.nextInt(spread * 2) - spread / 2);
+        assertEquals(scan(points, p), index.nearest(p), p.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package VASSAL.build.module.map.boardPicker.board;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Point;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
+
+public class ZoneIndexTest {
+
+  private static class PolygonZone extends Zone {
+    PolygonZone(Polygon p) {
+      myPolygon = p;
+    }
+  }
+
+  /** A zone which also contains every point left of x = 0 */
+  private static class WestZone extends PolygonZone {
+    WestZone() {
+      super(new Polygon());
+    }
+
+    @Override
+    public boolean contains(Point p) {
+      return p.x < 0;
+    }
+  }
+
+  private static Zone scan(List<Zone> zones, Point p) {
+    for (final Zone zone : zones) {
+      if (zone.contains(p)) {
+        return zone;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(new ZoneIndex(List.of()).find(new Point(1, 2)));
+    assertNull(new ZoneIndex(List.of(new PolygonZone(new Polygon()))).find(new Point(0, 0)));
+  }
+
+  @Test
+  public void testSameAsScan() {
+    final Random r = new Random(42);
+    for (int round = 0; round < 20; ++round) {
+      // Overlapping triangles, so the first match matters
+      final List<Zone> zones = new ArrayList<>();
+      final int n = 1 + r.nextInt(200);
+      for (int i = 0; i < n; ++i) {
+        final int x = r.nextInt(3000) - 500;
+        final int y = r.nextInt(2000) - 500;
+        final int s = 1 + r.nextInt(400);
+        zones.add(new PolygonZone(new Polygon(
+          new int[] { x, x + s, x + r.nextInt(s) },
+          new int[] { y, y + r.nextInt(s), y + s },
+          3
+        )));
+      }
+      if (round % 2 == 0) {
+        zones.add(r.nextInt(zones.size()), new WestZone());
+      }
+
+      final ZoneIndex index = new ZoneIndex(zones);
+      for (int q = 0; q < 2000; ++q) {
+        final Point p = new Point(r.nextInt(4000) - 1000, r.nextInt(3000) - 1000);
+        assertSame(scan(zones, p), index.find(p), p.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import VASSAL.build.GameModule;
+import VASSAL.command.Command;
+import VASSAL.command.NullCommand;
+import VASSAL.tools.SequenceEncoder;
+import org.junit.jupiter.api.Test;
+
+public class GlobalPropertyDecoderTest {
+
+  private static GlobalProperty mockProperty(String id) {
+    final GlobalProperty p = mock(GlobalProperty.class);
+    when(p.getPropertyId()).thenReturn(id);
+    when(p.getDecodePrefixes()).thenReturn(new String[0]);
+    return p;
+  }
+
+  private static String command(String id) {
+    return new SequenceEncoder(GlobalProperty.COMMAND_PREFIX, ';').append(id).append("5").append("").getValue();
+  }
+
+  @Test
+  public void testDecodeById() {
+    final GlobalPropertyDecoder decoder = GlobalPropertyDecoder.getInstance(mock(GameModule.class));
+    final GlobalProperty a = mockProperty("A");
+    final GlobalProperty b = mockProperty("B");
+    final GlobalProperty otherA = mockProperty("A");
+    decoder.add(a);
+    decoder.add(b);
+    decoder.add(otherA);
+
+    // Only the properties with the id are asked, in the order they were added, as when two Maps hold an "A"
+    final Command c = new NullCommand();
+    final String forA = command("A");
+    when(otherA.decode(forA)).thenReturn(c);
+    assertThat(decoder.decode(forA), sameInstance(c));
+    verify(a).decode(forA);
+    verify(b, never()).decode(anyString());
+
+    assertThat(decoder.decode("Other\t;A;5;"), nullValue());
+
+    // A property renamed since the ids were looked at
+    final Command renamed = new NullCommand();
+    final String forC = command("C");
+    when(b.getPropertyId()).thenReturn("C");
+    when(b.decode(forC)).thenReturn(renamed);
+    assertThat(decoder.decode(forC), sameInstance(renamed));
+
+    decoder.remove(otherA);
+    assertThat(decoder.decode(forA), nullValue());
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import VASSAL.build.GameModule;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.Stack;
+import VASSAL.i18n.Resources;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class PropertyDependenciesTest {
+
+  @AfterEach
+  public void tearDown() {
+    PropertyDependencies.setEnabled(true);
+  }
+
+  private static PropertyDependencies.Dependencies record(String... reads) {
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    for (final String name : reads) {
+      PropertyDependencies.propertyRead(name);
+    }
+    return PropertyDependencies.stopRecording(r);
+  }
+
+  @Test
+  public void currentUntilAPropertyReadChanges() {
+    final PropertyDependencies.Dependencies d = record("Turn", "Phase"); //NON-NLS
+    assertThat(d.isCurrent(), is(true));
+
+    PropertyDependencies.propertyChanged("Weather"); //NON-NLS
+    assertThat(d.isCurrent(), is(true));
+
+    PropertyDependencies.propertyChanged("Phase"); //NON-NLS
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void notCurrentOnceStateChanges() {
+    final PropertyDependencies.Dependencies d = record("Turn"); //NON-NLS
+    PropertyDependencies.stateChanged();
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void currentUntilAPieceReadChanges() {
+    final BasicPiece read = new BasicPiece();
+    final BasicPiece other = new BasicPiece();
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    PropertyDependencies.pieceRead(read);
+    final PropertyDependencies.Dependencies d = PropertyDependencies.stopRecording(r);
+
+    PropertyDependencies.stateChanged(other);
+    assertThat(d.isCurrent(), is(true));
+
+    PropertyDependencies.stateChanged(read);
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void notCurrentOnceAnyPieceChangesIfAnyRead() {
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    PropertyDependencies.anyPieceRead();
+    final PropertyDependencies.Dependencies d = PropertyDependencies.stopRecording(r);
+
+    PropertyDependencies.propertyChanged("Weather"); //NON-NLS
+    assertThat(d.isCurrent(), is(true));
+
+    PropertyDependencies.stateChanged(new BasicPiece());
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void stackChangesAreChangesToItsPieces() {
+    final BasicPiece p = new BasicPiece();
+    final Stack s = new Stack(p);
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    PropertyDependencies.pieceRead(p);
+    final PropertyDependencies.Dependencies d = PropertyDependencies.stopRecording(r);
+
+    PropertyDependencies.stateChanged(s);
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void notCurrentIfChangedWhileRecording() {
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    PropertyDependencies.propertyRead("Turn"); //NON-NLS
+    PropertyDependencies.propertyChanged("Turn"); //NON-NLS
+    assertThat(PropertyDependencies.stopRecording(r).isCurrent(), is(false));
+  }
+
+  @Test
+  public void innerRecordingsAddToOuter() {
+    final PropertyDependencies.Recording outer = PropertyDependencies.startRecording();
+    final PropertyDependencies.Dependencies inner = record("Supply"); //NON-NLS
+    final PropertyDependencies.Dependencies d = PropertyDependencies.stopRecording(outer);
+
+    PropertyDependencies.propertyChanged("Supply"); //NON-NLS
+    assertThat(inner.isCurrent(), is(false));
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void reusedValuesAddToOuter() {
+    final PropertyDependencies.Dependencies inner = record("Supply"); //NON-NLS
+
+    final PropertyDependencies.Recording outer = PropertyDependencies.startRecording();
+    PropertyDependencies.reused(inner);
+    final PropertyDependencies.Dependencies d = PropertyDependencies.stopRecording(outer);
+
+    PropertyDependencies.propertyChanged("Supply"); //NON-NLS
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void reusedPieceReadsAddToOuter() {
+    final BasicPiece p = new BasicPiece();
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    PropertyDependencies.pieceRead(p);
+    final PropertyDependencies.Dependencies inner = PropertyDependencies.stopRecording(r);
+
+    final PropertyDependencies.Recording outer = PropertyDependencies.startRecording();
+    PropertyDependencies.reused(inner);
+    final PropertyDependencies.Dependencies d = PropertyDependencies.stopRecording(outer);
+
+    PropertyDependencies.stateChanged(p);
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void localeChangesAreReported() {
+    final PropertyDependencies.Dependencies d = record(GameModule.MODULE_CURRENT_LOCALE);
+    Resources.setLocale(Resources.getLocale());
+    assertThat(d.isCurrent(), is(false));
+  }
+
+  @Test
+  public void uncacheable() {
+    final PropertyDependencies.Recording outer = PropertyDependencies.startRecording();
+    final PropertyDependencies.Recording inner = PropertyDependencies.startRecording();
+    PropertyDependencies.uncacheable();
+    assertThat(PropertyDependencies.stopRecording(inner), is(nullValue()));
+    assertThat(PropertyDependencies.stopRecording(outer), is(nullValue()));
+
+    // Not recording, so nothing to mark
+    PropertyDependencies.uncacheable();
+    assertThat(record(), is(notNullValue()));
+  }
+
+  @Test
+  public void disabled() {
+    final PropertyDependencies.Dependencies d = record();
+    PropertyDependencies.setEnabled(false);
+    assertThat(d.isCurrent(), is(false));
+    assertThat(record(), is(nullValue()));
+  }
+
+  @Test
+  public void statistics() {
+    PropertyDependencies.resetStatistics();
+    // Recording alone is not counted, as it may be for something other than a value, such as the bounds of a piece
+    final PropertyDependencies.Dependencies d = record();
+    assertThat(PropertyDependencies.getMisses(), is(0L));
+    PropertyDependencies.evaluated();
+    PropertyDependencies.reused(d);
+    PropertyDependencies.reused(d);
+    assertThat(PropertyDependencies.getMisses(), is(1L));
+    assertThat(PropertyDependencies.getHits(), is(2L));
+  }
+
+  @Test
+  public void mutablePropertiesReportReadsAndChanges() {
+    final MutableProperty.Impl p = new MutableProperty.Impl("Morale", this); //NON-NLS
+    final PropertyDependencies.Recording r = PropertyDependencies.startRecording();
+    p.getPropertyValue();
+    final PropertyDependencies.Dependencies d = PropertyDependencies.stopRecording(r);
+    assertThat(d.isCurrent(), is(true));
+
+    PropertyDependencies.propertyChanged("Morale"); //NON-NLS
+    assertThat(d.isCurrent(), is(false));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.Random;
+
+/**
+ * A program timing how the property values of a synthetic, property-heavy module are read as the variables of an
+ * expression: parsed afresh on each read, as they used to be, and through {@link PropertyValue}.
+ *
+ * Usage: PropertyValueBenchmark [pieces] [reads]
+ */
+public class PropertyValueBenchmark {
+
+  private static final String[] NAMES = {
+    "Strength", "Bonus", "Attack", "Defence", "Range", "Steps", "Supply", "Morale", //NON-NLS
+    "Moved", "Disrupted", "Side", "UnitName", "Cost", "Weight", "ObjectId", "Turn" //NON-NLS
+  };
+
+  public static void main(String[] args) {
+    final int pieces = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    final int reads = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    // Every piece has a value of each property, mostly small ints, with some booleans, floats, names and ids
+    final Random random = new Random(42);
+    final String[][] values = new String[pieces][NAMES.length];
+    for (final String[] piece : values) {
+      for (int i = 0; i < NAMES.length; ++i) {
+        switch (i % 8) {
+        case 0:
+          piece[i] = String.valueOf(random.nextBoolean());
+          break;
+        case 1:
+          piece[i] = String.valueOf(random.nextInt(10) / 2.0f);
+          break;
+        case 2:
+          piece[i] = random.nextBoolean() ? "Allied" : "Axis"; //NON-NLS
+          break;
+        case 3:
+          piece[i] = String.valueOf(1700000000000L + random.nextInt(100000));
+          break;
+        default:
+          piece[i] = String.valueOf(random.nextInt(20));
+        }
+      }
+    }
+
+    for (int rep = 0; rep < 3; ++rep) {
+      long t = System.nanoTime();
+      long sum = 0;
+      for (int r = 0; r < reads; ++r) {
+        for (final String[] piece : values) {
+          for (final String value : piece) {
+            sum += parse(value).hashCode();
+          }
+        }
+      }
+      final long parsed = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      for (int r = 0; r < reads; ++r) {
+        for (final String[] piece : values) {
+          for (final String value : piece) {
+            sum -= typed(PropertyValue.of(value)).hashCode();
+          }
+        }
+      }
+      final long typed = System.nanoTime() - t;
+
+      final double n = (double) reads * pieces * NAMES.length;
+      System.out.printf("%6.1f ns parsed each read %6.1f ns through PropertyValue (%s)%n", //NON-NLS
+        parsed / n, typed / n, sum == 0 ? "same" : "MISMATCH"); //NON-NLS
+    }
+  }
+
+  /** The value as ExpressionInterpreter used to parse it on every read */
+  private static Object parse(String value) {
+    if ("true".equals(value)) { //NON-NLS
+      return Boolean.TRUE;
+    }
+    else if ("false".equals(value)) { //NON-NLS
+      return Boolean.FALSE;
+    }
+    else if (!StringUtils.containsOnly(value, "+-.0123456789")) { // NON-NLS
+      return value;
+    }
+    try {
+      return Integer.parseInt(value);
+    }
+    catch (NumberFormatException ex1) {
+      try {
+        NumberUtils.createBigInteger(value);
+        return value;
+      }
+      catch (NumberFormatException ex3) {
+        try {
+          return Float.parseFloat(value);
+        }
+        catch (NumberFormatException ex2) {
+          return value;
+        }
+      }
+    }
+  }
+
+  private static Object typed(PropertyValue value) {
+    if (value.isBoolean()) {
+      return value.booleanValue();
+    }
+    else if (value.isInteger()) {
+      return value.intValue();
+    }
+    else if (value.isFloat()) {
+      return value.floatValue();
+    }
+    return value.toString();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.jupiter.api.Test;
+
+public class PropertyValueTest {
+
+  @Test
+  public void booleans() {
+    assertThat(PropertyValue.of("true").isBoolean(), is(true));
+    assertThat(PropertyValue.of("true").booleanValue(), is(true));
+    assertThat(PropertyValue.of("false").isBoolean(), is(true));
+    assertThat(PropertyValue.of("false").booleanValue(), is(false));
+    assertThat(PropertyValue.of("True").isString(), is(true));
+  }
+
+  @Test
+  public void integers() {
+    assertThat(PropertyValue.of("42").isInteger(), is(true));
+    assertThat(PropertyValue.of("42").intValue(), is(42));
+    assertThat(PropertyValue.of("-7").intValue(), is(-7));
+    assertThat(PropertyValue.of("+7").intValue(), is(7));
+    assertThat(PropertyValue.of("2147483647").intValue(), is(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void leadingZeros() {
+    final PropertyValue v = PropertyValue.of("007");
+    assertThat(v.isInteger(), is(true));
+    assertThat(v.intValue(), is(7));
+    assertThat(v.isLeadingZeroInteger(), is(true));
+    assertThat(PropertyValue.of("0").isLeadingZeroInteger(), is(false));
+    assertThat(PropertyValue.of("70").isLeadingZeroInteger(), is(false));
+  }
+
+  @Test
+  public void largeIntegersAreStrings() {
+    // A piece id must not become a float
+    assertThat(PropertyValue.of("1710000000123").isString(), is(true));
+    assertThat(PropertyValue.of("-99999999999").isString(), is(true));
+  }
+
+  @Test
+  public void floats() {
+    assertThat(PropertyValue.of("1.5").isFloat(), is(true));
+    assertThat(PropertyValue.of("1.5").floatValue(), is(1.5f));
+    assertThat(PropertyValue.of("-.25").floatValue(), is(-0.25f));
+    assertThat(PropertyValue.of("1.2.3").isString(), is(true));
+    assertThat(PropertyValue.of("-").isString(), is(true));
+  }
+
+  @Test
+  public void strings() {
+    assertThat(PropertyValue.of(null), is(sameInstance(PropertyValue.EMPTY)));
+    assertThat(PropertyValue.of("").isString(), is(true));
+    assertThat(PropertyValue.of("1st Inf").isString(), is(true));
+    assertThat(PropertyValue.of("1e5").isString(), is(true));
+  }
+
+  @Test
+  public void shared() {
+    final String s = "Strength";
+    final PropertyValue v = PropertyValue.of(s);
+    assertThat(PropertyValue.of(new String(s)), is(sameInstance(v)));
+    assertThat(PropertyValue.of(v), is(sameInstance(v)));
+    assertThat(v.toString(), is(sameInstance(s)));
+  }
+}
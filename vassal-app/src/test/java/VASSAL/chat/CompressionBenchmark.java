@@ -0,0 +1,94 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.chat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * A program comparing, for a stream of small piece-change messages such as a game in progress sends, the bytes
+ * sent and the time taken to compress them with each message wrapped in a zip of its own by {@link Compressor}
+ * and Base64-encoded, as NodeClient does for long messages, and with one deflater kept for the whole connection
+ * and flushed after each message, as SocketHandler does once a connection is compressed.
+ *
+ * Usage: CompressionBenchmark [messages]
+ */
+public class CompressionBenchmark {
+
+  private static List<String> messages(int n) {
+    final Random r = new Random(1);
+    final List<String> l = new ArrayList<>(n);
+    for (int i = 0; i < n; ++i) {
+      final String id = Long.toString(1700000000000L + r.nextInt(400)); //NON-NLS
+      final int x = r.nextInt(3000);
+      final int y = r.nextInt(2000);
+      if (r.nextBoolean()) {
+        l.add("M\tMain Map\t" + x + "\t" + y + "\t" + id + "\tMain Map\t" + (x + 75) + "\t" + y + "\tnull\t" //NON-NLS
+          + id + "\tplayer" + r.nextInt(4)); //NON-NLS
+      }
+      else {
+        l.add("D\t" + id + "\t\t" + r.nextInt(3) + "\\\tStep" + r.nextInt(4) + "\\\\\tnull;" + x + ";" + y //NON-NLS
+          + ";" + id + ";Main Map\\\\\\\t" + (r.nextBoolean() ? "1" : "2") + "\\\\\\\\\tfalse\t" + "D\tSTACK" + id); //NON-NLS
+      }
+    }
+    return l;
+  }
+
+  public static void main(String[] args) throws IOException {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    final List<byte[]> msgs = new ArrayList<>(n);
+    long plain = 0;
+    for (final String s : messages(n)) {
+      final byte[] b = (s + '\n').getBytes(StandardCharsets.UTF_8);
+      msgs.add(b);
+      plain += b.length;
+    }
+
+    for (int rep = 0; rep < 3; ++rep) {
+      long t = System.nanoTime();
+      long zipped = 0;
+      for (final byte[] b : msgs) {
+        final String wrapped = "!ZIP!" + Base64.encodeBase64String(Compressor.compress(b)); //NON-NLS
+        zipped += wrapped.length() + 1;
+      }
+      final long zipNanos = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, true)) {
+        for (final byte[] b : msgs) {
+          out.write(b);
+          out.flush();
+        }
+      }
+      final long streamNanos = System.nanoTime() - t;
+
+      System.out.printf(
+        "%d messages: plain %d bytes; per-message zip %d bytes, %.0f ns/msg; streaming deflate %d bytes, %.0f ns/msg%n", //NON-NLS
+        n, plain, zipped, (double) zipNanos / n, bytes.size(), (double) streamNanos / n);
+    }
+  }
+}
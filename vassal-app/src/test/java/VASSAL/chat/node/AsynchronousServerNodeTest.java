@@ -0,0 +1,129 @@
+package VASSAL.chat.node;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class AsynchronousServerNodeTest {
+
+  private static class Recorder implements LineConnection {
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+    @Override
+    public void writeLine(String line) {
+      lines.add(line);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+      return InetAddress.getLoopbackAddress();
+    }
+
+    /** @return the next list or list delta sent */
+    String nextList() throws InterruptedException {
+      while (true) {
+        final String line = lines.poll(5, TimeUnit.SECONDS);
+        assertThat("Nothing sent", line, notNullValue());
+        if (line.startsWith(Protocol.LIST) || line.startsWith(Protocol.LIST_DELTA)) {
+          return line;
+        }
+      }
+    }
+  }
+
+  private static PlayerNode connect(AsynchronousServerNode server, Recorder r, String id, boolean deltas) {
+    final PlayerNode p = new PlayerNode(r, server);
+    if (deltas) {
+      p.handleMessage(Protocol.encodeDeltasRequest());
+    }
+    p.handleMessage(Protocol.encodeRegisterCommand(id, "mod/room", "id=" + id + "|name=" + id));
+    return p;
+  }
+
+  private static List<String> entries(Node root) {
+    final List<String> l = new ArrayList<>();
+    for (final Node module : root.getChildren()) {
+      for (final Node room : module.getChildren()) {
+        for (final Node player : room.getChildren()) {
+          l.add(Protocol.encodeListEntry(player));
+        }
+      }
+    }
+    return l;
+  }
+
+  @Test
+  public void testDeltas() throws InterruptedException {
+    final AsynchronousServerNode server = new AsynchronousServerNode(null, 0L);
+    final Recorder a = new Recorder();
+    connect(server, a, "a", true);
+
+    // The first is always a full list
+    final Node listed = Protocol.decodeListCommand(a.nextList());
+    assertThat(listed, notNullValue());
+
+    final Recorder b = new Recorder();
+    final PlayerNode pb = connect(server, b, "b", true);
+    assertThat(b.nextList(), startsWith(Protocol.LIST));
+
+    final String joined = a.nextList();
+    assertThat(joined, equalTo(Protocol.encodeListDelta(List.of(Protocol.encodeListEntry(pb)))));
+    Protocol.decodeListDelta(joined, listed);
+    assertThat(entries(listed), containsInAnyOrder(entries(server).toArray()));
+
+    // Moving and leaving
+    pb.handleMessage(Protocol.encodeJoinCommand("mod/other"));
+    Protocol.decodeListDelta(a.nextList(), listed);
+    assertThat(entries(listed), containsInAnyOrder(entries(server).toArray()));
+
+    server.disconnect(pb);
+    final String left = a.nextList();
+    assertThat(left, equalTo(Protocol.encodeListDelta(List.of(Protocol.encodeListRemoval("mod/other/b")))));
+    Protocol.decodeListDelta(left, listed);
+    assertThat(entries(listed), containsInAnyOrder(entries(server).toArray()));
+    assertThat(listed.getChild("mod").getChild("other"), equalTo(null));
+  }
+
+  @Test
+  public void testFullListsWithoutDeltas() throws InterruptedException {
+    final AsynchronousServerNode server = new AsynchronousServerNode(null, 0L);
+    final Recorder a = new Recorder();
+    connect(server, a, "a", false);
+    assertThat(a.nextList(), startsWith(Protocol.LIST));
+
+    connect(server, new Recorder(), "b", false);
+    assertThat(a.nextList(), equalTo(Protocol.encodeListCommand(server.getChild("mod").getLeafDescendants())));
+  }
+
+  @Test
+  public void testChangesAreCoalesced() throws InterruptedException {
+    final AsynchronousServerNode server = new AsynchronousServerNode(null, 300L);
+    final Recorder a = new Recorder();
+    connect(server, a, "a", true);
+    final Node listed = Protocol.decodeListCommand(a.nextList());
+
+    for (int i = 0; i < 5; ++i) {
+      connect(server, new Recorder(), "p" + i, true);
+    }
+
+    // All five arrive in one delta
+    Protocol.decodeListDelta(a.nextList(), listed);
+    assertThat(entries(listed), containsInAnyOrder(entries(server).toArray()));
+    assertThat(server.getContentsReporter().getDeltasSent(), equalTo(1L));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.chat.node;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A program which starts a chat server on a local port, connects a number of simulated clients to it, has them
+ * join rooms and send messages to everyone in their room, and reports how long it takes for every message to be
+ * delivered, with the {@link NioServer} or with the thread-per-connection {@link Server}.
+ *
+ * Usage: ChatServerBenchmark [nio|threads] [clients] [clients per room] [messages per client] [message length]
+ */
+public class ChatServerBenchmark {
+
+  private static final String PREFIX = "MSG"; //NON-NLS
+
+  private static class Client {
+    private final Socket socket;
+    private final OutputStream out;
+    private final Thread reader;
+    private final AtomicLong received = new AtomicLong();
+    private final long expected;
+    private final CountDownLatch done;
+
+    Client(int port, long expected, CountDownLatch done) throws IOException {
+      socket = new Socket("localhost", port); //NON-NLS
+      out = socket.getOutputStream();
+      this.expected = expected;
+      this.done = done;
+
+      final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      reader = new Thread(() -> {
+        try {
+          String line;
+          while ((line = in.readLine()) != null) {
+            if (line.startsWith(PREFIX) && received.incrementAndGet() == expected) {
+              done.countDown();
+            }
+          }
+        }
+        catch (final IOException ignore) {
+        }
+      });
+      reader.setDaemon(true);
+      reader.start();
+    }
+
+    void send(String line) throws IOException {
+      out.write((line + '\n').getBytes(StandardCharsets.UTF_8));
+    }
+
+    void flush() throws IOException {
+      out.flush();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    final boolean nio = args.length == 0 || !"threads".equals(args[0]); //NON-NLS
+    final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+    final int roomSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    final int messages = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+    final int length = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+
+    final AsynchronousServerNode root = new AsynchronousServerNode(null);
+    final int port;
+    if (nio) {
+      port = new NioServer(root, 0).getPort();
+    }
+    else {
+      try (ServerSocket s = new ServerSocket(0)) {
+        port = s.getLocalPort();
+      }
+      new Server(root, port);
+    }
+
+    // Each client hears every message sent to its room, its own included
+    final CountDownLatch done = new CountDownLatch(clients);
+    final List<Client> all = new ArrayList<>();
+    final List<String> rooms = new ArrayList<>();
+    for (int i = 0; i < clients; ++i) {
+      final int room = i / roomSize;
+      final int inRoom = Math.min(roomSize, clients - room * roomSize);
+      final Client c = new Client(port, (long) inRoom * messages, done);
+      final String path = "bench/room" + room; //NON-NLS
+      c.send(Protocol.encodeRegisterCommand("p" + i, path, "id=p" + i + "|name=p" + i)); //NON-NLS
+      c.flush();
+      all.add(c);
+      rooms.add(path);
+    }
+
+    while (root.getLeafDescendants().length < clients) {
+      Thread.sleep(10);
+    }
+    System.out.println(clients + " clients connected"); //NON-NLS
+
+    final String body = PREFIX + "x".repeat(Math.max(0, length - PREFIX.length())); //NON-NLS
+    final long t = System.nanoTime();
+    for (int m = 0; m < messages; ++m) {
+      for (int i = 0; i < clients; ++i) {
+        final Client c = all.get(i);
+        c.send(Protocol.encodeForwardCommand(rooms.get(i) + "/*", body));
+        c.flush();
+      }
+    }
+
+    final long delivered = (long) clients * messages * roomSize;
+    if (done.await(5, TimeUnit.MINUTES)) {
+      final long nanos = System.nanoTime() - t;
+      System.out.printf("%s: %d messages sent, ~%d delivered in %.1f ms, %.0f deliveries/s%n", //NON-NLS
+        nio ? "nio" : "threads", (long) clients * messages, delivered, nanos / 1e6, delivered / (nanos / 1e9)); //NON-NLS
+    }
+    else {
+      System.out.println("Timed out with " + done.getCount() + " clients still waiting"); //NON-NLS
+    }
+
+    System.exit(0);
+  }
+}
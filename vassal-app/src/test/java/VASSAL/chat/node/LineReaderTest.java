@@ -0,0 +1,75 @@
+package VASSAL.chat.node;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class LineReaderTest {
+
+  @Test
+  public void testReadLines() throws IOException {
+    final String s = "a\r\n\nhéllo\n" + "x".repeat(20000) + "\nlast";
+    final LineReader r = new LineReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)));
+    assertThat(r.readLine(), equalTo("a"));
+    assertThat(r.readLine(), equalTo(""));
+    assertThat(r.readLine(), equalTo("héllo"));
+    assertThat(r.readLine(), equalTo("x".repeat(20000)));
+    assertThat(r.readLine(), equalTo("last"));
+    assertThat(r.readLine(), nullValue());
+  }
+
+  @Test
+  public void testInflateAfterLine() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write("plain\n!DEFLATE\n".getBytes(StandardCharsets.UTF_8));
+    try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, true)) {
+      out.write("first\n".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      out.write("second\n".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+    }
+
+    // The deflated bytes have been read into the buffer along with the plain lines
+    final LineReader r = new LineReader(new ByteArrayInputStream(bytes.toByteArray()));
+    assertThat(r.readLine(), equalTo("plain"));
+    assertThat(r.readLine(), equalTo("!DEFLATE"));
+    r.inflate();
+    assertThat(r.readLine(), equalTo("first"));
+    assertThat(r.readLine(), equalTo("second"));
+    assertThat(r.readLine(), nullValue());
+  }
+
+  @Test
+  public void testLineTooLong() throws IOException {
+    final LineReader r = new LineReader(new ByteArrayInputStream(("x".repeat(100) + "\n" + "y".repeat(101) + "\n").getBytes(StandardCharsets.UTF_8)), 100);
+    assertThat(r.readLine(), equalTo("x".repeat(100)));
+    assertThrows(IOException.class, r::readLine);
+  }
+
+  @Test
+  public void testInflatedLineTooLong() throws IOException {
+    // A few kilobytes of deflated input which inflate to a line far longer than the limit
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write("!DEFLATE\n".getBytes(StandardCharsets.UTF_8));
+    try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+      final byte[] zeros = new byte[1024 * 1024];
+      for (int i = 0; i < 16; ++i) {
+        out.write(zeros);
+      }
+    }
+
+    final LineReader r = new LineReader(new ByteArrayInputStream(bytes.toByteArray()), 1024 * 1024);
+    assertThat(r.readLine(), equalTo("!DEFLATE"));
+    r.inflate();
+    assertThrows(IOException.class, r::readLine);
+  }
+}
@@ -0,0 +1,222 @@
+package VASSAL.chat.node;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NioServerTest {
+
+  private AsynchronousServerNode root;
+  private NioServer server;
+
+  private static class Client implements AutoCloseable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final OutputStream out;
+
+    Client(int port) throws IOException {
+      socket = new Socket("localhost", port);
+      socket.setSoTimeout(10000);
+      in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      out = socket.getOutputStream();
+    }
+
+    void write(String s) throws IOException {
+      out.write(s.getBytes(StandardCharsets.UTF_8));
+      out.flush();
+    }
+
+    void send(String line) throws IOException {
+      write(line + '\n');
+    }
+
+    /** Skip the player lists and room info the server sends, and return the next other line */
+    String next() throws IOException {
+      String line;
+      do {
+        line = in.readLine();
+      } while (line != null && (line.startsWith(Protocol.LIST) || line.startsWith(Protocol.ROOM_INFO)));
+      return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new AssertionError("Timed out");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  private void start(int queueLimit) throws IOException {
+    root = new AsynchronousServerNode(null);
+    server = new NioServer(root, 0, queueLimit);
+  }
+
+  @BeforeEach
+  public void setUp() {
+    server = null;
+  }
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    if (server != null) {
+      server.shutdown();
+      server.join(10000);
+    }
+  }
+
+  @Test
+  public void testForward() throws Exception {
+    start(NioServer.DEFAULT_QUEUE_LIMIT);
+    try (Client a = new Client(server.getPort()); Client b = new Client(server.getPort())) {
+      a.send(Protocol.encodeRegisterCommand("a", "mod/room", "name=a"));
+      b.send(Protocol.encodeRegisterCommand("b", "mod/room", "name=b"));
+      await(() -> root.getLeafDescendants().length == 2);
+
+      // Lines are split wherever they fall in the stream, and may end with CRLF
+      final String msg = Protocol.encodeForwardCommand("mod/room/b", "héllo");
+      a.write(msg.substring(0, 3));
+      Thread.sleep(50);
+      a.write(msg.substring(3) + "\r\n");
+      assertThat(b.next(), equalTo("héllo"));
+
+      a.send(Protocol.encodeForwardCommand("mod/room/*", "all"));
+      assertThat(a.next(), equalTo("all"));
+      assertThat(b.next(), equalTo("all"));
+    }
+  }
+
+  @Test
+  public void testDeflate() throws Exception {
+    start(NioServer.DEFAULT_QUEUE_LIMIT);
+    final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    final SocketWatcher watcher = new SocketWatcher() {
+      @Override
+      public void handleMessage(String msg) {
+        if (!msg.startsWith(Protocol.LIST) && !msg.startsWith(Protocol.ROOM_INFO)) {
+          received.add(msg);
+        }
+      }
+
+      @Override
+      public void socketClosed(SocketHandler handler) {
+      }
+    };
+
+    final SocketHandler a = new SocketHandler(new Socket("localhost", server.getPort()), watcher);
+    a.start();
+    a.offerDeflate();
+    a.writeLine(Protocol.encodeRegisterCommand("a", "mod/room", ""));
+    await(() -> root.getLeafDescendants().length == 1);
+
+    final String big = "héllo ".repeat(5000);
+    for (int i = 0; i < 50; ++i) {
+      a.writeLine(Protocol.encodeForwardCommand("mod/room/a", i + big.substring(0, i)));
+    }
+    a.writeLine(Protocol.encodeForwardCommand("mod/room/a", big));
+    for (int i = 0; i < 50; ++i) {
+      assertThat(received.poll(10, TimeUnit.SECONDS), equalTo(i + big.substring(0, i)));
+    }
+    assertThat(received.poll(10, TimeUnit.SECONDS), equalTo(big));
+    assertThat(a.isDeflating(), is(true));
+    a.close();
+  }
+
+  @Test
+  public void testLineTooLongIsDisconnected() throws Exception {
+    start(NioServer.DEFAULT_QUEUE_LIMIT);
+    try (Client a = new Client(server.getPort())) {
+      a.send(Protocol.encodeRegisterCommand("a", "mod/room", ""));
+      await(() -> root.getLeafDescendants().length == 1);
+
+      // A deflate bomb: a small amount of input which inflates to a line longer than any the server accepts
+      a.send(SocketHandler.DEFLATE);
+      final DeflaterOutputStream out = new DeflaterOutputStream(a.out, true);
+      final byte[] zeros = new byte[1024 * 1024];
+      try {
+        for (int i = 0; i <= LineReader.MAX_LINE_LENGTH / zeros.length && root.getLeafDescendants().length == 1; ++i) {
+          out.write(zeros);
+          out.flush();
+        }
+      }
+      catch (final IOException e) {
+        // The server has already closed the connection
+      }
+
+      await(() -> root.getLeafDescendants().length == 0);
+    }
+  }
+
+  @Test
+  public void testSignOff() throws Exception {
+    start(NioServer.DEFAULT_QUEUE_LIMIT);
+    try (Client a = new Client(server.getPort())) {
+      a.send(Protocol.encodeRegisterCommand("a", "mod/room", ""));
+      await(() -> root.getLeafDescendants().length == 1);
+
+      a.send("!BYE");
+      await(() -> root.getLeafDescendants().length == 0);
+      assertThat(a.next(), is((String) null));
+    }
+  }
+
+  @Test
+  public void testSlowClientIsDisconnected() throws Exception {
+    start(64 * 1024);
+    try (Client fast = new Client(server.getPort()); Client slow = new Client(server.getPort())) {
+      fast.send(Protocol.encodeRegisterCommand("fast", "mod/room", ""));
+      slow.send(Protocol.encodeRegisterCommand("slow", "mod/room", ""));
+      await(() -> root.getLeafDescendants().length == 2);
+
+      // The slow client reads nothing, so everything sent to it piles up
+      final String big = "x".repeat(16 * 1024);
+      for (int i = 0; i < 4096 && root.getLeafDescendants().length == 2; ++i) {
+        fast.send(Protocol.encodeForwardCommand("mod/room/slow", big));
+      }
+      await(() -> root.getLeafDescendants().length == 1);
+      assertThat(root.getLeafDescendants()[0].getId(), equalTo("fast"));
+
+      // The fast client is still served
+      fast.send(Protocol.encodeForwardCommand("mod/room/fast", "still here"));
+      assertThat(fast.next(), equalTo("still here"));
+
+      // And the slow one finds its connection closed once it has read what was sent before
+      try {
+        while (slow.in.readLine() != null) {
+          // drain
+        }
+      }
+      catch (final SocketTimeoutException e) {
+        throw new AssertionError("Connection not closed", e);
+      }
+      catch (final IOException e) {
+        // reset
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package VASSAL.chat.node;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import VASSAL.build.GameModule;
+import VASSAL.chat.ChatServerConnection;
+import VASSAL.chat.DummyMessageServer;
+import VASSAL.chat.Player;
+import VASSAL.chat.SimpleStatus;
+import VASSAL.command.Command;
+import VASSAL.command.CommandEnvelope;
+import VASSAL.command.NullCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+public class NodeClientTest {
+
+  private static final String OLD = "old format";
+  private static final String ENVELOPE = "envelope";
+
+  private final Command command = new NullCommand();
+
+  /** A client which records the messages it forwards instead of sending them to a server */
+  private static class TestClient extends NodeClient {
+    private final List<String> sent = new ArrayList<>();
+
+    TestClient(GameModule encoder) {
+      super("module", "me", encoder, "localhost", 0, new DummyMessageServer());
+    }
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public void send(String command) {
+      sent.add(Protocol.decodeForwardCommand(command)[1]);
+    }
+  }
+
+  private final GameModule gm = mock(GameModule.class);
+
+  private TestClient client() {
+    when(gm.encode(any(Command.class))).thenReturn(OLD);
+    when(gm.decode(OLD)).thenReturn(command);
+    when(gm.encodeEnvelope(command)).thenReturn(ENVELOPE);
+    return new TestClient(gm);
+  }
+
+  private static NodePlayer player(String id, boolean envelope) {
+    final NodePlayer p = new NodePlayer(id);
+    p.setStatus(new SimpleStatus(false, false, "", "", "", "", "", "", envelope ? Integer.toString(CommandEnvelope.VERSION) : ""));
+    return p;
+  }
+
+  private static void join(TestClient client, String room, Player... others) {
+    final NodeRoom r = new NodeRoom(room);
+    r.addPlayer(client.getMyInfo());
+    for (final Player p : others) {
+      r.addPlayer(p);
+    }
+    client.currentRoom = r;
+  }
+
+  @Test
+  public void testEnvelopeOnlyWhenAllCanReadIt() {
+    try (MockedStatic<GameModule> staticGm = Mockito.mockStatic(GameModule.class)) {
+      staticGm.when(GameModule::getGameModule).thenReturn(gm);
+      checkEnvelopeOnlyWhenAllCanReadIt();
+    }
+  }
+
+  private void checkEnvelopeOnlyWhenAllCanReadIt() {
+    final TestClient client = client();
+
+    join(client, "game", player("a", true), player("b", true));
+    client.sendToOthers(command);
+    client.sendTo(player("a", true), command);
+
+    join(client, "game", player("a", true), player("b", false));
+    client.sendToOthers(command);
+    client.sendTo(player("b", false), command);
+
+    // Messages in the default room are filtered by decoding them, so are always in the old format
+    join(client, ChatServerConnection.DEFAULT_ROOM_NAME, player("a", true));
+    client.sendToOthers(command);
+
+    final String envelope = NodeClient.ENVELOPE_HEADER + ENVELOPE;
+    assertThat(client.sent, contains(envelope, envelope, OLD, OLD, OLD));
+  }
+
+  @Test
+  public void testStatusAdvertisesEnvelope() {
+    final NodePlayer p = player("a", true);
+    final NodePlayer copy = new NodePlayer("a");
+    copy.setInfo(p.toProperties());
+    assertThat(((SimpleStatus) copy.getStatus()).canReadCommandEnvelope(), is(true));
+
+    final SimpleStatus decoded = SimpleStatus.decode(SimpleStatus.encode((SimpleStatus) p.getStatus()));
+    assertThat(decoded.canReadCommandEnvelope(), is(true));
+
+    // Clients from before envelopes existed say nothing about them
+    final NodePlayer old = new NodePlayer("b");
+    old.setInfo(player("b", false).toProperties());
+    assertThat(((SimpleStatus) old.getStatus()).canReadCommandEnvelope(), is(false));
+  }
+
+  @Test
+  public void testIncomingEnvelope() {
+    final TestClient client = client();
+    final List<String> messages = new ArrayList<>();
+    final List<String> envelopes = new ArrayList<>();
+    client.addPropertyChangeListener(ChatServerConnection.INCOMING_MSG, e -> messages.add((String) e.getNewValue()));
+    client.addPropertyChangeListener(ChatServerConnection.INCOMING_ENVELOPE, e -> envelopes.add((String) e.getNewValue()));
+
+    client.handleMessageFromServer(OLD);
+    client.handleMessageFromServer(NodeClient.ENVELOPE_HEADER + ENVELOPE);
+
+    assertThat(messages, contains(OLD));
+    assertThat(envelopes, contains(ENVELOPE));
+  }
+}
@@ -0,0 +1,83 @@
+package VASSAL.chat.node;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class SocketHandlerTest {
+
+  private static class Watcher implements SocketWatcher {
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+    @Override
+    public void handleMessage(String msg) {
+      lines.add(msg);
+    }
+
+    @Override
+    public void socketClosed(SocketHandler handler) {
+    }
+
+    String next() throws InterruptedException {
+      return lines.poll(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private static void exchange(boolean offer) throws IOException, InterruptedException {
+    try (ServerSocket ss = new ServerSocket(0); Socket c = new Socket("localhost", ss.getLocalPort()); Socket s = ss.accept()) {
+      final Watcher clientWatcher = new Watcher();
+      final Watcher serverWatcher = new Watcher();
+      final SocketHandler client = new SocketHandler(c, clientWatcher);
+      final SocketHandler server = new SocketHandler(s, serverWatcher);
+      client.start();
+      server.start();
+
+      if (offer) {
+        client.offerDeflate();
+      }
+      final String big = "héllo ".repeat(5000);
+      for (int i = 0; i < 20; ++i) {
+        client.writeLine("to server " + i);
+        server.writeLine("to client " + i);
+      }
+      client.writeLine(big);
+      server.writeLine(big);
+
+      for (int i = 0; i < 20; ++i) {
+        assertThat(serverWatcher.next(), equalTo("to server " + i));
+        assertThat(clientWatcher.next(), equalTo("to client " + i));
+      }
+      assertThat(serverWatcher.next(), equalTo(big));
+      assertThat(clientWatcher.next(), equalTo(big));
+
+      // Each end only starts deflating once it has read the other's offer or answer
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (offer && !(client.isDeflating() && server.isDeflating()) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(client.isDeflating(), is(offer));
+      assertThat(server.isDeflating(), is(offer));
+      client.close();
+      server.close();
+    }
+  }
+
+  @Test
+  public void testPlain() throws Exception {
+    exchange(false);
+  }
+
+  @Test
+  public void testDeflate() throws Exception {
+    exchange(true);
+  }
+}
@@ -0,0 +1,165 @@
+package VASSAL.command;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CommandDecoderTableTest {
+
+  /** Decodes commands starting with its prefix, and declares it if asked */
+  private static class PrefixEncoder implements CommandEncoder {
+    private final String prefix;
+    private final boolean declared;
+    final Command command = new NullCommand();
+
+    PrefixEncoder(String prefix, boolean declared) {
+      this.prefix = prefix;
+      this.declared = declared;
+    }
+
+    @Override
+    public Command decode(String s) {
+      return s.startsWith(prefix) ? command : null;
+    }
+
+    @Override
+    public String encode(Command c) {
+      return null;
+    }
+
+    @Override
+    public String[] getDecodePrefixes() {
+      return declared ? new String[] { prefix } : null;
+    }
+  }
+
+  /** Overrides decode without declaring its own prefixes */
+  private static class CustomEncoder extends PrefixEncoder {
+    CustomEncoder() {
+      super("A", true);
+    }
+
+    @Override
+    public Command decode(String s) {
+      return s.startsWith("B") ? command : null;
+    }
+  }
+
+  @Test
+  public void testCandidatesInOrder() {
+    final PrefixEncoder any = new PrefixEncoder("", false);
+    final PrefixEncoder ab = new PrefixEncoder("AB", true);
+    final PrefixEncoder a = new PrefixEncoder("A", true);
+    final PrefixEncoder b = new PrefixEncoder("B", true);
+    final PrefixEncoder abc = new PrefixEncoder("ABC", true);
+
+    final CommandDecoderTable t = new CommandDecoderTable();
+    t.add(ab);
+    t.add(any);
+    t.add(a);
+    t.add(b);
+    t.add(abc);
+
+    assertThat(t.getCandidates("ABCD"), contains(ab, any, a, abc));
+    assertThat(t.getCandidates("AB"), contains(ab, any, a));
+    assertThat(t.getCandidates("AX"), contains(any, a));
+    assertThat(t.getCandidates("X"), contains(any));
+    assertThat(t.getCandidates(""), contains(any));
+
+    t.remove(any);
+    assertThat(t.getCandidates("ABCD"), contains(ab, a, abc));
+    assertThat(t.getCandidates("X").isEmpty(), is(true));
+    assertThat(t.decode("X"), nullValue());
+  }
+
+  @Test
+  public void testEmptyAndNoPrefixes() {
+    final PrefixEncoder any = new PrefixEncoder("", false);
+    final PrefixEncoder empty = new PrefixEncoder("", true);
+    final PrefixEncoder none = new PrefixEncoder("A", true) {
+      @Override
+      public String[] getDecodePrefixes() {
+        return new String[0];
+      }
+    };
+
+    final CommandDecoderTable t = new CommandDecoderTable();
+    t.add(empty);
+    t.add(none);
+    t.add(any);
+
+    // The empty prefix stands for the empty command alone, and an encoder declaring no prefixes is offered nothing
+    assertThat(t.getCandidates(""), contains(empty, any));
+    assertThat(t.getCandidates("A"), contains(any));
+    assertThat(t.getCandidates("B"), contains(any));
+  }
+
+  @Test
+  public void testSameAsScan() {
+    final List<PrefixEncoder> encoders = List.of(
+      new PrefixEncoder("xy", true),
+      new PrefixEncoder("x", false),
+      new PrefixEncoder("yx", true),
+      new PrefixEncoder("x", true),
+      new PrefixEncoder("yy", false),
+      new PrefixEncoder("xyx", true),
+      new PrefixEncoder("", false)
+    );
+
+    final CommandDecoderTable t = new CommandDecoderTable();
+    encoders.forEach(t::add);
+
+    final Random r = new Random(42);
+    for (int i = 0; i < 1000; ++i) {
+      final StringBuilder sb = new StringBuilder();
+      for (int j = r.nextInt(5); j > 0; --j) {
+        sb.append(r.nextBoolean() ? 'x' : 'y');
+      }
+      final String s = sb.toString();
+
+      Command expected = null;
+      for (final PrefixEncoder e : encoders) {
+        if ((expected = e.decode(s)) != null) {
+          break;
+        }
+      }
+      assertThat(s, t.decode(s), sameInstance(expected));
+    }
+  }
+
+  @Test
+  public void testOverriddenDecodeIgnoresPrefixes() {
+    final CustomEncoder custom = new CustomEncoder();
+    final CommandDecoderTable t = new CommandDecoderTable();
+    t.add(custom);
+
+    assertThat(CommandDecoderTable.declaredPrefixes(custom), nullValue());
+    assertThat(t.decode("B"), sameInstance(custom.command));
+  }
+
+  @Test
+  public void testStats() {
+    final PrefixEncoder a = new PrefixEncoder("A", true);
+    final CommandDecoderTable t = new CommandDecoderTable();
+    t.add(a);
+
+    t.decode("A");
+    t.decode("A");
+    t.decode("B");
+
+    final CommandDecoderTable.Stats s = t.getStats().get(PrefixEncoder.class.getName());
+    assertThat(s.getCalls(), equalTo(2L));
+    assertThat(s.getDecoded(), equalTo(2L));
+
+    t.resetStats();
+    assertThat(t.getStats().get(PrefixEncoder.class.getName()).getCalls(), equalTo(0L));
+  }
+}
@@ -0,0 +1,153 @@
+package VASSAL.command;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import VASSAL.tools.SequenceEncoder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CommandEnvelopeTest {
+
+  private static final char SEP = 27;
+
+  private static final String[] FRAGMENTS = {
+    "a", "bc", "\\", "'", String.valueOf(SEP), "+/1234/", "\\'", "x'", "'y", "", ";", "1,2:"
+  };
+
+  private static final CommandEnvelope ENVELOPE = new CommandEnvelope(
+    c -> c instanceof TextCommand ? ((TextCommand) c).text : null,
+    TextCommand::new
+  );
+
+  /** Reference copy of GameModule.encode() */
+  private static String legacyEncode(Command c) {
+    String s = c instanceof TextCommand ? ((TextCommand) c).text : null;
+    final Command[] sub = c.getSubCommands();
+    if (sub.length > 0) {
+      final SequenceEncoder se = new SequenceEncoder(s, SEP);
+      for (final Command command : sub) {
+        se.append(legacyEncode(command));
+      }
+      s = se.getValue();
+    }
+    return s;
+  }
+
+  /** The structure of a tree, as it should survive the round trip */
+  private static String describe(Command c) {
+    final StringBuilder sb = new StringBuilder(((TextCommand) c).text);
+    sb.append('(');
+    for (final Command sub : c.getSubCommands()) {
+      sb.append(describe(sub)).append(' ');
+    }
+    return sb.append(')').toString();
+  }
+
+  private static String randomText(Random r) {
+    final StringBuilder sb = new StringBuilder();
+    final int n = r.nextInt(4);
+    for (int i = 0; i < n; i++) {
+      sb.append(FRAGMENTS[r.nextInt(FRAGMENTS.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static Command randomTree(Random r, int depth) {
+    final Command c = new TextCommand(randomText(r));
+    if (depth < 4) {
+      final int n = r.nextInt(4);
+      for (int i = 0; i < n; i++) {
+        c.append(randomTree(r, depth + 1));
+      }
+    }
+    return c;
+  }
+
+  @Test
+  public void randomTreeTest() {
+    final Random r = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      final Command c = randomTree(r, 0);
+      final String s = ENVELOPE.encode(c);
+      assertThat(s.startsWith(CommandEnvelope.MAGIC), is(true));
+      assertThat(describe(ENVELOPE.decode(s)), is(equalTo(describe(c))));
+    }
+  }
+
+  @Test
+  public void readInExecutionOrderTest() throws IOException {
+    final Command c = new TextCommand("a");
+    final Command b = new TextCommand("b");
+    b.append(new TextCommand("c"));
+    c.append(b);
+    c.append(new TextCommand(null));
+    c.append(new TextCommand("d"));
+
+    final List<String> read = new ArrayList<>();
+    final Command tree = ENVELOPE.readTree(new StringReader(ENVELOPE.encode(c)), x -> read.add(((TextCommand) x).text));
+    assertThat(read, contains("a", "b", "c", "d"));
+
+    // Reporting each Command as it is read leaves the tree intact
+    assertThat(describe(tree), is(equalTo("a(b(c() ) d() )")));
+
+    assertThat(ENVELOPE.encode(null), is(equalTo(null)));
+    assertThat(ENVELOPE.encode(new TextCommand(null)), is(equalTo(null)));
+  }
+
+  @Test
+  public void deepTreeTest() {
+    // Each level of the old format escapes the separators of all the levels below it again
+    Command c = new TextCommand("leaf" + SEP);
+    for (int i = 0; i < 12; i++) {
+      final Command parent = new TextCommand("level" + SEP);
+      parent.append(c);
+      c = parent;
+    }
+
+    final String s = ENVELOPE.encode(c);
+    assertThat(s.length(), is(lessThan(legacyEncode(c).length())));
+    assertThat(describe(ENVELOPE.decode(s)), is(equalTo(describe(c))));
+  }
+
+  @Test
+  public void malformedTest() {
+    assertThrows(IllegalArgumentException.class, () -> ENVELOPE.decode("a"));
+    assertThrows(IllegalArgumentException.class, () -> ENVELOPE.decode(CommandEnvelope.MAGIC + "99\n0,1:a"));
+    assertThrows(IllegalArgumentException.class, () -> ENVELOPE.decode(CommandEnvelope.MAGIC + "1\n0,5:a"));
+    assertThrows(IllegalArgumentException.class, () -> ENVELOPE.decode(CommandEnvelope.MAGIC + "1\n0,1:a2,1:b"));
+  }
+
+  /** A Command which encodes to a fixed string and never collapses when appended to */
+  private static class TextCommand extends Command {
+    private final String text;
+
+    TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+
+    @Override
+    public boolean isNull() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package VASSAL.command;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import VASSAL.tools.SequenceEncoder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CommandTreeReaderTest {
+
+  private static final char SEP = 27;
+
+  private static final String[] FRAGMENTS = {
+    "a", "bc", "\\", "'", String.valueOf(SEP), "+/1234/", "\\'", "x'", "'y", "", ";"
+  };
+
+  /** Reference copy of GameModule.decode() */
+  private static Command decode(String command) {
+    if (command == null) {
+      return null;
+    }
+    Command c;
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(command, SEP);
+    final String first = st.nextToken();
+    if (command.equals(first)) {
+      c = decodeSubCommand(first);
+    }
+    else {
+      Command next;
+      c = decode(first);
+      while (st.hasMoreTokens()) {
+        next = decode(st.nextToken());
+        c = c == null ? next : c.append(next);
+      }
+    }
+    return c;
+  }
+
+  private static Command decodeSubCommand(String s) {
+    return s.isEmpty() ? null : new TextCommand(s);
+  }
+
+  /** Reference copy of GameModule.encode() */
+  private static String encode(Command c) {
+    String s = ((TextCommand) c).text;
+    final Command[] sub = c.getSubCommands();
+    if (sub.length > 0) {
+      final SequenceEncoder se = new SequenceEncoder(s, SEP);
+      for (final Command command : sub) {
+        se.append(encode(command));
+      }
+      s = se.getValue();
+    }
+    return s;
+  }
+
+  /** @return the text of each Command in a tree, in the order they would be executed */
+  private static List<String> flatten(Command c, List<String> l) {
+    if (c != null) {
+      l.add(((TextCommand) c).text);
+      for (final Command sub : c.getSubCommands()) {
+        flatten(sub, l);
+      }
+    }
+    return l;
+  }
+
+  /** @return the text of each Command in a tree, with the sub-commands of each in brackets after it */
+  private static String describe(Command c) {
+    if (c == null) {
+      return "null";
+    }
+    final StringBuilder sb = new StringBuilder("<").append(((TextCommand) c).text).append('>');
+    final Command[] sub = c.getSubCommands();
+    if (sub.length > 0) {
+      sb.append('[');
+      for (final Command command : sub) {
+        sb.append(describe(command));
+      }
+      sb.append(']');
+    }
+    return sb.toString();
+  }
+
+  private static Command readTree(String s, List<String> decoded) throws IOException {
+    final CommandTreeReader r = new CommandTreeReader(SEP, CommandTreeReaderTest::decodeSubCommand, CommandTreeReaderTest::decode);
+    return r.read(new StringReader(s), c -> decoded.add(((TextCommand) c).text));
+  }
+
+  private static List<String> read(String s) throws IOException {
+    return flatten(readTree(s, new ArrayList<>()), new ArrayList<>());
+  }
+
+  /** Check that reading a String builds the same tree as decode() */
+  private static void checkRead(String s) throws IOException {
+    assertThat(describe(readTree(s, new ArrayList<>())), is(equalTo(describe(decode(s)))));
+  }
+
+  private static String randomText(Random r) {
+    final StringBuilder sb = new StringBuilder();
+    final int n = r.nextInt(4);
+    for (int i = 0; i < n; i++) {
+      sb.append(FRAGMENTS[r.nextInt(FRAGMENTS.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static Command randomTree(Random r, int depth) {
+    final Command c = new TextCommand(randomText(r));
+    if (depth < 4) {
+      final int n = r.nextInt(4);
+      for (int i = 0; i < n; i++) {
+        c.append(randomTree(r, depth + 1));
+      }
+    }
+    return c;
+  }
+
+  @Test
+  public void simpleTest() throws IOException {
+    assertThat(read("a" + SEP + "b\\" + SEP + "c" + SEP + "d"), contains("a", "b", "c", "d"));
+    assertThat(read("a" + SEP + "'\\b'"), contains("a", "\\b"));
+    assertThat(read("").isEmpty(), is(true));
+  }
+
+  @Test
+  public void structureTest() throws IOException {
+    // Each Command keeps its own sub-commands, rather than all of them being appended to the first
+    final Command c = new TextCommand("c");
+    c.append(new TextCommand("d"));
+    final Command b = new TextCommand("b");
+    b.append(c);
+    final Command a = new TextCommand("a");
+    a.append(b);
+    a.append(new TextCommand("e"));
+
+    final List<String> decoded = new ArrayList<>();
+    assertThat(describe(readTree(encode(a), decoded)), is("<a>[<b>[<c>[<d>]]<e>]"));
+    assertThat(decoded, contains("a", "b", "c", "d", "e"));
+  }
+
+  @Test
+  public void randomTreeTest() throws IOException {
+    final Random r = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      checkRead(encode(randomTree(r, 0)));
+    }
+  }
+
+  @Test
+  public void randomStringTest() throws IOException {
+    // Strings which were not necessarily produced by encode() must still be read as decode() reads them
+    final Random r = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      final StringBuilder sb = new StringBuilder();
+      final int n = r.nextInt(12);
+      for (int j = 0; j < n; j++) {
+        sb.append(FRAGMENTS[r.nextInt(FRAGMENTS.length)]);
+      }
+      checkRead(sb.toString());
+    }
+  }
+
+  /** A Command holding the text it was decoded from */
+  private static class TextCommand extends Command {
+    private final String text;
+
+    TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+
+    @Override
+    public boolean isNull() {
+      return false;
+    }
+  }
+}
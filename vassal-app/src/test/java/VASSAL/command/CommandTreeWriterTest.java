@@ -0,0 +1,121 @@
+package VASSAL.command;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import VASSAL.tools.SequenceEncoder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CommandTreeWriterTest {
+
+  private static final char SEP = 27;
+
+  private static final String[] FRAGMENTS = {
+    "a", "bc", "\\", "'", String.valueOf(SEP), "+/1234/", "\\'", "x'", "'y", "", ";"
+  };
+
+  /** Reference copy of GameModule.encode() */
+  private static String encode(Command c) {
+    if (c == null) {
+      return null;
+    }
+    String s = encodeSubCommand(c);
+    String s2;
+    final Command[] sub = c.getSubCommands();
+    if (sub.length > 0) {
+      final SequenceEncoder se = new SequenceEncoder(s, SEP);
+      for (final Command command : sub) {
+        s2 = encode(command);
+        if (s2 != null) {
+          se.append(s2);
+        }
+      }
+      s = se.getValue();
+    }
+    return s;
+  }
+
+  private static String encodeSubCommand(Command c) {
+    return c instanceof TextCommand ? ((TextCommand) c).text : null;
+  }
+
+  private static String write(Command c) throws IOException {
+    final CommandTreeWriter w = new CommandTreeWriter(SEP, CommandTreeWriterTest::encodeSubCommand, CommandTreeWriterTest::encode);
+    final StringWriter out = new StringWriter();
+    return w.write(c, out) ? out.toString() : null;
+  }
+
+  private static String randomText(Random r) {
+    if (r.nextInt(10) == 0) {
+      return null;
+    }
+    final StringBuilder sb = new StringBuilder();
+    final int n = r.nextInt(4);
+    for (int i = 0; i < n; i++) {
+      sb.append(FRAGMENTS[r.nextInt(FRAGMENTS.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static Command randomTree(Random r, int depth) {
+    final Command c = new TextCommand(randomText(r));
+    if (depth < 4) {
+      final int n = r.nextInt(4);
+      for (int i = 0; i < n; i++) {
+        c.append(randomTree(r, depth + 1));
+      }
+    }
+    return c;
+  }
+
+  @Test
+  public void simpleTest() throws IOException {
+    final Command c = new TextCommand("a");
+    c.append(new TextCommand("b" + SEP + "c"));
+    final Command d = new TextCommand("\\d");
+    d.append(new TextCommand("e"));
+    c.append(d);
+    assertThat(write(c), is(equalTo(encode(c))));
+
+    assertThat(write(null), is(equalTo(null)));
+    assertThat(write(new TextCommand(null)), is(equalTo(null)));
+  }
+
+  @Test
+  public void randomTreeTest() throws IOException {
+    final Random r = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      final Command c = randomTree(r, 0);
+      assertThat(write(c), is(equalTo(encode(c))));
+    }
+  }
+
+  /** A Command which encodes to a fixed string and never collapses when appended to */
+  private static class TextCommand extends Command {
+    private final String text;
+
+    TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+
+    @Override
+    public boolean isNull() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package VASSAL.command;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PieceSnapshotHistoryTest {
+
+  private final Map<String, GamePiece> pieces = new HashMap<>();
+  private PieceSnapshotHistory history;
+
+  private GamePiece piece(String id, String state) {
+    final GamePiece p = mock(GamePiece.class);
+    when(p.getId()).thenReturn(id);
+    when(p.getType()).thenReturn("type-" + id);
+    when(p.getState()).thenReturn(state);
+    pieces.put(id, p);
+    return p;
+  }
+
+  private static List<PieceSnapshot> restored(Command c) {
+    assertThat(c, instanceOf(RestorePieces.class));
+    return ((RestorePieces) c).getSnapshots();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    pieces.clear();
+    history = new PieceSnapshotHistory(10, pieces::values, pieces::get);
+  }
+
+  @Test
+  public void testRestoresStateFromBeforeEarliestStep() {
+    final GamePiece a = piece("a", "a0");
+    final GamePiece b = piece("b", "b0");
+    history.start();
+
+    when(a.getState()).thenReturn("a1");
+    history.record(0, new ChangePiece("a", "a0", "a1"));
+
+    when(a.getState()).thenReturn("a2");
+    when(b.getState()).thenReturn("b1");
+    final Command step = new ChangePiece("a", "a1", "a2");
+    step.append(new ChangePiece("b", "b0", "b1"));
+    history.record(1, step);
+
+    // The pieces still exist, so their types are left out
+    assertThat(restored(history.getUndoCommand(List.of(1))), contains(
+      new PieceSnapshot("a", null, "a1", null),
+      new PieceSnapshot("b", null, "b0", null)
+    ));
+
+    assertThat(restored(history.getUndoCommand(List.of(1, 0))), contains(
+      new PieceSnapshot("a", null, "a0", null),
+      new PieceSnapshot("b", null, "b0", null)
+    ));
+  }
+
+  @Test
+  public void testAddedAndRemovedPieces() {
+    final GamePiece a = piece("a", "a0");
+    history.start();
+
+    final GamePiece b = piece("b", "b0");
+    history.record(0, new AddPiece(b));
+
+    pieces.remove("a");
+    history.record(1, new RemovePiece(a));
+
+    assertThat(restored(history.getUndoCommand(List.of(1, 0))), contains(
+      new PieceSnapshot("a", "type-a", "a0", null),
+      PieceSnapshot.absent("b")
+    ));
+  }
+
+  @Test
+  public void testStackJoined() {
+    final GamePiece a = piece("a", "a0");
+    final Stack s = mock(Stack.class);
+    when(s.getId()).thenReturn("s");
+    when(s.getType()).thenReturn("stack");
+    when(s.getState()).thenReturn("s0");
+    pieces.put("s", s);
+    history.start();
+
+    when(a.getState()).thenReturn("a1");
+    when(a.getParent()).thenReturn(s);
+    when(s.getState()).thenReturn("s1");
+    history.record(0, new MovePiece("a", "m", null, "x", "m", null, null, null));
+
+    assertThat(restored(history.getUndoCommand(List.of(0))), contains(
+      new PieceSnapshot("a", null, "a0", null),
+      new PieceSnapshot("s", null, "s0", null)
+    ));
+
+    // The snapshots now hold the piece in the stack
+    when(a.getState()).thenReturn("a2");
+    history.record(1, new ChangePiece("a", "a1", "a2"));
+    assertThat(restored(history.getUndoCommand(List.of(1))), contains(
+      new PieceSnapshot("a", null, "a1", "s"),
+      new PieceSnapshot("s", null, "s1", null)
+    ));
+  }
+
+  @Test
+  public void testStaleStepIsNotKept() {
+    final GamePiece a = piece("a", "a0");
+    history.start();
+
+    // Changed behind the history's back
+    when(a.getState()).thenReturn("a2");
+    history.record(0, new ChangePiece("a", "a1", "a2"));
+    assertThat(history.getUndoCommand(List.of(0)), is(nullValue()));
+
+    // But the history has caught up
+    when(a.getState()).thenReturn("a3");
+    history.record(1, new ChangePiece("a", "a2", "a3"));
+    assertThat(restored(history.getUndoCommand(List.of(1))), contains(new PieceSnapshot("a", null, "a2", null)));
+  }
+
+  @Test
+  public void testUnknownCommandIsNotKept() {
+    piece("a", "a0");
+    history.start();
+
+    final Command c = new Command() {
+      @Override
+      protected void executeCommand() {
+      }
+
+      @Override
+      protected Command myUndoCommand() {
+        return new NullCommand();
+      }
+    };
+    history.record(0, c);
+    assertThat(history.getUndoCommand(List.of(0)), is(nullValue()));
+  }
+
+  @Test
+  public void testUnknownCommandDistrustsSnapshots() {
+    final GamePiece a = piece("a", "a0");
+    final GamePiece b = piece("b", "b0");
+    final int[] snapshotAlls = {0};
+    history = new PieceSnapshotHistory(10, () -> {
+      snapshotAlls[0]++;
+      return pieces.values();
+    }, pieces::get);
+    history.start();
+
+    // A Command the history cannot follow changes a piece
+    when(a.getState()).thenReturn("a1");
+    history.record(0, new Command() {
+      @Override
+      protected void executeCommand() {
+      }
+
+      @Override
+      protected Command myUndoCommand() {
+        return new NullCommand();
+      }
+    });
+
+    // No new snapshot of every piece is taken
+    assertThat(snapshotAlls[0], equalTo(1));
+
+    // A move of the piece cannot be undone from a snapshot taken before the unknown Command
+    history.record(1, new MovePiece("a", "m", null, "x", "m", null, null, null));
+    assertThat(history.getUndoCommand(List.of(1)), is(nullValue()));
+
+    // But once touched, it is snapshotted again and can be
+    when(a.getState()).thenReturn("a2");
+    history.record(2, new ChangePiece("a", "a1", "a2"));
+    assertThat(restored(history.getUndoCommand(List.of(2))), contains(new PieceSnapshot("a", null, "a1", null)));
+
+    // A change whose old state matches the snapshot shows it is right
+    when(b.getState()).thenReturn("b1");
+    history.record(3, new ChangePiece("b", "b0", "b1"));
+    assertThat(restored(history.getUndoCommand(List.of(3))), contains(new PieceSnapshot("b", null, "b0", null)));
+    assertThat(snapshotAlls[0], equalTo(1));
+  }
+
+  @Test
+  public void testCapacity() {
+    final GamePiece a = piece("a", "0");
+    history.start();
+    history.setCapacity(3);
+
+    for (int i = 1; i <= 5; ++i) {
+      when(a.getState()).thenReturn(Integer.toString(i));
+      history.record(i - 1, new ChangePiece("a", Integer.toString(i - 1), Integer.toString(i)));
+    }
+
+    assertThat(history.getStepCount(), equalTo(3));
+    assertThat(history.getUndoCommand(List.of(4, 3, 2, 1)), is(nullValue()));
+    assertThat(restored(history.getUndoCommand(List.of(4, 3, 2))), contains(new PieceSnapshot("a", null, "2", null)));
+
+    history.stop();
+    assertThat(history.getUndoCommand(List.of(4)), is(nullValue()));
+  }
+}
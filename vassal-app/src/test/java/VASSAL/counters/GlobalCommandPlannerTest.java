@@ -0,0 +1,140 @@
+package VASSAL.counters;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+import VASSAL.build.module.Map;
+import VASSAL.build.module.index.IndexManager;
+import VASSAL.script.expression.BeanShellExpression;
+import VASSAL.script.expression.Expression;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+public class GlobalCommandPlannerTest {
+
+  @Test
+  public void testSplitConjuncts() {
+    assertThat(GlobalCommandPlanner.splitConjuncts("Side==\"Allies\" && (Type!=\"HQ\") && ((Strength>2))"),
+      contains("Side==\"Allies\"", "Type!=\"HQ\"", "Strength>2"));
+
+    // && inside parentheses or strings does not split
+    assertThat(GlobalCommandPlanner.splitConjuncts("(A==\"1\" && B==\"2\") || C==\"3\""),
+      contains("(A==\"1\" && B==\"2\") || C==\"3\""));
+    assertThat(GlobalCommandPlanner.splitConjuncts("Name==\"a && b\" && X==\"y\""),
+      contains("Name==\"a && b\"", "X==\"y\""));
+
+    // A top-level || or ?: means the clauses cannot be taken apart
+    assertThat(GlobalCommandPlanner.splitConjuncts("A==\"1\" && B==\"2\" || C==\"3\""),
+      contains("A==\"1\" && B==\"2\" || C==\"3\""));
+    assertThat(GlobalCommandPlanner.splitConjuncts("A==\"1\" && B ? true : false"),
+      contains("A==\"1\" && B ? true : false"));
+
+    // Parentheses which do not enclose the whole clause are kept
+    assertThat(GlobalCommandPlanner.splitConjuncts("(A) == (B)"), contains("(A) == (B)"));
+  }
+
+  @Test
+  public void testParseEquality() {
+    assertThat(GlobalCommandPlanner.parseEquality("Side == \"Allies\""), arrayContaining("Side", "Allies"));
+    assertThat(GlobalCommandPlanner.parseEquality("\"Allies\"==Side"), arrayContaining("Side", "Allies"));
+    assertThat(GlobalCommandPlanner.parseEquality("GetProperty(\"Unit Type\")==\"Inf\""), arrayContaining("Unit Type", "Inf"));
+
+    // Not equalities of a property and a literal
+    assertThat(GlobalCommandPlanner.parseEquality("Side != \"Allies\""), is(nullValue()));
+    assertThat(GlobalCommandPlanner.parseEquality("Side == Other"), is(nullValue()));
+    assertThat(GlobalCommandPlanner.parseEquality("Side.length() == \"2\""), is(nullValue()));
+
+    // Values which BeanShell does not compare as plain Strings
+    assertThat(GlobalCommandPlanner.parseEquality("Strength == \"2\""), is(nullValue()));
+    assertThat(GlobalCommandPlanner.parseEquality("Flipped == \"true\""), is(nullValue()));
+    assertThat(GlobalCommandPlanner.parseEquality("Side == \"\""), is(nullValue()));
+  }
+
+  @Test
+  public void testCandidates() {
+    final GamePiece a = mock(GamePiece.class);
+    final GamePiece b = mock(GamePiece.class);
+    final GamePiece c = mock(GamePiece.class);
+    final GamePiece d = mock(GamePiece.class);
+
+    final GlobalCommandPlanner plan = new GlobalCommandPlanner(mock(IndexManager.class));
+    assertThat(plan.isIndexed(), is(false));
+
+    plan.addLookup("Zone", List.of(a, b, c, d));
+    plan.addLookup("Side", List.of(b, c));
+    plan.addLookup("Type", List.of(c, d, b));
+    assertThat(plan.isIndexed(), is(true));
+    assertThat(plan.getCandidates(), containsInAnyOrder(b, c));
+
+    // The smallest lookup is listed first
+    assertThat(plan.toString().startsWith("Global Key Command plan: index lookups Side (2), Type (3), Zone (4) -> 2 candidates"), is(true));
+  }
+
+  @Test
+  public void testCandidateOrder() {
+    final Map map1 = mock(Map.class);
+    final Map map2 = mock(Map.class);
+    final Stack stack = mock(Stack.class);
+    final GamePiece a = mockPiece(map1, null);
+    final GamePiece b = mockPiece(map1, stack);
+    final GamePiece c = mockPiece(map1, stack);
+    final GamePiece d = mockPiece(map2, null);
+    when(map1.getDrawOrderIndex(a)).thenReturn(1);
+    when(map1.getDrawOrderIndex(stack)).thenReturn(0);
+    when(stack.getPieceCount()).thenReturn(2);
+    when(stack.getPieceAt(0)).thenReturn(c);
+    when(stack.getPieceAt(1)).thenReturn(b);
+    when(map2.getDrawOrderIndex(d)).thenReturn(0);
+
+    // The order a scan would visit the pieces in: by map, by draw order, then by position in the Stack
+    final GlobalCommandPlanner plan = new GlobalCommandPlanner(mock(IndexManager.class), List.of(map1, map2));
+    plan.addLookup("Zone", List.of(d, b, a, c));
+    assertThat(plan.getCandidates(), contains(c, b, a, d));
+  }
+
+  @Test
+  public void testResidualFilterCached() {
+    final String text = "Side == \"Allies\" && Strength > 7";
+    final BeanShellExpression.BshFilter filter = mock(BeanShellExpression.BshFilter.class);
+    when(filter.toBeanShellString()).thenReturn(text);
+
+    final IndexManager indexManager = mock(IndexManager.class);
+    when(indexManager.isIndexed("Side")).thenReturn(true);
+
+    final PieceFilter residualFilter = mock(PieceFilter.class);
+    final Expression residual = mock(Expression.class);
+    when(residual.getFilter(any(), any())).thenReturn(residualFilter);
+
+    try (MockedStatic<Expression> staticExpression = Mockito.mockStatic(Expression.class)) {
+      staticExpression.when(() -> Expression.createExpression("{(Strength > 7)}")).thenReturn(residual);
+
+      for (int i = 0; i < 3; i++) {
+        final GlobalCommandPlanner plan = new GlobalCommandPlanner(indexManager, List.of());
+        plan.planFilter(filter, List.of(), null, null);
+        assertThat(plan.isIndexed(), is(true));
+        assertThat(plan.getResidualFilter(), is(residualFilter));
+      }
+
+      // The filter is only taken apart and its residual only compiled the first time
+      staticExpression.verify(() -> Expression.createExpression("{(Strength > 7)}"), times(1));
+    }
+  }
+
+  private static GamePiece mockPiece(Map map, Stack parent) {
+    final GamePiece p = mock(GamePiece.class);
+    when(p.getMap()).thenReturn(map);
+    when(p.getParent()).thenReturn(parent);
+    return p;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.Map;
+import VASSAL.build.module.index.IndexManager;
+import VASSAL.script.expression.AuditTrail;
+import VASSAL.tools.RecursionLimiter.Loopable;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.KeyStroke;
+
+public class GlobalCommandTest {
+
+  private static GamePiece mockPiece(Map map, String board) {
+    final GamePiece p = mock(GamePiece.class);
+    when(p.getMap()).thenReturn(map);
+    when(p.getProperty(BasicPiece.CURRENT_BOARD)).thenReturn(board);
+    return p;
+  }
+
+  @Test
+  public void testIndexedXYMatch() {
+    try (MockedStatic<GameModule> staticGm = Mockito.mockStatic(GameModule.class);
+         MockedStatic<AuditTrail> staticAudit = Mockito.mockStatic(AuditTrail.class)) {
+
+      final Map map = mock(Map.class);
+      final GamePiece a = mockPiece(map, "Board A");
+      final GamePiece b = mockPiece(map, "Board B");
+      final GamePiece c = mockPiece(map, "Board A");
+      when(map.getDrawOrderIndex(a)).thenReturn(0);
+      when(map.getDrawOrderIndex(b)).thenReturn(1);
+      when(map.getDrawOrderIndex(c)).thenReturn(2);
+
+      // The index finds all three pieces at the point, in no particular order
+      final IndexManager indexManager = mock(IndexManager.class);
+      when(indexManager.getPieces(eq(map), any(Point.class))).thenReturn(List.of(c, b, a));
+
+      final GameModule gm = mock(GameModule.class);
+      when(gm.getIndexManager()).thenReturn(indexManager);
+      staticGm.when(GameModule::getGameModule).thenReturn(gm);
+
+      final GlobalCommandTarget target = new GlobalCommandTarget();
+      target.setFastMatchLocation(true);
+      target.setTargetType(GlobalCommandTarget.Target.XY);
+      // The Board of an XY match is kept in the Location field
+      target.setTargetLocation("Board A");
+      target.setTargetX(100);
+      target.setTargetY(200);
+
+      // Record the pieces the filter is asked about, applying the command to none of them
+      final List<GamePiece> visited = new ArrayList<>();
+      final PieceFilter filter = p -> {
+        visited.add(p);
+        return false;
+      };
+
+      final GlobalCommand command = new GlobalCommand(mock(Loopable.class));
+      command.setKeyStroke(KeyStroke.getKeyStroke(KeyEvent.VK_A, 0));
+      command.apply(new Map[] {map}, filter, target, null);
+
+      // Only the pieces on the Board asked for, in the order they are drawn
+      assertThat(visited, contains(a, c));
+    }
+  }
+}
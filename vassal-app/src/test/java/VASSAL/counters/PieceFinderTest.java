@@ -0,0 +1,46 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+public class PieceFinderTest {
+
+  @Test
+  public void builtInFindersAreBounded() {
+    assertThat(PieceFinder.MOVABLE.isBounded(), is(true));
+    assertThat(PieceFinder.STACK_ONLY.isBounded(), is(true));
+    assertThat(PieceFinder.PIECE_IN_STACK.isBounded(), is(true));
+    assertThat(PieceFinder.DECK_OR_PIECE_IN_STACK.isBounded(), is(true));
+    assertThat(PieceFinder.MAT_ONLY.isBounded(), is(true));
+  }
+
+  @Test
+  public void extendedFindersAreNotBounded() {
+    // A module's own finder may select pieces some other way, such as by snapping to a grid
+    assertThat(new PieceFinder.Movable().isBounded(), is(false));
+    assertThat(new PieceFinder.PieceInStack() { }.isBounded(), is(false));
+    assertThat(new PieceFinder.DeckOrPieceInStack() { }.isBounded(), is(false));
+    assertThat(new PieceFinder.StackOnly() { }.isBounded(), is(false));
+    assertThat(new PieceFinder.MatOnly() { }.isBounded(), is(false));
+    assertThat(((PieceFinder) (map, piece, pt) -> piece).isBounded(), is(false));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.script;
+
+import VASSAL.build.module.properties.PropertySource;
+import VASSAL.script.expression.ExpressionException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A program timing the evaluation of expressions such as Global Key Command filters and Calculated Properties use,
+ * first by BeanShell alone and then compiled to Java classes.
+ *
+ * Usage: ExpressionBenchmark [evaluations]
+ */
+public class ExpressionBenchmark {
+
+  private static final List<String> EXPRESSIONS = List.of(
+    "CurrentMap == \"Main Map\" && Side == \"Allied\" && Strength > 2", //NON-NLS
+    "Strength * 2 + Bonus - (Disrupted ? 1 : 0)", //NON-NLS
+    "UnitName.contains(\"Inf\") ? Attack + 1 : Attack", //NON-NLS
+    "Range > 3 || Moved == false", //NON-NLS
+    "LocationName =~ \"^[A-H][0-9]+$\" && Step != 2", //NON-NLS
+    "GetProperty(\"Strength\") + GetProperty(\"Bonus\")" //NON-NLS
+  );
+
+  public static void main(String[] args) throws ExpressionException {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    // compile straight away, rather than timing BeanShell while a compile runs
+    ExpressionInterpreter.setCompiler(Runnable::run);
+
+    final Map<String, String> properties = new HashMap<>();
+    properties.put("CurrentMap", "Main Map"); //NON-NLS
+    properties.put("Side", "Allied"); //NON-NLS
+    properties.put("Strength", "4"); //NON-NLS
+    properties.put("Bonus", "1"); //NON-NLS
+    properties.put("Disrupted", "false"); //NON-NLS
+    properties.put("UnitName", "1st Inf Bn"); //NON-NLS
+    properties.put("Attack", "3"); //NON-NLS
+    properties.put("Range", "2"); //NON-NLS
+    properties.put("Moved", "false"); //NON-NLS
+    properties.put("LocationName", "C7"); //NON-NLS
+    properties.put("Step", "1"); //NON-NLS
+    final PropertySource ps = new PropertySource() {
+      @Override
+      public Object getProperty(Object key) {
+        return properties.get(key);
+      }
+
+      @Override
+      public Object getLocalizedProperty(Object key) {
+        return properties.get(key);
+      }
+    };
+
+    for (int rep = 0; rep < 3; ++rep) {
+      for (final String expression : EXPRESSIONS) {
+        final long[] nanos = new long[2];
+        final String[] results = new String[2];
+        for (int tier = 0; tier < 2; ++tier) {
+          ExpressionInterpreter.setCompileThreshold(tier == 0 ? -1 : 0);
+          final ExpressionInterpreter interpreter = new ExpressionInterpreter(expression);
+          final long t = System.nanoTime();
+          for (int i = 0; i < n; ++i) {
+            results[tier] = interpreter.evaluate(ps);
+          }
+          nanos[tier] = System.nanoTime() - t;
+        }
+        System.out.printf("%-70s %8.0f ns BeanShell %6.0f ns compiled (%s)%n", expression, //NON-NLS
+          (double) nanos[0] / n, (double) nanos[1] / n,
+          results[0].equals(results[1]) ? results[1] : "MISMATCH " + results[0] + " / " + results[1]); //NON-NLS
+      }
+      System.out.println();
+    }
+  }
+}
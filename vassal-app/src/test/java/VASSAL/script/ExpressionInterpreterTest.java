@@ -2,10 +2,13 @@ package VASSAL.script;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -14,6 +17,7 @@ import VASSAL.build.GameModule;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
 import VASSAL.build.module.properties.PropertySource;
+import VASSAL.build.module.properties.PropertyValue;
 import VASSAL.counters.BasicPiece;
 import VASSAL.counters.GamePiece;
 import VASSAL.counters.Properties;
@@ -21,6 +25,7 @@ import VASSAL.counters.Stack;
 import VASSAL.script.expression.ExpressionException;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
@@ -376,4 +381,165 @@ public class ExpressionInterpreterTest {
     }
   }
 
+  /** @return a PropertySource holding the given properties, so that GetProperty() can read them too */
+  private static PropertySource source(java.util.Map<String, String> properties) {
+    return new PropertySource() {
+      @Override
+      public Object getProperty(Object key) {
+        return properties.get(String.valueOf(key));
+      }
+
+      @Override
+      public Object getLocalizedProperty(Object key) {
+        return getProperty(key);
+      }
+    };
+  }
+
+  private static String evaluate(String expression, PropertySource ps, int compileThreshold) {
+    ExpressionInterpreter.setCompiler(Runnable::run);
+    ExpressionInterpreter.setCompileThreshold(compileThreshold);
+    try {
+      return new ExpressionInterpreter(expression).evaluate(ps);
+    }
+    catch (ExpressionException e) {
+      return "error";
+    }
+    finally {
+      ExpressionInterpreter.setCompileThreshold(10);
+    }
+  }
+
+  /** @return the result of the compiled form alone, or null if it leaves the evaluation to BeanShell */
+  private static String evaluateCompiled(ExpressionInterpreter interpreter, PropertySource ps) {
+    final List<String> names = new ArrayList<>(interpreter.variables);
+    names.addAll(interpreter.stringVariables);
+    interpreter.source = ps;
+    try {
+      final PropertyValue[] values = new PropertyValue[names.size()];
+      for (int i = 0; i < values.length; ++i) {
+        values[i] = interpreter.lookup(names.get(i), null, false, null);
+      }
+      return interpreter.evaluateCompiled(values);
+    }
+    finally {
+      interpreter.source = null;
+    }
+  }
+
+  @Test
+  public void compiledMatchesBeanShell() {
+    final List<String> expressions = List.of(
+      "A + B", "A - B * 2", "A / B", "A % 3", "A == B", "A != \"3\"", "A < B", "A >= B",
+      "A && B", "A || !B", "-A", "A + \"x\"", "A > 2 ? A : B", "A.length() + B", "A.contains(B)",
+      "A.substring(1)", "A == \"\"", "A =~ \"a.c\"", "A + 1.5", "GetProperty(\"A\") + 1", "~A"
+    );
+    final List<String> values = List.of("3", "-7", "0", "2.5", "abc", "", "true", "false", "007",
+      "12345678901234", "a\"b", "x\\ny");
+
+    ExpressionInterpreter.setCompiler(Runnable::run);
+    for (final String expression : expressions) {
+      final ExpressionInterpreter interpreter;
+      ExpressionInterpreter.setCompileThreshold(0);
+      try {
+        interpreter = new ExpressionInterpreter(expression);
+      }
+      catch (ExpressionException e) {
+        throw new AssertionError(expression, e);
+      }
+      finally {
+        ExpressionInterpreter.setCompileThreshold(10);
+      }
+
+      int answered = 0;
+      for (final String a : values) {
+        for (final String b : values) {
+          final String message = expression + " with A=" + a + ", B=" + b;
+          final PropertySource ps = source(java.util.Map.of("A", a, "B", b));
+          final String interpreted = evaluate(expression, ps, -1);
+          assertThat(message, evaluate(expression, ps, 0), is(equalTo(interpreted)));
+
+          // Check the compiled form itself, as evaluate() falls back to BeanShell whenever it gives up
+          final String compiled = evaluateCompiled(interpreter, ps);
+          if (compiled != null) {
+            ++answered;
+            assertThat(message, compiled, is(equalTo(interpreted)));
+          }
+        }
+      }
+
+      // BeanShell reads an expression starting with ~ differently, so it is never compiled
+      if (!expression.startsWith("~")) {
+        assertThat(expression, interpreter.compiled, is(notNullValue()));
+        assertThat(expression, answered, is(greaterThan(0)));
+      }
+    }
+  }
+
+  @Test
+  public void compiledSumStack() throws ExpressionException {
+    final Stack s = new Stack();
+    final BasicPiece bp1 = new BasicPiece();
+    bp1.setProperty(SUM_PROP, "24");
+    final BasicPiece bp2 = new BasicPiece();
+    bp2.setProperty(SUM_PROP, "18");
+    s.add(bp1);
+    s.add(bp2);
+
+    ExpressionInterpreter.setCompiler(Runnable::run);
+    ExpressionInterpreter.setCompileThreshold(0);
+    try {
+      final ExpressionInterpreter interpreter = new ExpressionInterpreter("SumStack(\"" + SUM_PROP + "\") * 2 + CountStack(\"" + SUM_PROP + "\")");
+      assertThat(interpreter.evaluate(bp1), is(equalTo("86")));
+      assertThat(interpreter.compiled, is(notNullValue()));
+    }
+    finally {
+      ExpressionInterpreter.setCompileThreshold(10);
+    }
+  }
+
+  @Test
+  public void compiledInBackground() throws ExpressionException {
+    final BasicPiece bp = new BasicPiece();
+    bp.setProperty(SUM_PROP, "24");
+
+    // Hold the compile until we run it
+    final List<Runnable> queued = new ArrayList<>();
+    ExpressionInterpreter.setCompiler(queued::add);
+    ExpressionInterpreter.setCompileThreshold(1);
+    try {
+      ExpressionInterpreter.clearCompiled();
+      final ExpressionInterpreter interpreter = new ExpressionInterpreter(SUM_PROP + " + 1");
+      assertThat(interpreter.evaluate(bp), is(equalTo("25")));
+      assertThat(queued.isEmpty(), is(true));
+
+      // BeanShell is used until the compile is done
+      assertThat(interpreter.evaluate(bp), is(equalTo("25")));
+      assertThat(queued.size(), is(1));
+      assertThat(interpreter.evaluate(bp), is(equalTo("25")));
+      assertThat(interpreter.compiled, is(nullValue()));
+
+      queued.get(0).run();
+      assertThat(interpreter.evaluate(bp), is(equalTo("25")));
+      assertThat(interpreter.compiled, is(notNullValue()));
+
+      // Another interpreter of the same expression shares the compiled form, which is forgotten when cleared
+      final ExpressionInterpreter other = new ExpressionInterpreter(SUM_PROP + " + 1");
+      other.evaluate(bp);
+      other.evaluate(bp);
+      assertThat(other.compiled, is(notNullValue()));
+      assertThat(queued.size(), is(1));
+
+      ExpressionInterpreter.clearCompiled();
+      final ExpressionInterpreter third = new ExpressionInterpreter(SUM_PROP + " + 1");
+      third.evaluate(bp);
+      third.evaluate(bp);
+      assertThat(third.compiled, is(nullValue()));
+      assertThat(queued.size(), is(2));
+    }
+    finally {
+      ExpressionInterpreter.setCompiler(Runnable::run);
+      ExpressionInterpreter.setCompileThreshold(10);
+    }
+  }
 }
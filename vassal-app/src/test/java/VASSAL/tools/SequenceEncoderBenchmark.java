@@ -0,0 +1,117 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A program timing the decoding of a large saved game, as a list of pieces each encoded as a nested sequence of
+ * traits in the manner of {@link VASSAL.counters.Decorator}, first reading every token as a String and interning
+ * it, as {@link SequenceEncoder.Decoder} once did, then reading every token as a String, as it now does, and then
+ * parsing numbers, booleans and colors in place. It also counts the distinct String instances kept after each, as
+ * an indication of the memory the decoded tokens hold.
+ *
+ * Usage: SequenceEncoderBenchmark [pieces]
+ */
+public class SequenceEncoderBenchmark {
+
+  private static final int TRAITS = 12;
+
+  private static List<String> save(int n) {
+    final Random r = new Random(1);
+    final List<String> l = new ArrayList<>(n);
+    for (int i = 0; i < n; ++i) {
+      final SequenceEncoder piece = new SequenceEncoder('\t');
+      for (int t = 0; t < TRAITS; ++t) {
+        final SequenceEncoder trait = new SequenceEncoder(';');
+        trait.append("mark").append("Nationality").append(r.nextBoolean() ? "German" : "Soviet") //NON-NLS
+          .append(r.nextInt(10)).append(r.nextInt(3000)).append(r.nextBoolean())
+          .append(r.nextInt(256) + "," + r.nextInt(256) + "," + r.nextInt(256))
+          .append("Unit-" + r.nextInt(50)); //NON-NLS
+        piece.append(trait.getValue());
+      }
+      l.add(piece.getValue());
+    }
+    return l;
+  }
+
+  private interface TraitReader {
+    void read(SequenceEncoder.Decoder sd, List<Object> kept);
+  }
+
+  private static final TraitReader INTERNED = (sd, kept) -> {
+    while (sd.hasMoreTokens()) {
+      kept.add(sd.nextToken().intern());
+    }
+  };
+
+  private static final TraitReader TOKENS = (sd, kept) -> {
+    while (sd.hasMoreTokens()) {
+      kept.add(sd.nextToken());
+    }
+  };
+
+  private static final TraitReader IN_PLACE = (sd, kept) -> {
+    kept.add(sd.nextToken());
+    kept.add(sd.nextToken());
+    kept.add(sd.nextToken());
+    kept.add(sd.nextInt(0));
+    kept.add(sd.nextInt(0));
+    kept.add(sd.nextBoolean(false));
+    kept.add(sd.nextColor(null));
+    kept.add(sd.nextToken());
+  };
+
+  private static long run(String name, List<String> save, TraitReader reader) {
+    final List<Object> kept = new ArrayList<>(save.size() * TRAITS * 8);
+    final long t = System.nanoTime();
+    for (final String piece : save) {
+      final SequenceEncoder.Decoder pd = new SequenceEncoder.Decoder(piece, '\t');
+      while (pd.hasMoreTokens()) {
+        reader.read(new SequenceEncoder.Decoder(pd.nextToken(), ';'), kept);
+      }
+    }
+    final long nanos = System.nanoTime() - t;
+
+    final Map<Object, Boolean> strings = new IdentityHashMap<>();
+    for (final Object o : kept) {
+      if (o instanceof String) {
+        strings.put(o, Boolean.TRUE);
+      }
+    }
+    System.out.printf("%-10s %7.1f ms  %9d distinct Strings kept%n", name, nanos / 1e6, strings.size()); //NON-NLS
+    return nanos;
+  }
+
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+    final List<String> save = save(n);
+    System.out.printf("%d pieces, %d chars%n", n, save.stream().mapToLong(String::length).sum()); //NON-NLS
+
+    for (int rep = 0; rep < 3; ++rep) {
+      run("interned", save, INTERNED); //NON-NLS
+      run("tokens", save, TOKENS); //NON-NLS
+      run("in place", save, IN_PLACE); //NON-NLS
+    }
+  }
+}
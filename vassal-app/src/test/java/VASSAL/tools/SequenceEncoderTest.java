@@ -22,6 +22,7 @@ import java.awt.event.KeyEvent;
 import java.util.NoSuchElementException;
 import javax.swing.KeyStroke;
 
+import VASSAL.configure.ColorConfigurer;
 import VASSAL.configure.PropertyExpression;
 
 import org.junit.jupiter.api.Test;
@@ -295,4 +296,42 @@ public class SequenceEncoderTest {
     assertFalse(sd1.hasNext());
     assertFalse(sd2.hasNext());
   }
+
+  @Test
+  public void testDecodeInPlace() {
+    final SequenceEncoder se = new SequenceEncoder(';');
+    se.append(-17).append(12345678901L).append("true").append("truer").append("1,2,3").append("4,5,6,7")
+      .append("12,x,3").append("'quoted'").append("a;b").append(42).append("a;b");
+
+    final SequenceEncoder.Decoder sd = new SequenceEncoder.Decoder(se.getValue(), ';');
+    assertEquals(-17, sd.nextInt(0));
+    assertEquals(12345678901L, sd.nextLong(0));
+    assertTrue(sd.nextBoolean(false));
+    assertFalse(sd.nextBoolean(true));
+    assertEquals(new Color(1, 2, 3), sd.nextColor(null));
+    assertEquals(new Color(4, 5, 6, 7), sd.nextColor(null));
+    // anything else is left to ColorConfigurer, as before
+    assertEquals(ColorConfigurer.stringToColor("12,x,3"), sd.nextColor(Color.RED));
+    assertEquals("'quoted'", sd.nextCharSequence().toString());
+    assertEquals("a;b", sd.nextCharSequence().toString());
+    assertEquals(42, sd.nextInt(0));
+    // a token pieced together around an escaped delimiter is parsed too
+    assertEquals('a', sd.nextChar('x'));
+    assertFalse(sd.hasMoreTokens());
+  }
+
+  @Test
+  public void testTokensAreShared() {
+    final String a = new SequenceEncoder.Decoder("piece;state", ';').nextToken();
+    final String b = new SequenceEncoder.Decoder("piece;other", ';').nextToken();
+    assertEquals("piece", a);
+    assertSame(a, b);
+
+    // but not interned
+    final char[] chars = { 'x', 'y', 'z', 'z', 'y', '!' };
+    final String c = new String(chars);
+    assertSame(c, SequenceEncoder.Decoder.dedup(c));
+    final String d = new String(chars);
+    assertSame(d, d.intern());
+  }
 }
@@ -0,0 +1,207 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import VASSAL.tools.image.ImageIOImageLoader;
+import VASSAL.tools.image.ImageLoader;
+import VASSAL.tools.image.MemoryImageTypeConverter;
+import VASSAL.tools.io.FileArchive;
+import VASSAL.tools.io.ZipArchive;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static VASSAL.tools.image.AssertImage.*;
+
+public class ParallelImageTilerTest {
+
+  @TempDir
+  Path dir;
+
+  private final ImageLoader loader =
+    new ImageIOImageLoader(new MemoryImageTypeConverter());
+
+  private static BufferedImage image(int w, int h, long seed) {
+    final BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    final Random r = new Random(seed);
+    for (int y = 0; y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        img.setRGB(x, y, 0xFF000000 | (r.nextInt(8) == 0 ? r.nextInt() : 0x406080));
+      }
+    }
+    return img;
+  }
+
+  private static void makeHashDirs(File root) {
+    for (int i = 0; i < 256; ++i) {
+      final String h = String.format("%02x", i);
+      new File(root, h.charAt(0) + "/" + h).mkdirs();
+    }
+  }
+
+  private Map<String, Dimension> makeArchive(File zip) throws IOException {
+    final Map<String, Dimension> images = new LinkedHashMap<>();
+    images.put("images/a.png", new Dimension(600, 300));
+    images.put("images/b.png", new Dimension(300, 520));
+    images.put("images/c.png", new Dimension(1000, 700));
+
+    try (FileArchive fa = new ZipArchive(zip)) {
+      long seed = 0;
+      for (final Map.Entry<String, Dimension> e : images.entrySet()) {
+        final Dimension d = e.getValue();
+        try (OutputStream out = fa.getOutputStream(e.getKey())) {
+          ImageIO.write(image(d.width, d.height, seed++), "png", out);
+        }
+      }
+    }
+
+    return images;
+  }
+
+  private static int tileCount(Map<String, Dimension> images, String... ipaths) {
+    int n = 0;
+    for (final String ipath : ipaths) {
+      n += TileUtils.tileCount(images.get(ipath), new Dimension(256, 256));
+    }
+    return n;
+  }
+
+  @Test
+  public void testRun() throws Exception {
+    final File zip = dir.resolve("test.zip").toFile();
+    final Map<String, Dimension> images = makeArchive(zip);
+
+    final File tdir = dir.resolve("tiles").toFile();
+    makeHashDirs(tdir);
+
+    // c needs more than the budget, so is left for the caller
+    final long budget = ParallelImageTiler.imageCost(images.get("images/a.png")) + 6 * (1 << 20);
+    final ParallelImageTiler tiler = new ParallelImageTiler(4, budget);
+
+    final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger tiles = new AtomicInteger();
+
+    final List<String> skipped;
+    try (FileArchive fa = new ZipArchive(zip)) {
+      skipped = tiler.run(
+        fa, tdir.getPath(), 256, 256, images, loader, new TileSlicerImpl(),
+        started::add, obj -> tiles.incrementAndGet()
+      );
+    }
+
+    assertEquals(List.of("images/c.png"), skipped);
+    assertTrue(started.containsAll(List.of("images/a.png", "images/b.png")));
+    assertEquals(2, started.size());
+    assertEquals(tileCount(images, "images/a.png", "images/b.png"), tiles.get());
+
+    // the tiles are the same as those sliced one image at a time
+    try (FileArchive fa = new ZipArchive(zip)) {
+      final BufferedImage a = loader.load(
+        "images/a.png", fa.getInputStream("images/a.png"),
+        BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB_PRE, false
+      );
+
+      final File edir = dir.resolve("expected").toFile();
+      makeHashDirs(edir);
+      final ExecutorService exec = Executors.newSingleThreadExecutor();
+      try {
+        new TileSlicerImpl().slice(a, "images/a.png", edir.getPath(), 256, 256, exec, obj -> {});
+      }
+      finally {
+        exec.shutdown();
+      }
+
+      for (int div = 1; 600 / div > 0 && 300 / div > 0; div <<= 1) {
+        final String tn = TileUtils.tileName("images/a.png", 0, 0, div);
+        assertImageEquals(
+          TileUtils.read(new File(edir, tn)), TileUtils.read(new File(tdir, tn))
+        );
+      }
+    }
+  }
+
+  @Test
+  public void testPacks() throws Exception {
+    final File zip = dir.resolve("test.zip").toFile();
+    final Map<String, Dimension> images = makeArchive(zip);
+
+    final File tdir = dir.resolve("tiles").toFile();
+    makeHashDirs(tdir);
+
+    final ParallelImageTiler tiler = new ParallelImageTiler(2, 1L << 30);
+
+    final List<String> skipped;
+    try (FileArchive fa = new ZipArchive(zip)) {
+      skipped = tiler.run(
+        fa, tdir.getPath(), 256, 256, images, loader, new TileSlicerImpl(true),
+        ipath -> {}, obj -> {}
+      );
+    }
+
+    assertTrue(skipped.isEmpty());
+    for (final String ipath : images.keySet()) {
+      try (TilePack p = TilePack.open(new File(tdir, TileUtils.packName(ipath)))) {
+        assertEquals(tileCount(images, ipath), p.getTileCount());
+      }
+    }
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    final File zip = dir.resolve("test.zip").toFile();
+    final Map<String, Dimension> images = makeArchive(zip);
+
+    final File tdir = dir.resolve("tiles").toFile();
+    makeHashDirs(tdir);
+
+    final ParallelImageTiler tiler = new ParallelImageTiler(1, 1L << 30);
+
+    try (FileArchive fa = new ZipArchive(zip)) {
+      assertThrows(CancellationException.class, () -> tiler.run(
+        fa, tdir.getPath(), 256, 256, images, loader, new TileSlicerImpl(true),
+        ipath -> tiler.cancel(), obj -> {}
+      ));
+    }
+
+    // no partial packs are left behind
+    for (final String ipath : images.keySet()) {
+      assertFalse(new File(tdir, TileUtils.packName(ipath)).exists());
+      assertFalse(new File(tdir, TileUtils.packName(ipath) + ".tmp").exists());
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static VASSAL.tools.image.AssertImage.*;
+
+public class TilePackTest {
+
+  @TempDir
+  Path dir;
+
+  private static BufferedImage image(int w, int h, long seed) {
+    final BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    final Random r = new Random(seed);
+    for (int y = 0; y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        img.setRGB(x, y, r.nextInt(4) == 0 ? r.nextInt() : 0xFF808080);
+      }
+    }
+    return img;
+  }
+
+  /** Creates the directories which TilingHandler creates for tiles */
+  private static void makeHashDirs(File root) {
+    for (int i = 0; i < 256; ++i) {
+      final String h = String.format("%02x", i);
+      new File(root, h.charAt(0) + "/" + h).mkdirs();
+    }
+  }
+
+  @Test
+  public void testWriteRead() throws IOException {
+    final File f = dir.resolve("test.pack").toFile();
+
+    final BufferedImage a = image(16, 16, 1);
+    final BufferedImage b = image(7, 3, 2);
+    final BufferedImage c = image(1, 1, 3);
+
+    try (TilePackWriter w = new TilePackWriter(f)) {
+      // out of order, to exercise the sorting of the index
+      w.write(4, 0, 0, c);
+      w.write(1, 1, 0, b);
+      w.write(1, 0, 0, a);
+      w.finish();
+    }
+
+    assertTrue(f.isFile());
+    assertFalse(new File(f.getPath() + ".tmp").exists());
+
+    try (TilePack p = TilePack.open(f)) {
+      assertEquals(3, p.getTileCount());
+
+      assertImageEquals(a, TileUtils.read(p.getTile(1, 0, 0)));
+      assertImageEquals(b, TileUtils.read(p.getTile(1, 1, 0)));
+      assertImageEquals(c, TileUtils.read(p.getTile(4, 0, 0)));
+      assertEquals(new Dimension(7, 3), TileUtils.size(p.getTile(1, 1, 0)));
+
+      assertNull(p.getTile(1, 0, 1));
+      assertNull(p.getTile(2, 0, 0));
+    }
+  }
+
+  @Test
+  public void testAbort() throws IOException {
+    final File f = dir.resolve("test.pack").toFile();
+
+    try (TilePackWriter w = new TilePackWriter(f)) {
+      w.write(1, 0, 0, image(4, 4, 1));
+    }
+
+    assertFalse(f.exists());
+    assertFalse(new File(f.getPath() + ".tmp").exists());
+  }
+
+  @Test
+  public void testDuplicate() throws IOException {
+    final File f = dir.resolve("test.pack").toFile();
+
+    try (TilePackWriter w = new TilePackWriter(f)) {
+      w.write(1, 0, 0, image(4, 4, 1));
+      w.write(1, 0, 0, image(4, 4, 2));
+      assertThrows(IOException.class, w::finish);
+    }
+
+    assertFalse(f.exists());
+  }
+
+  @Test
+  public void testCorrupt() throws IOException {
+    final File f = dir.resolve("test.pack").toFile();
+
+    try (TilePackWriter w = new TilePackWriter(f)) {
+      w.write(1, 0, 0, image(4, 4, 1));
+      w.finish();
+    }
+
+    final byte[] b = Files.readAllBytes(f.toPath());
+    b[b.length - 1] ^= 1;
+    Files.write(f.toPath(), b);
+    assertThrows(IOException.class, () -> TilePack.open(f));
+
+    Files.write(f.toPath(), new byte[3]);
+    assertThrows(IOException.class, () -> TilePack.open(f));
+  }
+
+  @Test
+  public void testSlicedPackMatchesTiles() throws IOException {
+    final BufferedImage src = image(600, 300, 42);
+    final String iname = "images/map.png";
+
+    final File loose = dir.resolve("loose").toFile();
+    final File packed = dir.resolve("packed").toFile();
+    makeHashDirs(loose);
+    makeHashDirs(packed);
+
+    final ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      new TileSlicerImpl(true).slice(
+        src, iname, packed.getPath(), 256, 256, exec, obj -> {}
+      );
+      new TileSlicerImpl().slice(
+        src, iname, loose.getPath(), 256, 256, exec, obj -> {}
+      );
+    }
+    finally {
+      exec.shutdown();
+    }
+
+    assertTrue(new File(packed, TileUtils.packName(iname)).isFile());
+    assertFalse(new File(packed, TileUtils.tileName(iname, 0, 0, 1)).exists());
+
+    final ImageTileDiskCache lc = new ImageTileDiskCache(loose.getPath());
+    final ImageTileDiskCache pc = new ImageTileDiskCache(packed.getPath());
+    try {
+      for (int div = 1; 600 / div > 0 && 300 / div > 0; div <<= 1) {
+        final int n = TileUtils.tileCountAtScale(600, 300, 256, 256, div);
+        final int cols = (int) Math.ceil((double) (600 / div) / 256);
+        for (int i = 0; i < n; ++i) {
+          final int tx = i % cols;
+          final int ty = i / cols;
+          final double scale = 1.0 / div;
+
+          assertTrue(pc.tileExists(iname, tx, ty, scale));
+          assertEquals(
+            lc.getTileSize(iname, tx, ty, scale),
+            pc.getTileSize(iname, tx, ty, scale)
+          );
+          assertImageEquals(
+            lc.getTile(iname, tx, ty, scale),
+            pc.getTile(iname, tx, ty, scale)
+          );
+        }
+      }
+
+      assertFalse(pc.tileExists(iname, 99, 0, 1.0));
+      assertThrows(TileNotFoundException.class, () -> pc.getTile(iname, 99, 0, 1.0));
+    }
+    finally {
+      lc.close();
+      pc.close();
+    }
+  }
+
+  @Test
+  public void testCacheFollowsPackChanges() throws IOException {
+    final File root = dir.toFile();
+    makeHashDirs(root);
+    final String iname = "images/map.png";
+    final File f = new File(root, TileUtils.packName(iname));
+
+    final BufferedImage a = image(8, 8, 1);
+    final BufferedImage b = image(8, 8, 2);
+
+    final ImageTileDiskCache cache = new ImageTileDiskCache(root.getPath(), true, 0L);
+    try {
+      // A pack which is missing is looked for again
+      assertFalse(cache.tileExists(iname, 0, 0, 1.0));
+
+      try (TilePackWriter w = new TilePackWriter(f)) {
+        w.write(1, 0, 0, a);
+        w.finish();
+      }
+      assertImageEquals(a, cache.getTile(iname, 0, 0, 1.0));
+
+      // A pack replaced while open is opened again
+      try (TilePackWriter w = new TilePackWriter(f)) {
+        w.write(1, 0, 0, b);
+        w.finish();
+      }
+      assertTrue(f.setLastModified(f.lastModified() + 2000));
+      assertImageEquals(b, cache.getTile(iname, 0, 0, 1.0));
+
+      // And a pack removed while open is no longer used
+      TilePackWriter.retire(f.toPath());
+      assertFalse(f.exists());
+      assertFalse(cache.tileExists(iname, 0, 0, 1.0));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testCacheRemembersPackLookups() throws IOException {
+    final File root = dir.toFile();
+    makeHashDirs(root);
+    final String iname = "images/map.png";
+    final File f = new File(root, TileUtils.packName(iname));
+
+    final ImageTileDiskCache cache = new ImageTileDiskCache(root.getPath(), true, Long.MAX_VALUE);
+    final ImageTileDiskCache off = new ImageTileDiskCache(root.getPath(), false);
+    try {
+      assertFalse(cache.tileExists(iname, 0, 0, 1.0));
+
+      try (TilePackWriter w = new TilePackWriter(f)) {
+        w.write(1, 0, 0, image(8, 8, 1));
+        w.finish();
+      }
+
+      // The missing pack is not looked for again until it is due a recheck
+      assertFalse(cache.tileExists(iname, 0, 0, 1.0));
+
+      // And packs are not looked for at all when they are not read
+      assertFalse(off.tileExists(iname, 0, 0, 1.0));
+    }
+    finally {
+      cache.close();
+      off.close();
+    }
+  }
+
+  @Test
+  public void testKeyOrder() {
+    assertTrue(TilePack.key(1, 5, 5) < TilePack.key(2, 0, 0));
+    assertTrue(TilePack.key(1, 0, 5) < TilePack.key(1, 1, 0));
+    assertTrue(TilePack.key(1, 0, 0) < TilePack.key(1, 0, 1));
+  }
+
+  @Test
+  public void testTileSliceIsView() throws IOException {
+    final File f = dir.resolve("test.pack").toFile();
+
+    try (TilePackWriter w = new TilePackWriter(f)) {
+      w.write(1, 0, 0, image(4, 4, 1));
+      w.finish();
+    }
+
+    try (TilePack p = TilePack.open(f)) {
+      final ByteBuffer bb = p.getTile(1, 0, 0);
+      assertEquals(0, bb.position());
+      assertEquals(f.length() - TilePack.INDEX_ENTRY_LENGTH - TilePack.TRAILER_LENGTH, bb.remaining());
+    }
+  }
+}
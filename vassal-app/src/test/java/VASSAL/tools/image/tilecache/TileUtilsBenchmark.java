@@ -0,0 +1,180 @@
+/*
+ *
+ * Copyright (c) 2024 by The VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * A program comparing the on-disk size and decoding time of version 1
+ * (gzipped) and version 2 tiles.
+ *
+ * Usage: TileUtilsBenchmark [image file] [repetitions]
+ *
+ * Without an image file, a synthetic map with flat areas, gradients, lines
+ * and noise is used.
+ */
+public class TileUtilsBenchmark {
+
+  private static final int TILE_SIZE = 256;
+
+  public static void main(String[] args) throws IOException {
+    final BufferedImage src = args.length > 0 && !"-".equals(args[0]) ?
+      toARGB(ImageIO.read(new File(args[0]))) : syntheticMap(4096, 4096);
+    final int reps = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    final List<byte[]> v1 = new ArrayList<>();
+    final List<byte[]> v2 = new ArrayList<>();
+    final int[] modes = new int[4];
+
+    for (int y = 0; y < src.getHeight(); y += TILE_SIZE) {
+      for (int x = 0; x < src.getWidth(); x += TILE_SIZE) {
+        final BufferedImage tile = toARGB(src.getSubimage(
+          x, y,
+          Math.min(TILE_SIZE, src.getWidth() - x),
+          Math.min(TILE_SIZE, src.getHeight() - y)
+        ));
+
+        v1.add(writeV1(tile));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TileUtils.write(tile, out);
+        final byte[] b = out.toByteArray();
+        v2.add(b);
+        ++modes[b[TileUtils.HEADER_LENGTH + 1]];
+      }
+    }
+
+    System.out.printf("%d tiles of %dx%d%n", v1.size(), TILE_SIZE, TILE_SIZE);
+    System.out.printf(
+      "v2 modes: solid %d, runs %d, lz %d, deflate %d%n",
+      modes[TileCodec.SOLID], modes[TileCodec.RUNS],
+      modes[TileCodec.LZ], modes[TileCodec.DEFLATE]
+    );
+    System.out.printf("v1 size: %,d bytes%n", totalSize(v1));
+    System.out.printf("v2 size: %,d bytes%n", totalSize(v2));
+
+    for (int i = 0; i < reps; ++i) {
+      System.out.printf(
+        "decode v1: %d ms, v2: %d ms%n", decodeTime(v1), decodeTime(v2)
+      );
+    }
+  }
+
+  private static long totalSize(List<byte[]> tiles) {
+    long size = 0;
+    for (final byte[] b : tiles) {
+      size += b.length;
+    }
+    return size;
+  }
+
+  private static long decodeTime(List<byte[]> tiles) throws IOException {
+    final long start = System.nanoTime();
+    for (final byte[] b : tiles) {
+      TileUtils.read(b);
+    }
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+
+  /** Writes a tile in the version 1 format */
+  private static byte[] writeV1(BufferedImage tile) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    final DataOutputStream hout = new DataOutputStream(out);
+    hout.write("VASSAL".getBytes());
+    hout.writeInt(tile.getWidth());
+    hout.writeInt(tile.getHeight());
+    hout.writeInt(tile.getType());
+    hout.flush();
+
+    final int[] data = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+    final ByteBuffer bb = ByteBuffer.allocate(4 * data.length);
+    bb.asIntBuffer().put(data);
+
+    final GZIPOutputStream zout = new GZIPOutputStream(out);
+    zout.write(bb.array());
+    zout.finish();
+
+    return out.toByteArray();
+  }
+
+  private static BufferedImage toARGB(BufferedImage img) {
+    final BufferedImage argb = new BufferedImage(
+      img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB
+    );
+    final Graphics2D g = argb.createGraphics();
+    g.drawImage(img, 0, 0, null);
+    g.dispose();
+    return argb;
+  }
+
+  private static BufferedImage syntheticMap(int w, int h) {
+    final BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    final Random r = new Random(42);
+    final Graphics2D g = img.createGraphics();
+
+    // flat background with some blocks of colour
+    g.setColor(new Color(0xE8DCB0));
+    g.fillRect(0, 0, w, h);
+    for (int i = 0; i < 200; ++i) {
+      g.setColor(new Color(r.nextInt(0xFFFFFF)));
+      g.fillRect(r.nextInt(w), r.nextInt(h), r.nextInt(600), r.nextInt(600));
+    }
+
+    // hex grid lines
+    g.setColor(Color.BLACK);
+    for (int y = 0; y < h; y += 64) {
+      for (int x = 0; x < w; x += 74) {
+        g.drawPolygon(
+          new int[] { x, x + 18, x + 55, x + 74, x + 55, x + 18 },
+          new int[] { y + 32, y, y, y + 32, y + 64, y + 64 },
+          6
+        );
+      }
+    }
+    g.dispose();
+
+    // a gradient band and a band of noisy "terrain"
+    for (int y = h / 2; y < h / 2 + 512 && y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        img.setRGB(x, y, 0xFF000000 | ((x & 0xFF) << 16) | ((y & 0xFF) << 8));
+      }
+    }
+    for (int y = h / 4; y < h / 4 + 512 && y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        img.setRGB(x, y, 0xFF204010 + r.nextInt(0x20) * 0x010101);
+      }
+    }
+
+    return img;
+  }
+}
@@ -25,7 +25,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.zip.GZIPOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -37,6 +40,7 @@ import static VASSAL.tools.image.AssertImage.*;
 public class TileUtilsTest {
 
   private static byte[] bytes;
+  private static byte[] bytesV2;
   private static BufferedImage src;
 
   @BeforeEach
@@ -59,6 +63,17 @@ public class TileUtilsTest {
 
     bytes = baos.toByteArray();
 
+    // the same tile in version 2 format
+    final ByteArrayOutputStream baos2 = new ByteArrayOutputStream();
+    final DataOutputStream out2 = new DataOutputStream(baos2);
+    out2.write(bytes, 0, 18);
+    out2.writeByte(TileUtils.FORMAT_V2);
+    out2.writeByte(TileCodec.SOLID);
+    out2.writeInt(0xDEADBEEF);
+    out2.close();
+
+    bytesV2 = baos2.toByteArray();
+
     // the same 1x1 test image as a BufferedImage
     src = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
     src.setRGB(0, 0, 0xDEADBEEF);
@@ -71,6 +86,50 @@ public class TileUtilsTest {
     assertImageEquals(src, img);
   }
 
+  @Test
+  public void testReadInputStreamV2Ok() throws IOException {
+    final InputStream in = new ByteArrayInputStream(bytesV2);
+    final BufferedImage img = TileUtils.read(in);
+    assertImageEquals(src, img);
+  }
+
+  @Test
+  public void testReadInputStreamV1Large() throws IOException {
+    final BufferedImage big = randomImage(300, 200, 1000);
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final DataOutputStream hout = new DataOutputStream(baos);
+    hout.write("VASSAL".getBytes());
+    hout.writeInt(big.getWidth());
+    hout.writeInt(big.getHeight());
+    hout.writeInt(big.getType());
+    hout.close();
+
+    final DataOutputStream zout =
+      new DataOutputStream(new GZIPOutputStream(baos));
+    for (int y = 0; y < big.getHeight(); ++y) {
+      for (int x = 0; x < big.getWidth(); ++x) {
+        zout.writeInt(big.getRGB(x, y));
+      }
+    }
+    zout.close();
+
+    final InputStream in = new ByteArrayInputStream(baos.toByteArray());
+    assertImageEquals(big, TileUtils.read(in));
+  }
+
+  @Test
+  public void testReadInputStreamV2Corrupt() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TileUtils.write(randomImage(64, 64, 16), out);
+    final byte[] b = out.toByteArray();
+
+    // truncate the image data
+    final InputStream in =
+      new ByteArrayInputStream(Arrays.copyOfRange(b, 0, b.length / 2));
+    assertThrows(IOException.class, () -> TileUtils.read(in));
+  }
+
   @Test
   public void testReadInputStreamUnderflow() {
     final InputStream in = new ByteArrayInputStream(new byte[0]);
@@ -137,7 +196,7 @@ public class TileUtilsTest {
   public void testWriteOutputStream() throws IOException {
     final ByteArrayOutputStream out = new ByteArrayOutputStream();
     TileUtils.write(src, out);
-    assertArrayEquals(bytes, out.toByteArray());
+    assertArrayEquals(bytesV2, out.toByteArray());
   }
 
   @Test
@@ -159,7 +218,72 @@ public class TileUtilsTest {
     final ByteArrayOutputStream out = new ByteArrayOutputStream();
     TileUtils.write(dst, out);
 
-    assertArrayEquals(bytes, out.toByteArray());
+    // tiles are always written in version 2
+    assertArrayEquals(bytesV2, out.toByteArray());
+  }
+
+  /**
+   * @return an image with pixels chosen randomly from the given number of
+   * colours, in runs of random length
+   */
+  private static BufferedImage randomImage(int w, int h, int colours) {
+    final Random r = new Random(42);
+    final BufferedImage img =
+      new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+
+    int p = 0;
+    for (int y = 0; y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        if (r.nextInt(8) == 0) {
+          p = 0xFF000000 | r.nextInt(colours) * 0x010307;
+        }
+        img.setRGB(x, y, p);
+      }
+    }
+    return img;
+  }
+
+  @Test
+  public void testWriteReadRoundTripModes() throws IOException {
+    // solid, few runs, many runs, noise, tiny and odd-sized images, which
+    // between them exercise each compression mode
+    final BufferedImage[] images = {
+      randomImage(256, 256, 1),
+      randomImage(256, 256, 2),
+      randomImage(256, 256, 1000),
+      randomImage(1, 1, 1000),
+      randomImage(37, 250, 100),
+      new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB)
+    };
+
+    final BufferedImage noise =
+      new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+    final Random r = new Random(42);
+    for (int y = 0; y < 256; ++y) {
+      for (int x = 0; x < 256; ++x) {
+        noise.setRGB(x, y, r.nextInt());
+      }
+    }
+
+    final BufferedImage gradient =
+      new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB_PRE);
+    for (int y = 0; y < 256; ++y) {
+      for (int x = 0; x < 256; ++x) {
+        gradient.setRGB(x, y, 0xFF000000 | (x << 16) | (y << 8) | ((x + y) & 0xF0));
+      }
+    }
+
+    final List<BufferedImage> all = new ArrayList<>(Arrays.asList(images));
+    all.add(noise);
+    all.add(gradient);
+
+    for (final BufferedImage img : all) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TileUtils.write(img, out);
+
+      final InputStream in = new ByteArrayInputStream(out.toByteArray());
+      assertImageEquals(img, TileUtils.read(in));
+    }
   }
 
   @Test
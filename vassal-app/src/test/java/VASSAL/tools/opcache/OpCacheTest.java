@@ -0,0 +1,148 @@
+package VASSAL.tools.opcache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class OpCacheTest {
+
+  /** An image of the given size; 4 bytes per pixel */
+  private static class ImageOp extends AbstractOpImpl<BufferedImage> {
+    private final int size;
+    private final AtomicInteger evals;
+
+    ImageOp(OpCache cache, int size, AtomicInteger evals) {
+      super(cache);
+      this.size = size;
+      this.evals = evals;
+    }
+
+    @Override
+    public List<Op<?>> getSources() {
+      return List.of();
+    }
+
+    @Override
+    public BufferedImage eval() {
+      evals.incrementAndGet();
+      return new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o == this;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+  }
+
+  @Test
+  public void testWeighRaster() {
+    final OpCache cache = new OpCache();
+    assertEquals(4 * 10 * 20, cache.weigh(new BufferedImage(10, 20, BufferedImage.TYPE_INT_ARGB)));
+    assertEquals(3 * 10 * 20, cache.weigh(new BufferedImage(10, 20, BufferedImage.TYPE_3BYTE_BGR)));
+    assertEquals(0, cache.weigh(null));
+  }
+
+  @Test
+  public void testBoundedRetention() {
+    final OpCache cache = new OpCache();
+    final AtomicInteger evals = new AtomicInteger();
+
+    // room for two 100x100 images
+    cache.setMaxBytes(2 * 4 * 100 * 100);
+
+    final ImageOp a = new ImageOp(cache, 100, evals);
+    final ImageOp b = new ImageOp(cache, 100, evals);
+    final ImageOp c = new ImageOp(cache, 100, evals);
+
+    final BufferedImage ai = a.get();
+    b.get();
+    assertEquals(2 * 4 * 100 * 100, cache.getRetainedBytes());
+
+    // a is now more recently used than b
+    assertSame(ai, a.get());
+
+    // so c evicts b
+    c.get();
+    assertEquals(2 * 4 * 100 * 100, cache.getRetainedBytes());
+
+    final OpCache.Stats s = cache.getStats().get("OpCacheTest$ImageOp");
+    assertEquals(3, s.getMisses());
+    assertEquals(1, s.getHits());
+    assertEquals(1, s.getEvictions());
+    assertEquals(3, evals.get());
+
+    // shrinking the budget evicts the least recently used
+    cache.setMaxBytes(4 * 100 * 100);
+    assertEquals(4 * 100 * 100, cache.getRetainedBytes());
+    assertEquals(2, s.getEvictions());
+
+    cache.clear();
+    assertEquals(0, cache.getRetainedBytes());
+  }
+
+  @Test
+  public void testConcurrentUse() throws Exception {
+    final OpCache cache = new OpCache();
+    final AtomicInteger evals = new AtomicInteger();
+
+    // room for 8 of the 32 images
+    final int weight = 4 * 10 * 10;
+    cache.setMaxBytes(8 * weight);
+
+    final List<ImageOp> ops = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      ops.add(new ImageOp(cache, 10, evals));
+    }
+
+    final ExecutorService ex = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> done = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final int start = t;
+        done.add(ex.submit(() -> {
+          for (int i = 0; i < 2000; i++) {
+            ops.get((start + i * 7) % ops.size()).get();
+          }
+        }));
+      }
+      for (final Future<?> f : done) {
+        f.get();
+      }
+    }
+    finally {
+      ex.shutdown();
+    }
+
+    // however the threads interleaved, the count of bytes matches what is held
+    final long retained = cache.getRetainedBytes();
+    assertTrue(retained <= 8 * weight);
+    assertEquals(0, retained % weight);
+    cache.setMaxBytes(0);
+    assertEquals(0, cache.getRetainedBytes());
+  }
+
+  @Test
+  public void testUnbounded() {
+    final OpCache cache = new OpCache();
+    final AtomicInteger evals = new AtomicInteger();
+
+    new ImageOp(cache, 10, evals).get();
+    assertEquals(0, cache.getRetainedBytes());
+    assertEquals(0, cache.getMaxBytes());
+  }
+}
@@ -0,0 +1,72 @@
+package bsh;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ExpressionCompilerTest {
+
+  private static CompiledExpression compile(String expression) {
+    final BeanShellExpressionValidator v = new BeanShellExpressionValidator(expression);
+    return ExpressionCompiler.compile(expression, v.getVariables(), v.getStringVariables(), Set.of("Twice/1"));
+  }
+
+  private static String evaluate(String expression, Object... values) throws CompiledExpression.Unsupported {
+    final CompiledExpression c = compile(expression);
+    assertThat(expression, c, is(notNullValue()));
+    return c.evaluate(values, (function, args) -> {
+      assertThat(function, is(equalTo("Twice/1")));
+      return CompiledExpression.primitive((Integer) args[0] * 2);
+    });
+  }
+
+  @Test
+  public void testOperators() throws CompiledExpression.Unsupported {
+    assertThat(evaluate("x + y * 2", new Primitive(1), new Primitive(3)), is(equalTo("7")));
+    assertThat(evaluate("x / 2 + 0.5", new Primitive(5)), is(equalTo("2.5")));
+    assertThat(evaluate("x > 2 && !y ? \"a\" : \"b\"", new Primitive(3), new Primitive(false)), is(equalTo("a")));
+    assertThat(evaluate("x == \"abc\" || x < \"b\"", "abc"), is(equalTo("true")));
+    assertThat(evaluate("x + 1", ""), is(equalTo("1")));
+    assertThat(evaluate("-x + Twice(x)", new Primitive(4)), is(equalTo("4")));
+  }
+
+  @Test
+  public void testStringMethods() throws CompiledExpression.Unsupported {
+    // s is passed as a String, after the other variables, and is seen as one however else it is used
+    assertThat(evaluate("s.substring(1) + s.length() + (s == \"abc\")", new Primitive(0), "abc"),
+      is(equalTo("bc3true")));
+    assertThat(evaluate("s.contains(t)", "b", "abc"), is(equalTo("true")));
+  }
+
+  @Test
+  public void testShortCircuit() throws CompiledExpression.Unsupported {
+    // The rhs would fail if it were evaluated
+    assertThat(evaluate("x || y / 0 > 1", new Primitive(true), new Primitive(1)), is(equalTo("true")));
+    assertThat(evaluate("x ? 1 : y / 0", new Primitive(true), new Primitive(1)), is(equalTo("1")));
+  }
+
+  @Test
+  public void testUnsupported() {
+    // Left to the interpreter, so that it can report the error
+    assertThrows(CompiledExpression.Unsupported.class, () -> evaluate("x / y", new Primitive(1), new Primitive(0)));
+    assertThrows(CompiledExpression.Unsupported.class, () -> evaluate("x ? 1 : 2", "abc"));
+    assertThrows(CompiledExpression.Unsupported.class, () -> evaluate("s.substring(x)", "1", "abc"));
+    assertThrows(CompiledExpression.Unsupported.class, () -> evaluate("s.contains(t)", new Primitive(1), "abc"));
+  }
+
+  @Test
+  public void testNotCompiled() {
+    for (final String expression : List.of("x++", "Other(1)", "Math.max(1, 2)", "s.charAt(0)", "\"abc\".length()",
+                                           "x instanceof String", "(String) x", "x = 1", "x; y", "x +")) {
+      assertThat(expression, compile(expression), is(nullValue()));
+    }
+  }
+}